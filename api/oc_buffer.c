@@ -17,9 +17,11 @@
 #include "messaging/coap/engine.h"
 #include "oc_signal_event_loop.h"
 #include "port/oc_network_events_mutex.h"
+#include "util/oc_atomic.h"
 #include "util/oc_memb.h"
 #include <stdint.h>
 #include <stdio.h>
+#include <string.h>
 #ifdef OC_DYNAMIC_ALLOCATION
 #include <stdlib.h>
 #endif /* OC_DYNAMIC_ALLOCATION */
@@ -29,27 +31,386 @@
 #endif /* OC_SECURITY */
 
 #include "oc_buffer.h"
+#include "oc_buffer_settings.h"
 #include "oc_config.h"
 #include "oc_events.h"
+#include "oc_overload_internal.h"
 
 OC_PROCESS(message_buffer_handler, "OC Message Buffer Handler");
 OC_MEMB(oc_incoming_buffers, oc_message_t, OC_MAX_NUM_CONCURRENT_REQUESTS);
 OC_MEMB(oc_outgoing_buffers, oc_message_t, OC_MAX_NUM_CONCURRENT_REQUESTS);
 
+#ifdef OC_DYNAMIC_ALLOCATION
+/*
+ * The data of messages is held in buffers of three size classes. Freed
+ * buffers are kept on the free list of their class, up to a limit, and reused
+ * by the next allocations of the class instead of calling malloc() again.
+ * Messages are allocated with a large buffer. The buffer of a received message
+ * is swapped for the smallest one holding its data before it is queued, so
+ * queued messages do not each hold a buffer of OC_PDU_SIZE bytes.
+ *
+ * Messages are allocated and freed by the network threads too. Where
+ * thread-local variables are available, each thread keeps the buffers it frees
+ * in a cache of its own, holding up to OC_MESSAGE_BUFFER_CACHE_SIZE buffers of
+ * each class, and allocates from it without taking a lock. Buffers are moved
+ * between the thread caches and the shared free lists in batches of half a
+ * cache, so a network thread allocating the buffers freed by the thread
+ * running the stack takes the network event handler mutex once per batch.
+ * The shared free lists are protected by the mutex and the counters are
+ * updated with atomic operations.
+ */
+#ifndef OC_MESSAGE_BUFFER_SMALL_SIZE
+#define OC_MESSAGE_BUFFER_SMALL_SIZE (256)
+#endif /* !OC_MESSAGE_BUFFER_SMALL_SIZE */
+#ifndef OC_MESSAGE_BUFFER_MEDIUM_SIZE
+#define OC_MESSAGE_BUFFER_MEDIUM_SIZE (1024)
+#endif /* !OC_MESSAGE_BUFFER_MEDIUM_SIZE */
+#ifndef OC_MESSAGE_BUFFER_MAX_FREE
+#define OC_MESSAGE_BUFFER_MAX_FREE (16)
+#endif /* !OC_MESSAGE_BUFFER_MAX_FREE */
+#ifndef OC_MESSAGE_BUFFER_CACHE_SIZE
+#define OC_MESSAGE_BUFFER_CACHE_SIZE (8)
+#endif /* !OC_MESSAGE_BUFFER_CACHE_SIZE */
+
+typedef struct oc_message_buffer_s
+{
+  struct oc_message_buffer_s *next;
+  size_t size;
+  oc_message_buffer_class_t buffer_class;
+} oc_message_buffer_t;
+
+typedef struct message_buffer_class_t
+{
+  oc_message_buffer_t *free_list;
+  uint32_t num_free;
+  /* updated with atomic operations */
+  uint32_t allocations;
+  uint32_t reuses;
+  uint32_t in_use;
+  uint32_t high_water_mark;
+  uint32_t free;
+} message_buffer_class_t;
+
+static message_buffer_class_t buffer_classes[OC_MESSAGE_BUFFER_CLASSES];
+
+#ifdef OC_THREAD_LOCAL
+typedef struct message_buffer_cache_s
+{
+  struct message_buffer_cache_s *next;
+  oc_message_buffer_t *free_list[OC_MESSAGE_BUFFER_CLASSES];
+  uint32_t num_free[OC_MESSAGE_BUFFER_CLASSES];
+} message_buffer_cache_t;
+
+/* the caches of all threads, released by oc_free_message_buffers() */
+static message_buffer_cache_t *buffer_caches;
+static uint32_t buffer_caches_generation;
+static OC_THREAD_LOCAL message_buffer_cache_t *thread_cache;
+static OC_THREAD_LOCAL uint32_t thread_cache_generation;
+#endif /* OC_THREAD_LOCAL */
+
+static size_t
+buffer_class_size(oc_message_buffer_class_t buffer_class)
+{
+  /* OC_PDU_SIZE can be changed at runtime */
+  size_t pdu_size = (size_t)OC_PDU_SIZE;
+  size_t size = pdu_size;
+  if (buffer_class == OC_MESSAGE_BUFFER_SMALL) {
+    size = OC_MESSAGE_BUFFER_SMALL_SIZE;
+  } else if (buffer_class == OC_MESSAGE_BUFFER_MEDIUM) {
+    size = OC_MESSAGE_BUFFER_MEDIUM_SIZE;
+  }
+  return (size < pdu_size) ? size : pdu_size;
+}
+
+static oc_message_buffer_class_t
+get_buffer_class(size_t size)
+{
+  if (size <= buffer_class_size(OC_MESSAGE_BUFFER_SMALL)) {
+    return OC_MESSAGE_BUFFER_SMALL;
+  }
+  if (size <= buffer_class_size(OC_MESSAGE_BUFFER_MEDIUM)) {
+    return OC_MESSAGE_BUFFER_MEDIUM;
+  }
+  return OC_MESSAGE_BUFFER_LARGE;
+}
+
+static oc_message_buffer_t *
+pop_free_buffer(message_buffer_class_t *bc, oc_message_buffer_t **free_list,
+                uint32_t *num_free, size_t size)
+{
+  oc_message_buffer_t *buffer = *free_list;
+  while (buffer) {
+    *free_list = buffer->next;
+    (*num_free)--;
+    OC_ATOMIC_DECREMENT32(bc->free);
+    if (buffer->size == size) {
+      break;
+    }
+    /* freed before OC_PDU_SIZE was changed */
+    free(buffer);
+    buffer = *free_list;
+  }
+  return buffer;
+}
+
+static uint8_t *
+use_buffer(oc_message_buffer_class_t buffer_class,
+           oc_message_buffer_t *buffer)
+{
+  message_buffer_class_t *bc = &buffer_classes[buffer_class];
+  if (buffer) {
+    OC_ATOMIC_INCREMENT32(bc->reuses);
+  } else {
+    size_t size = buffer_class_size(buffer_class);
+    buffer = (oc_message_buffer_t *)malloc(sizeof(oc_message_buffer_t) + size);
+    if (!buffer) {
+      return NULL;
+    }
+    buffer->size = size;
+    buffer->buffer_class = buffer_class;
+  }
+  buffer->next = NULL;
+  OC_ATOMIC_INCREMENT32(bc->allocations);
+  uint32_t in_use = OC_ATOMIC_INCREMENT32(bc->in_use);
+  uint32_t high_water_mark = OC_ATOMIC_LOAD32(bc->high_water_mark);
+  while (in_use > high_water_mark &&
+         !OC_ATOMIC_COMPARE_AND_SWAP32(bc->high_water_mark, high_water_mark,
+                                       in_use)) {
+    high_water_mark = OC_ATOMIC_LOAD32(bc->high_water_mark);
+  }
+  return (uint8_t *)(buffer + 1);
+}
+
+#ifdef OC_THREAD_LOCAL
+static message_buffer_cache_t *
+get_thread_cache(void)
+{
+  uint32_t generation = OC_ATOMIC_LOAD32(buffer_caches_generation);
+  if (thread_cache && thread_cache_generation == generation) {
+    return thread_cache;
+  }
+  message_buffer_cache_t *cache =
+    (message_buffer_cache_t *)calloc(1, sizeof(message_buffer_cache_t));
+  if (!cache) {
+    return NULL;
+  }
+  oc_network_event_handler_mutex_lock();
+  cache->next = buffer_caches;
+  buffer_caches = cache;
+  oc_network_event_handler_mutex_unlock();
+  thread_cache = cache;
+  thread_cache_generation = generation;
+  return cache;
+}
+
+static void
+refill_thread_cache(message_buffer_cache_t *cache,
+                    oc_message_buffer_class_t buffer_class)
+{
+  message_buffer_class_t *bc = &buffer_classes[buffer_class];
+  oc_network_event_handler_mutex_lock();
+  while (bc->free_list &&
+         cache->num_free[buffer_class] < OC_MESSAGE_BUFFER_CACHE_SIZE / 2) {
+    oc_message_buffer_t *buffer = bc->free_list;
+    bc->free_list = buffer->next;
+    bc->num_free--;
+    buffer->next = cache->free_list[buffer_class];
+    cache->free_list[buffer_class] = buffer;
+    cache->num_free[buffer_class]++;
+  }
+  oc_network_event_handler_mutex_unlock();
+}
+
+static void
+flush_thread_cache(message_buffer_cache_t *cache,
+                   oc_message_buffer_class_t buffer_class)
+{
+  message_buffer_class_t *bc = &buffer_classes[buffer_class];
+  oc_message_buffer_t *excess = NULL;
+  oc_network_event_handler_mutex_lock();
+  while (cache->free_list[buffer_class] &&
+         cache->num_free[buffer_class] > OC_MESSAGE_BUFFER_CACHE_SIZE / 2) {
+    oc_message_buffer_t *buffer = cache->free_list[buffer_class];
+    cache->free_list[buffer_class] = buffer->next;
+    cache->num_free[buffer_class]--;
+    if (bc->num_free < OC_MESSAGE_BUFFER_MAX_FREE) {
+      buffer->next = bc->free_list;
+      bc->free_list = buffer;
+      bc->num_free++;
+    } else {
+      buffer->next = excess;
+      excess = buffer;
+    }
+  }
+  oc_network_event_handler_mutex_unlock();
+  while (excess) {
+    oc_message_buffer_t *next = excess->next;
+    OC_ATOMIC_DECREMENT32(bc->free);
+    free(excess);
+    excess = next;
+  }
+}
+#endif /* OC_THREAD_LOCAL */
+
+static uint8_t *
+alloc_buffer(oc_message_buffer_class_t buffer_class)
+{
+  message_buffer_class_t *bc = &buffer_classes[buffer_class];
+  size_t size = buffer_class_size(buffer_class);
+#ifdef OC_THREAD_LOCAL
+  message_buffer_cache_t *cache = get_thread_cache();
+  if (cache) {
+    if (!cache->free_list[buffer_class]) {
+      refill_thread_cache(cache, buffer_class);
+    }
+    return use_buffer(buffer_class,
+                      pop_free_buffer(bc, &cache->free_list[buffer_class],
+                                      &cache->num_free[buffer_class], size));
+  }
+#endif /* OC_THREAD_LOCAL */
+  oc_network_event_handler_mutex_lock();
+  uint8_t *data = use_buffer(
+    buffer_class, pop_free_buffer(bc, &bc->free_list, &bc->num_free, size));
+  oc_network_event_handler_mutex_unlock();
+  return data;
+}
+
+static void
+free_buffer(uint8_t *data)
+{
+  oc_message_buffer_t *buffer = (oc_message_buffer_t *)data - 1;
+  oc_message_buffer_class_t buffer_class = buffer->buffer_class;
+  message_buffer_class_t *bc = &buffer_classes[buffer_class];
+  OC_ATOMIC_DECREMENT32(bc->in_use);
+  if (buffer->size != buffer_class_size(buffer_class)) {
+    free(buffer);
+    return;
+  }
+#ifdef OC_THREAD_LOCAL
+  message_buffer_cache_t *cache = get_thread_cache();
+  if (cache) {
+    if (cache->num_free[buffer_class] >= OC_MESSAGE_BUFFER_CACHE_SIZE) {
+      flush_thread_cache(cache, buffer_class);
+    }
+    buffer->next = cache->free_list[buffer_class];
+    cache->free_list[buffer_class] = buffer;
+    cache->num_free[buffer_class]++;
+    OC_ATOMIC_INCREMENT32(bc->free);
+    return;
+  }
+#endif /* OC_THREAD_LOCAL */
+  oc_network_event_handler_mutex_lock();
+  if (bc->num_free < OC_MESSAGE_BUFFER_MAX_FREE) {
+    buffer->next = bc->free_list;
+    bc->free_list = buffer;
+    bc->num_free++;
+    OC_ATOMIC_INCREMENT32(bc->free);
+    buffer = NULL;
+  }
+  oc_network_event_handler_mutex_unlock();
+  free(buffer);
+}
+
+void
+oc_message_shrink_buffer(oc_message_t *message)
+{
+  if (!message || message->ref_count != 1) {
+    return;
+  }
+  oc_message_buffer_class_t buffer_class = get_buffer_class(message->length);
+  oc_message_buffer_t *buffer = (oc_message_buffer_t *)message->data - 1;
+  if (buffer_class >= buffer->buffer_class) {
+    return;
+  }
+  uint8_t *data = alloc_buffer(buffer_class);
+  if (data) {
+    memcpy(data, message->data, message->length);
+    free_buffer(message->data);
+    message->data = data;
+  }
+}
+
+int
+oc_get_message_buffer_stats(oc_message_buffer_class_t buffer_class,
+                            oc_message_buffer_stats_t *stats)
+{
+  if (buffer_class >= OC_MESSAGE_BUFFER_CLASSES || !stats) {
+    return -1;
+  }
+  message_buffer_class_t *bc = &buffer_classes[buffer_class];
+  stats->size = buffer_class_size(buffer_class);
+  stats->allocations = OC_ATOMIC_LOAD32(bc->allocations);
+  stats->reuses = OC_ATOMIC_LOAD32(bc->reuses);
+  stats->in_use = OC_ATOMIC_LOAD32(bc->in_use);
+  stats->high_water_mark = OC_ATOMIC_LOAD32(bc->high_water_mark);
+  stats->free = OC_ATOMIC_LOAD32(bc->free);
+  return 0;
+}
+
+static void
+free_buffer_list(oc_message_buffer_t *buffer)
+{
+  while (buffer) {
+    oc_message_buffer_t *next = buffer->next;
+    free(buffer);
+    buffer = next;
+  }
+}
+
+void
+oc_free_message_buffers(void)
+{
+  int i;
+#ifdef OC_THREAD_LOCAL
+  /* the caches of threads still running are replaced on their next use */
+  OC_ATOMIC_INCREMENT32(buffer_caches_generation);
+  while (buffer_caches) {
+    message_buffer_cache_t *cache = buffer_caches;
+    buffer_caches = cache->next;
+    for (i = 0; i < OC_MESSAGE_BUFFER_CLASSES; i++) {
+      free_buffer_list(cache->free_list[i]);
+    }
+    free(cache);
+  }
+#endif /* OC_THREAD_LOCAL */
+  for (i = 0; i < OC_MESSAGE_BUFFER_CLASSES; i++) {
+    free_buffer_list(buffer_classes[i].free_list);
+    buffer_classes[i].free_list = NULL;
+    buffer_classes[i].num_free = 0;
+    OC_ATOMIC_STORE32(buffer_classes[i].free, 0);
+  }
+}
+#else  /* OC_DYNAMIC_ALLOCATION */
+int
+oc_get_message_buffer_stats(oc_message_buffer_class_t buffer_class,
+                            oc_message_buffer_stats_t *stats)
+{
+  (void)buffer_class;
+  (void)stats;
+  OC_WRN("Dynamic memory not available");
+  return -1;
+}
+#endif /* !OC_DYNAMIC_ALLOCATION */
+
 static oc_message_t *
 allocate_message(struct oc_memb *pool)
 {
-  oc_network_event_handler_mutex_lock();
+#ifdef OC_DYNAMIC_ALLOCATION
+  /* the pools are not bounded and allocate with calloc() */
   oc_message_t *message = (oc_message_t *)oc_memb_alloc(pool);
-  oc_network_event_handler_mutex_unlock();
   if (message) {
-#ifdef OC_DYNAMIC_ALLOCATION
-    message->data = malloc(OC_PDU_SIZE);
+    message->data = alloc_buffer(OC_MESSAGE_BUFFER_LARGE);
     if (!message->data) {
       oc_memb_free(pool, message);
-      return NULL;
+      message = NULL;
     }
-#endif /* OC_DYNAMIC_ALLOCATION */
+  }
+#else  /* OC_DYNAMIC_ALLOCATION */
+  oc_network_event_handler_mutex_lock();
+  oc_message_t *message = (oc_message_t *)oc_memb_alloc(pool);
+  oc_network_event_handler_mutex_unlock();
+#endif /* !OC_DYNAMIC_ALLOCATION */
+  if (message) {
     message->pool = pool;
     message->length = 0;
     message->next = 0;
@@ -112,7 +473,7 @@ oc_message_unref(oc_message_t *message)
     message->ref_count--;
     if (message->ref_count <= 0) {
 #ifdef OC_DYNAMIC_ALLOCATION
-      free(message->data);
+      free_buffer(message->data);
 #endif /* OC_DYNAMIC_ALLOCATION */
       struct oc_memb *pool = message->pool;
       oc_memb_free(pool, message);
@@ -127,8 +488,10 @@ void
 oc_recv_message(oc_message_t *message)
 {
   if (oc_process_post(&message_buffer_handler, oc_events[INBOUND_NETWORK_EVENT],
-                      message) == OC_PROCESS_ERR_FULL)
+                      message) == OC_PROCESS_ERR_FULL) {
+    oc_overload_count_dropped();
     oc_message_unref(message);
+  }
 }
 
 void
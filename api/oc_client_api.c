@@ -143,6 +143,8 @@ prepare_coap_request(oc_client_cb_t *cb)
       cb->method, OC_BLOCKWISE_CLIENT);
     if (!request_buffer) {
       OC_ERR("request_buffer is NULL");
+      coap_clear_transaction(transaction);
+      transaction = NULL;
       return false;
     }
     oc_rep_new(request_buffer->buffer, OC_MAX_APP_DATA_SIZE);
@@ -241,14 +243,12 @@ oc_do_delete(const char *uri, oc_endpoint_t *endpoint, const char *query,
   if (!cb)
     return false;
 
-  bool status = false;
-
-  status = prepare_coap_request(cb);
-
-  if (status)
-    status = dispatch_coap_request();
+  if (!prepare_coap_request(cb)) {
+    oc_ri_remove_client_cb(cb);
+    return false;
+  }
 
-  return status;
+  return dispatch_coap_request();
 }
 
 bool
@@ -263,14 +263,12 @@ oc_do_get(const char *uri, oc_endpoint_t *endpoint, const char *query,
   if (!cb)
     return false;
 
-  bool status = false;
-
-  status = prepare_coap_request(cb);
-
-  if (status)
-    status = dispatch_coap_request();
+  if (!prepare_coap_request(cb)) {
+    oc_ri_remove_client_cb(cb);
+    return false;
+  }
 
-  return status;
+  return dispatch_coap_request();
 }
 
 bool
@@ -285,7 +283,12 @@ oc_init_put(const char *uri, oc_endpoint_t *endpoint, const char *query,
   if (!cb)
     return false;
 
-  return prepare_coap_request(cb);
+  if (!prepare_coap_request(cb)) {
+    oc_ri_remove_client_cb(cb);
+    return false;
+  }
+
+  return true;
 }
 
 bool
@@ -301,7 +304,12 @@ oc_init_post(const char *uri, oc_endpoint_t *endpoint, const char *query,
     return false;
   }
 
-  return prepare_coap_request(cb);
+  if (!prepare_coap_request(cb)) {
+    oc_ri_remove_client_cb(cb);
+    return false;
+  }
+
+  return true;
 }
 
 bool
@@ -316,6 +324,27 @@ oc_do_post(void)
   return dispatch_coap_request();
 }
 
+void
+oc_abort_request(void)
+{
+  if (!transaction || !client_cb) {
+    return;
+  }
+
+#ifdef OC_BLOCK_WISE
+  if (request_buffer) {
+    oc_blockwise_free_request_buffer(request_buffer);
+    request_buffer = NULL;
+  }
+#endif /* OC_BLOCK_WISE */
+
+  coap_clear_transaction(transaction);
+  oc_ri_remove_client_cb(client_cb);
+
+  transaction = NULL;
+  client_cb = NULL;
+}
+
 bool
 oc_do_observe(const char *uri, oc_endpoint_t *endpoint, const char *query,
               oc_response_handler_t handler, oc_qos_t qos, void *user_data)
@@ -330,14 +359,12 @@ oc_do_observe(const char *uri, oc_endpoint_t *endpoint, const char *query,
 
   cb->observe_seq = 0;
 
-  bool status = false;
-
-  status = prepare_coap_request(cb);
-
-  if (status)
-    status = dispatch_coap_request();
+  if (!prepare_coap_request(cb)) {
+    oc_ri_remove_client_cb(cb);
+    return false;
+  }
 
-  return status;
+  return dispatch_coap_request();
 }
 
 bool
@@ -348,7 +375,7 @@ oc_stop_observe(const char *uri, oc_endpoint_t *endpoint)
   if (!cb)
     return false;
 
-  cb->mid = coap_get_mid();
+  oc_ri_set_client_cb_mid(cb, coap_get_mid());
   cb->observe_seq = 1;
 
   bool status = false;
@@ -479,8 +506,8 @@ multi_scope_ipv6_multicast(oc_client_cb_t *cb4, uint8_t scope, const char *uri,
 
   if (cb) {
     if (cb4) {
-      cb->mid = cb4->mid;
-      memcpy(cb->token, cb4->token, cb4->token_len);
+      oc_ri_set_client_cb_mid(cb, cb4->mid);
+      oc_ri_set_client_cb_token(cb, cb4->token, cb4->token_len);
     }
     cb->multicast = true;
     if (prepare_coap_request(cb) && dispatch_coap_request()) {
@@ -545,8 +572,8 @@ dispatch_ip_discovery(oc_client_cb_t *cb4, const char *query,
   if (cb) {
     cb->discovery = true;
     if (cb4) {
-      cb->mid = cb4->mid;
-      memcpy(cb->token, cb4->token, cb4->token_len);
+      oc_ri_set_client_cb_mid(cb, cb4->mid);
+      oc_ri_set_client_cb_token(cb, cb4->token, cb4->token_len);
     }
 
     if (prepare_coap_request(cb) && dispatch_coap_request()) {
@@ -583,7 +610,7 @@ bool
 oc_do_site_local_ipv6_discovery_all(oc_discovery_all_handler_t handler,
                                     void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery_all = handler;
   handlers.discovery = NULL;
   return multi_scope_ipv6_discovery(NULL, 0x05, NULL, handlers, user_data);
@@ -593,7 +620,7 @@ bool
 oc_do_site_local_ipv6_discovery(const char *rt, oc_discovery_handler_t handler,
                                 void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery = handler;
   handlers.discovery_all = NULL;
   oc_string_t uri_query;
@@ -613,7 +640,7 @@ bool
 oc_do_realm_local_ipv6_discovery_all(oc_discovery_all_handler_t handler,
                                      void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery_all = handler;
   handlers.discovery = NULL;
   return multi_scope_ipv6_discovery(NULL, 0x03, NULL, handlers, user_data);
@@ -623,7 +650,7 @@ bool
 oc_do_realm_local_ipv6_discovery(const char *rt, oc_discovery_handler_t handler,
                                  void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery = handler;
   handlers.discovery_all = NULL;
   oc_string_t uri_query;
@@ -643,7 +670,7 @@ bool
 oc_do_ip_discovery(const char *rt, oc_discovery_handler_t handler,
                    void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery = handler;
   handlers.discovery_all = NULL;
   oc_string_t uri_query;
@@ -667,7 +694,7 @@ bool
 oc_do_ip_discovery_all(oc_discovery_all_handler_t handler, void *user_data)
 {
   oc_client_cb_t *cb4 = NULL;
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery_all = handler;
   handlers.discovery = NULL;
 #ifdef OC_IPV4
@@ -680,7 +707,7 @@ bool
 oc_do_ip_discovery_all_at_endpoint(oc_discovery_all_handler_t handler,
                                    oc_endpoint_t *endpoint, void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery_all = handler;
   handlers.discovery = NULL;
   return dispatch_ip_discovery(NULL, NULL, handlers, endpoint, user_data);
@@ -690,7 +717,7 @@ bool
 oc_do_ip_discovery_at_endpoint(const char *rt, oc_discovery_handler_t handler,
                                oc_endpoint_t *endpoint, void *user_data)
 {
-  oc_client_handler_t handlers;
+  oc_client_handler_t handlers = { 0 };
   handlers.discovery = handler;
   handlers.discovery_all = NULL;
   oc_string_t uri_query;
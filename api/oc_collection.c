@@ -30,6 +30,13 @@
 
 OC_MEMB(oc_collections_s, oc_collection_t, OC_MAX_NUM_COLLECTIONS);
 OC_LIST(oc_collections);
+#ifdef OC_DYNAMIC_ALLOCATION
+static oc_ri_uri_index_t oc_collections_index;
+#else  /* OC_DYNAMIC_ALLOCATION */
+static oc_resource_t *oc_collections_buckets[OC_MAX_NUM_COLLECTIONS];
+static oc_ri_uri_index_t oc_collections_index = { oc_collections_buckets,
+                                                  OC_MAX_NUM_COLLECTIONS, 0 };
+#endif /* !OC_DYNAMIC_ALLOCATION */
 /* Allocator for links */
 OC_MEMB(oc_links_s, oc_link_t, OC_MAX_APP_RESOURCES);
 /* Allocator for oc_rtt_t */
@@ -61,7 +68,12 @@ void
 oc_collection_free(oc_collection_t *collection)
 {
   if (collection != NULL) {
+    oc_ri_uri_index_remove(&oc_collections_index, (oc_resource_t *)collection);
     oc_list_remove(oc_collections, collection);
+    coap_remove_notification_policy((oc_resource_t *)collection);
+#ifdef OC_SECURITY
+    oc_sec_acl_cache_clear(collection->device);
+#endif /* OC_SECURITY */
     oc_ri_free_resource_properties((oc_resource_t *)collection);
 
     oc_link_t *link;
@@ -206,19 +218,13 @@ oc_collection_t *
 oc_get_collection_by_uri(const char *uri_path, size_t uri_path_len,
                          size_t device)
 {
-  while (uri_path[0] == '/') {
+  while (uri_path_len > 0 && uri_path[0] == '/') {
     uri_path++;
     uri_path_len--;
   }
-  oc_collection_t *collection = oc_list_head(oc_collections);
-  while (collection != NULL) {
-    if (oc_string_len(collection->uri) == (uri_path_len + 1) &&
-        strncmp(oc_string(collection->uri) + 1, uri_path, uri_path_len) == 0 &&
-        collection->device == device)
-      break;
-    collection = collection->next;
-  }
-  return collection;
+  return (oc_collection_t *)oc_ri_uri_index_find(&oc_collections_index,
+                                                  uri_path, uri_path_len,
+                                                  device);
 }
 
 oc_link_t *
@@ -263,6 +269,11 @@ oc_check_if_collection(oc_resource_t *resource)
 void
 oc_collection_add(oc_collection_t *collection)
 {
+  if (!oc_ri_uri_index_add(&oc_collections_index,
+                           (oc_resource_t *)collection)) {
+    OC_WRN("insufficient memory to add collection");
+    return;
+  }
   oc_list_add(oc_collections, collection);
 }
 
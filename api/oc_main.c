@@ -26,6 +26,7 @@
 #include "util/oc_process.h"
 
 #include "oc_api.h"
+#include "oc_buffer.h"
 #include "oc_core_res.h"
 #include "oc_introspection_internal.h"
 #include "oc_signal_event_loop.h"
@@ -175,6 +176,9 @@ oc_shutdown_all_devices(void)
     oc_connectivity_shutdown(device);
   }
 
+#ifdef OC_DYNAMIC_ALLOCATION
+  oc_free_message_buffers();
+#endif /* OC_DYNAMIC_ALLOCATION */
   oc_network_event_handler_mutex_destroy();
   oc_core_shutdown();
 }
@@ -274,6 +278,9 @@ oc_main_poll(void)
   while (oc_process_run()) {
     ticks_until_next_event = oc_etimer_request_poll();
   }
+#ifdef OC_UDP_BATCH
+  oc_send_buffer_flush();
+#endif /* OC_UDP_BATCH */
   return ticks_until_next_event;
 }
 
@@ -293,6 +300,10 @@ oc_main_shutdown(void)
   oc_collections_free_rt_factories();
 #endif /* OC_COLLECTIONS && OC_SERVER && OC_COLLECTIONS_IF_CREATE */
 
+#ifdef OC_SECURITY
+  oc_sec_store_flush();
+#endif /* OC_SECURITY */
+
   oc_ri_shutdown();
 
 #ifdef OC_SECURITY
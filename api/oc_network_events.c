@@ -17,25 +17,113 @@
 #include "oc_network_events.h"
 #include "oc_buffer.h"
 #include "oc_events.h"
+#include "oc_overload_internal.h"
 #include "oc_signal_event_loop.h"
 #include "port/oc_connectivity.h"
-#include "util/oc_list.h"
+#include "port/oc_log.h"
+#include "util/oc_atomic.h"
+
+/*
+ * Received messages are passed from the network threads to the thread running
+ * the stack through a bounded multi-producer single-consumer ring. A network
+ * thread claims a slot by advancing enqueue_pos with a compare-and-swap and
+ * publishes the message by advancing the sequence number of the slot, so
+ * network threads receiving at the same time do not wait on each other or on
+ * the stack. Only the thread running the stack dequeues.
+ *
+ * The sequence number of a slot is kept relative to the index of the slot, so
+ * the zero-initialized ring is empty.
+ */
+#ifndef OC_NETWORK_EVENTS_QUEUE_SIZE
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_NETWORK_EVENTS_QUEUE_SIZE (512)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define OC_NETWORK_EVENTS_QUEUE_SIZE (32)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+#endif /* !OC_NETWORK_EVENTS_QUEUE_SIZE */
+
+#if (OC_NETWORK_EVENTS_QUEUE_SIZE & (OC_NETWORK_EVENTS_QUEUE_SIZE - 1)) != 0
+#error "OC_NETWORK_EVENTS_QUEUE_SIZE must be a power of two"
+#endif
+
+#define NETWORK_EVENTS_QUEUE_MASK ((uint32_t)OC_NETWORK_EVENTS_QUEUE_SIZE - 1)
+
+typedef struct
+{
+  uint32_t sequence;
+  oc_message_t *message;
+} network_event_slot_t;
+
+static network_event_slot_t network_events[OC_NETWORK_EVENTS_QUEUE_SIZE];
+static uint32_t enqueue_pos;
+/* only advanced by the thread running the stack */
+static uint32_t dequeue_pos;
 
-OC_LIST(network_events);
 #ifdef OC_NETWORK_MONITOR
 static bool interface_up, interface_down;
 #endif /* OC_NETWORK_MONITOR */
 
+static bool
+enqueue_network_event(oc_message_t *message)
+{
+  network_event_slot_t *slot;
+  uint32_t pos = OC_ATOMIC_LOAD32(enqueue_pos);
+  while (1) {
+    uint32_t index = pos & NETWORK_EVENTS_QUEUE_MASK;
+    slot = &network_events[index];
+    int32_t diff = (int32_t)(OC_ATOMIC_LOAD32(slot->sequence) + index - pos);
+    if (diff == 0) {
+      if (OC_ATOMIC_COMPARE_AND_SWAP32(enqueue_pos, pos, pos + 1)) {
+        break;
+      }
+    } else if (diff < 0) {
+      /* the slot still holds the message enqueued one lap before */
+      return false;
+    }
+    pos = OC_ATOMIC_LOAD32(enqueue_pos);
+  }
+  slot->message = message;
+  OC_ATOMIC_STORE32(slot->sequence,
+                    pos + 1 - (pos & NETWORK_EVENTS_QUEUE_MASK));
+  return true;
+}
+
+static oc_message_t *
+dequeue_network_event(void)
+{
+  uint32_t index = dequeue_pos & NETWORK_EVENTS_QUEUE_MASK;
+  network_event_slot_t *slot = &network_events[index];
+  if (OC_ATOMIC_LOAD32(slot->sequence) + index != dequeue_pos + 1) {
+    return NULL;
+  }
+  oc_message_t *message = slot->message;
+  slot->message = NULL;
+  OC_ATOMIC_STORE32(slot->sequence,
+                    dequeue_pos + OC_NETWORK_EVENTS_QUEUE_SIZE - index);
+  OC_ATOMIC_STORE32(dequeue_pos, dequeue_pos + 1);
+  return message;
+}
+
 static void
 oc_process_network_event(void)
 {
-  oc_network_event_handler_mutex_lock();
-  oc_message_t *message = (oc_message_t *)oc_list_pop(network_events);
-  while (message != NULL) {
+  oc_message_t *message;
+  while (1) {
+#ifndef OC_HAVE_ATOMICS
+    oc_network_event_handler_mutex_lock();
+#endif /* !OC_HAVE_ATOMICS */
+    message = dequeue_network_event();
+#ifndef OC_HAVE_ATOMICS
+    oc_network_event_handler_mutex_unlock();
+#endif /* !OC_HAVE_ATOMICS */
+    if (!message) {
+      break;
+    }
     oc_recv_message(message);
-    message = oc_list_pop(network_events);
   }
+
 #ifdef OC_NETWORK_MONITOR
+  oc_network_event_handler_mutex_lock();
   if (interface_up) {
     oc_process_post(&oc_network_events, oc_events[INTERFACE_UP], NULL);
     interface_up = false;
@@ -44,8 +132,8 @@ oc_process_network_event(void)
     oc_process_post(&oc_network_events, oc_events[INTERFACE_DOWN], NULL);
     interface_down = false;
   }
-#endif /* OC_NETWORK_MONITOR */
   oc_network_event_handler_mutex_unlock();
+#endif /* OC_NETWORK_MONITOR */
 }
 
 OC_PROCESS(oc_network_events, "");
@@ -74,9 +162,28 @@ oc_network_event(oc_message_t *message)
     oc_message_unref(message);
     return;
   }
+#ifdef OC_DYNAMIC_ALLOCATION
+  oc_message_shrink_buffer(message);
+#endif /* OC_DYNAMIC_ALLOCATION */
+#ifndef OC_HAVE_ATOMICS
   oc_network_event_handler_mutex_lock();
-  oc_list_add(network_events, message);
+#endif /* !OC_HAVE_ATOMICS */
+  uint32_t queued =
+    OC_ATOMIC_LOAD32(enqueue_pos) - OC_ATOMIC_LOAD32(dequeue_pos);
+  bool admitted = oc_overload_admit_packet(message, queued,
+                                           OC_NETWORK_EVENTS_QUEUE_SIZE);
+  if (admitted && !enqueue_network_event(message)) {
+    OC_WRN("network events queue is full, dropping message");
+    oc_overload_count_dropped();
+    admitted = false;
+  }
+#ifndef OC_HAVE_ATOMICS
   oc_network_event_handler_mutex_unlock();
+#endif /* !OC_HAVE_ATOMICS */
+  if (!admitted) {
+    oc_message_unref(message);
+    return;
+  }
 
   oc_process_poll(&(oc_network_events));
   _oc_signal_event_loop();
@@ -0,0 +1,228 @@
+/*
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+*/
+
+#include "oc_overload_internal.h"
+#include "messaging/coap/constants.h"
+#include "oc_buffer_settings.h"
+#include "port/oc_clock.h"
+#include "port/oc_log.h"
+#include "util/oc_atomic.h"
+#include "util/oc_process.h"
+#include <string.h>
+
+/*
+ * Received requests are shed while the stack is overloaded, so the latency of
+ * the traffic it still accepts stays bounded:
+ *
+ * - The network threads keep the last quarter of the network events queue for
+ *   ACKs, RSTs, responses and secured traffic, and drop plain requests once
+ *   it is reached.
+ * - The CoAP engine sheds unsecured requests while more than
+ *   max_pending_requests events are waiting to be processed.
+ * - The CoAP engine sheds the requests of an address sending more than
+ *   requests_per_second requests, after an initial burst.
+ *
+ * Shed unicast requests are answered with a 5.03 Service Unavailable carrying
+ * a Max-Age of retry_after seconds. Shed multicast requests are ignored.
+ *
+ * The admission limits of addresses are kept in a small table. When it is
+ * full, the entry of the address that has been idle the longest is replaced.
+ * A limit is enforced with the generic cell rate algorithm, so each entry only
+ * holds the time at which its address may send the next request at the
+ * configured rate.
+ */
+#ifndef OC_OVERLOAD_MAX_ENDPOINTS
+#define OC_OVERLOAD_MAX_ENDPOINTS (32)
+#endif /* !OC_OVERLOAD_MAX_ENDPOINTS */
+
+#ifndef OC_OVERLOAD_MAX_PENDING_REQUESTS
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_OVERLOAD_MAX_PENDING_REQUESTS (128)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define OC_OVERLOAD_MAX_PENDING_REQUESTS (0)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+#endif /* !OC_OVERLOAD_MAX_PENDING_REQUESTS */
+
+#ifndef OC_OVERLOAD_RETRY_AFTER
+#define OC_OVERLOAD_RETRY_AFTER (5)
+#endif /* !OC_OVERLOAD_RETRY_AFTER */
+
+typedef struct
+{
+  oc_endpoint_t endpoint;
+  oc_clock_time_t next_request;
+  bool in_use;
+} admission_entry_t;
+
+static oc_overload_limits_t limits = { OC_OVERLOAD_MAX_PENDING_REQUESTS, 0, 0,
+                                       OC_OVERLOAD_RETRY_AFTER };
+static admission_entry_t admission_table[OC_OVERLOAD_MAX_ENDPOINTS];
+
+/* updated with atomic operations */
+static uint32_t dropped;
+static uint32_t shed;
+static uint32_t rate_limited;
+
+void
+oc_overload_count_dropped(void)
+{
+  OC_ATOMIC_INCREMENT32(dropped);
+}
+
+bool
+oc_overload_is_request_header(const uint8_t *header, size_t len)
+{
+  if (len < 4) {
+    return false;
+  }
+  uint8_t type = (header[0] >> 4) & 0x03;
+  uint8_t code = header[1];
+  return (type == COAP_TYPE_CON || type == COAP_TYPE_NON) &&
+         code >= COAP_GET && code <= COAP_DELETE;
+}
+
+static bool
+is_plain_request(const oc_message_t *message)
+{
+#ifdef OC_SECURITY
+  if (message->encrypted) {
+    return false;
+  }
+#endif /* OC_SECURITY */
+  if (message->endpoint.flags & (SECURED | TCP)) {
+    return false;
+  }
+  return oc_overload_is_request_header(message->data, message->length);
+}
+
+bool
+oc_overload_admit_packet(const oc_message_t *message, uint32_t queued,
+                         uint32_t capacity)
+{
+  if (queued < capacity - capacity / 4 || !is_plain_request(message)) {
+    return true;
+  }
+  oc_overload_count_dropped();
+  return false;
+}
+
+static admission_entry_t *
+get_admission_entry(const oc_endpoint_t *endpoint, oc_clock_time_t now)
+{
+  admission_entry_t *oldest = &admission_table[0];
+  int i;
+  for (i = 0; i < OC_OVERLOAD_MAX_ENDPOINTS; i++) {
+    admission_entry_t *entry = &admission_table[i];
+    if (!entry->in_use) {
+      oldest = entry;
+      break;
+    }
+    if (oc_endpoint_compare_address(&entry->endpoint, endpoint) == 0) {
+      return entry;
+    }
+    if (entry->next_request < oldest->next_request) {
+      oldest = entry;
+    }
+  }
+  memcpy(&oldest->endpoint, endpoint, sizeof(oc_endpoint_t));
+  oldest->next_request = now;
+  oldest->in_use = true;
+  return oldest;
+}
+
+static bool
+check_admission_limit(const oc_endpoint_t *endpoint)
+{
+  if (limits.requests_per_second == 0) {
+    return true;
+  }
+  oc_clock_time_t now = oc_clock_time();
+  oc_clock_time_t interval =
+    (oc_clock_time_t)OC_CLOCK_SECOND / limits.requests_per_second;
+  oc_clock_time_t tolerance =
+    interval * (limits.burst > 1 ? limits.burst - 1 : 0);
+  admission_entry_t *entry = get_admission_entry(endpoint, now);
+  if (entry->next_request < now) {
+    entry->next_request = now;
+  }
+  if (entry->next_request - now > tolerance) {
+    return false;
+  }
+  entry->next_request += interval;
+  return true;
+}
+
+bool
+oc_overload_admit_request(const oc_endpoint_t *endpoint)
+{
+  if (limits.max_pending_requests > 0 && !(endpoint->flags & SECURED) &&
+      oc_process_nevents() > (int)limits.max_pending_requests) {
+    OC_DBG("overload: shedding request, too many pending events");
+    OC_ATOMIC_INCREMENT32(shed);
+    return false;
+  }
+  if (!check_admission_limit(endpoint)) {
+    OC_DBG("overload: admission limit of endpoint exceeded");
+    OC_ATOMIC_INCREMENT32(rate_limited);
+    return false;
+  }
+  return true;
+}
+
+uint32_t
+oc_overload_retry_after(void)
+{
+  return limits.retry_after;
+}
+
+int
+oc_set_overload_limits(const oc_overload_limits_t *overload_limits)
+{
+  if (!overload_limits) {
+    return -1;
+  }
+  memcpy(&limits, overload_limits, sizeof(oc_overload_limits_t));
+  memset(admission_table, 0, sizeof(admission_table));
+  return 0;
+}
+
+int
+oc_get_overload_limits(oc_overload_limits_t *overload_limits)
+{
+  if (!overload_limits) {
+    return -1;
+  }
+  memcpy(overload_limits, &limits, sizeof(oc_overload_limits_t));
+  return 0;
+}
+
+int
+oc_get_overload_stats(oc_overload_stats_t *stats)
+{
+  if (!stats) {
+    return -1;
+  }
+  stats->dropped = OC_ATOMIC_LOAD32(dropped);
+  stats->shed = OC_ATOMIC_LOAD32(shed);
+  stats->rate_limited = OC_ATOMIC_LOAD32(rate_limited);
+  return 0;
+}
+
+void
+oc_reset_overload_stats(void)
+{
+  OC_ATOMIC_STORE32(dropped, 0);
+  OC_ATOMIC_STORE32(shed, 0);
+  OC_ATOMIC_STORE32(rate_limited, 0);
+}
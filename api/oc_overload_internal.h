@@ -0,0 +1,55 @@
+/*
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+*/
+
+#ifndef OC_OVERLOAD_INTERNAL_H
+#define OC_OVERLOAD_INTERNAL_H
+
+#include "oc_endpoint.h"
+#include "port/oc_connectivity.h"
+#include <stdbool.h>
+#include <stddef.h>
+#include <stdint.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* Counts a received packet discarded before it was processed. Can be called
+ * from the network threads. */
+void oc_overload_count_dropped(void);
+
+/* Returns true if the first len bytes of a UDP datagram hold the header of a
+ * CON or NON CoAP request. Can be called from the network threads. */
+bool oc_overload_is_request_header(const uint8_t *header, size_t len);
+
+/* Called from the network threads before a received packet is queued.
+ * Returns false, and counts the packet as dropped, for a plain CoAP request
+ * received while the last quarter of the queue is taken. That space is kept
+ * for ACKs, RSTs, responses and secured traffic. */
+bool oc_overload_admit_packet(const oc_message_t *message, uint32_t queued,
+                              uint32_t capacity);
+
+/* Called by the CoAP engine for every received request. Returns false when
+ * the request is to be shed, either because too many events are pending or
+ * because its sender exceeded its admission limit. */
+bool oc_overload_admit_request(const oc_endpoint_t *endpoint);
+
+/* Max-Age in seconds of the 5.03 responses to shed requests */
+uint32_t oc_overload_retry_after(void);
+
+#ifdef __cplusplus
+}
+#endif
+
+#endif /* OC_OVERLOAD_INTERNAL_H */
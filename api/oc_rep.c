@@ -54,6 +54,18 @@ oc_rep_get_encoder_buf(void)
   return g_buf;
 }
 
+void
+oc_rep_encode_raw(const uint8_t *data, size_t len)
+{
+  if (g_encoder.end == NULL ||
+      (size_t)(g_encoder.end - g_encoder.data.ptr) < len) {
+    g_err = CborErrorOutOfMemory;
+    return;
+  }
+  memcpy(g_encoder.data.ptr, data, len);
+  g_encoder.data.ptr += len;
+}
+
 int
 oc_rep_get_encoded_payload_size(void)
 {
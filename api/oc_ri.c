@@ -16,7 +16,11 @@
 
 #include <stdbool.h>
 #include <stddef.h>
+#include <stdint.h>
 #include <string.h>
+#ifdef OC_DYNAMIC_ALLOCATION
+#include <stdlib.h>
+#endif /* OC_DYNAMIC_ALLOCATION */
 
 #include "util/oc_etimer.h"
 #include "util/oc_list.h"
@@ -61,12 +65,27 @@
 OC_LIST(app_resources);
 OC_LIST(observe_callbacks);
 OC_MEMB(app_resources_s, oc_resource_t, OC_MAX_APP_RESOURCES);
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_RI_URI_INDEX_MIN_BUCKETS (64)
+static oc_ri_uri_index_t app_resources_index;
+#else  /* OC_DYNAMIC_ALLOCATION */
+static oc_resource_t *app_resources_buckets[OC_MAX_APP_RESOURCES];
+static oc_ri_uri_index_t app_resources_index = { app_resources_buckets,
+                                                 OC_MAX_APP_RESOURCES, 0 };
+#endif /* !OC_DYNAMIC_ALLOCATION */
 #endif /* OC_SERVER */
 
 #ifdef OC_CLIENT
 #include "oc_client_state.h"
 OC_LIST(client_cbs);
 OC_MEMB(client_cbs_s, oc_client_cb_t, OC_MAX_NUM_CONCURRENT_REQUESTS + 1);
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_CLIENT_CB_INDEX_BUCKETS (64)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define OC_CLIENT_CB_INDEX_BUCKETS (OC_MAX_NUM_CONCURRENT_REQUESTS + 1)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+static oc_client_cb_t *client_cbs_by_token[OC_CLIENT_CB_INDEX_BUCKETS];
+static oc_client_cb_t *client_cbs_by_mid[OC_CLIENT_CB_INDEX_BUCKETS];
 #endif /* OC_CLIENT */
 
 OC_LIST(timed_callbacks);
@@ -256,20 +275,176 @@ stop_processes(void)
 }
 
 #ifdef OC_SERVER
+static uint32_t
+uri_hash(const char *uri, size_t uri_len, size_t device)
+{
+  /* FNV-1a */
+  uint32_t hash = 2166136261u;
+  size_t i;
+  for (i = 0; i < uri_len; i++) {
+    hash ^= (uint8_t)uri[i];
+    hash *= 16777619u;
+  }
+  hash ^= (uint32_t)device;
+  hash *= 16777619u;
+  return hash;
+}
+
+static const char *
+resource_uri_key(oc_resource_t *resource, size_t *uri_len)
+{
+  const char *uri = oc_string(resource->uri);
+  *uri_len = oc_string_len(resource->uri);
+  if (*uri_len > 0 && uri[0] == '/') {
+    uri++;
+    (*uri_len)--;
+  }
+  return uri;
+}
+
+static size_t
+uri_index_bucket(oc_ri_uri_index_t *index, oc_resource_t *resource)
+{
+  size_t uri_len;
+  const char *uri = resource_uri_key(resource, &uri_len);
+  return uri_hash(uri, uri_len, resource->device) % index->num_buckets;
+}
+
+/* Links a resource at the end of its chain, so resources sharing a uri are
+ * found in the order they were added.
+ */
+static bool
+uri_index_link(oc_ri_uri_index_t *index, oc_resource_t *resource)
+{
+  oc_resource_t **next = &index->buckets[uri_index_bucket(index, resource)];
+  while (*next) {
+    if (*next == resource) {
+      return false;
+    }
+    next = &(*next)->next_by_uri;
+  }
+  resource->next_by_uri = NULL;
+  *next = resource;
+  return true;
+}
+
+static bool
+uri_index_unlink(oc_resource_t **next, oc_resource_t *resource)
+{
+  while (*next) {
+    if (*next == resource) {
+      *next = resource->next_by_uri;
+      resource->next_by_uri = NULL;
+      return true;
+    }
+    next = &(*next)->next_by_uri;
+  }
+  return false;
+}
+
+#ifdef OC_DYNAMIC_ALLOCATION
+static void
+uri_index_resize(oc_ri_uri_index_t *index, size_t num_buckets)
+{
+  oc_resource_t **buckets =
+    (oc_resource_t **)calloc(num_buckets, sizeof(oc_resource_t *));
+  if (!buckets) {
+    OC_WRN("insufficient memory to grow the resource index");
+    return;
+  }
+  oc_resource_t **old_buckets = index->buckets;
+  size_t i, old_num_buckets = index->num_buckets;
+  index->buckets = buckets;
+  index->num_buckets = num_buckets;
+  for (i = 0; i < old_num_buckets; i++) {
+    oc_resource_t *resource = old_buckets[i], *next;
+    while (resource) {
+      next = resource->next_by_uri;
+      uri_index_link(index, resource);
+      resource = next;
+    }
+  }
+  free(old_buckets);
+}
+#endif /* OC_DYNAMIC_ALLOCATION */
+
+bool
+oc_ri_uri_index_add(oc_ri_uri_index_t *index, oc_resource_t *resource)
+{
+#ifdef OC_DYNAMIC_ALLOCATION
+  if (index->count >= index->num_buckets) {
+    uri_index_resize(index, (index->num_buckets > 0)
+                              ? index->num_buckets * 2
+                              : OC_RI_URI_INDEX_MIN_BUCKETS);
+    if (index->num_buckets == 0) {
+      return false;
+    }
+  }
+#endif /* OC_DYNAMIC_ALLOCATION */
+  if (uri_index_link(index, resource)) {
+    index->count++;
+  }
+  return true;
+}
+
+void
+oc_ri_uri_index_remove(oc_ri_uri_index_t *index, oc_resource_t *resource)
+{
+  if (index->num_buckets == 0) {
+    return;
+  }
+  bool removed = uri_index_unlink(
+    &index->buckets[uri_index_bucket(index, resource)], resource);
+  /* The properties of a resource may have been freed before it is deleted,
+   * in which case its uri no longer leads to its bucket.
+   */
+  size_t i;
+  for (i = 0; !removed && i < index->num_buckets; i++) {
+    removed = uri_index_unlink(&index->buckets[i], resource);
+  }
+  if (!removed) {
+    return;
+  }
+  index->count--;
+#ifdef OC_DYNAMIC_ALLOCATION
+  if (index->count == 0) {
+    free(index->buckets);
+    index->buckets = NULL;
+    index->num_buckets = 0;
+  }
+#endif /* OC_DYNAMIC_ALLOCATION */
+}
+
 oc_resource_t *
-oc_ri_get_app_resource_by_uri(const char *uri, size_t uri_len, size_t device)
+oc_ri_uri_index_find(oc_ri_uri_index_t *index, const char *uri,
+                     size_t uri_len, size_t device)
 {
-  int skip = 0;
-  if (uri[0] != '/')
-    skip = 1;
-  oc_resource_t *res = oc_ri_get_app_resources();
+  if (index->num_buckets == 0) {
+    return NULL;
+  }
+  oc_resource_t *res =
+    index->buckets[uri_hash(uri, uri_len, device) % index->num_buckets];
   while (res != NULL) {
-    if (oc_string_len(res->uri) == (uri_len + skip) &&
-        strncmp(uri, oc_string(res->uri) + skip, uri_len) == 0 &&
-        res->device == device)
+    size_t res_uri_len;
+    const char *res_uri = resource_uri_key(res, &res_uri_len);
+    if (res->device == device && res_uri_len == uri_len &&
+        memcmp(res_uri, uri, uri_len) == 0) {
       return res;
-    res = res->next;
+    }
+    res = res->next_by_uri;
+  }
+  return NULL;
+}
+
+oc_resource_t *
+oc_ri_get_app_resource_by_uri(const char *uri, size_t uri_len, size_t device)
+{
+  if (uri_len > 0 && uri[0] == '/') {
+    uri++;
+    uri_len--;
   }
+  oc_resource_t *res =
+    oc_ri_uri_index_find(&app_resources_index, uri, uri_len, device);
 
 #ifdef OC_COLLECTIONS
   if (!res) {
@@ -329,6 +504,11 @@ oc_ri_delete_resource(oc_resource_t *resource)
   if (resource->num_observers > 0) {
     coap_remove_observer_by_resource(resource);
   }
+  coap_remove_notification_policy(resource);
+#ifdef OC_SECURITY
+  oc_sec_acl_cache_clear(resource->device);
+#endif /* OC_SECURITY */
+  oc_ri_uri_index_remove(&app_resources_index, resource);
   oc_list_remove(app_resources, resource);
   oc_ri_free_resource_properties(resource);
   oc_memb_free(&app_resources_s, resource);
@@ -351,6 +531,10 @@ oc_ri_add_resource(oc_resource_t *resource)
       resource->observe_period_seconds == 0)
     valid = false;
 
+  if (valid) {
+    valid = oc_ri_uri_index_add(&app_resources_index, resource);
+  }
+
   if (valid) {
     oc_list_add(app_resources, resource);
   }
@@ -741,32 +925,6 @@ oc_ri_invoke_coap_entity_handler(void *request, void *response, uint8_t *buffer,
 #endif /* OC_DYNAMIC_ALLOCATION */
   oc_rep_set_pool(&rep_objects);
 
-  if (payload_len > 0 &&
-      (cf == APPLICATION_CBOR || cf == APPLICATION_VND_OCF_CBOR)) {
-    /* Attempt to parse request payload using tinyCBOR via oc_rep helper
-     * functions. The result of this parse is a tree of oc_rep_t structures
-     * which will reflect the schema of the payload.
-     * Any failures while parsing the payload is viewed as an erroneous
-     * request and results in a 4.00 response being sent.
-     */
-    int parse_error =
-      oc_parse_rep(payload, payload_len, &request_obj.request_payload);
-    if (parse_error != 0) {
-      OC_WRN("ocri: error parsing request payload; tinyCBOR error code:  %d",
-             parse_error);
-      if (parse_error == CborErrorUnexpectedEOF)
-        entity_too_large = true;
-      bad_request = true;
-    }
-
-#if defined(OC_BLOCK_WISE)
-    /* Free request_state cause it isn't used any more
-     */
-    oc_blockwise_free_request_buffer(*request_state);
-    *request_state = NULL;
-#endif
-  }
-
   oc_resource_t *resource, *cur_resource = NULL;
 
   /* If there were no errors thus far, attempt to locate the specific
@@ -802,7 +960,40 @@ oc_ri_invoke_coap_entity_handler(void *request, void *response, uint8_t *buffer,
   }
 #endif /* OC_SERVER */
 
-  if (cur_resource) {
+  /* Resources that read the raw payload with their handler are passed the
+   * payload without parsing it.
+   */
+  bool raw_payload = cur_resource && cur_resource->raw_payload;
+#if defined(OC_COLLECTIONS) && defined(OC_SERVER)
+  raw_payload = raw_payload && !resource_is_collection;
+#endif /* OC_COLLECTIONS && OC_SERVER */
+  if (payload_len > 0 && !raw_payload &&
+      (cf == APPLICATION_CBOR || cf == APPLICATION_VND_OCF_CBOR)) {
+    /* Attempt to parse request payload using tinyCBOR via oc_rep helper
+     * functions. The result of this parse is a tree of oc_rep_t structures
+     * which will reflect the schema of the payload.
+     * Any failures while parsing the payload is viewed as an erroneous
+     * request and results in a 4.00 response being sent.
+     */
+    int parse_error =
+      oc_parse_rep(payload, payload_len, &request_obj.request_payload);
+    if (parse_error != 0) {
+      OC_WRN("ocri: error parsing request payload; tinyCBOR error code:  %d",
+             parse_error);
+      if (parse_error == CborErrorUnexpectedEOF)
+        entity_too_large = true;
+      bad_request = true;
+    }
+
+#if defined(OC_BLOCK_WISE)
+    /* Free request_state cause it isn't used any more
+     */
+    oc_blockwise_free_request_buffer(*request_state);
+    *request_state = NULL;
+#endif
+  }
+
+  if (cur_resource && !bad_request) {
     /* If there was no interface selection, pick the "default interface". */
     iface_mask = iface_query;
     if (iface_mask == 0)
@@ -898,6 +1089,16 @@ oc_ri_invoke_coap_entity_handler(void *request, void *response, uint8_t *buffer,
     }
   }
 
+#if defined(OC_BLOCK_WISE)
+  /* The raw payload was read by the handler from request_state, so it is
+   * only freed now.
+   */
+  if (raw_payload && *request_state) {
+    oc_blockwise_free_request_buffer(*request_state);
+    *request_state = NULL;
+  }
+#endif /* OC_BLOCK_WISE */
+
   if (request_obj.request_payload) {
     /* To the extent that the request payload was parsed, free the
      * payload structure (and return its memory to the pool).
@@ -1129,10 +1330,128 @@ oc_ri_invoke_coap_entity_handler(void *request, void *response, uint8_t *buffer,
 }
 
 #ifdef OC_CLIENT
+static oc_client_cb_alloc_handler_t client_cb_alloc_handler;
+static oc_client_cb_free_handler_t client_cb_free_handler;
+
+void
+oc_ri_set_client_cb_alloc_handler(oc_client_cb_alloc_handler_t handler)
+{
+  client_cb_alloc_handler = handler;
+}
+
+void
+oc_ri_set_client_cb_free_handler(oc_client_cb_free_handler_t handler)
+{
+  client_cb_free_handler = handler;
+}
+
+/*
+ * Client callbacks are chained into hash buckets by token and by mid, so the
+ * callback of a response can be found without walking all pending requests.
+ * Callbacks sharing a token or mid (i.e. multicast requests sent over IPv4 and
+ * IPv6) keep the order in which they were indexed.
+ */
+static size_t
+client_cb_token_bucket(const uint8_t *token, uint8_t token_len)
+{
+  /* FNV-1a */
+  uint32_t hash = 2166136261u;
+  uint8_t i;
+  for (i = 0; i < token_len; i++) {
+    hash ^= token[i];
+    hash *= 16777619u;
+  }
+  return hash % OC_CLIENT_CB_INDEX_BUCKETS;
+}
+
+static size_t
+client_cb_mid_bucket(uint16_t mid)
+{
+  return mid % OC_CLIENT_CB_INDEX_BUCKETS;
+}
+
+static void
+client_cb_token_link(oc_client_cb_t *cb)
+{
+  oc_client_cb_t **next =
+    &client_cbs_by_token[client_cb_token_bucket(cb->token, cb->token_len)];
+  while (*next) {
+    next = &(*next)->next_by_token;
+  }
+  cb->next_by_token = NULL;
+  *next = cb;
+}
+
+static void
+client_cb_token_unlink(oc_client_cb_t *cb)
+{
+  oc_client_cb_t **next =
+    &client_cbs_by_token[client_cb_token_bucket(cb->token, cb->token_len)];
+  while (*next) {
+    if (*next == cb) {
+      *next = cb->next_by_token;
+      cb->next_by_token = NULL;
+      return;
+    }
+    next = &(*next)->next_by_token;
+  }
+}
+
+static void
+client_cb_mid_link(oc_client_cb_t *cb)
+{
+  oc_client_cb_t **next = &client_cbs_by_mid[client_cb_mid_bucket(cb->mid)];
+  while (*next) {
+    next = &(*next)->next_by_mid;
+  }
+  cb->next_by_mid = NULL;
+  *next = cb;
+}
+
+static void
+client_cb_mid_unlink(oc_client_cb_t *cb)
+{
+  oc_client_cb_t **next = &client_cbs_by_mid[client_cb_mid_bucket(cb->mid)];
+  while (*next) {
+    if (*next == cb) {
+      *next = cb->next_by_mid;
+      cb->next_by_mid = NULL;
+      return;
+    }
+    next = &(*next)->next_by_mid;
+  }
+}
+
+void
+oc_ri_set_client_cb_mid(oc_client_cb_t *cb, uint16_t mid)
+{
+  client_cb_mid_unlink(cb);
+  cb->mid = mid;
+  client_cb_mid_link(cb);
+}
+
+void
+oc_ri_set_client_cb_token(oc_client_cb_t *cb, const uint8_t *token,
+                          uint8_t token_len)
+{
+  if (token_len > COAP_TOKEN_LEN) {
+    token_len = COAP_TOKEN_LEN;
+  }
+  client_cb_token_unlink(cb);
+  memcpy(cb->token, token, token_len);
+  cb->token_len = token_len;
+  client_cb_token_link(cb);
+}
+
 static void
 free_client_cb(oc_client_cb_t *cb)
 {
+  client_cb_token_unlink(cb);
+  client_cb_mid_unlink(cb);
   oc_list_remove(client_cbs, cb);
+  if (client_cb_free_handler) {
+    client_cb_free_handler(cb);
+  }
 #ifdef OC_BLOCK_WISE
   oc_blockwise_scrub_buffers_for_client_cb(cb);
 #endif /* OC_BLOCK_WISE */
@@ -1179,17 +1498,17 @@ notify_client_cb_503(oc_client_cb_t *cb)
 void
 oc_ri_free_client_cbs_by_mid(uint16_t mid)
 {
-  oc_client_cb_t *cb = (oc_client_cb_t *)oc_list_head(client_cbs), *next;
+  size_t bucket = client_cb_mid_bucket(mid);
+  oc_client_cb_t *cb = client_cbs_by_mid[bucket];
   while (cb != NULL) {
-    next = cb->next;
     if (!cb->multicast && !cb->discovery && cb->ref_count == 0 &&
         cb->mid == mid) {
       cb->ref_count = 1;
       notify_client_cb_503(cb);
-      cb = (oc_client_cb_t *)oc_list_head(client_cbs);
+      cb = client_cbs_by_mid[bucket];
       continue;
     }
-    cb = next;
+    cb = cb->next_by_mid;
   }
 }
 
@@ -1213,11 +1532,11 @@ oc_ri_free_client_cbs_by_endpoint(oc_endpoint_t *endpoint)
 oc_client_cb_t *
 oc_ri_find_client_cb_by_mid(uint16_t mid)
 {
-  oc_client_cb_t *cb = oc_list_head(client_cbs);
+  oc_client_cb_t *cb = client_cbs_by_mid[client_cb_mid_bucket(mid)];
   while (cb) {
     if (cb->mid == mid)
       break;
-    cb = cb->next;
+    cb = cb->next_by_mid;
   }
   return cb;
 }
@@ -1225,21 +1544,27 @@ oc_ri_find_client_cb_by_mid(uint16_t mid)
 oc_client_cb_t *
 oc_ri_find_client_cb_by_token(uint8_t *token, uint8_t token_len)
 {
-  oc_client_cb_t *cb = oc_list_head(client_cbs);
+  oc_client_cb_t *cb =
+    client_cbs_by_token[client_cb_token_bucket(token, token_len)];
   while (cb != NULL) {
     if (cb->token_len == token_len && memcmp(cb->token, token, token_len) == 0)
       break;
-    cb = cb->next;
+    cb = cb->next_by_token;
   }
   return cb;
 }
 
 bool
-oc_ri_is_client_cb_valid(oc_client_cb_t *client_cb)
+oc_ri_remove_client_cb_by_user_data(void *user_data)
 {
   oc_client_cb_t *cb = oc_list_head(client_cbs);
   while (cb != NULL) {
-    if (cb == client_cb) {
+    if (cb->user_data == user_data && !cb->discovery && !cb->multicast) {
+      oc_ri_remove_timed_event_callback(cb, &oc_ri_remove_client_cb);
+#ifdef OC_TCP
+      oc_ri_remove_timed_event_callback(cb, oc_remove_ping_handler);
+#endif /* OC_TCP */
+      free_client_cb(cb);
       return true;
     }
     cb = cb->next;
@@ -1247,6 +1572,22 @@ oc_ri_is_client_cb_valid(oc_client_cb_t *client_cb)
   return false;
 }
 
+bool
+oc_ri_is_client_cb_valid(const oc_client_cb_t *client_cb, const uint8_t *token,
+                         uint8_t token_len)
+{
+  /* client_cb may have been freed, so it is only compared by identity */
+  oc_client_cb_t *cb =
+    client_cbs_by_token[client_cb_token_bucket(token, token_len)];
+  while (cb != NULL) {
+    if (cb == client_cb) {
+      return true;
+    }
+    cb = cb->next_by_token;
+  }
+  return false;
+}
+
 #ifdef OC_BLOCK_WISE
 bool
 oc_ri_invoke_client_cb(void *response, oc_blockwise_state_t **response_state,
@@ -1268,6 +1609,11 @@ oc_ri_invoke_client_cb(void *response, oc_client_cb_t *cb,
 
   cb->ref_count = 1;
 
+  /* the handler may free cb, which is then checked for with its token */
+  uint8_t token[COAP_TOKEN_LEN];
+  uint8_t token_len = cb->token_len;
+  memcpy(token, cb->token, token_len);
+
   uint8_t *payload = NULL;
   int payload_len = 0;
   coap_packet_t *const pkt = (coap_packet_t *)response;
@@ -1375,7 +1721,7 @@ oc_ri_invoke_client_cb(void *response, oc_client_cb_t *cb,
   }
 #endif /* OC_TCP */
 
-  if (!oc_ri_is_client_cb_valid(cb)) {
+  if (!oc_ri_is_client_cb_valid(cb, token, token_len)) {
     return true;
   }
 
@@ -1399,7 +1745,8 @@ oc_ri_invoke_client_cb(void *response, oc_client_cb_t *cb,
 
     // Drop old observe callback and keep the last one.
     if (cb->observe_seq == 0) {
-      oc_client_cb_t *dup_cb = (oc_client_cb_t *)oc_list_head(client_cbs);
+      oc_client_cb_t *dup_cb =
+        client_cbs_by_token[client_cb_token_bucket(cb->token, cb->token_len)];
       size_t uri_len = oc_string_len(cb->uri);
 
       while (dup_cb != NULL) {
@@ -1415,7 +1762,7 @@ oc_ri_invoke_client_cb(void *response, oc_client_cb_t *cb,
           free_client_cb(dup_cb);
           break;
         }
-        dup_cb = dup_cb->next;
+        dup_cb = dup_cb->next_by_token;
       }
     }
   }
@@ -1484,7 +1831,12 @@ oc_ri_alloc_client_cb(const char *uri, oc_endpoint_t *endpoint,
   if (query && strlen(query) > 0) {
     oc_new_string(&cb->query, query, strlen(query));
   }
+  client_cb_token_link(cb);
+  client_cb_mid_link(cb);
   oc_list_add(client_cbs, cb);
+  if (client_cb_alloc_handler) {
+    client_cb_alloc_handler(cb);
+  }
   return cb;
 }
 #endif /* OC_CLIENT */
@@ -1494,6 +1846,7 @@ oc_ri_shutdown(void)
 {
 #ifdef OC_SERVER
   coap_free_all_observers();
+  coap_free_all_notification_policies();
 #endif /* OC_SERVER */
   coap_free_all_transactions();
   free_all_event_timers();
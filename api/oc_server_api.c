@@ -327,6 +327,12 @@ oc_resource_set_observable(oc_resource_t *resource, bool state)
     resource->properties &= ~(OC_OBSERVABLE | OC_PERIODIC);
 }
 
+void
+oc_resource_set_raw_payload(oc_resource_t *resource, bool state)
+{
+  resource->raw_payload = state;
+}
+
 void
 oc_resource_set_periodic_observable(oc_resource_t *resource, uint16_t seconds)
 {
@@ -522,6 +528,29 @@ oc_send_separate_response(oc_separate_response_t *handle,
 int
 oc_notify_observers(oc_resource_t *resource)
 {
-  return coap_notify_observers(resource, NULL, NULL);
+  return coap_notify_observers_by_policy(resource, NULL);
+}
+
+int
+oc_notify_observers_with_value(oc_resource_t *resource, double value)
+{
+  return coap_notify_observers_by_policy(resource, &value);
+}
+
+bool
+oc_resource_set_notification_policy(oc_resource_t *resource,
+                                    uint32_t min_interval_ms, uint32_t max_age,
+                                    double change_threshold)
+{
+  if (!resource) {
+    return false;
+  }
+  oc_clock_time_t min_interval =
+    (oc_clock_time_t)min_interval_ms * OC_CLOCK_SECOND / 1000;
+  if (min_interval == 0 && min_interval_ms > 0) {
+    min_interval = 1;
+  }
+  return coap_set_notification_policy(resource, min_interval, max_age,
+                                      change_threshold);
 }
 #endif /* OC_SERVER */
@@ -20,12 +20,14 @@
 
 #include <cstdlib>
 #include <string>
+#include <vector>
 #include <stdio.h>
 #include <gtest/gtest.h>
 
 #include "port/linux/oc_config.h"
 #include "oc_api.h"
 #include "oc_ri.h"
+#include "oc_client_state.h"
 #include "oc_helpers.h"
 
 
@@ -141,3 +143,99 @@ TEST_F(TestOcRi, RiAddResource_P)
     EXPECT_EQ(res_check, 1);
     oc_ri_delete_resource(res);
 }
+
+TEST_F(TestOcRi, GetAppResourceByUriWithoutSlash_P)
+{
+    oc_resource_t *res;
+
+    res = oc_new_resource(RESOURCE_NAME, RESOURCE_URI, 1, 0);
+    oc_resource_set_request_handler(res, OC_GET, onGet, NULL);
+    oc_ri_add_resource(res);
+
+    EXPECT_EQ(res, oc_ri_get_app_resource_by_uri(RESOURCE_URI + 1,
+                                                 strlen(RESOURCE_URI) - 1, 0));
+    EXPECT_EQ(NULL, oc_ri_get_app_resource_by_uri(RESOURCE_URI,
+                                                  strlen(RESOURCE_URI), 1));
+    oc_ri_delete_resource(res);
+    EXPECT_EQ(NULL, oc_ri_get_app_resource_by_uri(RESOURCE_URI,
+                                                  strlen(RESOURCE_URI), 0));
+}
+
+extern "C" oc_event_callback_retval_t oc_ri_remove_client_cb(void *data);
+
+static void onResponse(oc_client_response_t *data)
+{
+    (void)data;
+}
+
+TEST_F(TestOcRi, FindClientCbByTokenAndMid_P)
+{
+    oc_endpoint_t ep;
+    oc_client_handler_t handler;
+    memset(&ep, 0, sizeof(ep));
+    memset(&handler, 0, sizeof(handler));
+    handler.response = onResponse;
+
+    oc_client_cb_t *cb = oc_ri_alloc_client_cb(RESOURCE_URI, &ep, OC_GET, NULL,
+                                               handler, LOW_QOS, NULL);
+    ASSERT_NE(cb, NULL);
+    EXPECT_EQ(cb, oc_ri_find_client_cb_by_token(cb->token, cb->token_len));
+    EXPECT_EQ(cb, oc_ri_find_client_cb_by_mid(cb->mid));
+
+    uint16_t mid = (uint16_t)(cb->mid + 1);
+    oc_ri_set_client_cb_mid(cb, mid);
+    EXPECT_EQ(NULL, oc_ri_find_client_cb_by_mid((uint16_t)(mid - 1)));
+    EXPECT_EQ(cb, oc_ri_find_client_cb_by_mid(mid));
+
+    uint8_t token[] = { 0x01, 0x02, 0x03, 0x04 };
+    oc_ri_set_client_cb_token(cb, token, sizeof(token));
+    EXPECT_EQ(cb, oc_ri_find_client_cb_by_token(token, sizeof(token)));
+
+    EXPECT_TRUE(oc_ri_is_client_cb_valid(cb, token, sizeof(token)));
+
+    oc_ri_remove_client_cb(cb);
+    EXPECT_EQ(NULL, oc_ri_find_client_cb_by_token(token, sizeof(token)));
+    EXPECT_EQ(NULL, oc_ri_find_client_cb_by_mid(mid));
+    EXPECT_FALSE(oc_ri_is_client_cb_valid(cb, token, sizeof(token)));
+}
+
+#ifdef OC_DYNAMIC_ALLOCATION
+#define NUM_INDEXED_RESOURCES 10000
+#define NUM_INDEXED_DEVICES 4
+
+TEST_F(TestOcRi, GetAppResourceByUriManyResources_P)
+{
+    std::vector<std::string> uris;
+    std::vector<oc_resource_t *> resources;
+    for (int i = 0; i < NUM_INDEXED_RESOURCES; i++) {
+        size_t device = i % NUM_INDEXED_DEVICES;
+        uris.push_back("/bridge/light/" +
+                       std::to_string(i / NUM_INDEXED_DEVICES));
+        oc_resource_t *res =
+            oc_new_resource(RESOURCE_NAME, uris[i].c_str(), 1, device);
+        ASSERT_NE(res, NULL);
+        oc_resource_set_request_handler(res, OC_GET, onGet, NULL);
+        ASSERT_TRUE(oc_ri_add_resource(res));
+        resources.push_back(res);
+    }
+
+    for (int i = 0; i < NUM_INDEXED_RESOURCES; i++) {
+        size_t device = i % NUM_INDEXED_DEVICES;
+        EXPECT_EQ(resources[i],
+                  oc_ri_get_app_resource_by_uri(uris[i].c_str(),
+                                                uris[i].length(), device));
+    }
+    /* the same uri on another device is a different resource */
+    EXPECT_EQ(resources[1], oc_ri_get_app_resource_by_uri(
+                                uris[1].c_str(), uris[1].length(), 1));
+    EXPECT_EQ(resources[0], oc_ri_get_app_resource_by_uri(
+                                uris[1].c_str(), uris[1].length(), 0));
+
+    for (int i = 0; i < NUM_INDEXED_RESOURCES; i++) {
+        oc_ri_delete_resource(resources[i]);
+    }
+    EXPECT_EQ(NULL, oc_ri_get_app_resources());
+    EXPECT_EQ(NULL, oc_ri_get_app_resource_by_uri(uris[0].c_str(),
+                                                  uris[0].length(), 0));
+}
+#endif /* OC_DYNAMIC_ALLOCATION */
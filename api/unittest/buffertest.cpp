@@ -0,0 +1,97 @@
+/******************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************/
+
+#include <cstdlib>
+#include <cstring>
+#include <gtest/gtest.h>
+
+#include "oc_buffer.h"
+#include "oc_buffer_settings.h"
+#include "port/oc_network_events_mutex.h"
+
+#ifdef OC_DYNAMIC_ALLOCATION
+
+class TestMessageBuffers: public testing::Test
+{
+    protected:
+        virtual void SetUp()
+        {
+          oc_network_event_handler_mutex_init();
+        }
+        virtual void TearDown()
+        {
+          oc_free_message_buffers();
+          oc_network_event_handler_mutex_destroy();
+        }
+};
+
+TEST_F(TestMessageBuffers, ShrinkToSmallBuffer_P)
+{
+  oc_message_buffer_stats_t small, large;
+  ASSERT_EQ(0, oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_SMALL, &small));
+  ASSERT_EQ(0, oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_LARGE, &large));
+  EXPECT_EQ((size_t)OC_PDU_SIZE, large.size);
+
+  oc_message_t *message = oc_allocate_message();
+  ASSERT_NE(NULL, message);
+  oc_message_buffer_stats_t stats;
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_LARGE, &stats);
+  EXPECT_EQ(large.in_use + 1, stats.in_use);
+
+  const char ack[] = "\x60\x00\x12\x34";
+  memcpy(message->data, ack, 4);
+  message->length = 4;
+  oc_message_shrink_buffer(message);
+  EXPECT_EQ(0, memcmp(message->data, ack, 4));
+
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_LARGE, &stats);
+  EXPECT_EQ(large.in_use, stats.in_use);
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_SMALL, &stats);
+  EXPECT_EQ(small.in_use + 1, stats.in_use);
+
+  oc_message_unref(message);
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_SMALL, &stats);
+  EXPECT_EQ(small.in_use, stats.in_use);
+  EXPECT_EQ(small.free + 1, stats.free);
+}
+
+TEST_F(TestMessageBuffers, ReuseFreedBuffer_P)
+{
+  oc_message_t *message = oc_allocate_message();
+  ASSERT_NE(NULL, message);
+  oc_message_unref(message);
+
+  oc_message_buffer_stats_t before;
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_LARGE, &before);
+  EXPECT_LT(0u, before.free);
+
+  message = oc_allocate_message();
+  ASSERT_NE(NULL, message);
+  oc_message_buffer_stats_t after;
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_LARGE, &after);
+  EXPECT_EQ(before.reuses + 1, after.reuses);
+  EXPECT_EQ(before.free - 1, after.free);
+  EXPECT_LE(after.in_use, after.high_water_mark);
+  oc_message_unref(message);
+}
+
+TEST_F(TestMessageBuffers, MessageBufferStats_N)
+{
+  oc_message_buffer_stats_t stats;
+  EXPECT_EQ(-1, oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_CLASSES, &stats));
+  EXPECT_EQ(-1, oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_SMALL, NULL));
+}
+#endif /* OC_DYNAMIC_ALLOCATION */
@@ -0,0 +1,140 @@
+/******************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************/
+
+#include <atomic>
+#include <cstring>
+#include <pthread.h>
+#include <sched.h>
+#include <gtest/gtest.h>
+
+#include "oc_api.h"
+#include "oc_buffer.h"
+#include "oc_buffer_settings.h"
+#include "oc_network_events.h"
+
+#ifdef OC_DYNAMIC_ALLOCATION
+
+#define NUM_ADAPTER_THREADS 4
+#define NUM_MESSAGES_PER_THREAD 20000
+/* the adapters wait while this many received messages are queued */
+#define MAX_QUEUED_MESSAGES 256
+
+static const size_t device = 0;
+static std::atomic<int> finishedThreads;
+static std::atomic<int> sentMessages;
+
+static void signal_event_loop(void)
+{
+}
+
+static int app_init(void)
+{
+  int ret = oc_init_platform("Samsung", NULL, NULL);
+  ret |= oc_add_device("/oic/d", "oic.d.light", "Lamp", "ocf.1.0.0",
+                       "ocf.res.1.0.0", NULL, NULL);
+  return ret;
+}
+
+static oc_handler_t handler = {.init = app_init,
+                    .signal_event_loop = signal_event_loop,
+                    .register_resources = NULL,
+                    .requests_entry = NULL };
+
+static size_t queuedMessages(void)
+{
+  /* received messages are moved into small buffers before they are queued */
+  oc_message_buffer_stats_t stats;
+  oc_get_message_buffer_stats(OC_MESSAGE_BUFFER_SMALL, &stats);
+  return stats.in_use;
+}
+
+/* simulates the receive loop of the network thread of an adapter */
+static void *receiveMessages(void *data)
+{
+  uint16_t port = *(uint16_t *)data;
+  for (int i = 0; i < NUM_MESSAGES_PER_THREAD; i++) {
+    while (queuedMessages() >= MAX_QUEUED_MESSAGES) {
+      sched_yield();
+    }
+    oc_message_t *message = oc_allocate_message();
+    if (!message) {
+      /* counted as lost by the test */
+      continue;
+    }
+    /* an empty ACK matching no transaction */
+    message->data[0] = 0x60;
+    message->data[1] = 0x00;
+    message->data[2] = (uint8_t)(i >> 8);
+    message->data[3] = (uint8_t)i;
+    message->length = 4;
+    message->endpoint.flags = IPV6;
+    message->endpoint.device = device;
+    message->endpoint.addr.ipv6.address[15] = 1;
+    message->endpoint.addr.ipv6.port = port;
+    oc_network_event(message);
+    sentMessages++;
+  }
+  finishedThreads++;
+  return NULL;
+}
+
+class TestNetworkEvents: public testing::Test
+{
+    protected:
+        static void SetUpTestCase()
+        {
+            oc_main_init(&handler);
+        }
+
+        static void TearDownTestCase()
+        {
+            oc_main_shutdown();
+        }
+};
+
+TEST_F(TestNetworkEvents, ConcurrentAdaptersLoseNoMessages_P)
+{
+  oc_main_poll();
+  size_t queued = queuedMessages();
+  oc_overload_stats_t before;
+  ASSERT_EQ(0, oc_get_overload_stats(&before));
+
+  finishedThreads = 0;
+  sentMessages = 0;
+  pthread_t threads[NUM_ADAPTER_THREADS];
+  uint16_t ports[NUM_ADAPTER_THREADS];
+  for (int i = 0; i < NUM_ADAPTER_THREADS; i++) {
+    ports[i] = (uint16_t)(10000 + i);
+    ASSERT_EQ(0, pthread_create(&threads[i], NULL, receiveMessages, &ports[i]));
+  }
+
+  while (finishedThreads < NUM_ADAPTER_THREADS) {
+    oc_main_poll();
+  }
+  for (int i = 0; i < NUM_ADAPTER_THREADS; i++) {
+    pthread_join(threads[i], NULL);
+  }
+  oc_main_poll();
+
+  /* the queue never filled up, so every message was allocated and queued */
+  EXPECT_EQ(NUM_ADAPTER_THREADS * NUM_MESSAGES_PER_THREAD, sentMessages);
+  oc_overload_stats_t after;
+  ASSERT_EQ(0, oc_get_overload_stats(&after));
+  EXPECT_EQ(before.dropped, after.dropped);
+  /* every message was processed and freed */
+  EXPECT_EQ(queued, queuedMessages());
+}
+#endif /* OC_DYNAMIC_ALLOCATION */
@@ -0,0 +1,139 @@
+/******************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************/
+
+#include <cstring>
+#include <gtest/gtest.h>
+
+#include "api/oc_overload_internal.h"
+#include "oc_buffer.h"
+#include "oc_buffer_settings.h"
+#include "port/oc_network_events_mutex.h"
+
+class TestOverload: public testing::Test
+{
+    protected:
+        virtual void SetUp()
+        {
+          oc_network_event_handler_mutex_init();
+          oc_get_overload_limits(&m_defaults);
+          oc_reset_overload_stats();
+        }
+        virtual void TearDown()
+        {
+          oc_set_overload_limits(&m_defaults);
+          oc_reset_overload_stats();
+#ifdef OC_DYNAMIC_ALLOCATION
+          oc_free_message_buffers();
+#endif /* OC_DYNAMIC_ALLOCATION */
+          oc_network_event_handler_mutex_destroy();
+        }
+
+        static oc_endpoint_t endpoint(uint8_t last)
+        {
+          oc_endpoint_t ep;
+          memset(&ep, 0, sizeof(ep));
+          ep.flags = IPV6;
+          ep.addr.ipv6.address[15] = last;
+          ep.addr.ipv6.port = 5683;
+          return ep;
+        }
+
+        oc_overload_limits_t m_defaults;
+};
+
+TEST_F(TestOverload, AdmissionLimitPerEndpoint_P)
+{
+  oc_overload_limits_t limits = { 0, 1, 2, 10 };
+  ASSERT_EQ(0, oc_set_overload_limits(&limits));
+  EXPECT_EQ(10u, oc_overload_retry_after());
+
+  oc_endpoint_t ep1 = endpoint(1), ep2 = endpoint(2);
+  EXPECT_TRUE(oc_overload_admit_request(&ep1));
+  EXPECT_TRUE(oc_overload_admit_request(&ep1));
+  EXPECT_FALSE(oc_overload_admit_request(&ep1));
+  /* other addresses have limits of their own */
+  EXPECT_TRUE(oc_overload_admit_request(&ep2));
+
+  oc_overload_stats_t stats;
+  ASSERT_EQ(0, oc_get_overload_stats(&stats));
+  EXPECT_EQ(1u, stats.rate_limited);
+  EXPECT_EQ(0u, stats.shed);
+}
+
+TEST_F(TestOverload, PriorityTrafficAdmitted_P)
+{
+  oc_message_t *message = oc_allocate_message();
+  ASSERT_NE(NULL, message);
+  uint8_t *data = message->data;
+  data[0] = 0x50; /* NON GET */
+  data[1] = 0x01;
+  data[2] = 0x00;
+  data[3] = 0x01;
+  message->length = 4;
+  message->endpoint = endpoint(1);
+
+  EXPECT_TRUE(oc_overload_admit_packet(message, 10, 64));
+  /* the last quarter of the queue is kept for priority traffic */
+  EXPECT_FALSE(oc_overload_admit_packet(message, 48, 64));
+
+  data[0] = 0x60; /* ACK */
+  data[1] = 0x00;
+  EXPECT_TRUE(oc_overload_admit_packet(message, 48, 64));
+
+  data[0] = 0x50; /* NON 2.05 */
+  data[1] = 0x45;
+  EXPECT_TRUE(oc_overload_admit_packet(message, 48, 64));
+
+  data[1] = 0x01;
+  message->endpoint.flags =
+    (transport_flags)(message->endpoint.flags | SECURED);
+  EXPECT_TRUE(oc_overload_admit_packet(message, 48, 64));
+  oc_message_unref(message);
+
+  oc_overload_stats_t stats;
+  oc_get_overload_stats(&stats);
+  EXPECT_EQ(1u, stats.dropped);
+}
+
+TEST_F(TestOverload, RequestHeader_P)
+{
+  const uint8_t con_post[] = { 0x40, 0x02, 0x00, 0x01 };
+  const uint8_t non_get[] = { 0x50, 0x01, 0x00, 0x01 };
+  EXPECT_TRUE(oc_overload_is_request_header(con_post, sizeof(con_post)));
+  EXPECT_TRUE(oc_overload_is_request_header(non_get, sizeof(non_get)));
+}
+
+TEST_F(TestOverload, RequestHeader_N)
+{
+  const uint8_t ack[] = { 0x60, 0x00, 0x00, 0x01 };
+  const uint8_t rst[] = { 0x70, 0x00, 0x00, 0x01 };
+  const uint8_t con_content[] = { 0x40, 0x45, 0x00, 0x01 };
+  /* DTLS handshake record */
+  const uint8_t dtls[] = { 0x16, 0xfe, 0xfd, 0x00 };
+  EXPECT_FALSE(oc_overload_is_request_header(ack, sizeof(ack)));
+  EXPECT_FALSE(oc_overload_is_request_header(rst, sizeof(rst)));
+  EXPECT_FALSE(oc_overload_is_request_header(con_content, sizeof(con_content)));
+  EXPECT_FALSE(oc_overload_is_request_header(dtls, sizeof(dtls)));
+  const uint8_t non_get[] = { 0x50, 0x01, 0x00, 0x01 };
+  EXPECT_FALSE(oc_overload_is_request_header(non_get, 3));
+}
+
+TEST_F(TestOverload, OverloadLimits_N)
+{
+  EXPECT_EQ(-1, oc_set_overload_limits(NULL));
+  EXPECT_EQ(-1, oc_get_overload_limits(NULL));
+  EXPECT_EQ(-1, oc_get_overload_stats(NULL));
+}
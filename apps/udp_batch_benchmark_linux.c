@@ -0,0 +1,214 @@
+/*
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+*/
+
+/*
+ * Measures the packets per second that can be passed over the loopback
+ * interface with one sendmsg()/recvmsg() call per datagram, as done by the
+ * Linux port by default, and with the sendmmsg()/recvmmsg() calls that are
+ * used when it is built with UDP_BATCH=1.
+ *
+ * Usage: udp_batch_benchmark [-n packets] [-s size] [-b batch]
+ */
+
+#define _GNU_SOURCE
+#include <arpa/inet.h>
+#include <errno.h>
+#include <netinet/in.h>
+#include <pthread.h>
+#include <stdbool.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/socket.h>
+#include <time.h>
+#include <unistd.h>
+
+#define MAX_BATCH (64)
+#define MAX_SIZE (1500)
+
+typedef struct
+{
+  int sock;
+  struct sockaddr_in receiver;
+  int packets;
+  int size;
+  int batch;
+  int sent;
+} sender_t;
+
+static double
+now(void)
+{
+  struct timespec ts;
+  clock_gettime(CLOCK_MONOTONIC, &ts);
+  return (double)ts.tv_sec + (double)ts.tv_nsec / 1e9;
+}
+
+static void *
+send_packets(void *data)
+{
+  sender_t *s = (sender_t *)data;
+  static uint8_t buf[MAX_SIZE];
+  struct mmsghdr msgs[MAX_BATCH];
+  struct iovec iov;
+  int i;
+
+  memset(buf, 0xa5, sizeof(buf));
+  iov.iov_base = buf;
+  iov.iov_len = (size_t)s->size;
+  memset(msgs, 0, sizeof(msgs));
+  for (i = 0; i < MAX_BATCH; i++) {
+    msgs[i].msg_hdr.msg_name = &s->receiver;
+    msgs[i].msg_hdr.msg_namelen = sizeof(s->receiver);
+    msgs[i].msg_hdr.msg_iov = &iov;
+    msgs[i].msg_hdr.msg_iovlen = 1;
+  }
+
+  s->sent = 0;
+  while (s->sent < s->packets) {
+    int n;
+    if (s->batch > 1) {
+      int vlen = s->packets - s->sent;
+      if (vlen > s->batch) {
+        vlen = s->batch;
+      }
+      n = sendmmsg(s->sock, msgs, (unsigned int)vlen, 0);
+    } else {
+      n = (sendmsg(s->sock, &msgs[0].msg_hdr, 0) < 0) ? -1 : 1;
+    }
+    if (n < 0) {
+      if (errno == ENOBUFS || errno == EAGAIN) {
+        continue;
+      }
+      perror("send");
+      break;
+    }
+    s->sent += n;
+  }
+  return NULL;
+}
+
+static int
+run(int packets, int size, int batch)
+{
+  int rsock = socket(AF_INET, SOCK_DGRAM, 0);
+  int ssock = socket(AF_INET, SOCK_DGRAM, 0);
+  if (rsock < 0 || ssock < 0) {
+    perror("socket");
+    return -1;
+  }
+
+  int rcvbuf = 8 * 1024 * 1024;
+  setsockopt(rsock, SOL_SOCKET, SO_RCVBUF, &rcvbuf, sizeof(rcvbuf));
+  /* the receiver stops once no datagram has arrived for a while */
+  struct timeval tv = { 0, 200000 };
+  setsockopt(rsock, SOL_SOCKET, SO_RCVTIMEO, &tv, sizeof(tv));
+
+  struct sockaddr_in addr;
+  socklen_t addr_len = sizeof(addr);
+  memset(&addr, 0, sizeof(addr));
+  addr.sin_family = AF_INET;
+  addr.sin_addr.s_addr = htonl(INADDR_LOOPBACK);
+  if (bind(rsock, (struct sockaddr *)&addr, sizeof(addr)) < 0 ||
+      getsockname(rsock, (struct sockaddr *)&addr, &addr_len) < 0) {
+    perror("bind");
+    close(rsock);
+    close(ssock);
+    return -1;
+  }
+
+  static uint8_t bufs[MAX_BATCH][MAX_SIZE];
+  struct iovec iovecs[MAX_BATCH];
+  struct sockaddr_in clients[MAX_BATCH];
+  struct mmsghdr msgs[MAX_BATCH];
+  int i, received = 0;
+
+  sender_t s = { ssock, addr, packets, size, batch, 0 };
+  pthread_t thread;
+  double start = now(), last = start;
+  pthread_create(&thread, NULL, send_packets, &s);
+
+  while (received < packets) {
+    int vlen = (batch > 1) ? batch : 1;
+    memset(msgs, 0, (size_t)vlen * sizeof(struct mmsghdr));
+    for (i = 0; i < vlen; i++) {
+      iovecs[i].iov_base = bufs[i];
+      iovecs[i].iov_len = MAX_SIZE;
+      msgs[i].msg_hdr.msg_name = &clients[i];
+      msgs[i].msg_hdr.msg_namelen = sizeof(clients[i]);
+      msgs[i].msg_hdr.msg_iov = &iovecs[i];
+      msgs[i].msg_hdr.msg_iovlen = 1;
+    }
+    int n;
+    if (batch > 1) {
+      n = recvmmsg(rsock, msgs, (unsigned int)vlen, 0, NULL);
+    } else {
+      n = (recvmsg(rsock, &msgs[0].msg_hdr, 0) < 0) ? -1 : 1;
+    }
+    if (n < 0) {
+      if (errno == EINTR) {
+        continue;
+      }
+      /* timed out, the remaining datagrams were dropped */
+      break;
+    }
+    received += n;
+    last = now();
+  }
+
+  pthread_join(thread, NULL);
+  close(rsock);
+  close(ssock);
+
+  double elapsed = last - start;
+  printf("%-8s batch %2d: sent %d, received %d in %.3f s, %.0f packets/s\n",
+         (batch > 1) ? "mmsg" : "msg", (batch > 1) ? batch : 1, s.sent,
+         received, elapsed, (elapsed > 0) ? (double)received / elapsed : 0.0);
+  return 0;
+}
+
+int
+main(int argc, char *argv[])
+{
+  int packets = 1000000, size = 64, batch = 16;
+  int opt;
+
+  while ((opt = getopt(argc, argv, "n:s:b:")) != -1) {
+    switch (opt) {
+    case 'n':
+      packets = atoi(optarg);
+      break;
+    case 's':
+      size = atoi(optarg);
+      break;
+    case 'b':
+      batch = atoi(optarg);
+      break;
+    default:
+      fprintf(stderr, "Usage: %s [-n packets] [-s size] [-b batch]\n",
+              argv[0]);
+      return 1;
+    }
+  }
+  if (packets <= 0 || size <= 0 || size > MAX_SIZE || batch < 2 ||
+      batch > MAX_BATCH) {
+    fprintf(stderr, "invalid arguments\n");
+    return 1;
+  }
+
+  if (run(packets, size, 1) < 0 || run(packets, size, batch) < 0) {
+    return 1;
+  }
+  return 0;
+}
@@ -508,6 +508,97 @@ typedef void (*oc_random_pin_cb_t)(const unsigned char *pin, size_t pin_len,
  */
 void oc_set_random_pin_callback(oc_random_pin_cb_t cb, void *data);
 
+/**
+ * Statistics of the (D)TLS handshakes completed since oc_main_init()
+ *
+ * @see oc_get_tls_session_stats
+ */
+typedef struct oc_tls_session_stats_t
+{
+  size_t full_handshakes;    ///< handshakes that authenticated the peer anew
+  size_t resumed_handshakes; ///< handshakes that resumed a cached session
+  size_t cached_sessions;    ///< sessions that may currently be resumed
+} oc_tls_session_stats_t;
+
+/**
+ * Set the lifetime of the cached (D)TLS sessions.
+ *
+ * Sessions are cached when a handshake completes, so a peer reconnecting
+ * within their lifetime resumes its session with an abbreviated handshake,
+ * without a new key exchange and certificate verification. The default
+ * lifetime is 86400 seconds (1 day).
+ *
+ * @param[in] lifetime lifetime in seconds, 0 disables session resumption and
+ *                     clears the cached sessions
+ */
+void oc_set_tls_session_lifetime(uint32_t lifetime);
+
+/**
+ * Get the statistics of the (D)TLS handshakes.
+ *
+ * @param[out] stats the statistics
+ *
+ * @return
+ *  - 0 on success
+ *  - -1 if stats is NULL
+ */
+int oc_get_tls_session_stats(oc_tls_session_stats_t *stats);
+
+/**
+ * Statistics of the persistence of the security resources (SVRs)
+ *
+ * Changes to the SVRs are written behind, so several changes made in quick
+ * succession are written to storage once.
+ *
+ * @see oc_get_svr_store_stats
+ */
+typedef struct oc_svr_store_stats_t
+{
+  size_t writes;    ///< records written to storage
+  size_t errors;    ///< records that could not be written
+  size_t coalesced; ///< changes merged into an already pending write
+  size_t bytes;     ///< bytes written to storage
+  oc_clock_time_t write_ticks;     ///< total time spent writing, in ticks
+  oc_clock_time_t max_write_ticks; ///< longest single write, in ticks
+} oc_svr_store_stats_t;
+
+/**
+ * Get the statistics of the persistence of the security resources.
+ *
+ * @param[out] stats the statistics
+ *
+ * @return
+ *  - 0 on success
+ *  - -1 if stats is NULL
+ */
+int oc_get_svr_store_stats(oc_svr_store_stats_t *stats);
+
+/**
+ * Statistics of the cache of access control decisions
+ *
+ * The decisions taken from the ACL are cached per device, resource and peer,
+ * and forgotten whenever the ACL, credentials or provisioning state of the
+ * device change.
+ *
+ * @see oc_get_acl_cache_stats
+ */
+typedef struct oc_acl_cache_stats_t
+{
+  size_t hits;   ///< access checks answered from the cache
+  size_t misses; ///< access checks that walked the ACL
+} oc_acl_cache_stats_t;
+
+/**
+ * Get the statistics of the cache of access control decisions.
+ *
+ * @param[out] stats the statistics
+ *
+ * @return
+ *  - 0 on success
+ *  - -1 if stats is NULL
+ */
+int oc_get_acl_cache_stats(oc_acl_cache_stats_t *stats);
+
 /**
  * Returns whether the oic.wk.con resource is advertised.
  *
@@ -1054,6 +1145,22 @@ void oc_resource_set_discoverable(oc_resource_t *resource, bool state);
  */
 void oc_resource_set_observable(oc_resource_t *resource, bool state);
 
+/**
+ * Specify that the request handlers of a resource read the raw request
+ * payload instead of the parsed representation.
+ *
+ * The payload of requests to the resource is not parsed into an oc_rep_t
+ * tree, so `request->request_payload` is always NULL. The handlers read the
+ * CBOR payload from `request->_payload` and `request->_payload_len`, which
+ * remain valid until the handler returns.
+ *
+ * @note this has no effect on collections.
+ *
+ * @param[in] resource the resource to specify the payload handling of
+ * @param[in] state true to pass the raw payload, false to parse the payload
+ */
+void oc_resource_set_raw_payload(oc_resource_t *resource, bool state);
+
 /**
  * The resource will periodically notify observing clients of is property
  * values.
@@ -1071,6 +1178,37 @@ void oc_resource_set_observable(oc_resource_t *resource, bool state);
 void oc_resource_set_periodic_observable(oc_resource_t *resource,
                                          uint16_t seconds);
 
+/**
+ * Set how the notifications of a resource triggered by oc_notify_observers()
+ * and oc_notify_observers_with_value() are sent.
+ *
+ * Notifications requested within `min_interval_ms` of the previous one are
+ * coalesced into a single notification sent when the interval expires. That
+ * notification carries the latest value, as the representation is retrieved
+ * when it is sent.
+ *
+ * Setting all parameters to zero `0` removes the policy, so every
+ * notification is sent immediately again.
+ *
+ * @param[in] resource the resource to set the notification policy of
+ * @param[in] min_interval_ms the minimum time in milliseconds between two
+ *                            notifications, `0` for no limit
+ * @param[in] max_age the Max-Age in seconds sent with the notifications, `0`
+ *                    to leave out the option
+ * @param[in] change_threshold the minimum change of the value passed to
+ *                             oc_notify_observers_with_value() since the last
+ *                             notification for a new notification to be sent,
+ *                             `0` to notify every change
+ *
+ * @return true if the policy was set, false if out of memory
+ *
+ * @see oc_notify_observers_with_value
+ */
+bool oc_resource_set_notification_policy(oc_resource_t *resource,
+                                         uint32_t min_interval_ms,
+                                         uint32_t max_age,
+                                         double change_threshold);
+
 /**
  * Specify a request_callback for GET, PUT, POST, and DELETE methods
  *
@@ -1421,6 +1559,23 @@ void oc_send_separate_response(oc_separate_response_t *handle,
  */
 int oc_notify_observers(oc_resource_t *resource);
 
+/**
+ * Notify all observers of a change to a given resource's property, passing the
+ * new value of the property so the change threshold of the resource's
+ * notification policy can be applied.
+ *
+ * @param[in] resource the oc_resource_t that has a modified property
+ * @param[in] value the new value of the modified property
+ *
+ * @return
+ *  - the number observers notified on success
+ *  - `0` on failure, if the notification was deferred or skipped, could also
+ *    mean no registered observers
+ *
+ * @see oc_resource_set_notification_policy
+ */
+int oc_notify_observers_with_value(oc_resource_t *resource, double value);
+
 #ifdef __cplusplus
 }
 #endif
@@ -1768,6 +1923,18 @@ bool oc_init_post(const char *uri, oc_endpoint_t *endpoint, const char *query,
  */
 bool oc_do_post(void);
 
+/**
+ * Abandon a PUT or POST request without dispatching it
+ *
+ * Releases the CoAP request prepared by oc_init_put or oc_init_post, for
+ * instance when its payload could not be built. The response handler of the
+ * request is not invoked.
+ *
+ * @see oc_init_put
+ * @see oc_init_post
+ */
+void oc_abort_request(void);
+
 /**
  * Dispatch a GET request with the CoAP Observe option to subscribe for
  * notifications from a resource.
@@ -40,6 +40,13 @@ oc_message_t *oc_internal_allocate_outgoing_message(void);
 void oc_message_add_ref(oc_message_t *message);
 void oc_message_unref(oc_message_t *message);
 
+#ifdef OC_DYNAMIC_ALLOCATION
+/* Moves the data of a received message into the smallest buffer holding it */
+void oc_message_shrink_buffer(oc_message_t *message);
+/* Releases the buffers kept on the free lists */
+void oc_free_message_buffers(void);
+#endif /* OC_DYNAMIC_ALLOCATION */
+
 void oc_recv_message(oc_message_t *message);
 void oc_send_message(oc_message_t *message);
 void oc_close_all_tls_sessions_for_device(size_t device);
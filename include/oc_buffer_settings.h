@@ -20,6 +20,7 @@
 #define OC_BUFFER_SETTINGS_H
 
 #include <stddef.h>
+#include <stdint.h>
 
 #ifdef __cplusplus
 extern "C"
@@ -32,6 +33,55 @@ void oc_set_max_app_data_size(size_t size);
 long oc_get_max_app_data_size(void);
 long oc_get_block_size(void);
 
+/* Size classes of the buffers holding the data of messages */
+typedef enum {
+  OC_MESSAGE_BUFFER_SMALL = 0,
+  OC_MESSAGE_BUFFER_MEDIUM,
+  OC_MESSAGE_BUFFER_LARGE,
+  OC_MESSAGE_BUFFER_CLASSES
+} oc_message_buffer_class_t;
+
+/* Usage counters of a size class of message buffers */
+typedef struct oc_message_buffer_stats_t
+{
+  size_t size;            /* size of the buffers of the class */
+  size_t allocations;     /* buffers handed out */
+  size_t reuses;          /* allocations served from the free list */
+  size_t in_use;          /* buffers currently held by messages */
+  size_t high_water_mark; /* most buffers held at once */
+  size_t free;            /* buffers kept on the free list */
+} oc_message_buffer_stats_t;
+
+int oc_get_message_buffer_stats(oc_message_buffer_class_t buffer_class,
+                                oc_message_buffer_stats_t *stats);
+
+/* Limits applied to received requests to keep the stack responsive under
+ * load. Shed unicast requests are answered with a 5.03 Service Unavailable.
+ */
+typedef struct oc_overload_limits_t
+{
+  uint32_t max_pending_requests; /* pending events above which unsecured
+                                    requests are shed, 0 for no limit */
+  uint32_t requests_per_second;  /* requests admitted per second from an
+                                    address, 0 for no limit */
+  uint32_t burst;                /* requests an address may send at once */
+  uint32_t retry_after;          /* Max-Age in seconds of 5.03 responses */
+} oc_overload_limits_t;
+
+int oc_set_overload_limits(const oc_overload_limits_t *limits);
+int oc_get_overload_limits(oc_overload_limits_t *limits);
+
+/* Counters of the received packets that were not processed */
+typedef struct oc_overload_stats_t
+{
+  size_t dropped;      /* packets discarded without a response */
+  size_t shed;         /* requests shed while too many events were pending */
+  size_t rate_limited; /* requests over the admission limit of their address */
+} oc_overload_stats_t;
+
+int oc_get_overload_stats(oc_overload_stats_t *stats);
+void oc_reset_overload_stats(void);
+
 #ifdef __cplusplus
 }
 #endif
@@ -71,6 +71,8 @@ typedef struct oc_client_handler_t
 typedef struct oc_client_cb_t
 {
   struct oc_client_cb_t *next;
+  struct oc_client_cb_t *next_by_token;
+  struct oc_client_cb_t *next_by_mid;
   oc_string_t uri;
   oc_string_t query;
   oc_endpoint_t endpoint;
@@ -106,15 +108,48 @@ oc_client_cb_t *oc_ri_alloc_client_cb(const char *uri, oc_endpoint_t *endpoint,
 
 oc_client_cb_t *oc_ri_get_client_cb(const char *uri, oc_endpoint_t *endpoint,
                                     oc_method_t method);
-bool oc_ri_is_client_cb_valid(oc_client_cb_t *client_cb);
+/*
+ * Checks whether a client callback that may have been freed meanwhile is still
+ * allocated, without dereferencing it. token and token_len are the token the
+ * callback had, saved before it could be freed.
+ */
+bool oc_ri_is_client_cb_valid(const oc_client_cb_t *client_cb,
+                              const uint8_t *token, uint8_t token_len);
 oc_client_cb_t *oc_ri_find_client_cb_by_token(uint8_t *token,
                                               uint8_t token_len);
 
 oc_client_cb_t *oc_ri_find_client_cb_by_mid(uint16_t mid);
 
+/*
+ * Client callbacks are indexed by their token and mid, so the mid and token of
+ * a client callback returned by oc_ri_alloc_client_cb() must only be changed
+ * through these functions.
+ */
+void oc_ri_set_client_cb_mid(oc_client_cb_t *cb, uint16_t mid);
+void oc_ri_set_client_cb_token(oc_client_cb_t *cb, const uint8_t *token,
+                               uint8_t token_len);
+
 void oc_ri_free_client_cbs_by_endpoint(oc_endpoint_t *endpoint);
 void oc_ri_free_client_cbs_by_mid(uint16_t mid);
 
+bool oc_ri_remove_client_cb_by_user_data(void *user_data);
+
+/*
+ * Invoked whenever a client callback is allocated, after it has been added to
+ * the list of client callbacks, so bindings can count the references to the
+ * user_data they passed with the request.
+ */
+typedef void (*oc_client_cb_alloc_handler_t)(oc_client_cb_t *cb);
+void oc_ri_set_client_cb_alloc_handler(oc_client_cb_alloc_handler_t handler);
+
+/*
+ * Invoked whenever a client callback is freed, after it has been removed from
+ * the list of client callbacks, so bindings can release the user_data they
+ * passed with the request.
+ */
+typedef void (*oc_client_cb_free_handler_t)(oc_client_cb_t *cb);
+void oc_ri_set_client_cb_free_handler(oc_client_cb_free_handler_t handler);
+
 oc_discovery_flags_t oc_ri_process_discovery_payload(
   uint8_t *payload, int len, oc_client_handler_t handler,
   oc_endpoint_t *endpoint, void *user_data);
@@ -52,6 +52,7 @@ typedef struct oc_rt_t
 struct oc_collection_s
 {
   struct oc_collection_s *next;
+  struct oc_resource_s *next_by_uri;
   size_t device;
   oc_string_t name;
   oc_string_t uri;
@@ -65,7 +66,9 @@ struct oc_collection_s
   oc_request_handler_t delete_handler;
   oc_properties_cb_t get_properties;
   oc_properties_cb_t set_properties;
-  uint8_t num_observers;
+  struct coap_notification_policy *notification_policy;
+  uint32_t num_observers;
+  bool raw_payload;
   uint8_t num_links;
   OC_LIST_STRUCT(mandatory_rts);
   OC_LIST_STRUCT(supported_rts);
@@ -71,6 +71,18 @@ int oc_rep_get_encoded_payload_size(void);
  */
 const uint8_t *oc_rep_get_encoder_buf(void);
 
+/**
+ * Copy already cbor encoded data to the global cbor encoder.
+ *
+ * The data must be a complete cbor data item, e.g. a payload encoded outside
+ * of the stack. If the data does not fit in the buffer the cbor error is set
+ * to CborErrorOutOfMemory.
+ *
+ * @param data pointer to the cbor encoded data
+ * @param len  length of the data in bytes
+ */
+void oc_rep_encode_raw(const uint8_t *data, size_t len);
+
 /**
  * Get a pointer to the cbor object with the given `name`
  *
@@ -189,6 +189,7 @@ typedef struct oc_properties_cb_t
 struct oc_resource_s
 {
   struct oc_resource_s *next;
+  struct oc_resource_s *next_by_uri;
   size_t device;
   oc_string_t name;
   oc_string_t uri;
@@ -202,7 +203,9 @@ struct oc_resource_s
   oc_request_handler_t delete_handler;
   oc_properties_cb_t get_properties;
   oc_properties_cb_t set_properties;
-  uint8_t num_observers;
+  struct coap_notification_policy *notification_policy;
+  uint32_t num_observers;
+  bool raw_payload;
 #ifdef OC_COLLECTIONS
   uint8_t num_links;
 #endif /* OC_COLLECTIONS */
@@ -257,6 +260,24 @@ oc_resource_t *oc_ri_get_app_resources(void);
 oc_resource_t *oc_ri_alloc_resource(void);
 bool oc_ri_add_resource(oc_resource_t *resource);
 bool oc_ri_delete_resource(oc_resource_t *resource);
+
+/* Hash index of resources by device and uri, chained through next_by_uri.
+ * Under dynamic allocation the buckets grow with the number of resources,
+ * otherwise they are the static array given to the index.
+ */
+typedef struct oc_ri_uri_index_t
+{
+  oc_resource_t **buckets;
+  size_t num_buckets;
+  size_t count;
+} oc_ri_uri_index_t;
+
+bool oc_ri_uri_index_add(oc_ri_uri_index_t *index, oc_resource_t *resource);
+void oc_ri_uri_index_remove(oc_ri_uri_index_t *index,
+                            oc_resource_t *resource);
+/* uri is given without its leading '/' */
+oc_resource_t *oc_ri_uri_index_find(oc_ri_uri_index_t *index, const char *uri,
+                                    size_t uri_len, size_t device);
 #endif /* OC_SERVER */
 
 void oc_ri_free_resource_properties(oc_resource_t *resource);
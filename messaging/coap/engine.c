@@ -51,6 +51,7 @@
 #include <string.h>
 
 #include "api/oc_events.h"
+#include "api/oc_overload_internal.h"
 #include "oc_api.h"
 #include "oc_buffer.h"
 
@@ -126,6 +127,39 @@ coap_send_empty_response(coap_message_type_t type, uint16_t mid,
   }
 }
 
+static void
+coap_send_service_unavailable_response(coap_packet_t *request,
+                                       oc_endpoint_t *endpoint)
+{
+  coap_packet_t msg[1];
+#ifdef OC_TCP
+  if (endpoint->flags & TCP) {
+    coap_tcp_init_message(msg, SERVICE_UNAVAILABLE_5_03);
+  } else
+#endif /* OC_TCP */
+    if (request->type == COAP_TYPE_CON) {
+    coap_udp_init_message(msg, COAP_TYPE_ACK, SERVICE_UNAVAILABLE_5_03,
+                          request->mid);
+  } else {
+    coap_udp_init_message(msg, COAP_TYPE_NON, SERVICE_UNAVAILABLE_5_03,
+                          coap_get_mid());
+  }
+  oc_message_t *message = oc_internal_allocate_outgoing_message();
+  if (message) {
+    memcpy(&message->endpoint, endpoint, sizeof(*endpoint));
+    coap_set_token(msg, request->token, request->token_len);
+    coap_set_header_max_age(msg, oc_overload_retry_after());
+    size_t len = coap_serialize_message(msg, message->data);
+    if (len > 0) {
+      message->length = len;
+      coap_send_message(message);
+    }
+    if (message->ref_count == 0) {
+      oc_message_unref(message);
+    }
+  }
+}
+
 /*---------------------------------------------------------------------------*/
 /*- Internal API ------------------------------------------------------------*/
 /*---------------------------------------------------------------------------*/
@@ -246,6 +280,13 @@ coap_receive(oc_message_t *msg)
       OC_DBG("  QUERY: %.*s", (int)message->uri_query_len, message->uri_query);
       OC_DBG("  Payload: %.*s", (int)message->payload_len, message->payload);
 #endif
+      if (!oc_overload_admit_request(&msg->endpoint)) {
+        /* requests sent to a group are not answered with errors */
+        if (!(msg->endpoint.flags & MULTICAST)) {
+          coap_send_service_unavailable_response(message, &msg->endpoint);
+        }
+        return 0;
+      }
       const char *href;
       size_t href_len = coap_get_header_uri_path(message, &href);
 #ifdef OC_TCP
@@ -332,7 +373,7 @@ coap_receive(oc_message_t *msg)
                 }
                 coap_udp_init_message(response, COAP_TYPE_CON, CONTENT_2_05,
                                       coap_get_mid());
-                transaction->mid = response->mid;
+                coap_set_transaction_mid(transaction, response->mid);
                 coap_set_header_block1(response, block1_num, block1_more,
                                        block1_size);
                 coap_set_header_accept(response, APPLICATION_VND_OCF_CBOR);
@@ -375,7 +416,7 @@ coap_receive(oc_message_t *msg)
                 }
                 coap_udp_init_message(response, COAP_TYPE_CON, CONTENT_2_05,
                                       coap_get_mid());
-                transaction->mid = response->mid;
+                coap_set_transaction_mid(transaction, response->mid);
                 coap_set_header_accept(response, APPLICATION_VND_OCF_CBOR);
               }
               coap_set_header_content_format(response,
@@ -723,13 +764,16 @@ coap_receive(oc_message_t *msg)
           request_buffer->ref_count = 0;
         }
 
+        uint8_t token[COAP_TOKEN_LEN];
+        uint8_t token_len = client_cb->token_len;
+        memcpy(token, client_cb->token, token_len);
         oc_ri_invoke_client_cb(message, &response_buffer, client_cb,
                                &msg->endpoint);
         /* Do not free the response buffer in case of a separate response
          * signal from the server. In this case, the client_cb continues
          * to live until the response arrives (or it times out).
          */
-        if (oc_ri_is_client_cb_valid(client_cb)) {
+        if (oc_ri_is_client_cb_valid(client_cb, token, token_len)) {
           if (client_cb->separate == 0) {
             if (response_buffer) {
               response_buffer->ref_count = 0;
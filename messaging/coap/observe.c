@@ -77,10 +77,63 @@ int32_t observe_counter = 3;
 /*---------------------------------------------------------------------------*/
 OC_LIST(observers_list);
 OC_MEMB(observers_memb, coap_observer_t, COAP_MAX_OBSERVERS);
+OC_LIST(policies_list);
+OC_MEMB(policies_memb, coap_notification_policy_t, OC_MAX_APP_RESOURCES);
+#ifdef OC_DYNAMIC_ALLOCATION
+#define COAP_OBSERVER_INDEX_BUCKETS (64)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define COAP_OBSERVER_INDEX_BUCKETS (COAP_MAX_OBSERVERS)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+/* observers chained into buckets by resource, in the order they were added */
+static coap_observer_t *observers_by_resource[COAP_OBSERVER_INDEX_BUCKETS];
 
 /*---------------------------------------------------------------------------*/
 /*- Internal API ------------------------------------------------------------*/
 /*---------------------------------------------------------------------------*/
+static coap_observer_t **
+observer_bucket(const oc_resource_t *resource)
+{
+  /* resources are at least pointer aligned, skip the bits that never vary */
+  uintptr_t key = (uintptr_t)resource / sizeof(void *);
+  return &observers_by_resource[key % COAP_OBSERVER_INDEX_BUCKETS];
+}
+
+static void
+observer_index_link(coap_observer_t *o)
+{
+  coap_observer_t **next = observer_bucket(o->resource);
+  while (*next) {
+    next = &(*next)->next_by_resource;
+  }
+  o->next_by_resource = NULL;
+  *next = o;
+}
+
+static void
+observer_index_unlink(coap_observer_t *o)
+{
+  coap_observer_t **next = observer_bucket(o->resource);
+  while (*next) {
+    if (*next == o) {
+      *next = o->next_by_resource;
+      o->next_by_resource = NULL;
+      return;
+    }
+    next = &(*next)->next_by_resource;
+  }
+}
+
+coap_observer_t *
+coap_get_next_observer_of_resource(const oc_resource_t *resource,
+                                   coap_observer_t *prev)
+{
+  coap_observer_t *obs =
+    (prev) ? prev->next_by_resource : *observer_bucket(resource);
+  while (obs && obs->resource != resource) {
+    obs = obs->next_by_resource;
+  }
+  return obs;
+}
 static int
 coap_remove_observer_handle_by_uri(oc_endpoint_t *endpoint, const char *uri,
                                    int uri_len, oc_interface_mask_t iface_mask)
@@ -95,6 +148,7 @@ coap_remove_observer_handle_by_uri(oc_endpoint_t *endpoint, const char *uri,
          memcmp(oc_string(obs->url), uri, uri_len) == 0) &&
         obs->iface_mask == iface_mask) {
       obs->resource->num_observers--;
+      observer_index_unlink(obs);
       oc_list_remove(observers_list, obs);
       oc_memb_free(&observers_memb, obs);
       removed++;
@@ -144,6 +198,7 @@ add_observer(oc_resource_t *resource, oc_endpoint_t *endpoint,
            oc_list_length(observers_list) + 1, COAP_MAX_OBSERVERS,
            oc_string(o->url), o->token[0], o->token[1]);
 #endif /* !OC_DYNAMIC_ALLOCATION */
+    observer_index_link(o);
     oc_list_add(observers_list, o);
     return dup;
   }
@@ -197,6 +252,7 @@ coap_remove_observer(coap_observer_t *o)
 #endif /* OC_BLOCK_WISE */
   o->resource->num_observers--;
   oc_free_string(&o->url);
+  observer_index_unlink(o);
   oc_list_remove(observers_list, o);
   oc_memb_free(&observers_memb, o);
 }
@@ -279,12 +335,11 @@ int
 coap_remove_observer_by_resource(const oc_resource_t *rsc)
 {
   int removed = 0;
-  coap_observer_t *obs = (coap_observer_t *)oc_list_head(observers_list), *next;
+  coap_observer_t *obs = coap_get_next_observer_of_resource(rsc, NULL), *next;
 
   while (obs) {
-    next = obs->next;
-    if ((obs->resource == rsc) &&
-        (oc_string(rsc->uri) &&
+    next = coap_get_next_observer_of_resource(rsc, obs);
+    if ((oc_string(rsc->uri) &&
          oc_string_len(obs->url) == (oc_string_len(rsc->uri) - 1) &&
          memcmp(oc_string(obs->url), oc_string(rsc->uri) + 1,
                 oc_string_len(rsc->uri) - 1) == 0)) {
@@ -310,12 +365,9 @@ coap_notify_collection_observers(oc_resource_t *resource,
   oc_blockwise_state_t *response_state = NULL;
 #endif /* OC_BLOCK_WISE */
   coap_observer_t *obs = NULL;
-  /* iterate over observers */
-  for (obs = (coap_observer_t *)oc_list_head(observers_list); obs;
-       obs = obs->next) {
-    if (obs->resource != resource) {
-      continue;
-    }
+  /* iterate over the observers of the resource */
+  for (obs = coap_get_next_observer_of_resource(resource, NULL); obs;
+       obs = coap_get_next_observer_of_resource(resource, obs)) {
     if (obs->iface_mask != iface_mask) {
       if ((obs->iface_mask | iface_mask) != OC_IF_LL) {
         continue;
@@ -627,6 +679,129 @@ coap_remove_observers_on_dos_change(size_t device, bool reset)
 }
 #endif /* OC_SECURITY */
 
+/*---------------------------------------------------------------------------*/
+/*- Notification policy -----------------------------------------------------*/
+/*---------------------------------------------------------------------------*/
+static coap_notification_policy_t *
+get_notification_policy(const oc_resource_t *resource)
+{
+  return resource->notification_policy;
+}
+
+static int
+send_notification(coap_notification_policy_t *policy, bool has_value,
+                  double value)
+{
+  policy->last_notify = oc_clock_time();
+  policy->notified = true;
+  policy->has_last_value = has_value;
+  policy->last_value = value;
+  return coap_notify_observers(policy->resource, NULL, NULL);
+}
+
+static oc_event_callback_retval_t
+send_pending_notification(void *data)
+{
+  coap_notification_policy_t *policy = (coap_notification_policy_t *)data;
+  policy->pending = false;
+  OC_DBG("sending coalesced notification for %s",
+         oc_string(policy->resource->uri));
+  send_notification(policy, policy->has_pending_value, policy->pending_value);
+  return OC_EVENT_DONE;
+}
+
+bool
+coap_set_notification_policy(oc_resource_t *resource,
+                             oc_clock_time_t min_interval, uint32_t max_age,
+                             double change_threshold)
+{
+  if (min_interval == 0 && max_age == 0 && change_threshold <= 0) {
+    coap_remove_notification_policy(resource);
+    return true;
+  }
+  coap_notification_policy_t *policy = get_notification_policy(resource);
+  if (!policy) {
+    policy = oc_memb_alloc(&policies_memb);
+    if (!policy) {
+      OC_WRN("insufficient memory to add notification policy");
+      return false;
+    }
+    memset(policy, 0, sizeof(coap_notification_policy_t));
+    policy->resource = resource;
+    resource->notification_policy = policy;
+    oc_list_add(policies_list, policy);
+  }
+  policy->min_interval = min_interval;
+  policy->max_age = max_age;
+  policy->change_threshold = change_threshold;
+  return true;
+}
+
+void
+coap_remove_notification_policy(oc_resource_t *resource)
+{
+  coap_notification_policy_t *policy = get_notification_policy(resource);
+  if (policy) {
+    oc_ri_remove_timed_event_callback(policy, send_pending_notification);
+    resource->notification_policy = NULL;
+    oc_list_remove(policies_list, policy);
+    oc_memb_free(&policies_memb, policy);
+  }
+}
+
+void
+coap_free_all_notification_policies(void)
+{
+  coap_notification_policy_t *policy =
+    (coap_notification_policy_t *)oc_list_head(policies_list);
+  while (policy) {
+    coap_remove_notification_policy(policy->resource);
+    policy = (coap_notification_policy_t *)oc_list_head(policies_list);
+  }
+}
+
+int
+coap_notify_observers_by_policy(oc_resource_t *resource, const double *value)
+{
+  coap_notification_policy_t *policy = get_notification_policy(resource);
+  if (!policy) {
+    return coap_notify_observers(resource, NULL, NULL);
+  }
+
+  /* a notification is already scheduled, it will carry the latest value */
+  if (policy->pending) {
+    policy->has_pending_value = (value != NULL);
+    policy->pending_value = (value) ? *value : 0;
+    return 0;
+  }
+
+  if (value && policy->change_threshold > 0 && policy->has_last_value) {
+    double change = *value - policy->last_value;
+    if (change < 0) {
+      change = -change;
+    }
+    if (change < policy->change_threshold) {
+      OC_DBG("change below threshold, skipping notification for %s",
+             oc_string(resource->uri));
+      return 0;
+    }
+  }
+
+  oc_clock_time_t now = oc_clock_time();
+  if (policy->notified && policy->min_interval > 0 &&
+      now - policy->last_notify < policy->min_interval) {
+    policy->pending = true;
+    policy->has_pending_value = (value != NULL);
+    policy->pending_value = (value) ? *value : 0;
+    oc_ri_add_timed_event_callback_ticks(
+      policy, send_pending_notification,
+      policy->last_notify + policy->min_interval - now);
+    return 0;
+  }
+
+  return send_notification(policy, value != NULL, (value) ? *value : 0);
+}
+
 int
 coap_notify_observers(oc_resource_t *resource,
                       oc_response_buffer_t *response_buf,
@@ -666,6 +841,8 @@ coap_notify_observers(oc_resource_t *resource,
     oc_response_t response = { 0 };
     response.separate_response = 0;
     oc_response_buffer_t response_buffer;
+    coap_notification_policy_t *policy = get_notification_policy(resource);
+    uint32_t max_age = (policy) ? policy->max_age : 0;
     if (!response_buf && resource) {
       OC_DBG("coap_notify_observers: Issue GET request to resource %s\n\n",
              oc_string(resource->uri));
@@ -698,16 +875,13 @@ coap_notify_observers(oc_resource_t *resource,
       } // response_buf->code == OC_IGNORE
     }   //! response_buf && resource
 
-    /* iterate over observers */
-    obs = (coap_observer_t *)oc_list_head(observers_list);
-    while (obs != NULL) {
-      if ((obs->resource != resource) ||
-          (endpoint && oc_endpoint_compare(&obs->endpoint, endpoint) != 0)) {
-        obs = obs->next;
+    /* iterate over the observers of the resource */
+    for (obs = coap_get_next_observer_of_resource(resource, NULL); obs != NULL;
+         obs = coap_get_next_observer_of_resource(resource, obs)) {
+      if (endpoint && oc_endpoint_compare(&obs->endpoint, endpoint) != 0) {
         continue;
-      } // obs->resource != resource || endpoint != obs->endpoint
+      } // endpoint != obs->endpoint
       if (resource_is_collection && obs->iface_mask != OC_IF_BASELINE) {
-        obs = obs->next;
         continue;
       }
       if (response.separate_response != NULL) {
@@ -816,6 +990,9 @@ coap_notify_observers(oc_resource_t *resource,
           } //! blockwise transfer
 
           coap_set_status_code(notification, response_buf->code);
+          if (max_age > 0) {
+            coap_set_header_max_age(notification, max_age);
+          }
           if (notification->code < BAD_REQUEST_4_00 &&
               obs->resource->num_observers) {
             coap_set_header_observe(notification, (obs->obs_counter)++);
@@ -842,7 +1019,6 @@ coap_notify_observers(oc_resource_t *resource,
           } // transaction
         }   // response_buf != NULL
       }     //! separate response
-      obs = obs->next;
     } // iterate over observers
   leave_notify_observers:;
 #ifdef OC_DYNAMIC_ALLOCATION
@@ -860,9 +1036,9 @@ coap_notify_observers(oc_resource_t *resource,
   if (resource->num_links > 0) {
     num_links = coap_notify_collections(resource);
   }
-  return resource->num_observers + num_links;
+  return (int)resource->num_observers + num_links;
 #else  /* OC_COLLECTIONS */
-  return resource->num_observers;
+  return (int)resource->num_observers;
 #endif /* !OC_COLLECTIONS */
 }
 /*---------------------------------------------------------------------------*/
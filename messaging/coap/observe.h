@@ -61,6 +61,7 @@ extern "C"
 typedef struct coap_observer
 {
   struct coap_observer *next; /* for LIST */
+  struct coap_observer *next_by_resource; /* for the resource index */
 
   oc_resource_t *resource;
 
@@ -80,7 +81,27 @@ typedef struct coap_observer
   uint8_t retrans_counter;
 } coap_observer_t;
 
+/* how notifications of a resource triggered by the application are sent */
+typedef struct coap_notification_policy
+{
+  struct coap_notification_policy *next; /* for LIST */
+
+  oc_resource_t *resource;
+  oc_clock_time_t min_interval;
+  oc_clock_time_t last_notify;
+  uint32_t max_age;
+  double change_threshold;
+  double last_value;
+  double pending_value;
+  bool notified;
+  bool pending;
+  bool has_last_value;
+  bool has_pending_value;
+} coap_notification_policy_t;
+
 oc_list_t coap_get_observers(void);
+coap_observer_t *coap_get_next_observer_of_resource(
+  const oc_resource_t *resource, coap_observer_t *prev);
 void coap_remove_observer(coap_observer_t *o);
 int coap_remove_observer_by_client(oc_endpoint_t *endpoint);
 int coap_remove_observer_by_token(oc_endpoint_t *endpoint, uint8_t *token,
@@ -110,6 +131,14 @@ int coap_observe_handler(void *request, void *response, oc_resource_t *resource,
 
 int coap_remove_observers_on_dos_change(size_t device, bool reset);
 
+bool coap_set_notification_policy(oc_resource_t *resource,
+                                  oc_clock_time_t min_interval,
+                                  uint32_t max_age, double change_threshold);
+void coap_remove_notification_policy(oc_resource_t *resource);
+void coap_free_all_notification_policies(void);
+int coap_notify_observers_by_policy(oc_resource_t *resource,
+                                    const double *value);
+
 #ifdef __cplusplus
 }
 #endif
@@ -68,12 +68,50 @@
 /*---------------------------------------------------------------------------*/
 OC_MEMB(transactions_memb, coap_transaction_t, COAP_MAX_OPEN_TRANSACTIONS);
 OC_LIST(transactions_list);
+#ifdef OC_DYNAMIC_ALLOCATION
+#define COAP_TRANSACTION_INDEX_BUCKETS (64)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define COAP_TRANSACTION_INDEX_BUCKETS (COAP_MAX_OPEN_TRANSACTIONS)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+/* transactions chained into buckets by mid, in the order they were indexed */
+static coap_transaction_t *transactions_by_mid[COAP_TRANSACTION_INDEX_BUCKETS];
 
 static struct oc_process *transaction_handler_process = NULL;
 
 /*---------------------------------------------------------------------------*/
 /*- Internal API ------------------------------------------------------------*/
 /*---------------------------------------------------------------------------*/
+static coap_transaction_t **
+transaction_bucket(uint16_t mid)
+{
+  return &transactions_by_mid[mid % COAP_TRANSACTION_INDEX_BUCKETS];
+}
+
+static void
+transaction_index_link(coap_transaction_t *t)
+{
+  coap_transaction_t **next = transaction_bucket(t->mid);
+  while (*next) {
+    next = &(*next)->next_by_mid;
+  }
+  t->next_by_mid = NULL;
+  *next = t;
+}
+
+static void
+transaction_index_unlink(coap_transaction_t *t)
+{
+  coap_transaction_t **next = transaction_bucket(t->mid);
+  while (*next) {
+    if (*next == t) {
+      *next = t->next_by_mid;
+      t->next_by_mid = NULL;
+      return;
+    }
+    next = &(*next)->next_by_mid;
+  }
+}
+
 void
 coap_register_as_transaction_handler(void)
 {
@@ -94,6 +132,7 @@ coap_new_transaction(uint16_t mid, oc_endpoint_t *endpoint)
       /* save client address */
       memcpy(&t->message->endpoint, endpoint, sizeof(oc_endpoint_t));
 
+      transaction_index_link(t);
       oc_list_add(
         transactions_list,
         t); /* list itself makes sure same element is not added twice */
@@ -196,6 +235,7 @@ coap_clear_transaction(coap_transaction_t *t)
 
     oc_etimer_stop(&t->retrans_timer);
     oc_message_unref(t->message);
+    transaction_index_unlink(t);
     oc_list_remove(transactions_list, t);
     oc_memb_free(&transactions_memb, t);
   }
@@ -205,8 +245,7 @@ coap_get_transaction_by_mid(uint16_t mid)
 {
   coap_transaction_t *t = NULL;
 
-  for (t = (coap_transaction_t *)oc_list_head(transactions_list); t;
-       t = t->next) {
+  for (t = *transaction_bucket(mid); t; t = t->next_by_mid) {
     if (t->mid == mid) {
       OC_DBG("Found transaction for MID %u: %p", t->mid, (void *)t);
       return t;
@@ -215,6 +254,14 @@ coap_get_transaction_by_mid(uint16_t mid)
   return NULL;
 }
 
+void
+coap_set_transaction_mid(coap_transaction_t *t, uint16_t mid)
+{
+  transaction_index_unlink(t);
+  t->mid = mid;
+  transaction_index_link(t);
+}
+
 /*---------------------------------------------------------------------------*/
 void
 coap_check_transactions(void)
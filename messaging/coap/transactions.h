@@ -73,6 +73,7 @@ extern "C"
 typedef struct coap_transaction
 {
   struct coap_transaction *next; /* for LIST */
+  struct coap_transaction *next_by_mid; /* for the mid index */
 
   uint16_t mid;
   struct oc_etimer retrans_timer;
@@ -88,6 +89,8 @@ coap_transaction_t *coap_new_transaction(uint16_t mid, oc_endpoint_t *endpoint);
 void coap_send_transaction(coap_transaction_t *t);
 void coap_clear_transaction(coap_transaction_t *t);
 coap_transaction_t *coap_get_transaction_by_mid(uint16_t mid);
+/* transactions are indexed by mid, use this to change the mid of one */
+void coap_set_transaction_mid(coap_transaction_t *t, uint16_t mid);
 
 void coap_check_transactions(void);
 void coap_free_all_transactions(void);
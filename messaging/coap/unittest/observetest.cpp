@@ -0,0 +1,192 @@
+/******************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************/
+
+#include <cstdlib>
+#include <cstring>
+#include <gtest/gtest.h>
+#include "oc_api.h"
+#include "coap.h"
+#include "observe.h"
+
+#ifdef OC_DYNAMIC_ALLOCATION
+
+#define NUM_INDEXED_OBSERVERS 5000
+
+static const size_t device = 0;
+
+static void signal_event_loop(void)
+{
+}
+
+static int app_init(void)
+{
+  int ret = oc_init_platform("Samsung", NULL, NULL);
+  ret |= oc_add_device("/oic/d", "oic.d.light", "Lamp", "ocf.1.0.0",
+                       "ocf.res.1.0.0", NULL, NULL);
+  return ret;
+}
+
+static oc_handler_t handler = {.init = app_init,
+                    .signal_event_loop = signal_event_loop,
+                    .register_resources = NULL,
+                    .requests_entry = NULL };
+
+static void onGet(oc_request_t *request, oc_interface_mask_t iface_mask,
+                  void *user_data)
+{
+  (void)iface_mask;
+  (void)user_data;
+  oc_rep_start_root_object();
+  oc_rep_set_int(root, value, 42);
+  oc_rep_end_root_object();
+  oc_send_response(request, OC_STATUS_OK);
+}
+
+static oc_resource_t *newResource(const char *uri)
+{
+  oc_resource_t *res = oc_new_resource(NULL, uri, 1, device);
+  oc_resource_bind_resource_type(res, "oic.r.test");
+  oc_resource_set_discoverable(res, true);
+  oc_resource_set_observable(res, true);
+  oc_resource_set_request_handler(res, OC_GET, onGet, NULL);
+  oc_add_resource(res);
+  return res;
+}
+
+static void addObservers(oc_resource_t *res, uint16_t first_port, int count)
+{
+  for (int i = 0; i < count; i++) {
+    oc_endpoint_t ep;
+    memset(&ep, 0, sizeof(ep));
+    ep.flags = IPV6;
+    ep.device = device;
+    ep.addr.ipv6.address[15] = 1;
+    ep.addr.ipv6.port = (uint16_t)(first_port + i);
+
+    coap_packet_t request[1], response[1];
+    coap_udp_init_message(request, COAP_TYPE_CON, COAP_GET, coap_get_mid());
+    coap_set_token(request, (const uint8_t *)&i, sizeof(i));
+    coap_set_header_observe(request, 0);
+    coap_set_header_uri_path(request, oc_string(res->uri),
+                             oc_string_len(res->uri));
+    coap_udp_init_message(response, COAP_TYPE_ACK, CONTENT_2_05, 0);
+    coap_observe_handler(request, response, res, 1024, &ep,
+                         res->default_interface);
+  }
+}
+
+static int countObservers(oc_resource_t *res)
+{
+  int count = 0;
+  coap_observer_t *obs = coap_get_next_observer_of_resource(res, NULL);
+  while (obs) {
+    EXPECT_EQ(res, obs->resource);
+    count++;
+    obs = coap_get_next_observer_of_resource(res, obs);
+  }
+  return count;
+}
+
+class TestObserve: public testing::Test
+{
+    protected:
+        static void SetUpTestCase()
+        {
+            oc_main_init(&handler);
+        }
+
+        static void TearDownTestCase()
+        {
+            oc_main_shutdown();
+        }
+};
+
+TEST_F(TestObserve, ObserversIndexedByResource_P)
+{
+  oc_resource_t *res1 = newResource("/observe/1");
+  oc_resource_t *res2 = newResource("/observe/2");
+
+  addObservers(res1, 10000, 3);
+  addObservers(res2, 20000, 2);
+  EXPECT_EQ(3, countObservers(res1));
+  EXPECT_EQ(2, countObservers(res2));
+
+  EXPECT_EQ(3, coap_remove_observer_by_resource(res1));
+  EXPECT_EQ(0, countObservers(res1));
+  EXPECT_EQ(2, countObservers(res2));
+
+  EXPECT_EQ(2, coap_remove_observer_by_resource(res2));
+  oc_delete_resource(res1);
+  oc_delete_resource(res2);
+}
+
+TEST_F(TestObserve, NotificationPolicyCoalesces_P)
+{
+  oc_resource_t *res = newResource("/observe/coalesced");
+  addObservers(res, 10000, 2);
+
+  EXPECT_TRUE(oc_resource_set_notification_policy(res, 60000, 0, 0));
+  EXPECT_EQ(2, oc_notify_observers(res));
+  /* within the minimum interval, deferred to a single notification */
+  EXPECT_EQ(0, oc_notify_observers(res));
+  EXPECT_EQ(0, oc_notify_observers(res));
+
+  /* removing the policy drops the pending notification */
+  EXPECT_TRUE(oc_resource_set_notification_policy(res, 0, 0, 0));
+  EXPECT_EQ(2, oc_notify_observers(res));
+
+  coap_remove_observer_by_resource(res);
+  oc_delete_resource(res);
+  oc_main_poll();
+}
+
+TEST_F(TestObserve, NotificationPolicyChangeThreshold_P)
+{
+  oc_resource_t *res = newResource("/observe/threshold");
+  addObservers(res, 10000, 2);
+
+  EXPECT_TRUE(oc_resource_set_notification_policy(res, 0, 60, 1.0));
+  EXPECT_EQ(2, oc_notify_observers_with_value(res, 10.0));
+  EXPECT_EQ(0, oc_notify_observers_with_value(res, 10.5));
+  EXPECT_EQ(0, oc_notify_observers_with_value(res, 9.5));
+  EXPECT_EQ(2, oc_notify_observers_with_value(res, 11.0));
+  EXPECT_EQ(2, oc_notify_observers_with_value(res, 9.0));
+
+  coap_remove_observer_by_resource(res);
+  oc_delete_resource(res);
+  oc_main_poll();
+}
+
+TEST_F(TestObserve, NotifyObserversOfResourceOnly_P)
+{
+  oc_resource_t *popular = newResource("/observe/popular");
+  oc_resource_t *other = newResource("/observe/other");
+
+  addObservers(popular, 10000, NUM_INDEXED_OBSERVERS);
+  addObservers(other, 20000, NUM_INDEXED_OBSERVERS);
+  EXPECT_EQ(NUM_INDEXED_OBSERVERS, countObservers(popular));
+  EXPECT_EQ((uint32_t)NUM_INDEXED_OBSERVERS, popular->num_observers);
+
+  /* only the observers of the notified resource are visited */
+  EXPECT_EQ(NUM_INDEXED_OBSERVERS, coap_notify_observers(popular, NULL, NULL));
+
+  coap_remove_observer_by_resource(popular);
+  coap_remove_observer_by_resource(other);
+  oc_delete_resource(popular);
+  oc_delete_resource(other);
+  oc_main_poll();
+}
+#endif /* OC_DYNAMIC_ALLOCATION */
@@ -16,6 +16,7 @@
 
 #define _GNU_SOURCE
 #include "ipcontext.h"
+#include "api/oc_overload_internal.h"
 #ifdef OC_TCP
 #include "tcpadapter.h"
 #endif
@@ -24,6 +25,7 @@
 #include "oc_endpoint.h"
 #include "oc_network_monitor.h"
 #include "port/oc_assert.h"
+#include "port/oc_clock.h"
 #include "port/oc_connectivity.h"
 #include <arpa/inet.h>
 #include <assert.h>
@@ -40,6 +42,22 @@
 #include <sys/select.h>
 #include <sys/un.h>
 #include <unistd.h>
+#ifdef OC_EPOLL
+#include <sys/epoll.h>
+
+#define OC_EPOLL_MAX_EVENTS (64)
+/* bounds of the delay before deferred sockets are read again */
+#define OC_EPOLL_MIN_BACKOFF_MS (10)
+#define OC_EPOLL_MAX_BACKOFF_MS (1000)
+#endif /* OC_EPOLL */
+
+#if defined(OC_EPOLL) || defined(OC_UDP_BATCH)
+/* returned by recv_msg() and recv_batch() once a socket has been drained */
+#define RECV_WOULD_BLOCK (-2)
+/* returned by recv_batch() when a datagram is left queued for lack of
+ * messages */
+#define RECV_STARVED (-3)
+#endif /* OC_EPOLL || OC_UDP_BATCH */
 
 /* Some outdated toolchains do not define IFA_FLAGS.
    Note: Requires Linux kernel 3.14 or later. */
@@ -659,45 +677,21 @@ process_interface_change_event(void)
   return ret;
 }
 
+/* Fills in the source address and the receiving interface of a datagram read
+ * by recvmsg() or recvmmsg().
+ */
 static int
-recv_msg(int sock, uint8_t *recv_buf, int recv_buf_size,
-         oc_endpoint_t *endpoint, bool multicast)
+get_msg_endpoint(struct msghdr *msg, oc_endpoint_t *endpoint, bool multicast)
 {
-  struct sockaddr_storage client;
-  struct iovec iovec[1];
-  struct msghdr msg;
-  char msg_control[CMSG_LEN(sizeof(struct sockaddr_storage))];
-
-  iovec[0].iov_base = recv_buf;
-  iovec[0].iov_len = (size_t)recv_buf_size;
-
-  msg.msg_name = &client;
-  msg.msg_namelen = sizeof(client);
-
-  msg.msg_iov = iovec;
-  msg.msg_iovlen = 1;
-
-  msg.msg_control = msg_control;
-  msg.msg_controllen = sizeof(msg_control);
-
-  msg.msg_flags = 0;
-
-  int ret = recvmsg(sock, &msg, 0);
-
-  if (ret < 0 || (msg.msg_flags & MSG_TRUNC) || (msg.msg_flags & MSG_CTRUNC)) {
-    OC_ERR("recvmsg returned with an error: %d", errno);
-    return -1;
-  }
-
   struct cmsghdr *cmsg;
-  for (cmsg = CMSG_FIRSTHDR(&msg); cmsg != 0; cmsg = CMSG_NXTHDR(&msg, cmsg)) {
+  for (cmsg = CMSG_FIRSTHDR(msg); cmsg != 0; cmsg = CMSG_NXTHDR(msg, cmsg)) {
     if (cmsg->cmsg_level == IPPROTO_IPV6 && cmsg->cmsg_type == IPV6_PKTINFO) {
-      if (msg.msg_namelen != sizeof(struct sockaddr_in6)) {
+      if (msg->msg_namelen != sizeof(struct sockaddr_in6)) {
         OC_ERR("anciliary data contains invalid source address");
         return -1;
       }
       /* Set source address of packet in endpoint structure */
-      struct sockaddr_in6 *c6 = (struct sockaddr_in6 *)&client;
+      struct sockaddr_in6 *c6 = (struct sockaddr_in6 *)msg->msg_name;
       memcpy(endpoint->addr.ipv6.address, c6->sin6_addr.s6_addr,
              sizeof(c6->sin6_addr.s6_addr));
       endpoint->addr.ipv6.scope = c6->sin6_scope_id;
@@ -722,12 +716,12 @@ recv_msg(int sock, uint8_t *recv_buf, int recv_buf_size,
     }
 #ifdef OC_IPV4
     else if (cmsg->cmsg_level == SOL_IP && cmsg->cmsg_type == IP_PKTINFO) {
-      if (msg.msg_namelen != sizeof(struct sockaddr_in)) {
+      if (msg->msg_namelen != sizeof(struct sockaddr_in)) {
         OC_ERR("anciliary data contains invalid source address");
         return -1;
       }
       struct in_pktinfo *pktinfo = (struct in_pktinfo *)CMSG_DATA(cmsg);
-      struct sockaddr_in *c4 = (struct sockaddr_in *)&client;
+      struct sockaddr_in *c4 = (struct sockaddr_in *)msg->msg_name;
       memcpy(endpoint->addr.ipv4.address, &c4->sin_addr.s_addr,
              sizeof(c4->sin_addr.s_addr));
       endpoint->addr.ipv4.port = ntohs(c4->sin_port);
@@ -742,9 +736,415 @@ recv_msg(int sock, uint8_t *recv_buf, int recv_buf_size,
 #endif /* OC_IPV4 */
   }
 
+  return 0;
+}
+
+static int
+recv_msg(int sock, uint8_t *recv_buf, int recv_buf_size,
+         oc_endpoint_t *endpoint, bool multicast)
+{
+  struct sockaddr_storage client;
+  struct iovec iovec[1];
+  struct msghdr msg;
+  char msg_control[CMSG_LEN(sizeof(struct sockaddr_storage))];
+
+  iovec[0].iov_base = recv_buf;
+  iovec[0].iov_len = (size_t)recv_buf_size;
+
+  msg.msg_name = &client;
+  msg.msg_namelen = sizeof(client);
+
+  msg.msg_iov = iovec;
+  msg.msg_iovlen = 1;
+
+  msg.msg_control = msg_control;
+  msg.msg_controllen = sizeof(msg_control);
+
+  msg.msg_flags = 0;
+
+#ifdef OC_EPOLL
+  int ret = recvmsg(sock, &msg, MSG_DONTWAIT);
+  if (ret < 0 && (errno == EAGAIN || errno == EWOULDBLOCK)) {
+    return RECV_WOULD_BLOCK;
+  }
+#else  /* OC_EPOLL */
+  int ret = recvmsg(sock, &msg, 0);
+#endif /* !OC_EPOLL */
+
+  if (ret < 0 || (msg.msg_flags & MSG_TRUNC) || (msg.msg_flags & MSG_CTRUNC)) {
+    OC_ERR("recvmsg returned with an error: %d", errno);
+    return -1;
+  }
+
+  if (get_msg_endpoint(&msg, endpoint, multicast) < 0) {
+    return -1;
+  }
+
   return ret;
 }
 
+/* Discards the next datagram queued on an unsecured UDP socket, when no
+ * message can be allocated to receive it, if it is a CON or NON request. The
+ * request would only grow stale in the socket queue while the stack is out of
+ * buffers. Any other datagram, such as an ACK, a RST or a response, is left
+ * queued. Returns false if no request was discarded.
+ */
+static bool
+discard_request_datagram(int sock)
+{
+  uint8_t header[4];
+  ssize_t len = recv(sock, header, sizeof(header), MSG_DONTWAIT | MSG_PEEK);
+  if (len < (ssize_t)sizeof(header) ||
+      !oc_overload_is_request_header(header, sizeof(header))) {
+    return false;
+  }
+  if (recv(sock, header, sizeof(header), MSG_DONTWAIT | MSG_TRUNC) < 0) {
+    return false;
+  }
+  oc_overload_count_dropped();
+  return true;
+}
+
+#if defined(OC_EPOLL) || defined(OC_UDP_BATCH)
+static bool
+get_udp_sock_flags(ip_context_t *dev, int fd, enum transport_flags *flags)
+{
+  if (fd == dev->server_sock) {
+    *flags = IPV6;
+  } else if (fd == dev->mcast_sock) {
+    *flags = IPV6 | MULTICAST;
+#ifdef OC_IPV4
+  } else if (fd == dev->server4_sock) {
+    *flags = IPV4;
+  } else if (fd == dev->mcast4_sock) {
+    *flags = IPV4 | MULTICAST;
+#endif /* OC_IPV4 */
+#ifdef OC_SECURITY
+  } else if (fd == dev->secure_sock) {
+    *flags = IPV6 | SECURED;
+#ifdef OC_IPV4
+  } else if (fd == dev->secure4_sock) {
+    *flags = IPV4 | SECURED;
+#endif /* OC_IPV4 */
+#endif /* OC_SECURITY */
+  } else {
+    return false;
+  }
+  return true;
+}
+#endif /* OC_EPOLL || OC_UDP_BATCH */
+
+#ifdef OC_UDP_BATCH
+/* Reads up to OC_UDP_BATCH_SIZE datagrams with a single recvmmsg() call into
+ * the messages that are kept allocated in dev->recv_batch, and hands them over
+ * to the stack. If no message can be allocated, a single request is
+ * discarded from an unsecured socket. Returns the number of datagrams read,
+ * RECV_WOULD_BLOCK once the socket has been drained, RECV_STARVED if no
+ * message could be allocated and the next datagram was left queued, or -1.
+ */
+static int
+recv_batch(ip_context_t *dev, int sock, enum transport_flags flags)
+{
+  struct mmsghdr msgs[OC_UDP_BATCH_SIZE];
+  struct iovec iovecs[OC_UDP_BATCH_SIZE];
+  struct sockaddr_storage clients[OC_UDP_BATCH_SIZE];
+  char msg_control[OC_UDP_BATCH_SIZE]
+                  [CMSG_LEN(sizeof(struct sockaddr_storage))];
+  unsigned int i, vlen = 0;
+
+  while (vlen < OC_UDP_BATCH_SIZE) {
+    if (!dev->recv_batch[vlen]) {
+      dev->recv_batch[vlen] = oc_allocate_message();
+      if (!dev->recv_batch[vlen]) {
+        break;
+      }
+    }
+    vlen++;
+  }
+  if (vlen == 0) {
+    if (!(flags & SECURED) && discard_request_datagram(sock)) {
+      return 1;
+    }
+    return RECV_STARVED;
+  }
+
+  memset(msgs, 0, vlen * sizeof(struct mmsghdr));
+  for (i = 0; i < vlen; i++) {
+    iovecs[i].iov_base = dev->recv_batch[i]->data;
+    iovecs[i].iov_len = OC_PDU_SIZE;
+    msgs[i].msg_hdr.msg_name = &clients[i];
+    msgs[i].msg_hdr.msg_namelen = sizeof(clients[i]);
+    msgs[i].msg_hdr.msg_iov = &iovecs[i];
+    msgs[i].msg_hdr.msg_iovlen = 1;
+    msgs[i].msg_hdr.msg_control = msg_control[i];
+    msgs[i].msg_hdr.msg_controllen = sizeof(msg_control[i]);
+  }
+
+  int n = recvmmsg(sock, msgs, vlen, MSG_DONTWAIT, NULL);
+  if (n < 0) {
+    if (errno == EAGAIN || errno == EWOULDBLOCK) {
+      return RECV_WOULD_BLOCK;
+    }
+    OC_ERR("recvmmsg returned with an error: %d", errno);
+    return -1;
+  }
+
+  for (i = 0; i < (unsigned int)n; i++) {
+    oc_message_t *message = dev->recv_batch[i];
+    dev->recv_batch[i] = NULL;
+    if ((msgs[i].msg_hdr.msg_flags & (MSG_TRUNC | MSG_CTRUNC)) ||
+        get_msg_endpoint(&msgs[i].msg_hdr, &message->endpoint,
+                         (flags & MULTICAST) != 0) < 0) {
+      OC_ERR("dropping invalid datagram");
+      oc_message_unref(message);
+      continue;
+    }
+    message->length = msgs[i].msg_len;
+    message->endpoint.flags = flags;
+    message->endpoint.device = dev->device;
+#ifdef OC_SECURITY
+    if (flags & SECURED) {
+      message->encrypted = 1;
+    }
+#endif /* OC_SECURITY */
+
+#ifdef OC_DEBUG
+    PRINT("Incoming message of size %zd bytes from ", message->length);
+    PRINTipaddr(message->endpoint);
+    PRINT("\n\n");
+#endif /* OC_DEBUG */
+
+    oc_network_event(message);
+  }
+
+  /* keep the unused messages at the front for the next call */
+  memmove(dev->recv_batch, dev->recv_batch + n,
+          (vlen - (unsigned int)n) * sizeof(oc_message_t *));
+  memset(dev->recv_batch + (vlen - (unsigned int)n), 0,
+         (unsigned int)n * sizeof(oc_message_t *));
+  return n;
+}
+
+static void
+free_recv_batch(ip_context_t *dev)
+{
+  int i;
+  for (i = 0; i < OC_UDP_BATCH_SIZE; i++) {
+    oc_message_unref(dev->recv_batch[i]);
+    dev->recv_batch[i] = NULL;
+  }
+}
+#endif /* OC_UDP_BATCH */
+
+#ifdef OC_EPOLL
+static int
+add_fd_to_epoll(ip_context_t *dev, int fd, bool edge_triggered)
+{
+  struct epoll_event event;
+  memset(&event, 0, sizeof(event));
+  event.events = EPOLLIN;
+  if (edge_triggered) {
+    event.events |= EPOLLET;
+  }
+  event.data.fd = fd;
+  if (epoll_ctl(dev->epoll_fd, EPOLL_CTL_ADD, fd, &event) < 0) {
+    OC_ERR("adding socket to epoll %d", errno);
+    return -1;
+  }
+  return 0;
+}
+
+static void
+oc_udp_add_socks_to_epoll(ip_context_t *dev)
+{
+  add_fd_to_epoll(dev, dev->server_sock, true);
+  add_fd_to_epoll(dev, dev->mcast_sock, true);
+#ifdef OC_SECURITY
+  add_fd_to_epoll(dev, dev->secure_sock, true);
+#endif /* OC_SECURITY */
+
+#ifdef OC_IPV4
+  add_fd_to_epoll(dev, dev->server4_sock, true);
+  add_fd_to_epoll(dev, dev->mcast4_sock, true);
+#ifdef OC_SECURITY
+  add_fd_to_epoll(dev, dev->secure4_sock, true);
+#endif /* OC_SECURITY */
+#endif /* OC_IPV4 */
+}
+
+static adapter_receive_state_t
+oc_udp_receive_ready_message(int fd, enum transport_flags flags,
+                             oc_message_t *message)
+{
+  int count = recv_msg(fd, message->data, OC_PDU_SIZE, &message->endpoint,
+                       (flags & MULTICAST) != 0);
+  if (count == RECV_WOULD_BLOCK) {
+    return ADAPTER_STATUS_NONE;
+  }
+  if (count < 0) {
+    return ADAPTER_STATUS_ERROR;
+  }
+  message->length = (size_t)count;
+  message->endpoint.flags = flags;
+#ifdef OC_SECURITY
+  if (flags & SECURED) {
+    message->encrypted = 1;
+  }
+#endif /* OC_SECURITY */
+  return ADAPTER_STATUS_RECEIVE;
+}
+
+/* Sockets carrying messages are edge triggered, so a ready socket is read
+ * until it would block. Data that is already queued is not reported again.
+ */
+static void
+rearm_epoll_fd(ip_context_t *dev, int fd)
+{
+  /* rearm the socket so that the next epoll_wait() reports it again */
+  struct epoll_event event;
+  memset(&event, 0, sizeof(event));
+  event.events = EPOLLIN | EPOLLET;
+  event.data.fd = fd;
+  epoll_ctl(dev->epoll_fd, EPOLL_CTL_MOD, fd, &event);
+}
+
+/* Defers reading a ready socket while the messages or descriptors needed to
+ * read it are exhausted. Rearming the socket at once would have epoll_wait()
+ * report it again immediately, and spin until buffers are freed. Deferred
+ * sockets are read again after a delay that doubles while they stay starved.
+ */
+static void
+defer_ready_fd(ip_context_t *dev, int fd)
+{
+  int i;
+  for (i = 0; i < dev->num_deferred_fds; i++) {
+    if (dev->deferred_fds[i] == fd) {
+      return;
+    }
+  }
+  if (dev->num_deferred_fds == OC_EPOLL_MAX_DEFERRED_FDS) {
+    OC_WRN("too many deferred sockets, rearming socket %d", fd);
+    rearm_epoll_fd(dev, fd);
+    return;
+  }
+  if (dev->num_deferred_fds == 0) {
+    if (dev->deferred_backoff_ms == 0) {
+      dev->deferred_backoff_ms = OC_EPOLL_MIN_BACKOFF_MS;
+    }
+    dev->deferred_retry_time =
+      oc_clock_time() +
+      (oc_clock_time_t)dev->deferred_backoff_ms * OC_CLOCK_SECOND / 1000;
+  }
+  dev->deferred_fds[dev->num_deferred_fds++] = fd;
+}
+
+/* Returns the epoll_wait() timeout until the deferred sockets are due */
+static int
+deferred_fds_timeout(ip_context_t *dev)
+{
+  if (dev->num_deferred_fds == 0) {
+    return -1;
+  }
+  oc_clock_time_t now = oc_clock_time();
+  if (now >= dev->deferred_retry_time) {
+    return 0;
+  }
+  return (int)((dev->deferred_retry_time - now) * 1000 / OC_CLOCK_SECOND) + 1;
+}
+
+static void process_ready_socket(ip_context_t *dev, int fd);
+
+static void
+retry_deferred_fds(ip_context_t *dev)
+{
+  if (dev->num_deferred_fds == 0 ||
+      oc_clock_time() < dev->deferred_retry_time) {
+    return;
+  }
+  int fds[OC_EPOLL_MAX_DEFERRED_FDS];
+  int i, n = dev->num_deferred_fds;
+  memcpy(fds, dev->deferred_fds, (size_t)n * sizeof(int));
+  dev->num_deferred_fds = 0;
+
+  /* sockets that are still starved are deferred with a longer delay */
+  dev->deferred_backoff_ms *= 2;
+  if (dev->deferred_backoff_ms > OC_EPOLL_MAX_BACKOFF_MS) {
+    dev->deferred_backoff_ms = OC_EPOLL_MAX_BACKOFF_MS;
+  }
+  for (i = 0; i < n; i++) {
+    /* a TCP session closed meanwhile is no longer found by its socket */
+    process_ready_socket(dev, fds[i]);
+  }
+  if (dev->num_deferred_fds == 0) {
+    dev->deferred_backoff_ms = OC_EPOLL_MIN_BACKOFF_MS;
+  }
+}
+
+static void
+process_ready_socket(ip_context_t *dev, int fd)
+{
+  enum transport_flags flags = 0;
+  bool udp = get_udp_sock_flags(dev, fd, &flags);
+
+#ifdef OC_UDP_BATCH
+  if (udp) {
+    int ret;
+    while ((ret = recv_batch(dev, fd, flags)) != RECV_WOULD_BLOCK) {
+      if (ret == RECV_STARVED) {
+        defer_ready_fd(dev, fd);
+        return;
+      }
+    }
+    return;
+  }
+#endif /* OC_UDP_BATCH */
+
+  while (1) {
+    oc_message_t *message = oc_allocate_message();
+    if (!message) {
+      if (udp && !(flags & SECURED) && discard_request_datagram(fd)) {
+        continue;
+      }
+      defer_ready_fd(dev, fd);
+      return;
+    }
+
+    message->endpoint.device = dev->device;
+
+    adapter_receive_state_t state = ADAPTER_STATUS_NONE;
+    if (udp) {
+      state = oc_udp_receive_ready_message(fd, flags, message);
+    }
+#ifdef OC_TCP
+    else {
+      state = oc_tcp_receive_ready_message(dev, fd, message);
+    }
+#endif /* OC_TCP */
+
+    if (state == ADAPTER_STATUS_RECEIVE) {
+#ifdef OC_DEBUG
+      PRINT("Incoming message of size %zd bytes from ", message->length);
+      PRINTipaddr(message->endpoint);
+      PRINT("\n\n");
+#endif /* OC_DEBUG */
+
+      oc_network_event(message);
+      continue;
+    }
+
+    oc_message_unref(message);
+    if (state == ADAPTER_STATUS_BUSY) {
+      defer_ready_fd(dev, fd);
+      return;
+    }
+    /* a failed datagram is dropped, a failed TCP session has been closed */
+    if (state == ADAPTER_STATUS_NONE ||
+        (state == ADAPTER_STATUS_ERROR && !udp)) {
+      return;
+    }
+  }
+}
+#else  /* OC_EPOLL */
 static void
 oc_udp_add_socks_to_fd_set(ip_context_t *dev)
 {
@@ -763,6 +1163,60 @@ oc_udp_add_socks_to_fd_set(ip_context_t *dev)
 #endif /* OC_IPV4 */
 }
 
+#ifdef OC_UDP_BATCH
+/* Reads a batch from every ready UDP socket, and returns the number of
+ * sockets that were handled.
+ */
+static int
+oc_udp_receive_batches(ip_context_t *dev, fd_set *fds)
+{
+  int socks[] = { dev->server_sock, dev->mcast_sock,
+#ifdef OC_SECURITY
+                  dev->secure_sock,
+#endif /* OC_SECURITY */
+#ifdef OC_IPV4
+                  dev->server4_sock, dev->mcast4_sock,
+#ifdef OC_SECURITY
+                  dev->secure4_sock,
+#endif /* OC_SECURITY */
+#endif /* OC_IPV4 */
+  };
+  int i, handled = 0;
+  for (i = 0; i < (int)(sizeof(socks) / sizeof(socks[0])); i++) {
+    enum transport_flags flags = 0;
+    if (FD_ISSET(socks[i], fds) && get_udp_sock_flags(dev, socks[i], &flags)) {
+      /* the socket is reported again by select() if more data is queued */
+      recv_batch(dev, socks[i], flags);
+      FD_CLR(socks[i], fds);
+      handled++;
+    }
+  }
+  return handled;
+}
+#endif /* OC_UDP_BATCH */
+
+/* Discards a request from the first ready unsecured UDP socket that has one
+ * queued, when no message can be allocated to receive it. Returns false if no
+ * request was discarded.
+ */
+static bool
+discard_ready_datagram(ip_context_t *dev, fd_set *fds)
+{
+  int socks[] = { dev->server_sock, dev->mcast_sock,
+#ifdef OC_IPV4
+                  dev->server4_sock, dev->mcast4_sock,
+#endif /* OC_IPV4 */
+  };
+  int i;
+  for (i = 0; i < (int)(sizeof(socks) / sizeof(socks[0])); i++) {
+    if (FD_ISSET(socks[i], fds) && discard_request_datagram(socks[i])) {
+      FD_CLR(socks[i], fds);
+      return true;
+    }
+  }
+  return false;
+}
+
 static adapter_receive_state_t
 oc_udp_receive_message(ip_context_t *dev, fd_set *fds, oc_message_t *message)
 {
@@ -847,7 +1301,68 @@ oc_udp_receive_message(ip_context_t *dev, fd_set *fds, oc_message_t *message)
 
   return ADAPTER_STATUS_NONE;
 }
+#endif /* !OC_EPOLL */
+
+#ifdef OC_EPOLL
+static void *
+network_event_thread(void *data)
+{
+  ip_context_t *dev = (ip_context_t *)data;
+
+  struct epoll_event events[OC_EPOLL_MAX_EVENTS];
+  /* Monitor network interface changes on the platform from only the 0th logical
+   * device
+   */
+  if (dev->device == 0) {
+    add_fd_to_epoll(dev, ifchange_sock, false);
+  }
+  add_fd_to_epoll(dev, dev->shutdown_pipe[0], false);
+
+  oc_udp_add_socks_to_epoll(dev);
+#ifdef OC_TCP
+  oc_tcp_add_socks_to_epoll(dev);
+#endif /* OC_TCP */
+
+  int i, n;
+
+  while (dev->terminate != 1) {
+    n = epoll_wait(dev->epoll_fd, events, OC_EPOLL_MAX_EVENTS,
+                   deferred_fds_timeout(dev));
+
+    for (i = 0; i < n; i++) {
+      if (events[i].data.fd == dev->shutdown_pipe[0]) {
+        char buf;
+        // write to pipe shall not block - so read the byte we wrote
+        if (read(dev->shutdown_pipe[0], &buf, 1) < 0) {
+          // intentionally left blank
+        }
+      }
+    }
+
+    if (dev->terminate) {
+      break;
+    }
+
+    for (i = 0; i < n; i++) {
+      int fd = events[i].data.fd;
+      if (fd == dev->shutdown_pipe[0]) {
+        continue;
+      }
+      if (dev->device == 0 && fd == ifchange_sock) {
+        if (process_interface_change_event() < 0) {
+          OC_WRN("caught errors while handling a network interface change");
+        }
+        continue;
+      }
+      process_ready_socket(dev, fd);
+    }
 
+    retry_deferred_fds(dev);
+  }
+  pthread_exit(NULL);
+  return NULL;
+}
+#else  /* OC_EPOLL */
 static void *
 network_event_thread(void *data)
 {
@@ -886,6 +1401,10 @@ network_event_thread(void *data)
       break;
     }
 
+#ifdef OC_UDP_BATCH
+    n -= oc_udp_receive_batches(dev, &setfds);
+#endif /* OC_UDP_BATCH */
+
     for (i = 0; i < n; i++) {
       if (dev->device == 0) {
         if (FD_ISSET(ifchange_sock, &setfds)) {
@@ -900,6 +1419,9 @@ network_event_thread(void *data)
       oc_message_t *message = oc_allocate_message();
 
       if (!message) {
+        if (discard_ready_datagram(dev, &setfds)) {
+          continue;
+        }
         break;
       }
 
@@ -932,30 +1454,23 @@ network_event_thread(void *data)
   pthread_exit(NULL);
   return NULL;
 }
+#endif /* !OC_EPOLL */
 
+/* Sets the outgoing interface and the source address of a message to be sent
+ * by sendmsg() or sendmmsg().
+ */
 static int
-send_msg(int sock, struct sockaddr_storage *receiver, oc_message_t *message)
+set_msg_pktinfo(struct msghdr *msg, char *msg_control, oc_message_t *message)
 {
-  char msg_control[CMSG_LEN(sizeof(struct sockaddr_storage))];
-  struct iovec iovec[1];
-  struct msghdr msg;
-
-  memset(&msg, 0, sizeof(struct msghdr));
-  msg.msg_name = (void *)receiver;
-  msg.msg_namelen = sizeof(struct sockaddr_storage);
-
-  msg.msg_iov = iovec;
-  msg.msg_iovlen = 1;
-
   if (message->endpoint.flags & IPV6) {
     struct cmsghdr *cmsg;
     struct in6_pktinfo *pktinfo;
 
-    msg.msg_control = msg_control;
-    msg.msg_controllen = CMSG_SPACE(sizeof(struct in6_pktinfo));
-    memset(msg.msg_control, 0, msg.msg_controllen);
+    msg->msg_control = msg_control;
+    msg->msg_controllen = CMSG_SPACE(sizeof(struct in6_pktinfo));
+    memset(msg->msg_control, 0, msg->msg_controllen);
 
-    cmsg = CMSG_FIRSTHDR(&msg);
+    cmsg = CMSG_FIRSTHDR(msg);
     cmsg->cmsg_level = IPPROTO_IPV6;
     cmsg->cmsg_type = IPV6_PKTINFO;
     cmsg->cmsg_len = CMSG_LEN(sizeof(struct in6_pktinfo));
@@ -975,11 +1490,11 @@ send_msg(int sock, struct sockaddr_storage *receiver, oc_message_t *message)
     struct cmsghdr *cmsg;
     struct in_pktinfo *pktinfo;
 
-    msg.msg_control = msg_control;
-    msg.msg_controllen = CMSG_SPACE(sizeof(struct in_pktinfo));
-    memset(msg.msg_control, 0, msg.msg_controllen);
+    msg->msg_control = msg_control;
+    msg->msg_controllen = CMSG_SPACE(sizeof(struct in_pktinfo));
+    memset(msg->msg_control, 0, msg->msg_controllen);
 
-    cmsg = CMSG_FIRSTHDR(&msg);
+    cmsg = CMSG_FIRSTHDR(msg);
     cmsg->cmsg_level = SOL_IP;
     cmsg->cmsg_type = IP_PKTINFO;
     cmsg->cmsg_len = CMSG_LEN(sizeof(struct in_pktinfo));
@@ -998,6 +1513,27 @@ send_msg(int sock, struct sockaddr_storage *receiver, oc_message_t *message)
   }
 #endif /* !OC_IPV4 */
 
+  return 0;
+}
+
+static int
+send_msg(int sock, struct sockaddr_storage *receiver, oc_message_t *message)
+{
+  char msg_control[CMSG_LEN(sizeof(struct sockaddr_storage))];
+  struct iovec iovec[1];
+  struct msghdr msg;
+
+  memset(&msg, 0, sizeof(struct msghdr));
+  msg.msg_name = (void *)receiver;
+  msg.msg_namelen = sizeof(struct sockaddr_storage);
+
+  msg.msg_iov = iovec;
+  msg.msg_iovlen = 1;
+
+  if (set_msg_pktinfo(&msg, msg_control, message) < 0) {
+    return -1;
+  }
+
   int bytes_sent = 0, x;
   while (bytes_sent < (int)message->length) {
     iovec[0].iov_base = message->data + bytes_sent;
@@ -1018,6 +1554,89 @@ send_msg(int sock, struct sockaddr_storage *receiver, oc_message_t *message)
   return bytes_sent;
 }
 
+#ifdef OC_UDP_BATCH
+/* Writes the messages held back by queue_msg() with as few sendmmsg() calls
+ * as possible, and releases them.
+ */
+static void
+send_batch(ip_context_t *dev)
+{
+  struct mmsghdr msgs[OC_UDP_BATCH_SIZE];
+  struct iovec iovecs[OC_UDP_BATCH_SIZE];
+  char msg_control[OC_UDP_BATCH_SIZE]
+                  [CMSG_LEN(sizeof(struct sockaddr_storage))];
+  int i, count = 0, sent = 0;
+
+  memset(msgs, 0, (size_t)dev->send_batch_count * sizeof(struct mmsghdr));
+  for (i = 0; i < dev->send_batch_count; i++) {
+    oc_message_t *message = dev->send_batch[i];
+    iovecs[count].iov_base = message->data;
+    iovecs[count].iov_len = message->length;
+    msgs[count].msg_hdr.msg_name = (void *)&dev->send_batch_receivers[i];
+    msgs[count].msg_hdr.msg_namelen = sizeof(struct sockaddr_storage);
+    msgs[count].msg_hdr.msg_iov = &iovecs[count];
+    msgs[count].msg_hdr.msg_iovlen = 1;
+    if (set_msg_pktinfo(&msgs[count].msg_hdr, msg_control[count], message) ==
+        0) {
+      count++;
+    }
+  }
+
+  while (sent < count) {
+    int n = sendmmsg(dev->send_batch_sock, msgs + sent,
+                     (unsigned int)(count - sent), 0);
+    if (n < 0) {
+      /* sendmmsg() fails only if the first message could not be sent */
+      OC_WRN("sendmmsg() returned errno %d", errno);
+      sent++;
+      continue;
+    }
+    sent += n;
+  }
+  OC_DBG("Sent %d messages in a batch", count);
+
+  for (i = 0; i < dev->send_batch_count; i++) {
+    oc_message_unref(dev->send_batch[i]);
+    dev->send_batch[i] = NULL;
+  }
+  dev->send_batch_count = 0;
+}
+
+/* Holds back a message until oc_send_buffer_flush() or until a message for
+ * another socket is sent, so that a burst of messages such as notifications to
+ * many observers is written with a single sendmmsg() call.
+ */
+static int
+queue_msg(ip_context_t *dev, int sock, struct sockaddr_storage *receiver,
+          oc_message_t *message)
+{
+  if (dev->send_batch_count > 0 &&
+      (dev->send_batch_sock != sock ||
+       dev->send_batch_count == OC_UDP_BATCH_SIZE)) {
+    send_batch(dev);
+  }
+  oc_message_add_ref(message);
+  dev->send_batch[dev->send_batch_count] = message;
+  memcpy(&dev->send_batch_receivers[dev->send_batch_count], receiver,
+         sizeof(struct sockaddr_storage));
+  dev->send_batch_sock = sock;
+  dev->send_batch_count++;
+  return (int)message->length;
+}
+
+void
+oc_send_buffer_flush(void)
+{
+  ip_context_t *dev = oc_list_head(ip_contexts);
+  while (dev != NULL) {
+    if (dev->send_batch_count > 0) {
+      send_batch(dev);
+    }
+    dev = dev->next;
+  }
+}
+#endif /* OC_UDP_BATCH */
+
 int
 oc_send_buffer(oc_message_t *message)
 {
@@ -1082,6 +1701,15 @@ oc_send_buffer(oc_message_t *message)
   }
 #endif /* !OC_IPV4 */
 
+#ifdef OC_UDP_BATCH
+  /* DTLS records are passed in a temporary message by the TLS layer, and so
+   * are sent right away.
+   */
+  if (!(message->endpoint.flags & SECURED)) {
+    return queue_msg(dev, send_sock, &receiver, message);
+  }
+#endif /* OC_UDP_BATCH */
+
   return send_msg(send_sock, &receiver, message);
 }
 
@@ -1398,12 +2026,24 @@ oc_connectivity_init(size_t device)
   oc_list_add(ip_contexts, dev);
   dev->device = device;
   OC_LIST_STRUCT_INIT(dev, eps);
+#ifdef OC_UDP_BATCH
+  memset(dev->recv_batch, 0, sizeof(dev->recv_batch));
+  dev->send_batch_count = 0;
+#endif /* OC_UDP_BATCH */
 
   if (pipe(dev->shutdown_pipe) < 0) {
     OC_ERR("shutdown pipe: %d", errno);
     return -1;
   }
 
+#ifdef OC_EPOLL
+  dev->epoll_fd = epoll_create1(EPOLL_CLOEXEC);
+  if (dev->epoll_fd < 0) {
+    OC_ERR("creating epoll instance: %d", errno);
+    return -1;
+  }
+#endif /* OC_EPOLL */
+
   memset(&dev->mcast, 0, sizeof(struct sockaddr_storage));
   memset(&dev->server, 0, sizeof(struct sockaddr_storage));
 
@@ -1609,6 +2249,11 @@ void
 oc_connectivity_shutdown(size_t device)
 {
   ip_context_t *dev = get_ip_context_for_device(device);
+#ifdef OC_UDP_BATCH
+  if (dev->send_batch_count > 0) {
+    send_batch(dev);
+  }
+#endif /* OC_UDP_BATCH */
   dev->terminate = 1;
   if (write(dev->shutdown_pipe[1], "\n", 1) < 0) {
     OC_WRN("cannot wakeup network thread");
@@ -1638,6 +2283,14 @@ oc_connectivity_shutdown(size_t device)
   close(dev->shutdown_pipe[1]);
   close(dev->shutdown_pipe[0]);
 
+#ifdef OC_EPOLL
+  close(dev->epoll_fd);
+#endif /* OC_EPOLL */
+
+#ifdef OC_UDP_BATCH
+  free_recv_batch(dev);
+#endif /* OC_UDP_BATCH */
+
   free_endpoints_list(dev);
 
   oc_list_remove(ip_contexts, dev);
@@ -19,6 +19,7 @@
 #ifndef IPCONTEXT_H
 #define IPCONTEXT_H
 
+#include "oc_config.h"
 #include "oc_endpoint.h"
 #include <pthread.h>
 #include <stdint.h>
@@ -30,11 +31,36 @@ extern "C"
 {
 #endif
 
+#ifdef OC_UDP_BATCH
+#ifndef OC_DYNAMIC_ALLOCATION
+#error "OC_UDP_BATCH requires OC_DYNAMIC_ALLOCATION"
+#endif /* !OC_DYNAMIC_ALLOCATION */
+
+/* Maximum number of datagrams read by one recvmmsg() or written by one
+ * sendmmsg() call.
+ */
+#ifndef OC_UDP_BATCH_SIZE
+#define OC_UDP_BATCH_SIZE (16)
+#endif /* !OC_UDP_BATCH_SIZE */
+
+struct oc_message_s;
+#endif /* OC_UDP_BATCH */
+
+#ifdef OC_EPOLL
+/* Maximum number of ready sockets whose reading is deferred until message
+ * buffers or descriptors are available again.
+ */
+#ifndef OC_EPOLL_MAX_DEFERRED_FDS
+#define OC_EPOLL_MAX_DEFERRED_FDS (16)
+#endif /* !OC_EPOLL_MAX_DEFERRED_FDS */
+#endif /* OC_EPOLL */
+
 typedef enum {
   ADAPTER_STATUS_NONE = 0, /* Nothing happens */
   ADAPTER_STATUS_ACCEPT,   /* Receiving no meaningful data */
   ADAPTER_STATUS_RECEIVE,  /* Receiving meaningful data */
-  ADAPTER_STATUS_ERROR     /* Error */
+  ADAPTER_STATUS_ERROR,    /* Error */
+  ADAPTER_STATUS_BUSY      /* Out of resources, to be retried later */
 } adapter_receive_state_t;
 
 #ifdef OC_TCP
@@ -94,8 +120,23 @@ typedef struct ip_context_t {
   pthread_t event_thread;
   int terminate;
   size_t device;
+#ifdef OC_EPOLL
+  int epoll_fd;
+  int deferred_fds[OC_EPOLL_MAX_DEFERRED_FDS];
+  int num_deferred_fds;
+  int deferred_backoff_ms;
+  oc_clock_time_t deferred_retry_time;
+#else  /* OC_EPOLL */
   fd_set rfds;
+#endif /* !OC_EPOLL */
   int shutdown_pipe[2];
+#ifdef OC_UDP_BATCH
+  struct oc_message_s *recv_batch[OC_UDP_BATCH_SIZE];
+  struct oc_message_s *send_batch[OC_UDP_BATCH_SIZE];
+  struct sockaddr_storage send_batch_receivers[OC_UDP_BATCH_SIZE];
+  int send_batch_sock;
+  int send_batch_count;
+#endif /* OC_UDP_BATCH */
 } ip_context_t;
 
 #ifdef __cplusplus
@@ -110,6 +110,11 @@ typedef uint64_t oc_clock_time_t;
 #define OC_STORAGE
 #endif
 
+/* The storage backend supports mapped and offset reads of stores */
+#ifdef OC_STORAGE
+#define OC_STORAGE_MAP
+#endif
+
 #ifdef __cplusplus
 }
 #endif
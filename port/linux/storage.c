@@ -19,69 +19,252 @@
 
 #ifdef OC_STORAGE
 #include <errno.h>
+#include <fcntl.h>
+#include <pthread.h>
 #include <stdbool.h>
 #include <stdio.h>
 #include <string.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
 
 #define STORE_PATH_SIZE 64
+#define STORE_TAG_SIZE 32
+#define STORE_HANDLES (8)
+
+/* Read-only descriptors of recently read stores, so that loading a store
+ * does not rebuild its path and reopen it every time. A handle is dropped
+ * when its store is rewritten, as the rename in oc_storage_write() replaces
+ * the file it refers to. */
+typedef struct
+{
+  char store[STORE_TAG_SIZE];
+  int fd;
+} store_handle_t;
 
 static char store_path[STORE_PATH_SIZE];
 static int store_path_len;
 static bool path_set = false;
+static store_handle_t store_handles[STORE_HANDLES];
+static size_t next_handle;
+static pthread_mutex_t store_mutex = PTHREAD_MUTEX_INITIALIZER;
+
+static void
+close_handle(store_handle_t *handle)
+{
+  if (handle->store[0] != '\0') {
+    close(handle->fd);
+    handle->store[0] = '\0';
+  }
+}
+
+static void
+drop_handle(const char *store)
+{
+  size_t i;
+  for (i = 0; i < STORE_HANDLES; i++) {
+    if (strcmp(store_handles[i].store, store) == 0) {
+      close_handle(&store_handles[i]);
+      return;
+    }
+  }
+}
+
+/* Builds the path of store into path, which must hold STORE_PATH_SIZE
+ * bytes. Called with store_mutex held. */
+static int
+build_path(const char *store, char *path)
+{
+  size_t store_len = strlen(store);
+
+  if (!path_set || (1 + store_len + store_path_len >= STORE_PATH_SIZE))
+    return -ENOENT;
+
+  memcpy(path, store_path, store_path_len);
+  path[store_path_len] = '/';
+  memcpy(path + store_path_len + 1, store, store_len + 1);
+  return 0;
+}
+
+/* Returns a read-only descriptor of store. If it could not be cached,
+ * *cached is false and the caller closes it. Called with store_mutex held. */
+static int
+open_handle(const char *store, bool *cached)
+{
+  char path[STORE_PATH_SIZE];
+  size_t i;
+
+  *cached = false;
+  if (store[0] == '\0')
+    return -ENOENT;
+  for (i = 0; i < STORE_HANDLES; i++) {
+    if (strcmp(store_handles[i].store, store) == 0) {
+      *cached = true;
+      return store_handles[i].fd;
+    }
+  }
+
+  if (build_path(store, path) < 0)
+    return -ENOENT;
+  int fd = open(path, O_RDONLY | O_CLOEXEC);
+  if (fd < 0)
+    return -EINVAL;
+
+  if (strlen(store) < STORE_TAG_SIZE) {
+    store_handle_t *handle = &store_handles[next_handle];
+    next_handle = (next_handle + 1) % STORE_HANDLES;
+    close_handle(handle);
+    strcpy(handle->store, store);
+    handle->fd = fd;
+    *cached = true;
+  }
+  return fd;
+}
 
 int
 oc_storage_config(const char *store)
 {
-  store_path_len = strlen(store);
-  if (store_path_len >= STORE_PATH_SIZE)
+  int len = strlen(store);
+  if (len >= STORE_PATH_SIZE)
     return -ENOENT;
 
-  strncpy(store_path, store, store_path_len);
+  pthread_mutex_lock(&store_mutex);
+  size_t i;
+  for (i = 0; i < STORE_HANDLES; i++) {
+    close_handle(&store_handles[i]);
+  }
+  store_path_len = len;
+  memcpy(store_path, store, store_path_len);
   store_path[store_path_len] = '\0';
   path_set = true;
+  pthread_mutex_unlock(&store_mutex);
 
   return 0;
 }
 
+long
+oc_storage_read_at(const char *store, size_t offset, uint8_t *buf,
+                   size_t size)
+{
+  bool cached;
+  long ret;
+
+  pthread_mutex_lock(&store_mutex);
+  int fd = open_handle(store, &cached);
+  if (fd < 0) {
+    pthread_mutex_unlock(&store_mutex);
+    return fd;
+  }
+
+  ssize_t len = pread(fd, buf, size, (off_t)offset);
+  ret = (len < 0) ? -EINVAL : (long)len;
+  if (!cached) {
+    close(fd);
+  }
+  pthread_mutex_unlock(&store_mutex);
+  return ret;
+}
+
 long
 oc_storage_read(const char *store, uint8_t *buf, size_t size)
 {
-  FILE *fp = 0;
-  size_t store_len = strlen(store);
+  return oc_storage_read_at(store, 0, buf, size);
+}
 
-  if (!path_set || (1 + store_len + store_path_len >= STORE_PATH_SIZE))
-    return -ENOENT;
+int
+oc_storage_map(const char *store, oc_storage_view_t *view)
+{
+  bool cached;
+  struct stat st;
+  int ret = 0;
 
-  store_path[store_path_len] = '/';
-  strncpy(store_path + store_path_len + 1, store, store_len);
-  store_path[1 + store_path_len + store_len] = '\0';
-  fp = fopen(store_path, "rb");
-  if (!fp)
-    return -EINVAL;
+  memset(view, 0, sizeof(oc_storage_view_t));
 
-  size = fread(buf, 1, size, fp);
-  fclose(fp);
-  return size;
+  pthread_mutex_lock(&store_mutex);
+  int fd = open_handle(store, &cached);
+  if (fd < 0) {
+    pthread_mutex_unlock(&store_mutex);
+    return fd;
+  }
+
+  if (fstat(fd, &st) < 0) {
+    ret = -EINVAL;
+  } else if (st.st_size > 0) {
+    void *data = mmap(NULL, (size_t)st.st_size, PROT_READ, MAP_PRIVATE, fd, 0);
+    if (data == MAP_FAILED) {
+      ret = -EINVAL;
+    } else {
+      view->data = (const uint8_t *)data;
+      view->size = (size_t)st.st_size;
+    }
+  }
+  if (!cached) {
+    close(fd);
+  }
+  pthread_mutex_unlock(&store_mutex);
+  return ret;
+}
+
+void
+oc_storage_unmap(oc_storage_view_t *view)
+{
+  if (view->data) {
+    munmap((void *)view->data, view->size);
+  }
+  memset(view, 0, sizeof(oc_storage_view_t));
 }
 
+/* The record is written to a temporary file next to the store, which is
+ * synced and then renamed over the previous version, so that a crash or
+ * power loss leaves either the old or the new contents in place but never
+ * a truncated file. */
 long
 oc_storage_write(const char *store, uint8_t *buf, size_t size)
 {
   FILE *fp;
-  size_t store_len = strlen(store);
+  char path[STORE_PATH_SIZE];
+  char tmp_path[STORE_PATH_SIZE + 4];
 
-  if (!path_set || (store_len + store_path_len >= STORE_PATH_SIZE))
+  pthread_mutex_lock(&store_mutex);
+  if (build_path(store, path) < 0) {
+    pthread_mutex_unlock(&store_mutex);
     return -ENOENT;
+  }
+  size_t path_len = strlen(path);
+  memcpy(tmp_path, path, path_len);
+  memcpy(tmp_path + path_len, ".tmp", 5);
 
-  store_path[store_path_len] = '/';
-  strncpy(store_path + store_path_len + 1, store, store_len);
-  store_path[1 + store_path_len + store_len] = '\0';
-  fp = fopen(store_path, "wb");
-  if (!fp)
+  fp = fopen(tmp_path, "wb");
+  if (!fp) {
+    pthread_mutex_unlock(&store_mutex);
     return -EINVAL;
+  }
 
-  size = fwrite(buf, 1, size, fp);
+  if (fwrite(buf, 1, size, fp) != size || fflush(fp) != 0 ||
+      fsync(fileno(fp)) != 0) {
+    fclose(fp);
+    remove(tmp_path);
+    pthread_mutex_unlock(&store_mutex);
+    return -EIO;
+  }
   fclose(fp);
+
+  if (rename(tmp_path, path) != 0) {
+    remove(tmp_path);
+    pthread_mutex_unlock(&store_mutex);
+    return -EIO;
+  }
+  drop_handle(store);
+
+  /* persist the rename itself */
+  path[store_path_len] = '\0';
+  int dir = open(path, O_RDONLY | O_CLOEXEC);
+  if (dir >= 0) {
+    fsync(dir);
+    close(dir);
+  }
+  pthread_mutex_unlock(&store_mutex);
+
   return size;
 }
 #endif /* OC_STORAGE */
@@ -34,6 +34,10 @@
 #include <net/if.h>
 #include <stdlib.h>
 #include <unistd.h>
+#ifdef OC_EPOLL
+#include <poll.h>
+#include <sys/epoll.h>
+#endif /* OC_EPOLL */
 
 #ifdef OC_TCP
 
@@ -48,6 +52,10 @@
 
 #define TCP_CONNECT_TIMEOUT 5
 
+/* returned by accept_new_session() besides -1 for a failed listener */
+#define ACCEPT_BUSY (-2)    /* out of descriptors or memory */
+#define ACCEPT_DROPPED (-3) /* the connection was aborted or has been closed */
+
 typedef struct tcp_session
 {
   struct tcp_session *next;
@@ -55,11 +63,72 @@ typedef struct tcp_session
   oc_endpoint_t endpoint;
   int sock;
   tcp_csm_state_t csm_state;
+#ifdef OC_EPOLL
+  struct tcp_session *next_by_fd;
+#endif /* OC_EPOLL */
 } tcp_session_t;
 
 OC_LIST(session_list);
 OC_MEMB(tcp_session_s, tcp_session_t, OC_MAX_TCP_PEERS);
 
+#ifdef OC_EPOLL
+#define TCP_SESSION_FD_BUCKETS (256)
+
+/* Sessions hashed by their socket, so that a socket reported ready by epoll
+ * is mapped to its session without walking the session list.
+ */
+static tcp_session_t *sessions_by_fd[TCP_SESSION_FD_BUCKETS];
+
+static void
+add_session_to_fd_index(tcp_session_t *session)
+{
+  tcp_session_t **bucket =
+    &sessions_by_fd[(unsigned)session->sock % TCP_SESSION_FD_BUCKETS];
+  session->next_by_fd = *bucket;
+  *bucket = session;
+}
+
+static void
+remove_session_from_fd_index(tcp_session_t *session)
+{
+  tcp_session_t **link =
+    &sessions_by_fd[(unsigned)session->sock % TCP_SESSION_FD_BUCKETS];
+  while (*link != NULL && *link != session) {
+    link = &(*link)->next_by_fd;
+  }
+  if (*link) {
+    *link = session->next_by_fd;
+  }
+  session->next_by_fd = NULL;
+}
+
+static tcp_session_t *
+find_session_by_fd(int sock)
+{
+  tcp_session_t *session =
+    sessions_by_fd[(unsigned)sock % TCP_SESSION_FD_BUCKETS];
+  while (session != NULL && session->sock != sock) {
+    session = session->next_by_fd;
+  }
+  return session;
+}
+
+static int
+add_sock_to_epoll(ip_context_t *dev, int sock)
+{
+  struct epoll_event event;
+  memset(&event, 0, sizeof(event));
+  /* edge triggered, so a ready socket is read until it would block */
+  event.events = EPOLLIN | EPOLLET;
+  event.data.fd = sock;
+  if (epoll_ctl(dev->epoll_fd, EPOLL_CTL_ADD, sock, &event) < 0) {
+    OC_ERR("adding TCP socket to epoll %d", errno);
+    return -1;
+  }
+  return 0;
+}
+#endif /* OC_EPOLL */
+
 static int
 configure_tcp_socket(int sock, struct sockaddr_storage *sock_info)
 {
@@ -140,6 +209,34 @@ get_interface_index(int sock)
   return interface_index;
 }
 
+#ifdef OC_EPOLL
+static void
+add_listen_sock_to_epoll(ip_context_t *dev, int sock)
+{
+  /* accept() is called until it would block */
+  int flags = fcntl(sock, F_GETFL, 0);
+  if (flags < 0 || fcntl(sock, F_SETFL, flags | O_NONBLOCK) < 0) {
+    OC_ERR("setting TCP listening socket non-blocking %d", errno);
+  }
+  add_sock_to_epoll(dev, sock);
+}
+
+void
+oc_tcp_add_socks_to_epoll(ip_context_t *dev)
+{
+  add_listen_sock_to_epoll(dev, dev->tcp.server_sock);
+#ifdef OC_SECURITY
+  add_listen_sock_to_epoll(dev, dev->tcp.secure_sock);
+#endif /* OC_SECURITY */
+
+#ifdef OC_IPV4
+  add_listen_sock_to_epoll(dev, dev->tcp.server4_sock);
+#ifdef OC_SECURITY
+  add_listen_sock_to_epoll(dev, dev->tcp.secure4_sock);
+#endif /* OC_SECURITY */
+#endif /* OC_IPV4 */
+}
+#else  /* OC_EPOLL */
 void
 oc_tcp_add_socks_to_fd_set(ip_context_t *dev)
 {
@@ -156,6 +253,7 @@ oc_tcp_add_socks_to_fd_set(ip_context_t *dev)
 #endif /* OC_IPV4 */
   FD_SET(dev->tcp.connect_pipe[0], &dev->rfds);
 }
+#endif /* !OC_EPOLL */
 
 static void
 free_tcp_session(tcp_session_t *session)
@@ -166,6 +264,10 @@ free_tcp_session(tcp_session_t *session)
     oc_session_end_event(&session->endpoint);
   }
 
+#ifdef OC_EPOLL
+  remove_session_from_fd_index(session);
+  epoll_ctl(session->dev->epoll_fd, EPOLL_CTL_DEL, session->sock, NULL);
+#else  /* OC_EPOLL */
   FD_CLR(session->sock, &session->dev->rfds);
 
   ssize_t len = 0;
@@ -173,6 +275,7 @@ free_tcp_session(tcp_session_t *session)
     uint8_t dummy_value = 0xef;
     len = write(session->dev->tcp.connect_pipe[1], &dummy_value, 1);
   } while (len == -1 && errno == EINTR);
+#endif /* !OC_EPOLL */
 
   close(session->sock);
 
@@ -199,6 +302,14 @@ add_new_session(int sock, ip_context_t *dev, oc_endpoint_t *endpoint,
   session->sock = sock;
   session->csm_state = state;
 
+#ifdef OC_EPOLL
+  if (add_sock_to_epoll(dev, sock) < 0) {
+    oc_memb_free(&tcp_session_s, session);
+    return -1;
+  }
+  add_session_to_fd_index(session);
+#endif /* OC_EPOLL */
+
   oc_list_add(session_list, session);
 
   if (!(endpoint->flags & SECURED)) {
@@ -211,14 +322,29 @@ add_new_session(int sock, ip_context_t *dev, oc_endpoint_t *endpoint,
 }
 
 static int
-accept_new_session(ip_context_t *dev, int fd, fd_set *setfds,
-                   oc_endpoint_t *endpoint)
+accept_new_session(ip_context_t *dev, int fd, oc_endpoint_t *endpoint)
 {
   struct sockaddr_storage receive_from;
   socklen_t receive_len = sizeof(receive_from);
 
   int new_socket = accept(fd, (struct sockaddr *)&receive_from, &receive_len);
   if (new_socket < 0) {
+#ifdef OC_EPOLL
+    if (errno == EAGAIN || errno == EWOULDBLOCK) {
+      /* all pending connections have been accepted */
+      return 0;
+    }
+    if (errno == EMFILE || errno == ENFILE || errno == ENOBUFS ||
+        errno == ENOMEM) {
+      OC_WRN("out of resources to accept incoming TCP connection");
+      return ACCEPT_BUSY;
+    }
+    if (errno == ECONNABORTED || errno == EPROTO || errno == EPERM ||
+        errno == EINTR) {
+      OC_WRN("incoming TCP connection aborted");
+      return ACCEPT_DROPPED;
+    }
+#endif /* OC_EPOLL */
     OC_ERR("failed to accept incoming TCP connection");
     return -1;
   }
@@ -239,17 +365,17 @@ accept_new_session(ip_context_t *dev, int fd, fd_set *setfds,
 #endif /* !OC_IPV4 */
   }
 
-  FD_CLR(fd, setfds);
-
   if (add_new_session(new_socket, dev, endpoint, CSM_NONE) < 0) {
     OC_ERR("could not record new TCP session");
     close(new_socket);
-    return -1;
+    return ACCEPT_DROPPED;
   }
 
+#ifndef OC_EPOLL
   FD_SET(new_socket, &dev->rfds);
+#endif /* !OC_EPOLL */
 
-  return 0;
+  return 1;
 }
 
 static tcp_session_t *
@@ -277,21 +403,6 @@ find_session_by_endpoint(oc_endpoint_t *endpoint)
   return session;
 }
 
-static tcp_session_t *
-get_ready_to_read_session(fd_set *setfds)
-{
-  tcp_session_t *session = oc_list_head(session_list);
-  while (session != NULL && !FD_ISSET(session->sock, setfds)) {
-    session = session->next;
-  }
-
-  if (!session) {
-    OC_ERR("could not find any open ready-to-read session");
-    return NULL;
-  }
-  return session;
-}
-
 static size_t
 get_total_length_from_header(oc_message_t *message, oc_endpoint_t *endpoint)
 {
@@ -307,6 +418,149 @@ get_total_length_from_header(oc_message_t *message, oc_endpoint_t *endpoint)
   return total_length;
 }
 
+/* Receives one message of the session. With OC_EPOLL the first read does not
+ * block, so ADAPTER_STATUS_NONE is returned once all messages have been read.
+ */
+static adapter_receive_state_t
+receive_session_message(tcp_session_t *session, oc_message_t *message)
+{
+  size_t total_length = 0;
+  size_t want_read = DEFAULT_RECEIVE_SIZE;
+  message->length = 0;
+  do {
+    int flags = 0;
+#ifdef OC_EPOLL
+    if (message->length == 0) {
+      flags = MSG_DONTWAIT;
+    }
+#endif /* OC_EPOLL */
+    int count =
+      recv(session->sock, message->data + message->length, want_read, flags);
+    if (count < 0) {
+#ifdef OC_EPOLL
+      if (message->length == 0 && (errno == EAGAIN || errno == EWOULDBLOCK)) {
+        return ADAPTER_STATUS_NONE;
+      }
+#endif /* OC_EPOLL */
+      OC_ERR("recv error! %d", errno);
+
+      free_tcp_session(session);
+
+      return ADAPTER_STATUS_ERROR;
+    } else if (count == 0) {
+      OC_DBG("peer closed TCP session\n");
+
+      free_tcp_session(session);
+
+      return ADAPTER_STATUS_NONE;
+    }
+
+    OC_DBG("recv(): %d bytes.", count);
+    message->length += (size_t)count;
+    want_read -= (size_t)count;
+
+    if (total_length == 0) {
+      total_length = get_total_length_from_header(message, &session->endpoint);
+      if (total_length >
+          (unsigned)(OC_MAX_APP_DATA_SIZE + COAP_MAX_HEADER_SIZE)) {
+        OC_ERR("total receive length(%ld) is bigger than max pdu size(%ld)",
+               total_length, (OC_MAX_APP_DATA_SIZE + COAP_MAX_HEADER_SIZE));
+        OC_ERR("It may occur buffer overflow.");
+        /* the rest of the message cannot be skipped reliably */
+        free_tcp_session(session);
+        return ADAPTER_STATUS_ERROR;
+      }
+      OC_DBG("tcp packet total length : %ld bytes.", total_length);
+
+      want_read = total_length - (size_t)count;
+    }
+  } while (total_length > message->length);
+
+  memcpy(&message->endpoint, &session->endpoint, sizeof(oc_endpoint_t));
+#ifdef OC_SECURITY
+  if (message->endpoint.flags & SECURED) {
+    message->encrypted = 1;
+  }
+#endif /* OC_SECURITY */
+
+  return ADAPTER_STATUS_RECEIVE;
+}
+
+#ifdef OC_EPOLL
+static adapter_receive_state_t
+accept_ready_session(ip_context_t *dev, int fd, enum transport_flags flags,
+                     oc_message_t *message)
+{
+  message->endpoint.flags = flags;
+  int ret = accept_new_session(dev, fd, &message->endpoint);
+  if (ret == ACCEPT_BUSY) {
+    /* the pending connections are accepted once resources are freed */
+    return ADAPTER_STATUS_BUSY;
+  }
+  if (ret == ACCEPT_DROPPED) {
+    /* keep draining the listener until accept() would block */
+    return ADAPTER_STATUS_ACCEPT;
+  }
+  if (ret < 0) {
+    OC_ERR("accept new session fail");
+    return ADAPTER_STATUS_ERROR;
+  }
+  return (ret > 0) ? ADAPTER_STATUS_ACCEPT : ADAPTER_STATUS_NONE;
+}
+
+/* Called by the network event thread for a socket that epoll reported ready.
+ * Returns ADAPTER_STATUS_NONE once the socket would block.
+ */
+adapter_receive_state_t
+oc_tcp_receive_ready_message(ip_context_t *dev, int fd, oc_message_t *message)
+{
+  pthread_mutex_lock(&dev->tcp.mutex);
+
+  adapter_receive_state_t ret = ADAPTER_STATUS_NONE;
+  message->endpoint.device = dev->device;
+
+  if (fd == dev->tcp.server_sock) {
+    ret = accept_ready_session(dev, fd, IPV6 | TCP, message);
+#ifdef OC_SECURITY
+  } else if (fd == dev->tcp.secure_sock) {
+    ret = accept_ready_session(dev, fd, IPV6 | SECURED | TCP, message);
+#endif /* OC_SECURITY */
+#ifdef OC_IPV4
+  } else if (fd == dev->tcp.server4_sock) {
+    ret = accept_ready_session(dev, fd, IPV4 | TCP, message);
+#ifdef OC_SECURITY
+  } else if (fd == dev->tcp.secure4_sock) {
+    ret = accept_ready_session(dev, fd, IPV4 | SECURED | TCP, message);
+#endif /* OC_SECURITY */
+#endif /* OC_IPV4 */
+  } else {
+    tcp_session_t *session = find_session_by_fd(fd);
+    if (session) {
+      ret = receive_session_message(session, message);
+    } else {
+      OC_DBG("could not find TCP session for ready socket");
+    }
+  }
+
+  pthread_mutex_unlock(&dev->tcp.mutex);
+  return ret;
+}
+#else  /* OC_EPOLL */
+static tcp_session_t *
+get_ready_to_read_session(fd_set *setfds)
+{
+  tcp_session_t *session = oc_list_head(session_list);
+  while (session != NULL && !FD_ISSET(session->sock, setfds)) {
+    session = session->next;
+  }
+
+  if (!session) {
+    OC_ERR("could not find any open ready-to-read session");
+    return NULL;
+  }
+  return session;
+}
+
 adapter_receive_state_t
 oc_tcp_receive_message(ip_context_t *dev, fd_set *fds, oc_message_t *message)
 {
@@ -320,18 +574,18 @@ oc_tcp_receive_message(ip_context_t *dev, fd_set *fds, oc_message_t *message)
   message->endpoint.device = dev->device;
 
   if (FD_ISSET(dev->tcp.server_sock, fds)) {
+    FD_CLR(dev->tcp.server_sock, fds);
     message->endpoint.flags = IPV6 | TCP;
-    if (accept_new_session(dev, dev->tcp.server_sock, fds, &message->endpoint) <
-        0) {
+    if (accept_new_session(dev, dev->tcp.server_sock, &message->endpoint) < 0) {
       OC_ERR("accept new session fail");
       ret_with_code(ADAPTER_STATUS_ERROR);
     }
     ret_with_code(ADAPTER_STATUS_ACCEPT);
 #ifdef OC_SECURITY
   } else if (FD_ISSET(dev->tcp.secure_sock, fds)) {
+    FD_CLR(dev->tcp.secure_sock, fds);
     message->endpoint.flags = IPV6 | SECURED | TCP;
-    if (accept_new_session(dev, dev->tcp.secure_sock, fds, &message->endpoint) <
-        0) {
+    if (accept_new_session(dev, dev->tcp.secure_sock, &message->endpoint) < 0) {
       OC_ERR("accept new session fail");
       ret_with_code(ADAPTER_STATUS_ERROR);
     }
@@ -339,18 +593,20 @@ oc_tcp_receive_message(ip_context_t *dev, fd_set *fds, oc_message_t *message)
 #endif /* OC_SECURITY */
 #ifdef OC_IPV4
   } else if (FD_ISSET(dev->tcp.server4_sock, fds)) {
+    FD_CLR(dev->tcp.server4_sock, fds);
     message->endpoint.flags = IPV4 | TCP;
-    if (accept_new_session(dev, dev->tcp.server4_sock, fds,
-                           &message->endpoint) < 0) {
+    if (accept_new_session(dev, dev->tcp.server4_sock, &message->endpoint) <
+        0) {
       OC_ERR("accept new session fail");
       ret_with_code(ADAPTER_STATUS_ERROR);
     }
     ret_with_code(ADAPTER_STATUS_ACCEPT);
 #ifdef OC_SECURITY
   } else if (FD_ISSET(dev->tcp.secure4_sock, fds)) {
+    FD_CLR(dev->tcp.secure4_sock, fds);
     message->endpoint.flags = IPV4 | SECURED | TCP;
-    if (accept_new_session(dev, dev->tcp.secure4_sock, fds,
-                           &message->endpoint) < 0) {
+    if (accept_new_session(dev, dev->tcp.secure4_sock, &message->endpoint) <
+        0) {
       OC_ERR("accept new session fail");
       ret_with_code(ADAPTER_STATUS_ERROR);
     }
@@ -374,61 +630,17 @@ oc_tcp_receive_message(ip_context_t *dev, fd_set *fds, oc_message_t *message)
     ret_with_code(ADAPTER_STATUS_NONE);
   }
 
-  // receive message.
-  size_t total_length = 0;
-  size_t want_read = DEFAULT_RECEIVE_SIZE;
-  message->length = 0;
-  do {
-    int count =
-      recv(session->sock, message->data + message->length, want_read, 0);
-    if (count < 0) {
-      OC_ERR("recv error! %d", errno);
-
-      free_tcp_session(session);
-
-      ret_with_code(ADAPTER_STATUS_ERROR);
-    } else if (count == 0) {
-      OC_DBG("peer closed TCP session\n");
-
-      free_tcp_session(session);
-
-      ret_with_code(ADAPTER_STATUS_NONE);
-    }
-
-    OC_DBG("recv(): %d bytes.", count);
-    message->length += (size_t)count;
-    want_read -= (size_t)count;
-
-    if (total_length == 0) {
-      total_length = get_total_length_from_header(message, &session->endpoint);
-      if (total_length >
-          (unsigned)(OC_MAX_APP_DATA_SIZE + COAP_MAX_HEADER_SIZE)) {
-        OC_ERR("total receive length(%ld) is bigger than max pdu size(%ld)",
-               total_length, (OC_MAX_APP_DATA_SIZE + COAP_MAX_HEADER_SIZE));
-        OC_ERR("It may occur buffer overflow.");
-        ret_with_code(ADAPTER_STATUS_ERROR);
-      }
-      OC_DBG("tcp packet total length : %ld bytes.", total_length);
-
-      want_read = total_length - (size_t)count;
-    }
-  } while (total_length > message->length);
-
-  memcpy(&message->endpoint, &session->endpoint, sizeof(oc_endpoint_t));
-#ifdef OC_SECURITY
-  if (message->endpoint.flags & SECURED) {
-    message->encrypted = 1;
-  }
-#endif /* OC_SECURITY */
-
-  FD_CLR(session->sock, fds);
-  ret = ADAPTER_STATUS_RECEIVE;
+  // the session may be freed while receiving
+  int sock = session->sock;
+  ret = receive_session_message(session, message);
+  FD_CLR(sock, fds);
 
 oc_tcp_receive_message_done:
   pthread_mutex_unlock(&dev->tcp.mutex);
 #undef ret_with_code
   return ret;
 }
+#endif /* !OC_EPOLL */
 
 void
 oc_tcp_end_session(ip_context_t *dev, oc_endpoint_t *endpoint)
@@ -459,8 +671,12 @@ connect_nonb(int sockfd, const struct sockaddr *r, int r_len, int nsec)
 {
   int flags, n, error;
   socklen_t len;
+#ifdef OC_EPOLL
+  struct pollfd pfd;
+#else  /* OC_EPOLL */
   fd_set rset, wset;
   struct timeval tval;
+#endif /* !OC_EPOLL */
 
   flags = fcntl(sockfd, F_GETFL, 0);
   if (flags < 0) {
@@ -483,6 +699,20 @@ connect_nonb(int sockfd, const struct sockaddr *r, int r_len, int nsec)
     goto done; /* connect completed immediately */
   }
 
+#ifdef OC_EPOLL
+  /* sockets may exceed FD_SETSIZE, so they can not be passed to select() */
+  pfd.fd = sockfd;
+  pfd.events = POLLIN | POLLOUT;
+  pfd.revents = 0;
+
+  if ((n = poll(&pfd, 1, nsec ? nsec * 1000 : -1)) == 0) {
+    /* timeout */
+    errno = ETIMEDOUT;
+    return -1;
+  }
+
+  if (n > 0 && pfd.revents != 0) {
+#else  /* OC_EPOLL */
   FD_ZERO(&rset);
   FD_SET(sockfd, &rset);
   wset = rset;
@@ -496,6 +726,7 @@ connect_nonb(int sockfd, const struct sockaddr *r, int r_len, int nsec)
   }
 
   if (FD_ISSET(sockfd, &rset) || FD_ISSET(sockfd, &wset)) {
+#endif /* !OC_EPOLL */
     len = sizeof(error);
     if (getsockopt(sockfd, SOL_SOCKET, SO_ERROR, &error, &len) < 0)
       return -1; /* Solaris pending error */
@@ -564,6 +795,7 @@ initiate_new_session(ip_context_t *dev, oc_endpoint_t *endpoint,
     return -1;
   }
 
+#ifndef OC_EPOLL
   FD_SET(sock, &dev->rfds);
 
   ssize_t len = 0;
@@ -573,6 +805,7 @@ initiate_new_session(ip_context_t *dev, oc_endpoint_t *endpoint,
   } while (len == -1 && errno == EINTR);
 
   OC_DBG("signaled network event thread to monitor the newly added session\n");
+#endif /* !OC_EPOLL */
 
   return sock;
 }
@@ -111,6 +111,13 @@ struct oc_message_s
 
 int oc_send_buffer(oc_message_t *message);
 
+#ifdef OC_UDP_BATCH
+/* Sends the unicast messages that oc_send_buffer() holds back in order to
+ * write them in batches. Called once all pending events have been processed.
+ */
+void oc_send_buffer_flush(void);
+#endif /* OC_UDP_BATCH */
+
 int oc_connectivity_init(size_t device);
 
 void oc_connectivity_shutdown(size_t device);
@@ -31,6 +31,48 @@ int oc_storage_config(const char *store);
 long oc_storage_read(const char *store, uint8_t *buf, size_t size);
 long oc_storage_write(const char *store, uint8_t *buf, size_t size);
 
+/**
+  @brief Read-only view of the whole contents of a store.
+
+  @see oc_storage_map
+*/
+typedef struct oc_storage_view_t
+{
+  const uint8_t *data;
+  size_t size;
+} oc_storage_view_t;
+
+/*
+  The functions below are implemented by ports that define OC_STORAGE_MAP.
+  They allow stores larger than any caller-supplied buffer to be read.
+*/
+
+/**
+  @brief Maps the contents of store for reading.
+
+  The view remains valid until oc_storage_unmap() is called, even if the store
+  is rewritten in the meantime. An empty store yields a view with no data.
+
+  @param store the name of the store
+  @param view the view to fill in
+  @return 0 on success, or a negative errno value
+*/
+int oc_storage_map(const char *store, oc_storage_view_t *view);
+
+/**
+  @brief Releases a view obtained by oc_storage_map().
+*/
+void oc_storage_unmap(oc_storage_view_t *view);
+
+/**
+  @brief Reads up to size bytes of store starting at offset.
+
+  @return the number of bytes read, 0 at the end of the store, or a negative
+  errno value
+*/
+long oc_storage_read_at(const char *store, size_t offset, uint8_t *buf,
+                        size_t size);
+
 #ifdef __cplusplus
 }
 #endif
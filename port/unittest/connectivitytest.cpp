@@ -25,6 +25,9 @@
 extern "C" {
     #include "port/oc_connectivity.h"
     #include "oc_network_monitor.h"
+#ifdef OC_UDP_BATCH
+    #include "oc_buffer.h"
+#endif /* OC_UDP_BATCH */
 }
 
 static const size_t device = 0;
@@ -193,4 +196,33 @@ TEST_F(TestConnectivity, oc_tcp_update_csm_state_N)
 
     EXPECT_NE(CSM_DONE, ret);
 }
-#endif /* OC_TCP */
\ No newline at end of file
+#endif /* OC_TCP */
+
+#ifdef OC_UDP_BATCH
+TEST_F(TestConnectivity, oc_send_buffer_flush)
+{
+    oc_endpoint_t *ep = oc_connectivity_get_endpoints(device);
+    while (ep) {
+        if (!(ep->flags & TCP) && !(ep->flags & SECURED))
+            break;
+        ep = ep->next;
+    }
+
+    ASSERT_NE(NULL, ep);
+
+    oc_message_t *message = oc_internal_allocate_outgoing_message();
+    ASSERT_NE(NULL, message);
+    memcpy(&message->endpoint, ep, sizeof(oc_endpoint_t));
+    memcpy(message->data, "batch", 5);
+    message->length = 5;
+
+    EXPECT_EQ(5, oc_send_buffer(message));
+    /* the message is held until the batch is flushed */
+    EXPECT_EQ(2, message->ref_count);
+
+    oc_send_buffer_flush();
+    EXPECT_EQ(1, message->ref_count);
+
+    oc_message_unref(message);
+}
+#endif /* OC_UDP_BATCH */
@@ -18,11 +18,13 @@
  *
  ******************************************************************/
 
+#include <cstdio>
 #include <cstdlib>
 #include <string>
 #include <gtest/gtest.h>
 
 extern "C" {
+#include "oc_config.h"
 #include "port/oc_storage.h"
 }
 
@@ -75,4 +77,86 @@ TEST_F(TestStorage, oc_storage_write)
   EXPECT_LE(0, ret);
   EXPECT_STREQ((const char *)str, (const char *)buf);
 }
+
+TEST_F(TestStorage, oc_storage_write_replace)
+{
+  uint8_t longer[100] = "storage_longer_record";
+  uint8_t shorter[100] = "store";
+  int ret = oc_storage_write(file_name, longer, strlen((char *)longer));
+  EXPECT_LE(0, ret);
+  ret = oc_storage_write(file_name, shorter, strlen((char *)shorter));
+  EXPECT_LE(0, ret);
+  ret = oc_storage_read(file_name, buf, 100);
+  EXPECT_EQ((int)strlen((char *)shorter), ret);
+  EXPECT_EQ(0, memcmp(shorter, buf, strlen((char *)shorter)));
+
+  std::string tmp = std::string(path) + "/" + file_name + ".tmp";
+  FILE *fp = fopen(tmp.c_str(), "rb");
+  EXPECT_EQ(nullptr, fp);
+  if (fp) {
+    fclose(fp);
+  }
+}
+
+#ifdef OC_STORAGE_MAP
+#define LARGE_STORE_SIZE (5000)
+
+TEST_F(TestStorage, oc_storage_map)
+{
+  uint8_t large[LARGE_STORE_SIZE];
+  for (int i = 0; i < LARGE_STORE_SIZE; i++) {
+    large[i] = (uint8_t)i;
+  }
+  int ret = oc_storage_write(file_name, large, LARGE_STORE_SIZE);
+  EXPECT_EQ(LARGE_STORE_SIZE, ret);
+
+  oc_storage_view_t view;
+  ret = oc_storage_map(file_name, &view);
+  EXPECT_EQ(0, ret);
+  ASSERT_EQ((size_t)LARGE_STORE_SIZE, view.size);
+  EXPECT_EQ(0, memcmp(large, view.data, LARGE_STORE_SIZE));
+
+  /* the view is not affected by rewriting the store */
+  uint8_t str[100] = "storage";
+  ret = oc_storage_write(file_name, str, strlen((char *)str));
+  EXPECT_LE(0, ret);
+  EXPECT_EQ(0, memcmp(large, view.data, LARGE_STORE_SIZE));
+  oc_storage_unmap(&view);
+  EXPECT_EQ(nullptr, view.data);
+
+  ret = oc_storage_map(file_name, &view);
+  EXPECT_EQ(0, ret);
+  ASSERT_EQ(strlen((char *)str), view.size);
+  EXPECT_EQ(0, memcmp(str, view.data, view.size));
+  oc_storage_unmap(&view);
+}
+
+TEST_F(TestStorage, oc_storage_map_fail)
+{
+  oc_storage_view_t view;
+  int ret = oc_storage_map("storage_missing", &view);
+  EXPECT_GT(0, ret);
+  EXPECT_EQ(nullptr, view.data);
+}
+
+TEST_F(TestStorage, oc_storage_read_at)
+{
+  uint8_t large[LARGE_STORE_SIZE];
+  for (int i = 0; i < LARGE_STORE_SIZE; i++) {
+    large[i] = (uint8_t)(i * 7);
+  }
+  int ret = oc_storage_write(file_name, large, LARGE_STORE_SIZE);
+  EXPECT_EQ(LARGE_STORE_SIZE, ret);
+
+  size_t offset = 0;
+  long len;
+  while ((len = oc_storage_read_at(file_name, offset, buf, sizeof(buf))) > 0) {
+    ASSERT_LE(offset + (size_t)len, (size_t)LARGE_STORE_SIZE);
+    EXPECT_EQ(0, memcmp(large + offset, buf, (size_t)len));
+    offset += (size_t)len;
+  }
+  EXPECT_EQ(0, len);
+  EXPECT_EQ((size_t)LARGE_STORE_SIZE, offset);
+}
+#endif /* OC_STORAGE_MAP */
 #endif /* OC_SECURITY */
@@ -19,9 +19,11 @@
 
 #ifdef OC_STORAGE
 #include <errno.h>
+#include <io.h>
 #include <stdbool.h>
 #include <stdio.h>
 #include <string.h>
+#include <windows.h>
 
 #define STORE_PATH_SIZE 64
 
@@ -71,23 +73,40 @@ oc_storage_read(const char *store, uint8_t *buf, size_t size)
   return (long)size;
 }
 
+/* The record is written to a temporary file next to the store, which is
+ * committed to disk and then moved over the previous version. */
 long
 oc_storage_write(const char *store, uint8_t *buf, size_t size)
 {
   FILE *fp;
   size_t store_len = strlen(store);
+  char tmp_path[STORE_PATH_SIZE + 4];
 
   if (!path_set || (store_len + store_path_len >= STORE_PATH_SIZE))
     return -ENOENT;
 
   strncpy(store_path + store_path_len, store, store_len);
   store_path[store_path_len + store_len] = '\0';
-  fp = fopen(store_path, "wb");
+  memcpy(tmp_path, store_path, store_path_len + store_len);
+  memcpy(tmp_path + store_path_len + store_len, ".tmp", 5);
+
+  fp = fopen(tmp_path, "wb");
   if (!fp)
     return -EINVAL;
 
-  size = fwrite(buf, 1, size, fp);
+  if (fwrite(buf, 1, size, fp) != size || fflush(fp) != 0 ||
+      _commit(_fileno(fp)) != 0) {
+    fclose(fp);
+    remove(tmp_path);
+    return -EIO;
+  }
   fclose(fp);
+
+  if (!MoveFileExA(tmp_path, store_path,
+                   MOVEFILE_REPLACE_EXISTING | MOVEFILE_WRITE_THROUGH)) {
+    remove(tmp_path);
+    return -EIO;
+  }
   return (long)size;
 }
 #endif /* OC_STORAGE */
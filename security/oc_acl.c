@@ -49,6 +49,31 @@ static const char *wc_public = "-";
 OC_MEMB(ace_l, oc_sec_ace_t, MAX_NUM_RES_PERM_PAIRS);
 OC_MEMB(res_l, oc_ace_res_t, OC_MAX_APP_RESOURCES + OCF_D * OC_MAX_NUM_DEVICES);
 
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_ACL_CACHE_SIZE (64)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define OC_ACL_CACHE_SIZE (8)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+
+#define ACL_CACHE_VALID (1 << 0)
+#define ACL_CACHE_UUID (1 << 1)
+#define ACL_CACHE_PSK (1 << 2)
+#define ACL_CACHE_SECURED (1 << 3)
+#define ACL_CACHE_PUBLIC (1 << 4)
+
+typedef struct
+{
+  oc_resource_t *resource;
+  size_t device;
+  oc_uuid_t uuid;
+  uint16_t permission;
+  uint8_t flags;
+} acl_cache_entry_t;
+
+static acl_cache_entry_t acl_cache[OC_ACL_CACHE_SIZE];
+static size_t acl_cache_hits;
+static size_t acl_cache_misses;
+
 void
 oc_sec_acl_init(void)
 {
@@ -63,6 +88,8 @@ oc_sec_acl_init(void)
   for (i = 0; i < oc_core_get_num_devices(); i++) {
     OC_LIST_STRUCT_INIT(&aclist[i], subjects);
   }
+  memset(acl_cache, 0, sizeof(acl_cache));
+  acl_cache_hits = acl_cache_misses = 0;
 }
 
 oc_sec_acl_t *
@@ -313,6 +340,158 @@ get_role_permissions(oc_sec_cred_t *role_cred, oc_resource_t *resource,
   return permission;
 }
 
+/* Permissions granted to a peer by the ACEs matching its UUID, the role of its
+ * PSK credential, and its connection type. These only depend on the ACL and
+ * the credentials of the device. */
+static uint16_t
+get_ace_permissions(oc_uuid_t *uuid, oc_tls_peer_t *peer,
+                    oc_resource_t *resource, oc_endpoint_t *endpoint,
+                    bool is_DCR, bool is_public)
+{
+  uint16_t permission = 0;
+  oc_sec_ace_t *match = NULL;
+  if (uuid) {
+    do {
+      match = oc_sec_acl_find_subject(match, OC_SUBJECT_UUID,
+                                      (oc_ace_subject_t *)uuid, -1, 0,
+                                      endpoint->device);
+
+      if (match) {
+        permission |= oc_ace_get_permission(match, resource, is_DCR, is_public);
+        OC_DBG("oc_check_acl: Found ACE with permission %d for subject UUID",
+               permission);
+      }
+    } while (match);
+
+    if (oc_tls_uses_psk_cred(peer)) {
+      oc_sec_cred_t *role_cred = oc_sec_find_cred(
+        uuid, OC_CREDTYPE_PSK, OC_CREDUSAGE_NULL, endpoint->device);
+      if (role_cred && oc_string_len(role_cred->role.role) > 0) {
+        permission |= get_role_permissions(role_cred, resource,
+                                           endpoint->device, is_DCR, is_public);
+      }
+    }
+  }
+
+  if (endpoint->flags & SECURED) {
+    oc_ace_subject_t _auth_crypt;
+    memset(&_auth_crypt, 0, sizeof(oc_ace_subject_t));
+    _auth_crypt.conn = OC_CONN_AUTH_CRYPT;
+    do {
+      match = oc_sec_acl_find_subject(match, OC_SUBJECT_CONN, &_auth_crypt, -1,
+                                      0, endpoint->device);
+      if (match) {
+        permission |= oc_ace_get_permission(match, resource, is_DCR, is_public);
+        OC_DBG("oc_check_acl: Found ACE with permission %d for auth-crypt "
+               "connection",
+               permission);
+      }
+    } while (match);
+  }
+
+  oc_ace_subject_t _anon_clear;
+  memset(&_anon_clear, 0, sizeof(oc_ace_subject_t));
+  _anon_clear.conn = OC_CONN_ANON_CLEAR;
+  do {
+    match = oc_sec_acl_find_subject(match, OC_SUBJECT_CONN, &_anon_clear, -1, 0,
+                                    endpoint->device);
+    if (match) {
+      permission |= oc_ace_get_permission(match, resource, is_DCR, is_public);
+      OC_DBG("oc_check_acl: Found ACE with permission %d for anon-clear "
+             "connection",
+             permission);
+    }
+  } while (match);
+
+  return permission;
+}
+
+/* Decisions of get_ace_permissions() are cached per device, resource and
+ * subject (peer UUID, PSK credential, connection type). The cache is direct
+ * mapped, and the entries of a device are cleared whenever its ACL,
+ * credentials or provisioning state change, or when a resource is deleted. */
+static uint16_t
+get_cached_permissions(oc_uuid_t *uuid, oc_tls_peer_t *peer,
+                       oc_resource_t *resource, oc_endpoint_t *endpoint,
+                       bool is_DCR, bool is_public)
+{
+  uint8_t flags = ACL_CACHE_VALID;
+  if (uuid) {
+    flags |= ACL_CACHE_UUID;
+    if (oc_tls_uses_psk_cred(peer)) {
+      flags |= ACL_CACHE_PSK;
+    }
+  }
+  if (endpoint->flags & SECURED) {
+    flags |= ACL_CACHE_SECURED;
+  }
+  if (is_public) {
+    flags |= ACL_CACHE_PUBLIC;
+  }
+
+  uint32_t hash = 2166136261u;
+  uintptr_t r = (uintptr_t)resource;
+  size_t i;
+  for (i = 0; i < sizeof(uintptr_t); i++) {
+    hash ^= (uint8_t)(r >> (8 * i));
+    hash *= 16777619u;
+  }
+  if (uuid) {
+    for (i = 0; i < sizeof(uuid->id); i++) {
+      hash ^= uuid->id[i];
+      hash *= 16777619u;
+    }
+  }
+  hash ^= flags;
+  hash *= 16777619u;
+  hash ^= (uint32_t)endpoint->device;
+  hash *= 16777619u;
+
+  acl_cache_entry_t *entry = &acl_cache[hash % OC_ACL_CACHE_SIZE];
+  if (entry->flags == flags && entry->resource == resource &&
+      entry->device == endpoint->device &&
+      (!uuid || memcmp(entry->uuid.id, uuid->id, sizeof(uuid->id)) == 0)) {
+    acl_cache_hits++;
+    return entry->permission;
+  }
+  acl_cache_misses++;
+
+  uint16_t permission =
+    get_ace_permissions(uuid, peer, resource, endpoint, is_DCR, is_public);
+  entry->resource = resource;
+  entry->device = endpoint->device;
+  if (uuid) {
+    memcpy(entry->uuid.id, uuid->id, sizeof(uuid->id));
+  } else {
+    memset(entry->uuid.id, 0, sizeof(entry->uuid.id));
+  }
+  entry->permission = permission;
+  entry->flags = flags;
+  return permission;
+}
+
+void
+oc_sec_acl_cache_clear(size_t device)
+{
+  size_t i;
+  for (i = 0; i < OC_ACL_CACHE_SIZE; i++) {
+    if (acl_cache[i].device == device) {
+      acl_cache[i].flags = 0;
+    }
+  }
+}
+
+int
+oc_get_acl_cache_stats(oc_acl_cache_stats_t *stats)
+{
+  if (!stats) {
+    return -1;
+  }
+  stats->hits = acl_cache_hits;
+  stats->misses = acl_cache_misses;
+  return 0;
+}
+
 bool
 oc_sec_check_acl(oc_method_t method, oc_resource_t *resource,
                  oc_endpoint_t *endpoint)
@@ -374,82 +553,40 @@ oc_sec_check_acl(oc_method_t method, oc_resource_t *resource,
   }
 
   uint16_t permission = 0;
-  oc_sec_ace_t *match = NULL;
-  if (uuid) {
-    do {
-      match = oc_sec_acl_find_subject(match, OC_SUBJECT_UUID,
-                                      (oc_ace_subject_t *)uuid, -1, 0,
-                                      endpoint->device);
-
-      if (match) {
-        permission |= oc_ace_get_permission(match, resource, is_DCR, is_public);
-        OC_DBG("oc_check_acl: Found ACE with permission %d for subject UUID",
-               permission);
-      }
-    } while (match);
-
-    if (oc_tls_uses_psk_cred(peer)) {
-      oc_sec_cred_t *role_cred = oc_sec_find_cred(
-        uuid, OC_CREDTYPE_PSK, OC_CREDUSAGE_NULL, endpoint->device);
-      if (role_cred && oc_string_len(role_cred->role.role) > 0) {
-        permission |= get_role_permissions(role_cred, resource,
-                                           endpoint->device, is_DCR, is_public);
-      }
-    }
+  bool cacheable = true;
 #ifdef OC_PKI
-    else {
-      oc_sec_cred_t *role_cred = oc_sec_get_roles(peer), *next;
-      while (role_cred) {
-        next = role_cred->next;
-        if (oc_certs_validate_role_cert(role_cred->ctx) < 0) {
-          oc_sec_free_role(role_cred, peer);
-          role_cred = next;
-          continue;
-        }
-        if (oc_string_len(role_cred->role.role) == strlen("oic.role.owner") &&
-            memcmp(oc_string(role_cred->role.role), "oic.role.owner",
-                   oc_string_len(role_cred->role.role)) == 0) {
-          OC_DBG("oc_acl: peer's role matches \"oic.role.owner\"");
-          return true;
-        }
-        permission |= get_role_permissions(role_cred, resource,
-                                           endpoint->device, is_DCR, is_public);
-        role_cred = role_cred->next;
+  if (peer && !oc_tls_uses_psk_cred(peer)) {
+    oc_sec_cred_t *role_cred = oc_sec_get_roles(peer), *next;
+    while (role_cred) {
+      next = role_cred->next;
+      if (oc_certs_validate_role_cert(role_cred->ctx) < 0) {
+        oc_sec_free_role(role_cred, peer);
+        role_cred = next;
+        continue;
       }
+      if (oc_string_len(role_cred->role.role) == strlen("oic.role.owner") &&
+          memcmp(oc_string(role_cred->role.role), "oic.role.owner",
+                 oc_string_len(role_cred->role.role)) == 0) {
+        OC_DBG("oc_acl: peer's role matches \"oic.role.owner\"");
+        return true;
+      }
+      permission |= get_role_permissions(role_cred, resource, endpoint->device,
+                                         is_DCR, is_public);
+      role_cred = role_cred->next;
     }
-#endif /* OC_PKI */
+    /* asserted roles are validated on every request */
+    cacheable = (oc_sec_get_roles(peer) == NULL);
   }
+#endif /* OC_PKI */
 
-  if (endpoint->flags & SECURED) {
-    oc_ace_subject_t _auth_crypt;
-    memset(&_auth_crypt, 0, sizeof(oc_ace_subject_t));
-    _auth_crypt.conn = OC_CONN_AUTH_CRYPT;
-    do {
-      match = oc_sec_acl_find_subject(match, OC_SUBJECT_CONN, &_auth_crypt, -1,
-                                      0, endpoint->device);
-      if (match) {
-        permission |= oc_ace_get_permission(match, resource, is_DCR, is_public);
-        OC_DBG("oc_check_acl: Found ACE with permission %d for auth-crypt "
-               "connection",
-               permission);
-      }
-    } while (match);
+  if (cacheable) {
+    permission |=
+      get_cached_permissions(uuid, peer, resource, endpoint, is_DCR, is_public);
+  } else {
+    permission |=
+      get_ace_permissions(uuid, peer, resource, endpoint, is_DCR, is_public);
   }
 
-  oc_ace_subject_t _anon_clear;
-  memset(&_anon_clear, 0, sizeof(oc_ace_subject_t));
-  _anon_clear.conn = OC_CONN_ANON_CLEAR;
-  do {
-    match = oc_sec_acl_find_subject(match, OC_SUBJECT_CONN, &_anon_clear, -1, 0,
-                                    endpoint->device);
-    if (match) {
-      permission |= oc_ace_get_permission(match, resource, is_DCR, is_public);
-      OC_DBG("oc_check_acl: Found ACE with permission %d for anon-clear "
-             "connection",
-             permission);
-    }
-  } while (match);
-
   if (permission != 0) {
     switch (method) {
     case OC_GET:
@@ -667,6 +804,7 @@ oc_sec_ace_update_res(oc_ace_subject_type_t type, oc_ace_subject_t *subject,
                       int aceid, uint16_t permission, const char *href,
                       oc_ace_wildcard_t wildcard, size_t device)
 {
+  oc_sec_acl_cache_clear(device);
   if (oc_sec_ace_get_res(type, subject, href, wildcard, aceid, permission,
                          device, true))
     return true;
@@ -676,6 +814,7 @@ oc_sec_ace_update_res(oc_ace_subject_type_t type, oc_ace_subject_t *subject,
 static void
 oc_ace_free_resources(size_t device, oc_sec_ace_t **ace, const char *href)
 {
+  oc_sec_acl_cache_clear(device);
   oc_ace_res_t *res = (oc_ace_res_t *)oc_list_head((*ace)->resources),
                *next = NULL;
   while (res != NULL) {
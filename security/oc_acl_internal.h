@@ -44,6 +44,11 @@ void delete_acl(oc_request_t *request, oc_interface_mask_t iface_mask,
                 void *data);
 bool oc_sec_check_acl(oc_method_t method, oc_resource_t *resource,
                       oc_endpoint_t *endpoint);
+
+/* Forgets the cached access decisions of a device. Called whenever its ACL,
+ * credentials or provisioning state change, and when a resource is deleted.
+ */
+void oc_sec_acl_cache_clear(size_t device);
 void oc_sec_set_post_otm_acl(size_t device);
 void oc_sec_ace_clear_bootstrap_aces(size_t device);
 bool oc_sec_acl_add_created_resource_ace(const char *href,
@@ -16,6 +16,7 @@
 
 #ifdef OC_SECURITY
 
+#include "oc_acl_internal.h"
 #include "oc_api.h"
 #include "oc_base64.h"
 #include "oc_certs.h"
@@ -153,6 +154,9 @@ void
 oc_sec_remove_cred(oc_sec_cred_t *cred, size_t device)
 {
   oc_list_remove(devices[device].creds, cred);
+  /* sessions authenticated with this credential can no longer be resumed */
+  oc_tls_remove_sessions(device);
+  oc_sec_acl_cache_clear(device);
   if (oc_string_len(cred->role.role) > 0) {
 #if defined(OC_PKI) && defined(OC_CLIENT)
     oc_sec_remove_role_cred(oc_string(cred->role.role),
@@ -281,6 +285,7 @@ oc_sec_allocate_cred(oc_uuid_t *subjectuuid, oc_sec_credtype_t credtype,
 #endif /* OC_PKI */
     memcpy(cred->subjectuuid.id, subjectuuid->id, 16);
     oc_list_add(devices[device].creds, cred);
+    oc_sec_acl_cache_clear(device);
   } else {
     OC_WRN("insufficient memory to add new credential");
   }
@@ -370,6 +370,7 @@ oc_pstat_handle_state(oc_sec_pstat_t *ps, size_t device, bool from_storage,
     break;
   }
   memmove(&pstat[device], ps, sizeof(oc_sec_pstat_t));
+  oc_sec_acl_cache_clear(device);
 #ifdef OC_SERVER
   if (ps->s == OC_DOS_RFNOP) {
     coap_remove_observers_on_dos_change(device, false);
@@ -553,6 +554,7 @@ oc_sec_decode_pstat(oc_rep_t *rep, bool from_storage, size_t device)
       return transition_success;
     }
     memcpy(&pstat[device], &ps, sizeof(oc_sec_pstat_t));
+    oc_sec_acl_cache_clear(device);
     return true;
   }
   return false;
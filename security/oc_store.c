@@ -17,6 +17,7 @@
 #ifdef OC_SECURITY
 #include "oc_store.h"
 #include "oc_acl_internal.h"
+#include "oc_api.h"
 #include "oc_core_res.h"
 #include "oc_cred_internal.h"
 #include "oc_doxm.h"
@@ -27,6 +28,8 @@
 #include "port/oc_storage.h"
 #include <oc_config.h>
 
+#include <errno.h>
+
 #ifdef OC_DYNAMIC_ALLOCATION
 #include <stdlib.h>
 #endif /* OC_DYNAMIC_ALLOCATION */
@@ -42,24 +45,325 @@ gen_svr_tag(const char *name, size_t device_index, char *svr_tag)
   svr_tag[svr_tag_len] = '\0';
 }
 
+/* Contents of a stored SVR. Ports that support it map the store, so that
+ * records are not limited to OC_MAX_APP_DATA_SIZE; otherwise the record is
+ * read into a buffer of that size. */
+typedef struct
+{
+  const uint8_t *data;
+#ifdef OC_STORAGE_MAP
+  oc_storage_view_t view;
+#elif defined(OC_DYNAMIC_ALLOCATION)
+  uint8_t *buf;
+#else  /* !OC_STORAGE_MAP && !OC_DYNAMIC_ALLOCATION */
+  uint8_t buf[OC_MAX_APP_DATA_SIZE];
+#endif /* !OC_STORAGE_MAP && !OC_DYNAMIC_ALLOCATION */
+} svr_record_t;
+
+static long
+read_svr(const char *name, size_t device, svr_record_t *record)
+{
+  char svr_tag[SVR_TAG_MAX];
+  gen_svr_tag(name, device, svr_tag);
+
+#ifdef OC_STORAGE_MAP
+  int ret = oc_storage_map(svr_tag, &record->view);
+  record->data = record->view.data;
+  return (ret < 0) ? ret : (long)record->view.size;
+#else /* OC_STORAGE_MAP */
+#ifdef OC_DYNAMIC_ALLOCATION
+  record->buf = malloc(OC_MAX_APP_DATA_SIZE);
+  if (!record->buf) {
+    return -ENOMEM;
+  }
+#endif /* OC_DYNAMIC_ALLOCATION */
+  record->data = record->buf;
+  return oc_storage_read(svr_tag, record->buf, OC_MAX_APP_DATA_SIZE);
+#endif /* !OC_STORAGE_MAP */
+}
+
+static void
+release_svr(svr_record_t *record)
+{
+#ifdef OC_STORAGE_MAP
+  oc_storage_unmap(&record->view);
+#elif defined(OC_DYNAMIC_ALLOCATION)
+  free(record->buf);
+#else  /* !OC_STORAGE_MAP && !OC_DYNAMIC_ALLOCATION */
+  (void)record;
+#endif /* !OC_STORAGE_MAP && !OC_DYNAMIC_ALLOCATION */
+}
+
+/* Dumps of the SVRs are written behind: oc_sec_dump_*() only marks the
+ * record of a device as dirty, and all dirty records are encoded and written
+ * once OC_STORE_WRITE_DELAY has elapsed since the first of them. A burst of
+ * provisioning requests that each change the ACL or credentials therefore
+ * results in a single write of every record it touched. */
+#ifndef OC_STORE_WRITE_DELAY
+#define OC_STORE_WRITE_DELAY (OC_CLOCK_SECOND / 10)
+#endif /* !OC_STORE_WRITE_DELAY */
+
+#ifndef OC_STORE_MAX_RECORD_SIZE
+#define OC_STORE_MAX_RECORD_SIZE (16 * OC_MAX_APP_DATA_SIZE)
+#endif /* !OC_STORE_MAX_RECORD_SIZE */
+
+#define SVR_PSTAT (1 << 0)
+#define SVR_DOXM (1 << 1)
+#define SVR_CRED (1 << 2)
+#define SVR_ACL (1 << 3)
+#define SVR_SP (1 << 4)
+#define SVR_KEYPAIR (1 << 5)
+#define SVR_UNIQUE_IDS (1 << 6)
+
+typedef struct oc_store_pending_t
+{
+  struct oc_store_pending_t *next;
+  size_t device;
+  uint8_t svrs;
+} oc_store_pending_t;
+
+OC_LIST(pending_svrs);
+OC_MEMB(pending_svrs_s, oc_store_pending_t, OC_MAX_NUM_DEVICES);
+
+static oc_svr_store_stats_t store_stats;
+
+static void
+encode_unique_ids(size_t device)
+{
+  oc_device_info_t *device_info = oc_core_get_device_info(device);
+  oc_platform_info_t *platform_info = oc_core_get_platform_info();
+
+  char pi[OC_UUID_LEN], piid[OC_UUID_LEN];
+  oc_uuid_to_str(&device_info->piid, piid, OC_UUID_LEN);
+  oc_uuid_to_str(&platform_info->pi, pi, OC_UUID_LEN);
+
+  oc_rep_start_root_object();
+  oc_rep_set_text_string(root, pi, pi);
+  oc_rep_set_text_string(root, piid, piid);
+  oc_rep_end_root_object();
+}
+
+static const char *
+encode_svr(size_t device, uint8_t svr)
+{
+  switch (svr) {
+  case SVR_PSTAT:
+    oc_sec_encode_pstat(device);
+    return "pstat";
+  case SVR_DOXM:
+    oc_sec_encode_doxm(device, true);
+    return "doxm";
+  case SVR_CRED:
+    oc_sec_encode_cred(true, device);
+    return "cred";
+  case SVR_ACL:
+    oc_sec_encode_acl(device);
+    return "acl";
+  case SVR_SP:
+    oc_sec_encode_sp(device);
+    return "sp";
+#ifdef OC_PKI
+  case SVR_KEYPAIR:
+    oc_sec_encode_ecdsa_keypair(device);
+    return "keypair";
+#endif /* OC_PKI */
+  case SVR_UNIQUE_IDS:
+    encode_unique_ids(device);
+    return "u_ids";
+  default:
+    return NULL;
+  }
+}
+
+/* With dynamic allocation and a port that maps stores on load, a record
+ * that does not fit the encoding buffer grows it up to
+ * OC_STORE_MAX_RECORD_SIZE. Other ports read back at most
+ * OC_MAX_APP_DATA_SIZE bytes, so a larger record must not replace the
+ * stored one there. */
+static void
+write_svr(uint8_t **buf, size_t *buf_size, size_t device, uint8_t svr)
+{
+  const char *name;
+  int size;
+
+  for (;;) {
+    oc_rep_new(*buf, (int)*buf_size);
+    name = encode_svr(device, svr);
+    if (!name) {
+      return;
+    }
+    size = oc_rep_get_encoded_payload_size();
+#if defined(OC_DYNAMIC_ALLOCATION) && defined(OC_STORAGE_MAP)
+    if (size < 0 && oc_rep_get_cbor_errno() == CborErrorOutOfMemory &&
+        *buf_size < (size_t)OC_STORE_MAX_RECORD_SIZE) {
+      uint8_t *larger = realloc(*buf, *buf_size * 2);
+      if (larger) {
+        *buf = larger;
+        *buf_size *= 2;
+        continue;
+      }
+    }
+#endif /* OC_DYNAMIC_ALLOCATION && OC_STORAGE_MAP */
+    break;
+  }
+
+  if (size > 0) {
+    OC_DBG("oc_store: encoded %s size %d", name, size);
+    char svr_tag[SVR_TAG_MAX];
+    gen_svr_tag(name, device, svr_tag);
+    oc_clock_time_t start = oc_clock_time();
+    long ret = oc_storage_write(svr_tag, *buf, size);
+    oc_clock_time_t elapsed = oc_clock_time() - start;
+    if (ret < 0) {
+      OC_ERR("oc_store: error %ld writing %s", ret, svr_tag);
+      store_stats.errors++;
+      return;
+    }
+    store_stats.writes++;
+    store_stats.bytes += (size_t)size;
+    store_stats.write_ticks += elapsed;
+    if (elapsed > store_stats.max_write_ticks) {
+      store_stats.max_write_ticks = elapsed;
+    }
+  }
+}
+
+static void
+write_svrs(size_t device, uint8_t svrs)
+{
+  size_t buf_size = OC_MAX_APP_DATA_SIZE;
+#ifdef OC_DYNAMIC_ALLOCATION
+  uint8_t *buf = malloc(buf_size);
+  if (!buf) {
+    OC_ERR("oc_store: insufficient memory to write SVRs");
+    return;
+  }
+#else  /* OC_DYNAMIC_ALLOCATION */
+  uint8_t storage[OC_MAX_APP_DATA_SIZE];
+  uint8_t *buf = storage;
+#endif /* !OC_DYNAMIC_ALLOCATION */
+
+  uint8_t svr;
+  for (svr = SVR_PSTAT; svr <= SVR_UNIQUE_IDS; svr <<= 1) {
+    if (svrs & svr) {
+      write_svr(&buf, &buf_size, device, svr);
+    }
+  }
+
+#ifdef OC_DYNAMIC_ALLOCATION
+  free(buf);
+#endif /* OC_DYNAMIC_ALLOCATION */
+}
+
+static void
+write_pending(oc_store_pending_t *pending)
+{
+  while (pending) {
+    oc_store_pending_t *next = pending->next;
+    write_svrs(pending->device, pending->svrs);
+    oc_memb_free(&pending_svrs_s, pending);
+    pending = next;
+  }
+}
+
+static oc_event_callback_retval_t
+store_write_behind(void *data)
+{
+  (void)data;
+  oc_store_pending_t *pending =
+    (oc_store_pending_t *)oc_list_head(pending_svrs);
+  oc_list_init(pending_svrs);
+  write_pending(pending);
+  return OC_EVENT_DONE;
+}
+
+static void
+store_schedule(size_t device, uint8_t svr)
+{
+  oc_store_pending_t *pending =
+    (oc_store_pending_t *)oc_list_head(pending_svrs);
+  while (pending && pending->device != device) {
+    pending = pending->next;
+  }
+  if (pending) {
+    if (pending->svrs & svr) {
+      store_stats.coalesced++;
+    }
+    pending->svrs |= svr;
+    return;
+  }
+
+  pending = (oc_store_pending_t *)oc_memb_alloc(&pending_svrs_s);
+  if (!pending) {
+    write_svrs(device, svr);
+    return;
+  }
+  pending->device = device;
+  pending->svrs = svr;
+  if (!oc_list_head(pending_svrs)) {
+    oc_ri_add_timed_event_callback_ticks(NULL, store_write_behind,
+                                         OC_STORE_WRITE_DELAY);
+  }
+  oc_list_add(pending_svrs, pending);
+}
+
+/* Writes the records of device that are still pending so that a subsequent
+ * load observes them. */
+static void
+store_flush_device(size_t device)
+{
+  oc_store_pending_t *pending =
+    (oc_store_pending_t *)oc_list_head(pending_svrs);
+  while (pending && pending->device != device) {
+    pending = pending->next;
+  }
+  if (!pending) {
+    return;
+  }
+  oc_list_remove(pending_svrs, pending);
+  if (!oc_list_head(pending_svrs)) {
+    oc_ri_remove_timed_event_callback(NULL, store_write_behind);
+  }
+  pending->next = NULL;
+  write_pending(pending);
+}
+
+void
+oc_sec_store_flush(void)
+{
+  oc_store_pending_t *pending =
+    (oc_store_pending_t *)oc_list_head(pending_svrs);
+  if (pending) {
+    oc_ri_remove_timed_event_callback(NULL, store_write_behind);
+    oc_list_init(pending_svrs);
+    write_pending(pending);
+  }
+}
+
+int
+oc_get_svr_store_stats(oc_svr_store_stats_t *stats)
+{
+  if (!stats) {
+    return -1;
+  }
+  *stats = store_stats;
+  return 0;
+}
+
 void
 oc_sec_load_doxm(size_t device)
 {
   long ret = 0;
   oc_rep_t *rep;
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf) {
+  store_flush_device(device);
+
+  svr_record_t record;
+  ret = read_svr("doxm", device, &record);
+  if (ret == -ENOMEM) {
     oc_sec_doxm_default(device);
     return;
   }
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("doxm", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -73,13 +377,11 @@ oc_sec_load_doxm(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    oc_parse_rep(buf, (uint16_t)ret, &rep);
+    oc_parse_rep(record.data, (int)ret, &rep);
     oc_sec_decode_doxm(rep, true, device);
     oc_free_rep(rep);
   }
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 
   oc_uuid_t *deviceuuid = oc_core_get_device_id(device);
   oc_sec_doxm_t *doxm = oc_sec_get_doxm(device);
@@ -92,19 +394,15 @@ oc_sec_load_pstat(size_t device)
   long ret = 0;
   oc_rep_t *rep = 0;
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf) {
+  store_flush_device(device);
+
+  svr_record_t record;
+  ret = read_svr("pstat", device, &record);
+  if (ret == -ENOMEM) {
     oc_sec_pstat_default(device);
     return;
   }
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
 
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("pstat", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -118,14 +416,12 @@ oc_sec_load_pstat(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    oc_parse_rep(buf, (uint16_t)ret, &rep);
+    oc_parse_rep(record.data, (int)ret, &rep);
     oc_sec_decode_pstat(rep, true, device);
     oc_free_rep(rep);
   }
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 
   if (ret <= 0) {
     oc_sec_pstat_default(device);
@@ -138,19 +434,15 @@ oc_sec_load_sp(size_t device)
   long ret = 0;
   oc_rep_t *rep = 0;
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf) {
+  store_flush_device(device);
+
+  svr_record_t record;
+  ret = read_svr("sp", device, &record);
+  if (ret == -ENOMEM) {
     oc_sec_sp_default(device);
     return;
   }
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
 
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("sp", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -164,14 +456,12 @@ oc_sec_load_sp(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    oc_parse_rep(buf, (uint16_t)ret, &rep);
+    oc_parse_rep(record.data, (int)ret, &rep);
     oc_sec_decode_sp(rep, device);
     oc_free_rep(rep);
   }
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 
   if (ret <= 0) {
     oc_sec_sp_default(device);
@@ -181,27 +471,7 @@ oc_sec_load_sp(size_t device)
 void
 oc_sec_dump_sp(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_sec_encode_sp(device);
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded sp size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("sp", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_SP);
 }
 
 #ifdef OC_PKI
@@ -211,19 +481,15 @@ oc_sec_load_ecdsa_keypair(size_t device)
   long ret = 0;
   oc_rep_t *rep = 0;
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf) {
+  store_flush_device(device);
+
+  svr_record_t record;
+  ret = read_svr("keypair", device, &record);
+  if (ret == -ENOMEM) {
     oc_sec_sp_default(device);
     return;
   }
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
 
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("keypair", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -237,16 +503,14 @@ oc_sec_load_ecdsa_keypair(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    oc_parse_rep(buf, (uint16_t)ret, &rep);
+    oc_parse_rep(record.data, (int)ret, &rep);
     if (oc_sec_decode_ecdsa_keypair(rep, device)) {
       OC_DBG("successfully read ECDSA keypair for device %zd", device);
     }
     oc_free_rep(rep);
   }
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 
   if (ret <= 0) {
     if (oc_generate_ecdsa_keypair_for_device(device) < 0) {
@@ -259,27 +523,7 @@ oc_sec_load_ecdsa_keypair(size_t device)
 void
 oc_sec_dump_ecdsa_keypair(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_sec_encode_ecdsa_keypair(device);
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded sp size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("keypair", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_KEYPAIR);
 }
 #endif /* OC_PKI */
 
@@ -289,18 +533,10 @@ oc_sec_load_cred(size_t device)
   long ret = 0;
   oc_rep_t *rep;
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("cred", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
+  store_flush_device(device);
 
+  svr_record_t record;
+  ret = read_svr("cred", device, &record);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -314,13 +550,11 @@ oc_sec_load_cred(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    oc_parse_rep(buf, (uint16_t)ret, &rep);
+    oc_parse_rep(record.data, (int)ret, &rep);
     oc_sec_decode_cred(rep, NULL, true, false, NULL, device);
     oc_free_rep(rep);
   }
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 }
 
 void
@@ -329,19 +563,15 @@ oc_sec_load_acl(size_t device)
   long ret = 0;
   oc_rep_t *rep;
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf) {
+  store_flush_device(device);
+
+  svr_record_t record;
+  ret = read_svr("acl", device, &record);
+  if (ret == -ENOMEM) {
     oc_sec_acl_default(device);
     return;
   }
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
 
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("acl", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -355,118 +585,35 @@ oc_sec_load_acl(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    oc_parse_rep(buf, (uint16_t)ret, &rep);
+    oc_parse_rep(record.data, (int)ret, &rep);
     oc_sec_decode_acl(rep, true, device);
     oc_free_rep(rep);
   }
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 }
 
 void
 oc_sec_dump_pstat(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_sec_encode_pstat(device);
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded pstat size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("pstat", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_PSTAT);
 }
 
 void
 oc_sec_dump_cred(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_sec_encode_cred(true, device);
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded cred size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("cred", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_CRED);
 }
 
 void
 oc_sec_dump_doxm(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  /* doxm */
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_sec_encode_doxm(device, true);
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded doxm size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("doxm", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_DOXM);
 }
 
 void
 oc_sec_dump_acl(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_sec_encode_acl(device);
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded ACL size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("acl", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_ACL);
 }
 
 void
@@ -477,17 +624,13 @@ oc_sec_load_unique_ids(size_t device)
   oc_platform_info_t *platform_info = oc_core_get_platform_info();
   oc_device_info_t *device_info = oc_core_get_device_info(device);
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf) {
+  store_flush_device(device);
+
+  svr_record_t record;
+  ret = read_svr("u_ids", device, &record);
+  if (ret == -ENOMEM) {
     return;
   }
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-  char svr_tag[SVR_TAG_MAX];
-  gen_svr_tag("u_ids", device, svr_tag);
-  ret = oc_storage_read(svr_tag, buf, OC_MAX_APP_DATA_SIZE);
   if (ret > 0) {
 #ifndef OC_DYNAMIC_ALLOCATION
     char rep_objects_alloc[OC_MAX_NUM_REP_OBJECTS];
@@ -501,7 +644,7 @@ oc_sec_load_unique_ids(size_t device)
     struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
 #endif /* OC_DYNAMIC_ALLOCATION */
     oc_rep_set_pool(&rep_objects);
-    int err = oc_parse_rep(buf, ret, &rep);
+    int err = oc_parse_rep(record.data, (int)ret, &rep);
     oc_rep_t *p = rep;
     if (err == 0) {
       while (rep != NULL) {
@@ -526,46 +669,13 @@ oc_sec_load_unique_ids(size_t device)
     oc_sec_dump_unique_ids(device);
   }
 
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  release_svr(&record);
 }
 
 void
 oc_sec_dump_unique_ids(size_t device)
 {
-#ifdef OC_DYNAMIC_ALLOCATION
-  uint8_t *buf = malloc(OC_MAX_APP_DATA_SIZE);
-  if (!buf)
-    return;
-#else  /* OC_DYNAMIC_ALLOCATION */
-  uint8_t buf[OC_MAX_APP_DATA_SIZE];
-#endif /* !OC_DYNAMIC_ALLOCATION */
-
-  oc_device_info_t *device_info = oc_core_get_device_info(device);
-  oc_platform_info_t *platform_info = oc_core_get_platform_info();
-
-  char pi[OC_UUID_LEN], piid[OC_UUID_LEN];
-  oc_uuid_to_str(&device_info->piid, piid, OC_UUID_LEN);
-  oc_uuid_to_str(&platform_info->pi, pi, OC_UUID_LEN);
-
-  oc_rep_new(buf, OC_MAX_APP_DATA_SIZE);
-  oc_rep_start_root_object();
-  oc_rep_set_text_string(root, pi, pi);
-  oc_rep_set_text_string(root, piid, piid);
-  oc_rep_end_root_object();
-
-  int size = oc_rep_get_encoded_payload_size();
-  if (size > 0) {
-    OC_DBG("oc_store: encoded unique identifiers: size %d", size);
-    char svr_tag[SVR_TAG_MAX];
-    gen_svr_tag("u_ids", device, svr_tag);
-    oc_storage_write(svr_tag, buf, size);
-  }
-
-#ifdef OC_DYNAMIC_ALLOCATION
-  free(buf);
-#endif /* OC_DYNAMIC_ALLOCATION */
+  store_schedule(device, SVR_UNIQUE_IDS);
 }
 
 #endif /* OC_SECURITY */
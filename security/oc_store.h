@@ -38,6 +38,8 @@ void oc_sec_dump_sp(size_t device);
 void oc_sec_load_ecdsa_keypair(size_t device);
 void oc_sec_dump_ecdsa_keypair(size_t device);
 
+void oc_sec_store_flush(void);
+
 #ifdef __cplusplus
 }
 #endif
@@ -25,6 +25,7 @@
 #include "mbedtls/md.h"
 #include "mbedtls/oid.h"
 #include "mbedtls/pkcs5.h"
+#include "mbedtls/platform.h"
 #include "mbedtls/ssl.h"
 #include "mbedtls/ssl_cookie.h"
 #include "mbedtls/ssl_internal.h"
@@ -32,7 +33,6 @@
 #ifdef OC_DEBUG
 #include "mbedtls/debug.h"
 #include "mbedtls/error.h"
-#include "mbedtls/platform.h"
 #endif /* OC_DEBUG */
 
 #include "api/oc_events.h"
@@ -56,6 +56,14 @@
 OC_PROCESS(oc_tls_handler, "TLS Process");
 OC_MEMB(tls_peers_s, oc_tls_peer_t, OC_MAX_TLS_PEERS);
 OC_LIST(tls_peers);
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_TLS_PEER_INDEX_BUCKETS (64)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define OC_TLS_PEER_INDEX_BUCKETS (OC_MAX_TLS_PEERS + 1)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+/* peers are also indexed by endpoint, as they are looked up for every
+ * encrypted packet and for every secured request */
+static oc_tls_peer_t *tls_peers_by_endpoint[OC_TLS_PEER_INDEX_BUCKETS];
 
 static mbedtls_entropy_context entropy_ctx;
 static mbedtls_ctr_drbg_context ctr_drbg_ctx;
@@ -248,11 +256,73 @@ is_peer_active(oc_tls_peer_t *peer)
 
 static oc_event_callback_retval_t oc_tls_inactive(void *data);
 
+/* FNV-1a over the fields compared by oc_endpoint_compare() */
+static size_t
+tls_peer_bucket(const oc_endpoint_t *endpoint)
+{
+  const uint8_t *address = NULL;
+  size_t address_len = 0;
+  uint16_t port = 0;
+  if (endpoint->flags & IPV6) {
+    address = endpoint->addr.ipv6.address;
+    address_len = 16;
+    port = endpoint->addr.ipv6.port;
+  }
+#ifdef OC_IPV4
+  else if (endpoint->flags & IPV4) {
+    address = endpoint->addr.ipv4.address;
+    address_len = 4;
+    port = endpoint->addr.ipv4.port;
+  }
+#endif /* OC_IPV4 */
+  uint32_t hash = 2166136261u;
+  size_t i;
+  for (i = 0; i < address_len; i++) {
+    hash ^= address[i];
+    hash *= 16777619u;
+  }
+  hash ^= (uint8_t)(port >> 8);
+  hash *= 16777619u;
+  hash ^= (uint8_t)port;
+  hash *= 16777619u;
+  hash ^= (uint32_t)endpoint->device;
+  hash *= 16777619u;
+  return hash % OC_TLS_PEER_INDEX_BUCKETS;
+}
+
+static void
+tls_peer_link(oc_tls_peer_t *peer)
+{
+  oc_tls_peer_t **next =
+    &tls_peers_by_endpoint[tls_peer_bucket(&peer->endpoint)];
+  while (*next) {
+    next = &(*next)->next_by_endpoint;
+  }
+  peer->next_by_endpoint = NULL;
+  *next = peer;
+}
+
+static void
+tls_peer_unlink(oc_tls_peer_t *peer)
+{
+  oc_tls_peer_t **next =
+    &tls_peers_by_endpoint[tls_peer_bucket(&peer->endpoint)];
+  while (*next) {
+    if (*next == peer) {
+      *next = peer->next_by_endpoint;
+      break;
+    }
+    next = &(*next)->next_by_endpoint;
+  }
+  peer->next_by_endpoint = NULL;
+}
+
 static void
 oc_tls_free_peer(oc_tls_peer_t *peer, bool inactivity_cb)
 {
   OC_DBG("\noc_tls: removing peer");
   oc_list_remove(tls_peers, peer);
+  tls_peer_unlink(peer);
 #ifdef OC_SERVER
   /* remove all observations by this peer */
   coap_remove_observer_by_client(&peer->endpoint);
@@ -305,12 +375,15 @@ oc_tls_free_peer(oc_tls_peer_t *peer, bool inactivity_cb)
 oc_tls_peer_t *
 oc_tls_get_peer(oc_endpoint_t *endpoint)
 {
-  oc_tls_peer_t *peer = oc_list_head(tls_peers);
+  if (!endpoint) {
+    return NULL;
+  }
+  oc_tls_peer_t *peer = tls_peers_by_endpoint[tls_peer_bucket(endpoint)];
   while (peer != NULL) {
     if (oc_endpoint_compare(&peer->endpoint, endpoint) == 0) {
       return peer;
     }
-    peer = peer->next;
+    peer = peer->next_by_endpoint;
   }
   return NULL;
 }
@@ -1158,6 +1231,414 @@ verify_certificate(void *opq, mbedtls_x509_crt *crt, int depth, uint32_t *flags)
 }
 #endif /* OC_PKI */
 
+/*
+ * Sessions of completed handshakes are cached so that a peer reconnecting
+ * within their lifetime resumes them with an abbreviated handshake, without
+ * the key exchange and certificate verification of a full handshake.
+ *
+ * - As a server, sessions are looked up by the session ID presented by the
+ *   client, or by the session ticket presented by the client when the
+ *   session tickets extension is enabled. Tickets are opaque keys into this
+ *   cache and can only be used once.
+ * - As a client, the session of the last handshake with a server endpoint is
+ *   offered again on the next connection to that endpoint.
+ *
+ * A cached session keeps the identity of the peer that was authenticated by
+ * the full handshake, and is only cached and resumed while the device is in
+ * normal operation (RFNOP). The sessions of a device are forgotten when any
+ * of its credentials is removed, and when it is reset. The least recently
+ * used session is replaced when the cache is full.
+ */
+#ifndef OC_MAX_TLS_SESSIONS
+#ifdef OC_DYNAMIC_ALLOCATION
+#define OC_MAX_TLS_SESSIONS (32)
+#else  /* OC_DYNAMIC_ALLOCATION */
+#define OC_MAX_TLS_SESSIONS (OC_MAX_TLS_PEERS)
+#endif /* !OC_DYNAMIC_ALLOCATION */
+#endif /* !OC_MAX_TLS_SESSIONS */
+
+#ifndef OC_TLS_SESSION_LIFETIME
+#define OC_TLS_SESSION_LIFETIME (86400)
+#endif /* !OC_TLS_SESSION_LIFETIME */
+
+#define OC_TLS_SESSION_TICKET_LEN (32)
+
+typedef struct oc_tls_session_t
+{
+  struct oc_tls_session_t *next;
+  oc_endpoint_t endpoint;
+  int role;
+  bool ticket;
+  mbedtls_ssl_session session;
+  oc_uuid_t uuid;
+#ifdef OC_PKI
+  oc_string_t public_key;
+#endif /* OC_PKI */
+  oc_clock_time_t timestamp;
+} oc_tls_session_t;
+
+/* ordered from the least to the most recently used session */
+OC_MEMB(tls_sessions_s, oc_tls_session_t, OC_MAX_TLS_SESSIONS);
+OC_LIST(tls_sessions);
+static size_t num_tls_sessions;
+static uint32_t tls_session_lifetime = OC_TLS_SESSION_LIFETIME;
+static size_t tls_full_handshakes;
+static size_t tls_resumed_handshakes;
+
+static int
+tls_session_copy(mbedtls_ssl_session *dst, const mbedtls_ssl_session *src)
+{
+  mbedtls_ssl_session_free(dst);
+  memcpy(dst, src, sizeof(mbedtls_ssl_session));
+#if defined(MBEDTLS_X509_CRT_PARSE_C)
+  dst->peer_cert = NULL;
+#endif /* MBEDTLS_X509_CRT_PARSE_C */
+#if defined(MBEDTLS_SSL_SESSION_TICKETS) && defined(MBEDTLS_SSL_CLI_C)
+  dst->ticket = NULL;
+#endif /* MBEDTLS_SSL_SESSION_TICKETS && MBEDTLS_SSL_CLI_C */
+#if defined(MBEDTLS_X509_CRT_PARSE_C)
+  if (src->peer_cert) {
+    dst->peer_cert = mbedtls_calloc(1, sizeof(mbedtls_x509_crt));
+    if (!dst->peer_cert) {
+      return -1;
+    }
+    mbedtls_x509_crt_init(dst->peer_cert);
+    if (mbedtls_x509_crt_parse_der(dst->peer_cert, src->peer_cert->raw.p,
+                                   src->peer_cert->raw.len) != 0) {
+      mbedtls_x509_crt_free(dst->peer_cert);
+      mbedtls_free(dst->peer_cert);
+      dst->peer_cert = NULL;
+      return -1;
+    }
+  }
+#endif /* MBEDTLS_X509_CRT_PARSE_C */
+#if defined(MBEDTLS_SSL_SESSION_TICKETS) && defined(MBEDTLS_SSL_CLI_C)
+  if (src->ticket) {
+    dst->ticket = mbedtls_calloc(1, src->ticket_len);
+    if (!dst->ticket) {
+      return -1;
+    }
+    memcpy(dst->ticket, src->ticket, src->ticket_len);
+  }
+#endif /* MBEDTLS_SSL_SESSION_TICKETS && MBEDTLS_SSL_CLI_C */
+  return 0;
+}
+
+static void
+tls_session_free(oc_tls_session_t *s)
+{
+  oc_list_remove(tls_sessions, s);
+  mbedtls_ssl_session_free(&s->session);
+#ifdef OC_PKI
+  oc_free_string(&s->public_key);
+#endif /* OC_PKI */
+  oc_memb_free(&tls_sessions_s, s);
+  num_tls_sessions--;
+}
+
+static bool
+tls_session_expired(oc_tls_session_t *s)
+{
+  return (oc_clock_time() - s->timestamp) >
+         (oc_clock_time_t)tls_session_lifetime * OC_CLOCK_SECOND;
+}
+
+static bool
+tls_session_cacheable(oc_tls_peer_t *peer)
+{
+  oc_sec_pstat_t *ps = oc_sec_get_pstat(peer->endpoint.device);
+  return tls_session_lifetime > 0 && ps->s == OC_DOS_RFNOP;
+}
+
+static oc_tls_session_t *
+tls_session_add(oc_tls_peer_t *peer, const mbedtls_ssl_session *session)
+{
+  if (num_tls_sessions >= OC_MAX_TLS_SESSIONS) {
+    oc_tls_session_t *lru = (oc_tls_session_t *)oc_list_head(tls_sessions);
+    if (!lru) {
+      return NULL;
+    }
+    OC_DBG("oc_tls: replacing least recently used session");
+    tls_session_free(lru);
+  }
+  oc_tls_session_t *s = (oc_tls_session_t *)oc_memb_alloc(&tls_sessions_s);
+  if (!s) {
+    return NULL;
+  }
+  memcpy(&s->endpoint, &peer->endpoint, sizeof(oc_endpoint_t));
+  s->role = peer->role;
+  s->ticket = false;
+  memcpy(s->uuid.id, peer->uuid.id, sizeof(s->uuid.id));
+#ifdef OC_PKI
+  memset(&s->public_key, 0, sizeof(oc_string_t));
+  if (oc_string_len(peer->public_key) > 0) {
+    oc_alloc_string(&s->public_key, peer->public_key.size);
+    memcpy(oc_cast(s->public_key, uint8_t), oc_cast(peer->public_key, uint8_t),
+           peer->public_key.size);
+  }
+#endif /* OC_PKI */
+  s->timestamp = oc_clock_time();
+  mbedtls_ssl_session_init(&s->session);
+  oc_list_add(tls_sessions, s);
+  num_tls_sessions++;
+  if (session && tls_session_copy(&s->session, session) != 0) {
+    OC_ERR("oc_tls: could not cache session");
+    tls_session_free(s);
+    return NULL;
+  }
+  return s;
+}
+
+/* Looks up the session of a server with the given ID or ticket. Returns NULL
+ * for expired sessions, which are removed. */
+static oc_tls_session_t *
+tls_session_find_by_id(size_t device, bool ticket, const unsigned char *id,
+                       size_t id_len)
+{
+  oc_tls_session_t *s = (oc_tls_session_t *)oc_list_head(tls_sessions);
+  while (s != NULL) {
+    if (s->role == MBEDTLS_SSL_IS_SERVER && s->endpoint.device == device &&
+        s->ticket == ticket && s->session.id_len == id_len &&
+        memcmp(s->session.id, id, id_len) == 0) {
+      break;
+    }
+    s = s->next;
+  }
+  if (s && tls_session_expired(s)) {
+    tls_session_free(s);
+    return NULL;
+  }
+  return s;
+}
+
+/* Looks up the session of a client with the given server endpoint. Returns
+ * NULL for expired sessions, which are removed. */
+static oc_tls_session_t *
+tls_session_find_by_endpoint(oc_endpoint_t *endpoint)
+{
+  oc_tls_session_t *s = (oc_tls_session_t *)oc_list_head(tls_sessions);
+  while (s != NULL) {
+    if (s->role == MBEDTLS_SSL_IS_CLIENT &&
+        oc_endpoint_compare(&s->endpoint, endpoint) == 0) {
+      break;
+    }
+    s = s->next;
+  }
+  if (s && tls_session_expired(s)) {
+    tls_session_free(s);
+    return NULL;
+  }
+  return s;
+}
+
+/* Restores the identity of the peer of a resumed session, as it was
+ * authenticated by the full handshake. */
+static void
+tls_session_restore_peer(oc_tls_peer_t *peer, oc_tls_session_t *s)
+{
+  memcpy(peer->uuid.id, s->uuid.id, sizeof(peer->uuid.id));
+#ifdef OC_PKI
+  oc_free_string(&peer->public_key);
+  if (oc_string_len(s->public_key) > 0) {
+    oc_alloc_string(&peer->public_key, s->public_key.size);
+    memcpy(oc_cast(peer->public_key, uint8_t), oc_cast(s->public_key, uint8_t),
+           s->public_key.size);
+  }
+#endif /* OC_PKI */
+  oc_list_remove(tls_sessions, s);
+  oc_list_add(tls_sessions, s);
+}
+
+static int
+tls_session_set_cb(void *data, const mbedtls_ssl_session *session)
+{
+  oc_tls_peer_t *peer = (oc_tls_peer_t *)data;
+  if (!tls_session_cacheable(peer)) {
+    return 0;
+  }
+  oc_tls_session_t *s = tls_session_find_by_id(
+    peer->endpoint.device, false, session->id, session->id_len);
+  if (s) {
+    tls_session_free(s);
+  }
+  return tls_session_add(peer, session) ? 0 : -1;
+}
+
+static int
+tls_session_get_cb(void *data, mbedtls_ssl_session *session)
+{
+  oc_tls_peer_t *peer = (oc_tls_peer_t *)data;
+  if (!tls_session_cacheable(peer)) {
+    return -1;
+  }
+  oc_tls_session_t *s = tls_session_find_by_id(
+    peer->endpoint.device, false, session->id, session->id_len);
+  if (!s || s->session.ciphersuite != session->ciphersuite ||
+      s->session.compression != session->compression) {
+    return -1;
+  }
+  memcpy(session->master, s->session.master, sizeof(session->master));
+  session->verify_result = s->session.verify_result;
+#if defined(MBEDTLS_X509_CRT_PARSE_C)
+  if (s->session.peer_cert) {
+    session->peer_cert = mbedtls_calloc(1, sizeof(mbedtls_x509_crt));
+    if (!session->peer_cert) {
+      return -1;
+    }
+    mbedtls_x509_crt_init(session->peer_cert);
+    if (mbedtls_x509_crt_parse_der(session->peer_cert,
+                                   s->session.peer_cert->raw.p,
+                                   s->session.peer_cert->raw.len) != 0) {
+      mbedtls_x509_crt_free(session->peer_cert);
+      mbedtls_free(session->peer_cert);
+      session->peer_cert = NULL;
+      return -1;
+    }
+  }
+#endif /* MBEDTLS_X509_CRT_PARSE_C */
+  OC_DBG("oc_tls: resuming session by ID");
+  tls_session_restore_peer(peer, s);
+  return 0;
+}
+
+#ifdef MBEDTLS_SSL_SESSION_TICKETS
+static int
+tls_ticket_write_cb(void *data, const mbedtls_ssl_session *session,
+                    unsigned char *start, const unsigned char *end,
+                    size_t *tlen, uint32_t *lifetime)
+{
+  oc_tls_peer_t *peer = (oc_tls_peer_t *)data;
+  *tlen = 0;
+  if (!tls_session_cacheable(peer)) {
+    return -1;
+  }
+  if (end - start < OC_TLS_SESSION_TICKET_LEN) {
+    return MBEDTLS_ERR_SSL_BUFFER_TOO_SMALL;
+  }
+  oc_tls_session_t *s = tls_session_add(peer, session);
+  if (!s) {
+    return -1;
+  }
+  s->ticket = true;
+  s->session.id_len = OC_TLS_SESSION_TICKET_LEN;
+  if (mbedtls_ctr_drbg_random(&ctr_drbg_ctx, s->session.id,
+                              OC_TLS_SESSION_TICKET_LEN) != 0) {
+    tls_session_free(s);
+    return -1;
+  }
+  memcpy(start, s->session.id, OC_TLS_SESSION_TICKET_LEN);
+  *tlen = OC_TLS_SESSION_TICKET_LEN;
+  *lifetime = tls_session_lifetime;
+  return 0;
+}
+
+static int
+tls_ticket_parse_cb(void *data, mbedtls_ssl_session *session,
+                    unsigned char *buf, size_t len)
+{
+  oc_tls_peer_t *peer = (oc_tls_peer_t *)data;
+  if (!tls_session_cacheable(peer) || len != OC_TLS_SESSION_TICKET_LEN) {
+    return MBEDTLS_ERR_SSL_BAD_INPUT_DATA;
+  }
+  oc_tls_session_t *s =
+    tls_session_find_by_id(peer->endpoint.device, true, buf, len);
+  if (!s) {
+    return MBEDTLS_ERR_SSL_SESSION_TICKET_EXPIRED;
+  }
+  if (tls_session_copy(session, &s->session) != 0) {
+    return MBEDTLS_ERR_SSL_ALLOC_FAILED;
+  }
+  OC_DBG("oc_tls: resuming session by ticket");
+  tls_session_restore_peer(peer, s);
+  /* tickets are used once, a new one is issued by the abbreviated handshake */
+  tls_session_free(s);
+  return 0;
+}
+#endif /* MBEDTLS_SSL_SESSION_TICKETS */
+
+/* Offers the cached session of the server endpoint of a client peer */
+static void
+tls_session_resume(oc_tls_peer_t *peer)
+{
+  if (!tls_session_cacheable(peer)) {
+    return;
+  }
+  oc_tls_session_t *s = tls_session_find_by_endpoint(&peer->endpoint);
+  if (s && mbedtls_ssl_set_session(&peer->ssl_ctx, &s->session) != 0) {
+    OC_ERR("oc_tls: could not offer cached session");
+  }
+}
+
+/* Called once the handshake of a client peer is over */
+static void
+tls_session_save(oc_tls_peer_t *peer)
+{
+  oc_tls_session_t *s = tls_session_find_by_endpoint(&peer->endpoint);
+  if (s) {
+    if (peer->resumed) {
+      tls_session_restore_peer(peer, s);
+    }
+    tls_session_free(s);
+  }
+  const mbedtls_ssl_session *session = peer->ssl_ctx.session;
+  bool resumable = session && session->id_len > 0;
+#if defined(MBEDTLS_SSL_SESSION_TICKETS) && defined(MBEDTLS_SSL_CLI_C)
+  resumable = resumable || (session && session->ticket != NULL);
+#endif /* MBEDTLS_SSL_SESSION_TICKETS && MBEDTLS_SSL_CLI_C */
+  if (!resumable || !tls_session_cacheable(peer)) {
+    return;
+  }
+  s = tls_session_add(peer, NULL);
+  if (s && mbedtls_ssl_get_session(&peer->ssl_ctx, &s->session) != 0) {
+    OC_ERR("oc_tls: could not cache session");
+    tls_session_free(s);
+  }
+}
+
+void
+oc_tls_remove_sessions(size_t device)
+{
+  oc_tls_session_t *s = (oc_tls_session_t *)oc_list_head(tls_sessions), *next;
+  while (s != NULL) {
+    next = s->next;
+    if (s->endpoint.device == device) {
+      tls_session_free(s);
+    }
+    s = next;
+  }
+}
+
+static void
+tls_sessions_free(void)
+{
+  oc_tls_session_t *s = (oc_tls_session_t *)oc_list_head(tls_sessions);
+  while (s != NULL) {
+    tls_session_free(s);
+    s = (oc_tls_session_t *)oc_list_head(tls_sessions);
+  }
+}
+
+void
+oc_set_tls_session_lifetime(uint32_t lifetime)
+{
+  tls_session_lifetime = lifetime;
+  if (lifetime == 0) {
+    tls_sessions_free();
+  }
+}
+
+int
+oc_get_tls_session_stats(oc_tls_session_stats_t *stats)
+{
+  if (!stats) {
+    return -1;
+  }
+  stats->full_handshakes = tls_full_handshakes;
+  stats->resumed_handshakes = tls_resumed_handshakes;
+  stats->cached_sessions = num_tls_sessions;
+  return 0;
+}
+
 static int
 oc_tls_populate_ssl_config(mbedtls_ssl_config *conf, size_t device, int role,
                            int transport_type)
@@ -1207,7 +1688,9 @@ oc_tls_add_peer(oc_endpoint_t *endpoint, int role)
       OC_LIST_STRUCT_INIT(peer, recv_q);
       OC_LIST_STRUCT_INIT(peer, send_q);
       peer->next = 0;
+      peer->next_by_endpoint = NULL;
       peer->role = role;
+      peer->resumed = false;
       memset(&peer->timer, 0, sizeof(oc_tls_retr_timer_t));
       mbedtls_ssl_init(&peer->ssl_ctx);
 
@@ -1232,6 +1715,16 @@ oc_tls_add_peer(oc_endpoint_t *endpoint, int role)
 #endif /* OC_CLOUD && OC_CLIENT */
 #endif /* OC_PKI */
 
+      if (role == MBEDTLS_SSL_IS_SERVER) {
+        mbedtls_ssl_conf_session_cache(&peer->ssl_conf, peer,
+                                       tls_session_get_cb, tls_session_set_cb);
+#ifdef MBEDTLS_SSL_SESSION_TICKETS
+        mbedtls_ssl_conf_session_tickets_cb(&peer->ssl_conf,
+                                            tls_ticket_write_cb,
+                                            tls_ticket_parse_cb, peer);
+#endif /* MBEDTLS_SSL_SESSION_TICKETS */
+      }
+
       oc_tls_set_ciphersuites(&peer->ssl_conf, endpoint);
 
       int err = mbedtls_ssl_setup(&peer->ssl_ctx, &peer->ssl_conf);
@@ -1244,6 +1737,10 @@ oc_tls_add_peer(oc_endpoint_t *endpoint, int role)
 
       mbedtls_ssl_set_bio(&peer->ssl_ctx, peer, ssl_send, ssl_recv, NULL);
 
+      if (role == MBEDTLS_SSL_IS_CLIENT) {
+        tls_session_resume(peer);
+      }
+
       if (role == MBEDTLS_SSL_IS_SERVER &&
           mbedtls_ssl_set_client_transport_id(
             &peer->ssl_ctx, (const unsigned char *)&endpoint->addr,
@@ -1252,6 +1749,7 @@ oc_tls_add_peer(oc_endpoint_t *endpoint, int role)
         return NULL;
       }
       oc_list_add(tls_peers, peer);
+      tls_peer_link(peer);
 
       if (!(endpoint->flags & TCP)) {
         mbedtls_ssl_set_timer_cb(&peer->ssl_ctx, &peer->timer, ssl_set_timer,
@@ -1274,6 +1772,7 @@ oc_tls_shutdown(void)
     oc_tls_free_peer(p, false);
     p = oc_list_pop(tls_peers);
   }
+  tls_sessions_free();
 #ifdef OC_PKI
   oc_x509_crt_t *cert = (oc_x509_crt_t *)oc_list_pop(identity_certs);
   while (cert != NULL) {
@@ -1309,6 +1808,8 @@ oc_tls_init_context(void)
   mbedtls_debug_set_threshold(4);
 #endif /* OC_DEBUG */
 
+  tls_full_handshakes = 0;
+  tls_resumed_handshakes = 0;
   mbedtls_entropy_init(&entropy_ctx);
   mbedtls_ssl_cookie_init(&cookie_ctx);
   mbedtls_ctr_drbg_init(&ctr_drbg_ctx);
@@ -1673,6 +2174,9 @@ read_application_data(oc_tls_peer_t *peer)
         OC_DBG("oc_tls: Got nonce");
         OC_LOGbytes(peer->client_server_random, 64);
       }
+      if (peer->ssl_ctx.state == MBEDTLS_SSL_HANDSHAKE_WRAPUP) {
+        peer->resumed = (peer->ssl_ctx.handshake->resume != 0);
+      }
       if (ret == MBEDTLS_ERR_SSL_HELLO_VERIFY_REQUIRED) {
         mbedtls_ssl_session_reset(&peer->ssl_ctx);
         /* For HelloVerifyRequest cookies */
@@ -1698,6 +2202,15 @@ read_application_data(oc_tls_peer_t *peer)
     if (peer->ssl_ctx.state == MBEDTLS_SSL_HANDSHAKE_OVER) {
       OC_DBG("oc_tls: (D)TLS Session is connected via ciphersuite [0x%x]",
              peer->ssl_ctx.session->ciphersuite);
+      if (peer->resumed) {
+        OC_DBG("oc_tls: resumed cached session");
+        tls_resumed_handshakes++;
+      } else {
+        tls_full_handshakes++;
+      }
+      if (peer->role == MBEDTLS_SSL_IS_CLIENT) {
+        tls_session_save(peer);
+      }
       oc_handle_session(&peer->endpoint, OC_SESSION_CONNECTED);
 #ifdef OC_CLIENT
 #if defined(OC_CLOUD) && defined(OC_PKI)
@@ -1786,6 +2299,7 @@ static void
 close_all_tls_sessions_for_device(size_t device)
 {
   OC_DBG("oc_tls: closing all open (D)TLS sessions on device %zd", device);
+  oc_tls_remove_sessions(device);
   oc_tls_peer_t *p = oc_list_head(tls_peers), *next;
   while (p != NULL) {
     next = p->next;
@@ -43,6 +43,7 @@ typedef struct
 typedef struct oc_tls_peer_t
 {
   struct oc_tls_peer_t *next;
+  struct oc_tls_peer_t *next_by_endpoint;
   OC_LIST_STRUCT(recv_q);
   OC_LIST_STRUCT(send_q);
   mbedtls_ssl_context ssl_ctx;
@@ -54,6 +55,7 @@ typedef struct oc_tls_peer_t
   uint8_t client_server_random[64];
   oc_uuid_t uuid;
   oc_clock_time_t timestamp;
+  bool resumed;
 #ifdef OC_PKI
   oc_string_t public_key;
 #endif /* OC_PKI */
@@ -71,6 +73,7 @@ bool oc_sec_derive_owner_psk(oc_endpoint_t *endpoint, const uint8_t *oxm,
                              uint8_t *key, const size_t key_len);
 
 void oc_tls_remove_peer(oc_endpoint_t *endpoint);
+void oc_tls_remove_sessions(size_t device);
 size_t oc_tls_send_message(oc_message_t *message);
 oc_uuid_t *oc_tls_get_peer_uuid(oc_endpoint_t *endpoint);
 oc_tls_peer_t *oc_tls_get_peer(oc_endpoint_t *endpoint);
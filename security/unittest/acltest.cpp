@@ -0,0 +1,263 @@
+/******************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************/
+
+#include <cstring>
+#include <gtest/gtest.h>
+
+#include "oc_acl_internal.h"
+#include "oc_api.h"
+#include "oc_cred_internal.h"
+#include "oc_pstat.h"
+#include "oc_rep.h"
+#define delete pseudo_delete
+#include "oc_core_res.h"
+#undef delete
+
+#if defined(OC_SECURITY) && defined(OC_DYNAMIC_ALLOCATION)
+
+static const size_t device = 0;
+
+static void signal_event_loop(void)
+{
+}
+
+static int app_init(void)
+{
+  int ret = oc_init_platform("Samsung", NULL, NULL);
+  ret |= oc_add_device("/oic/d", "oic.d.light", "Lamp", "ocf.1.0.0",
+                       "ocf.res.1.0.0", NULL, NULL);
+  return ret;
+}
+
+static oc_handler_t handler = {.init = app_init,
+                    .signal_event_loop = signal_event_loop,
+                    .register_resources = NULL,
+                    .requests_entry = NULL };
+
+static void onGet(oc_request_t *request, oc_interface_mask_t iface_mask,
+                  void *user_data)
+{
+  (void)iface_mask;
+  (void)user_data;
+  oc_send_response(request, OC_STATUS_OK);
+}
+
+static oc_resource_t *newResource(const char *uri)
+{
+  oc_resource_t *res = oc_new_resource(NULL, uri, 1, device);
+  oc_resource_bind_resource_type(res, "oic.r.test");
+  oc_resource_set_request_handler(res, OC_GET, onGet, NULL);
+  oc_add_resource(res);
+  return res;
+}
+
+static oc_endpoint_t anonEndpoint(void)
+{
+  oc_endpoint_t ep;
+  memset(&ep, 0, sizeof(ep));
+  ep.flags = IPV6;
+  ep.device = device;
+  ep.addr.ipv6.address[15] = 1;
+  ep.addr.ipv6.port = 40000;
+  return ep;
+}
+
+static bool checkAcl(oc_method_t method, oc_resource_t *resource)
+{
+  oc_endpoint_t ep = anonEndpoint();
+  return oc_sec_check_acl(method, resource, &ep);
+}
+
+static oc_acl_cache_stats_t cacheStats(void)
+{
+  oc_acl_cache_stats_t stats;
+  EXPECT_EQ(0, oc_get_acl_cache_stats(&stats));
+  return stats;
+}
+
+static oc_rep_t *parsePayload(struct oc_memb *rep_objects)
+{
+  const uint8_t *payload = oc_rep_get_encoder_buf();
+  int payload_len = oc_rep_get_encoded_payload_size();
+  EXPECT_NE(-1, payload_len);
+  oc_rep_set_pool(rep_objects);
+  oc_rep_t *rep = NULL;
+  EXPECT_EQ(0, oc_parse_rep(payload, payload_len, &rep));
+  return rep;
+}
+
+/* grants the anon-clear connections permission on href through /oic/sec/acl2 */
+static void addAnonClearAce(int aceid, const char *href, uint16_t permission)
+{
+  uint8_t buf[512];
+  oc_rep_new(&buf[0], sizeof(buf));
+  oc_rep_start_root_object();
+  oc_rep_set_array(root, aclist2);
+  oc_rep_object_array_start_item(aclist2);
+  oc_rep_set_int(aclist2, aceid, aceid);
+  oc_rep_set_object(aclist2, subject);
+  oc_rep_set_text_string(subject, conntype, "anon-clear");
+  oc_rep_close_object(aclist2, subject);
+  oc_rep_set_array(aclist2, resources);
+  oc_rep_object_array_start_item(resources);
+  oc_rep_set_text_string(resources, href, href);
+  oc_rep_object_array_end_item(resources);
+  oc_rep_close_array(aclist2, resources);
+  oc_rep_set_uint(aclist2, permission, permission);
+  oc_rep_object_array_end_item(aclist2);
+  oc_rep_close_array(root, aclist2);
+  oc_rep_end_root_object();
+
+  struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
+  oc_rep_t *rep = parsePayload(&rep_objects);
+  EXPECT_TRUE(oc_sec_decode_acl(rep, true, device));
+  oc_free_rep(rep);
+}
+
+static void setDeviceState(oc_dostype_t s)
+{
+  uint8_t buf[128];
+  oc_rep_new(&buf[0], sizeof(buf));
+  oc_rep_start_root_object();
+  oc_rep_set_object(root, dos);
+  oc_rep_set_int(dos, s, s);
+  oc_rep_close_object(root, dos);
+  oc_rep_end_root_object();
+
+  struct oc_memb rep_objects = { sizeof(oc_rep_t), 0, 0, 0, 0 };
+  oc_rep_t *rep = parsePayload(&rep_objects);
+  EXPECT_TRUE(oc_sec_decode_pstat(rep, true, device));
+  oc_free_rep(rep);
+  EXPECT_EQ(s, oc_sec_get_pstat(device)->s);
+}
+
+class TestAclCache: public testing::Test
+{
+    protected:
+        virtual void SetUp()
+        {
+            oc_main_init(&handler);
+            oc_sec_acl_default(device);
+        }
+
+        virtual void TearDown()
+        {
+            oc_main_shutdown();
+        }
+};
+
+TEST_F(TestAclCache, AclCacheStats_N)
+{
+  EXPECT_EQ(-1, oc_get_acl_cache_stats(NULL));
+}
+
+TEST_F(TestAclCache, RepeatedCheckHitsCache_P)
+{
+  oc_resource_t *d = oc_core_get_resource_by_index(OCF_D, device);
+  oc_acl_cache_stats_t before = cacheStats();
+
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+  oc_acl_cache_stats_t after = cacheStats();
+  EXPECT_EQ(before.hits, after.hits);
+  EXPECT_EQ(before.misses + 1, after.misses);
+
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+  EXPECT_FALSE(checkAcl(OC_POST, d));
+  after = cacheStats();
+  EXPECT_EQ(before.hits + 2, after.hits);
+  EXPECT_EQ(before.misses + 1, after.misses);
+}
+
+TEST_F(TestAclCache, AceUpdateInvalidatesCache_P)
+{
+  oc_resource_t *d = oc_core_get_resource_by_index(OCF_D, device);
+  EXPECT_FALSE(checkAcl(OC_POST, d));
+
+  addAnonClearAce(10, "/oic/d", OC_PERM_RETRIEVE | OC_PERM_UPDATE);
+  oc_acl_cache_stats_t before = cacheStats();
+  EXPECT_TRUE(checkAcl(OC_POST, d));
+  EXPECT_EQ(before.misses + 1, cacheStats().misses);
+}
+
+TEST_F(TestAclCache, AceDeleteInvalidatesCache_P)
+{
+  oc_resource_t *doxm = oc_core_get_resource_by_index(OCF_SEC_DOXM, device);
+  EXPECT_TRUE(checkAcl(OC_POST, doxm));
+  EXPECT_TRUE(checkAcl(OC_POST, doxm));
+
+  /* drops the resources of the bootstrap anon-clear ACE */
+  oc_sec_ace_clear_bootstrap_aces(device);
+  oc_acl_cache_stats_t before = cacheStats();
+  EXPECT_FALSE(checkAcl(OC_POST, doxm));
+  EXPECT_EQ(before.misses + 1, cacheStats().misses);
+
+  oc_sec_acl_default(device);
+  EXPECT_TRUE(checkAcl(OC_POST, doxm));
+}
+
+TEST_F(TestAclCache, CredRemovalInvalidatesCache_P)
+{
+  const uint8_t key[16] = { 0 };
+  int credid = oc_sec_add_new_cred(
+    device, false, NULL, -1, OC_CREDTYPE_PSK, OC_CREDUSAGE_NULL,
+    "32323232-3232-3232-3232-323232323232", OC_ENCODING_RAW, sizeof(key), key,
+    OC_ENCODING_UNSUPPORTED, 0, NULL, NULL, NULL);
+  ASSERT_NE(-1, credid);
+  oc_sec_cred_t *cred = oc_sec_get_cred_by_credid(credid, device);
+  ASSERT_NE(nullptr, cred);
+
+  oc_resource_t *d = oc_core_get_resource_by_index(OCF_D, device);
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+
+  oc_sec_remove_cred(cred, device);
+  oc_acl_cache_stats_t before = cacheStats();
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+  EXPECT_EQ(before.hits, cacheStats().hits);
+  EXPECT_EQ(before.misses + 1, cacheStats().misses);
+}
+
+TEST_F(TestAclCache, PstatChangeInvalidatesCache_P)
+{
+  oc_resource_t *d = oc_core_get_resource_by_index(OCF_D, device);
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+
+  setDeviceState(OC_DOS_RFPRO);
+  oc_acl_cache_stats_t before = cacheStats();
+  EXPECT_TRUE(checkAcl(OC_GET, d));
+  EXPECT_EQ(before.hits, cacheStats().hits);
+  EXPECT_EQ(before.misses + 1, cacheStats().misses);
+}
+
+TEST_F(TestAclCache, ResourceDeletionInvalidatesCache_P)
+{
+  setDeviceState(OC_DOS_RFNOP);
+  oc_resource_t *res = newResource("/acl/light");
+  addAnonClearAce(10, "/acl/light", OC_PERM_RETRIEVE);
+  EXPECT_TRUE(checkAcl(OC_GET, res));
+  EXPECT_TRUE(checkAcl(OC_GET, res));
+
+  /* the new resource may reuse the memory of the deleted one */
+  oc_delete_resource(res);
+  res = newResource("/acl/dark");
+  oc_acl_cache_stats_t before = cacheStats();
+  EXPECT_FALSE(checkAcl(OC_GET, res));
+  EXPECT_EQ(before.hits, cacheStats().hits);
+  EXPECT_EQ(before.misses + 1, cacheStats().misses);
+  oc_delete_resource(res);
+}
+#endif /* OC_SECURITY && OC_DYNAMIC_ALLOCATION */
@@ -0,0 +1,108 @@
+/******************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************/
+
+#include <cstring>
+#include <gtest/gtest.h>
+
+#include "oc_api.h"
+#include "oc_buffer.h"
+#include "oc_endpoint.h"
+#include "oc_network_events.h"
+#include "oc_tls.h"
+
+#if defined(OC_SECURITY) && defined(OC_DYNAMIC_ALLOCATION)
+
+#define NUM_PEERS 1000
+
+static const size_t device = 0;
+
+static void signal_event_loop(void)
+{
+}
+
+static int app_init(void)
+{
+  int ret = oc_init_platform("Samsung", NULL, NULL);
+  ret |= oc_add_device("/oic/d", "oic.d.light", "Lamp", "ocf.1.0.0",
+                       "ocf.res.1.0.0", NULL, NULL);
+  return ret;
+}
+
+static oc_handler_t handler = {.init = app_init,
+                    .signal_event_loop = signal_event_loop,
+                    .register_resources = NULL,
+                    .requests_entry = NULL };
+
+static oc_endpoint_t peerEndpoint(int i)
+{
+  oc_endpoint_t ep;
+  memset(&ep, 0, sizeof(ep));
+  ep.flags = (transport_flags)(IPV6 | SECURED);
+  ep.device = device;
+  ep.addr.ipv6.address[0] = 0xfe;
+  ep.addr.ipv6.address[1] = 0x80;
+  ep.addr.ipv6.address[14] = (uint8_t)(i >> 8);
+  ep.addr.ipv6.address[15] = (uint8_t)i;
+  ep.addr.ipv6.port = (uint16_t)(40000 + i % 16);
+  return ep;
+}
+
+class TestTlsPeers: public testing::Test
+{
+    protected:
+        static void SetUpTestCase()
+        {
+            oc_main_init(&handler);
+        }
+
+        static void TearDownTestCase()
+        {
+            oc_main_shutdown();
+        }
+};
+
+TEST_F(TestTlsPeers, PeerLookupManyPeers_P)
+{
+  /* a datagram from an unknown endpoint on the secured port creates a DTLS
+   * peer, and the invalid record it carries is discarded */
+  for (int i = 0; i < NUM_PEERS; i++) {
+    oc_message_t *message = oc_allocate_message();
+    ASSERT_NE(nullptr, message);
+    memset(message->data, 0, 13);
+    message->length = 13;
+    message->encrypted = 1;
+    message->endpoint = peerEndpoint(i);
+    oc_network_event(message);
+    oc_main_poll();
+  }
+
+  for (int i = 0; i < NUM_PEERS; i++) {
+    oc_endpoint_t ep = peerEndpoint(i);
+    oc_tls_peer_t *peer = oc_tls_get_peer(&ep);
+    ASSERT_NE(nullptr, peer);
+    EXPECT_EQ(0, oc_endpoint_compare(&ep, &peer->endpoint));
+    EXPECT_FALSE(oc_tls_connected(&ep));
+  }
+  oc_endpoint_t unknown = peerEndpoint(NUM_PEERS);
+  EXPECT_EQ(nullptr, oc_tls_get_peer(&unknown));
+
+  oc_endpoint_t ep = peerEndpoint(0);
+  oc_tls_remove_peer(&ep);
+  EXPECT_EQ(nullptr, oc_tls_get_peer(&ep));
+  ep = peerEndpoint(1);
+  EXPECT_NE(nullptr, oc_tls_get_peer(&ep));
+}
+#endif /* OC_SECURITY && OC_DYNAMIC_ALLOCATION */
@@ -18,12 +18,19 @@
  *
  ******************************************************************/
 
+#include <chrono>
 #include <cstdlib>
+#include <cstring>
+#include <thread>
 #include "gtest/gtest.h"
 
 #include "oc_tls.h"
 #include "oc_api.h"
+#include "oc_buffer.h"
+#include "oc_cred_internal.h"
 #include "oc_endpoint.h"
+#include "oc_network_events.h"
+#include "oc_pstat.h"
 #include "oc_signal_event_loop.h"
 #define delete pseudo_delete
 #include "oc_core_res.h"
@@ -93,4 +100,315 @@ TEST_F(TestTlsConnection, TlsConnectionTest_N)
     oc_free_endpoint(endpoint);
 }
 
+TEST_F(TestTlsConnection, TlsSessionStats_P)
+{
+    int errorCode = oc_tls_init_context();
+    ASSERT_EQ(0, errorCode) << "Failed to init TLS Connection";
+    oc_tls_session_stats_t stats;
+    ASSERT_EQ(0, oc_get_tls_session_stats(&stats));
+    EXPECT_EQ(0u, stats.full_handshakes);
+    EXPECT_EQ(0u, stats.resumed_handshakes);
+    EXPECT_EQ(0u, stats.cached_sessions);
+    oc_set_tls_session_lifetime(0);
+    ASSERT_EQ(0, oc_get_tls_session_stats(&stats));
+    EXPECT_EQ(0u, stats.cached_sessions);
+    oc_set_tls_session_lifetime(86400);
+}
+
+TEST_F(TestTlsConnection, TlsSessionStats_N)
+{
+    EXPECT_EQ(-1, oc_get_tls_session_stats(NULL));
+}
+
 #endif
+
+#if defined(OC_SECURITY) && defined(OC_DYNAMIC_ALLOCATION)
+#define SESSION_CIPHERSUITE 0xC0AE
+#define NUM_STORED_SESSIONS 64
+
+static const size_t device = 0;
+
+static void signal_event_loop(void)
+{
+}
+
+static int app_init(void)
+{
+    int ret = oc_init_platform(MANUFACTURER_NAME, NULL, NULL);
+    ret |= oc_add_device(DEVICE_URI, DEVICE_TYPE, DEVICE_NAME,
+                         OCF_SPEC_VERSION, OCF_DATA_MODEL_VERSION, NULL, NULL);
+    return ret;
+}
+
+static oc_handler_t handler = {.init = app_init,
+                    .signal_event_loop = signal_event_loop,
+                    .register_resources = NULL,
+                    .requests_entry = NULL };
+
+/* a datagram from an unknown endpoint on the secured port creates a DTLS
+ * server peer, the invalid record it carries is discarded */
+static oc_tls_peer_t *serverPeer(uint8_t i)
+{
+    oc_endpoint_t ep;
+    memset(&ep, 0, sizeof(ep));
+    ep.flags = (transport_flags)(IPV6 | SECURED);
+    ep.device = device;
+    ep.addr.ipv6.address[0] = 0xfe;
+    ep.addr.ipv6.address[1] = 0x80;
+    ep.addr.ipv6.address[15] = i;
+    ep.addr.ipv6.port = 40000;
+
+    oc_message_t *message = oc_allocate_message();
+    EXPECT_NE(nullptr, message);
+    if (!message) {
+        return NULL;
+    }
+    memset(message->data, 0, 13);
+    message->length = 13;
+    message->encrypted = 1;
+    message->endpoint = ep;
+    oc_network_event(message);
+    oc_main_poll();
+
+    oc_tls_peer_t *peer = oc_tls_get_peer(&ep);
+    EXPECT_NE(nullptr, peer);
+    if (peer) {
+        memset(peer->uuid.id, i, sizeof(peer->uuid.id));
+    }
+    return peer;
+}
+
+static void initSession(mbedtls_ssl_session *session, uint8_t id)
+{
+    mbedtls_ssl_session_init(session);
+    session->ciphersuite = SESSION_CIPHERSUITE;
+    session->id_len = 32;
+    memset(session->id, id, session->id_len);
+}
+
+/* caches the session the full handshake of the peer has established */
+static bool storeSession(oc_tls_peer_t *peer, uint8_t id)
+{
+    mbedtls_ssl_session session;
+    initSession(&session, id);
+    memset(session.master, id, sizeof(session.master));
+    bool stored = peer->ssl_conf.f_set_cache(peer->ssl_conf.p_cache,
+                                             &session) == 0;
+    mbedtls_ssl_session_free(&session);
+    return stored;
+}
+
+/* resumes the session with the ID a client presents to the peer */
+static bool resumeSession(oc_tls_peer_t *peer, uint8_t id)
+{
+    mbedtls_ssl_session session;
+    initSession(&session, id);
+    bool resumed = peer->ssl_conf.f_get_cache(peer->ssl_conf.p_cache,
+                                              &session) == 0;
+    if (resumed) {
+        uint8_t master[sizeof(session.master)];
+        memset(master, id, sizeof(master));
+        EXPECT_EQ(0, memcmp(master, session.master, sizeof(master)));
+    }
+    mbedtls_ssl_session_free(&session);
+    return resumed;
+}
+
+static size_t cachedSessions(void)
+{
+    oc_tls_session_stats_t stats;
+    EXPECT_EQ(0, oc_get_tls_session_stats(&stats));
+    return stats.cached_sessions;
+}
+
+class TestTlsSessionCache: public testing::Test
+{
+    protected:
+        virtual void SetUp()
+        {
+            oc_main_init(&handler);
+            /* sessions are only cached in normal operation */
+            oc_sec_get_pstat(device)->s = OC_DOS_RFNOP;
+        }
+
+        virtual void TearDown()
+        {
+            oc_set_tls_session_lifetime(86400);
+            oc_main_shutdown();
+        }
+};
+
+TEST_F(TestTlsSessionCache, ResumeById_P)
+{
+    oc_tls_peer_t *first = serverPeer(1);
+    oc_tls_peer_t *second = serverPeer(2);
+    ASSERT_NE(nullptr, first);
+    ASSERT_NE(nullptr, second);
+
+    ASSERT_TRUE(storeSession(first, 0x11));
+    EXPECT_EQ(1u, cachedSessions());
+
+    /* the peer resuming the session gets the identity of the full handshake */
+    EXPECT_TRUE(resumeSession(second, 0x11));
+    uint8_t uuid[16];
+    memset(uuid, 1, sizeof(uuid));
+    EXPECT_EQ(0, memcmp(uuid, second->uuid.id, sizeof(uuid)));
+    /* sessions resumed by ID stay cached */
+    EXPECT_TRUE(resumeSession(second, 0x11));
+    EXPECT_EQ(1u, cachedSessions());
+}
+
+TEST_F(TestTlsSessionCache, ResumeById_N)
+{
+    oc_tls_peer_t *peer = serverPeer(1);
+    ASSERT_NE(nullptr, peer);
+    ASSERT_TRUE(storeSession(peer, 0x11));
+    EXPECT_FALSE(resumeSession(peer, 0x12));
+
+    /* sessions are neither cached nor resumed outside of normal operation */
+    oc_sec_get_pstat(device)->s = OC_DOS_RFPRO;
+    EXPECT_FALSE(resumeSession(peer, 0x11));
+    EXPECT_TRUE(storeSession(peer, 0x13));
+    oc_sec_get_pstat(device)->s = OC_DOS_RFNOP;
+    EXPECT_FALSE(resumeSession(peer, 0x13));
+    EXPECT_EQ(1u, cachedSessions());
+}
+
+TEST_F(TestTlsSessionCache, EvictLeastRecentlyUsed_P)
+{
+    oc_tls_peer_t *peer = serverPeer(1);
+    ASSERT_NE(nullptr, peer);
+
+    for (int i = 1; i <= NUM_STORED_SESSIONS; i++) {
+        ASSERT_TRUE(storeSession(peer, (uint8_t)i));
+    }
+    size_t capacity = cachedSessions();
+    ASSERT_GT(capacity, 1u);
+    ASSERT_LT(capacity, (size_t)NUM_STORED_SESSIONS);
+
+    /* the oldest sessions were replaced */
+    uint8_t oldest = (uint8_t)(NUM_STORED_SESSIONS - capacity + 1);
+    EXPECT_FALSE(resumeSession(peer, (uint8_t)(oldest - 1)));
+
+    /* resuming the oldest session makes the next one the least recently
+     * used, which is replaced by the next session */
+    EXPECT_TRUE(resumeSession(peer, oldest));
+    ASSERT_TRUE(storeSession(peer, NUM_STORED_SESSIONS + 1));
+    EXPECT_EQ(capacity, cachedSessions());
+    EXPECT_TRUE(resumeSession(peer, oldest));
+    EXPECT_FALSE(resumeSession(peer, (uint8_t)(oldest + 1)));
+    EXPECT_TRUE(resumeSession(peer, NUM_STORED_SESSIONS + 1));
+}
+
+TEST_F(TestTlsSessionCache, ExpiredSession_N)
+{
+    oc_tls_peer_t *peer = serverPeer(1);
+    ASSERT_NE(nullptr, peer);
+
+    oc_set_tls_session_lifetime(1);
+    ASSERT_TRUE(storeSession(peer, 0x11));
+    EXPECT_TRUE(resumeSession(peer, 0x11));
+
+    std::this_thread::sleep_for(std::chrono::milliseconds(1500));
+    EXPECT_FALSE(resumeSession(peer, 0x11));
+    EXPECT_EQ(0u, cachedSessions());
+}
+
+TEST_F(TestTlsSessionCache, CredRemovalDropsSessions_P)
+{
+    oc_tls_peer_t *peer = serverPeer(1);
+    ASSERT_NE(nullptr, peer);
+
+    const uint8_t key[16] = { 0 };
+    int credid = oc_sec_add_new_cred(
+        device, false, NULL, -1, OC_CREDTYPE_PSK, OC_CREDUSAGE_NULL,
+        "01010101-0101-0101-0101-010101010101", OC_ENCODING_RAW, sizeof(key),
+        key, OC_ENCODING_UNSUPPORTED, 0, NULL, NULL, NULL);
+    ASSERT_NE(-1, credid);
+    oc_sec_cred_t *cred = oc_sec_get_cred_by_credid(credid, device);
+    ASSERT_NE(nullptr, cred);
+
+    ASSERT_TRUE(storeSession(peer, 0x11));
+    ASSERT_TRUE(storeSession(peer, 0x12));
+    EXPECT_EQ(2u, cachedSessions());
+
+    oc_sec_remove_cred(cred, device);
+    EXPECT_EQ(0u, cachedSessions());
+    EXPECT_FALSE(resumeSession(peer, 0x11));
+    EXPECT_FALSE(resumeSession(peer, 0x12));
+}
+
+#ifdef MBEDTLS_SSL_SESSION_TICKETS
+TEST_F(TestTlsSessionCache, ResumeByTicket_P)
+{
+    oc_tls_peer_t *first = serverPeer(1);
+    oc_tls_peer_t *second = serverPeer(2);
+    ASSERT_NE(nullptr, first);
+    ASSERT_NE(nullptr, second);
+
+    mbedtls_ssl_session session;
+    initSession(&session, 0);
+    memset(session.master, 0x11, sizeof(session.master));
+    unsigned char ticket[64];
+    size_t ticket_len = 0;
+    uint32_t lifetime = 0;
+    ASSERT_EQ(0, first->ssl_conf.f_ticket_write(
+                   first->ssl_conf.p_ticket, &session, ticket,
+                   ticket + sizeof(ticket), &ticket_len, &lifetime));
+    mbedtls_ssl_session_free(&session);
+    ASSERT_GT(ticket_len, 0u);
+    EXPECT_EQ(86400u, lifetime);
+    EXPECT_EQ(1u, cachedSessions());
+
+    /* the ticket is presented to another peer of the device */
+    unsigned char presented[sizeof(ticket)];
+    memcpy(presented, ticket, ticket_len);
+    mbedtls_ssl_session resumed;
+    mbedtls_ssl_session_init(&resumed);
+    EXPECT_EQ(0, second->ssl_conf.f_ticket_parse(second->ssl_conf.p_ticket,
+                                                 &resumed, presented,
+                                                 ticket_len));
+    uint8_t master[sizeof(resumed.master)];
+    memset(master, 0x11, sizeof(master));
+    EXPECT_EQ(0, memcmp(master, resumed.master, sizeof(master)));
+    uint8_t uuid[16];
+    memset(uuid, 1, sizeof(uuid));
+    EXPECT_EQ(0, memcmp(uuid, second->uuid.id, sizeof(uuid)));
+    mbedtls_ssl_session_free(&resumed);
+}
+
+TEST_F(TestTlsSessionCache, TicketSingleUse_N)
+{
+    oc_tls_peer_t *peer = serverPeer(1);
+    ASSERT_NE(nullptr, peer);
+
+    mbedtls_ssl_session session;
+    initSession(&session, 0);
+    unsigned char ticket[64];
+    size_t ticket_len = 0;
+    uint32_t lifetime = 0;
+    ASSERT_EQ(0, peer->ssl_conf.f_ticket_write(
+                   peer->ssl_conf.p_ticket, &session, ticket,
+                   ticket + sizeof(ticket), &ticket_len, &lifetime));
+    mbedtls_ssl_session_free(&session);
+
+    unsigned char presented[sizeof(ticket)];
+    mbedtls_ssl_session resumed;
+    memcpy(presented, ticket, ticket_len);
+    mbedtls_ssl_session_init(&resumed);
+    EXPECT_EQ(0, peer->ssl_conf.f_ticket_parse(peer->ssl_conf.p_ticket,
+                                               &resumed, presented,
+                                               ticket_len));
+    mbedtls_ssl_session_free(&resumed);
+    EXPECT_EQ(0u, cachedSessions());
+
+    /* a replayed ticket is rejected, its session was consumed */
+    memcpy(presented, ticket, ticket_len);
+    mbedtls_ssl_session_init(&resumed);
+    EXPECT_EQ(MBEDTLS_ERR_SSL_SESSION_TICKET_EXPIRED,
+              peer->ssl_conf.f_ticket_parse(peer->ssl_conf.p_ticket,
+                                            &resumed, presented, ticket_len));
+    mbedtls_ssl_session_free(&resumed);
+}
+#endif /* MBEDTLS_SSL_SESSION_TICKETS */
+#endif /* OC_SECURITY && OC_DYNAMIC_ALLOCATION */
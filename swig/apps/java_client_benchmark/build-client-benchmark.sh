@@ -0,0 +1,13 @@
+#!/bin/bash
+
+# remove existing .class files
+rm -rf ./bin
+
+# create .class files directory
+mkdir ./bin
+
+# compile client java files
+javac  -cp ../../iotivity-lite-java/libs/iotivity-lite.jar  -sourcepath ./src  -d ./bin  ./src/java_client_benchmark/*.java
+
+# create jar file
+jar -cfv client-benchmark.jar -C ./bin  .
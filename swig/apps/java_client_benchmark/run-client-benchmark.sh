@@ -0,0 +1,4 @@
+#!/bin/bash
+
+# usage: ./run-client-benchmark.sh [threads] [requests per thread] [requests in flight per thread]
+java -Djava.library.path=../../iotivity-lite-java/libs -cp client-benchmark.jar:../../iotivity-lite-java/libs/iotivity-lite.jar java_client_benchmark.ClientBenchmark "$@"
@@ -0,0 +1,155 @@
+package java_client_benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.iotivity.*;
+
+/*
+ * Java counterpart of apps/client_multithread_linux.c used as a benchmark.
+ *
+ * Discovers the core.light resource of apps/server_multithread_linux.c, then
+ * GETs it from many threads, first with OCMain.doGet, which waits for the
+ * stack lock held by the poll thread, then with OCMain.queueGet, which queues
+ * the request for the poll thread without locking. Each thread keeps a fixed
+ * number of requests in flight.
+ */
+public class ClientBenchmark {
+
+    static final String RESOURCE_TYPE = "core.light";
+    static final long DISCOVERY_TIMEOUT_SECONDS = 30;
+    static final long RESPONSE_TIMEOUT_SECONDS = 10;
+
+    static final CountDownLatch discovered = new CountDownLatch(1);
+    static String serverUri;
+    static OCEndpoint serverEndpoint;
+
+    private interface Requester {
+        boolean get(OCResponseHandler handler);
+    }
+
+    private static class Results {
+        final AtomicInteger responses = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger lost = new AtomicInteger();
+        final AtomicLong latencyNanos = new AtomicLong();
+    }
+
+    private static class BenchmarkResponseHandler implements OCResponseHandler {
+        private final Semaphore inFlight;
+        private final Results results;
+        private final long sentNanos = System.nanoTime();
+
+        BenchmarkResponseHandler(Semaphore inFlight, Results results) {
+            this.inFlight = inFlight;
+            this.results = results;
+        }
+
+        @Override
+        public void handler(OCClientResponse response) {
+            results.latencyNanos.addAndGet(System.nanoTime() - sentNanos);
+            if (response.getCode() != OCStatus.OC_STATUS_OK) {
+                results.failures.incrementAndGet();
+            }
+            results.responses.incrementAndGet();
+            inFlight.release();
+        }
+    }
+
+    private static void run(String name, final Requester requester, int threadCount, final int requestsPerThread,
+            final int inFlightPerThread) throws InterruptedException {
+        final Results results = new Results();
+        Thread[] threads = new Thread[threadCount];
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(name + "-" + t) {
+                @Override
+                public void run() {
+                    Semaphore inFlight = new Semaphore(inFlightPerThread);
+                    try {
+                        for (int r = 0; r < requestsPerThread; r++) {
+                            if (!inFlight.tryAcquire(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                                break;
+                            }
+                            if (!requester.get(new BenchmarkResponseHandler(inFlight, results))) {
+                                results.failures.incrementAndGet();
+                                results.responses.incrementAndGet();
+                                inFlight.release();
+                            }
+                        }
+                        // wait for the responses still in flight
+                        if (inFlight.tryAcquire(inFlightPerThread, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                            inFlight.release(inFlightPerThread);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        int total = threadCount * requestsPerThread;
+        int responses = results.responses.get();
+        results.lost.set(total - responses);
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-8s %d threads x %d requests (%d in flight each): %.0f requests/s, "
+                + "avg latency %.2f ms, %d failed, %d lost%n", name, threadCount, requestsPerThread,
+                inFlightPerThread, responses / seconds,
+                (responses > 0) ? results.latencyNanos.get() / 1e6 / responses : 0.0,
+                results.failures.get(), results.lost.get());
+    }
+
+    public static void main(String argv[]) throws InterruptedException {
+        int threadCount = (argv.length > 0) ? Integer.parseInt(argv[0]) : 8;
+        int requestsPerThread = (argv.length > 1) ? Integer.parseInt(argv[1]) : 1000;
+        int inFlightPerThread = (argv.length > 2) ? Integer.parseInt(argv[2]) : 4;
+
+        String creds_path = "./client_benchmark_creds/";
+        java.io.File directory = new java.io.File(creds_path);
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+        if (0 != OCStorage.storageConfig(directory.getPath())) {
+            System.err.println("Failed to setup Storage Config.");
+        }
+
+        int init_ret = OCMain.mainInit(new MyInitHandler());
+        if (init_ret < 0) {
+            System.exit(init_ret);
+        }
+
+        if (!discovered.await(DISCOVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("No " + RESOURCE_TYPE + " resource found, is server_multithread_linux running?");
+            OCMain.mainShutdown();
+            System.exit(-1);
+        }
+        System.out.println("Benchmarking GET " + serverUri + " at " + OCEndpointUtil.toString(serverEndpoint));
+
+        run("doGet", new Requester() {
+            @Override
+            public boolean get(OCResponseHandler handler) {
+                return OCMain.doGet(serverUri, serverEndpoint, null, handler, OCQos.LOW_QOS);
+            }
+        }, threadCount, requestsPerThread, inFlightPerThread);
+
+        run("queueGet", new Requester() {
+            @Override
+            public boolean get(OCResponseHandler handler) {
+                return OCMain.queueGet(serverUri, serverEndpoint, null, handler, OCQos.LOW_QOS);
+            }
+        }, threadCount, requestsPerThread, inFlightPerThread);
+
+        System.out.println("live response handlers: " + OCMain.getLiveResponseHandlerCount());
+
+        OCMain.mainShutdown();
+        System.exit(0);
+    }
+}
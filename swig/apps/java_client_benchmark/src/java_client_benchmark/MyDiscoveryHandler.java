@@ -0,0 +1,23 @@
+package java_client_benchmark;
+
+import org.iotivity.OCDiscoveryFlags;
+import org.iotivity.OCDiscoveryHandler;
+import org.iotivity.OCEndpoint;
+import org.iotivity.OCEndpointUtil;
+
+public class MyDiscoveryHandler implements OCDiscoveryHandler {
+
+    @Override
+    public OCDiscoveryFlags handler(String anchor, String uri, String[] types, int interfaceMask,
+            OCEndpoint endpoint, int resourcePropertiesMask) {
+        for (String type : types) {
+            if (type.equals(ClientBenchmark.RESOURCE_TYPE)) {
+                ClientBenchmark.serverEndpoint = OCEndpointUtil.listCopy(endpoint);
+                ClientBenchmark.serverUri = uri;
+                ClientBenchmark.discovered.countDown();
+                return OCDiscoveryFlags.OC_STOP_DISCOVERY;
+            }
+        }
+        return OCDiscoveryFlags.OC_CONTINUE_DISCOVERY;
+    }
+}
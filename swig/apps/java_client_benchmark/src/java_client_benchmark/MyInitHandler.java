@@ -0,0 +1,21 @@
+package java_client_benchmark;
+
+import org.iotivity.*;
+
+public class MyInitHandler implements OCMainInitHandler {
+    @Override
+    public int initialize() {
+        int ret = OCMain.initPlatform("Samsung");
+        ret |= OCMain.addDevice("/oic/d", "oic.d.phone", "Benchmark", "ocf.1.0.0", "ocf.res.1.0.0");
+        return ret;
+    }
+
+    @Override
+    public void registerResources() {
+    }
+
+    @Override
+    public void requestEntry() {
+        OCMain.doIPDiscovery(ClientBenchmark.RESOURCE_TYPE, new MyDiscoveryHandler());
+    }
+}
@@ -0,0 +1,95 @@
+package org.iotivity;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/*
+ * Microbenchmark of the native to java callback path. A delayed handler that
+ * keeps returning OC_EVENT_CONTINUE is invoked by the poll thread through the
+ * same trampoline code as the request and response handlers, so the time per
+ * invocation shows the cost of dispatching a callback into java.
+ *
+ * This is not a unit test and is not run by TestRunner. It is skipped unless
+ * the iotivity.benchmark system property is set, e.g.
+ *
+ *   java -Diotivity.benchmark=true -Djava.library.path=<libs> -cp <classpath> \
+ *       org.junit.runner.JUnitCore org.iotivity.OCCallbackBenchmark
+ *
+ * Compare the time per callback of two builds of the native library to see
+ * the effect of a change to the callback path.
+ */
+public class OCCallbackBenchmark {
+
+    private static final int WARMUP_CALLBACKS = 10000;
+    private static final int MEASURED_CALLBACKS = 200000;
+
+    private static class BenchmarkInitHandler implements OCMainInitHandler {
+        @Override
+        public int initialize() {
+            int ret = OCMain.initPlatform("Benchmark");
+            ret |= OCMain.addDevice("/oic/d", "oic.d.benchmark", "Benchmark", "ocf.2.1.0", "ocf.res.1.3.0");
+            return ret;
+        }
+
+        @Override
+        public void registerResources() {
+        }
+
+        @Override
+        public void requestEntry() {
+        }
+    }
+
+    private static class CountingTriggerHandler implements OCTriggerHandler {
+        private int remaining;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        CountingTriggerHandler(int callbacks) {
+            remaining = callbacks;
+        }
+
+        @Override
+        public OCEventCallbackResult handler() {
+            if (--remaining > 0) {
+                return OCEventCallbackResult.OC_EVENT_CONTINUE;
+            }
+            done.countDown();
+            return OCEventCallbackResult.OC_EVENT_DONE;
+        }
+    }
+
+    private static void dispatch(int callbacks) throws InterruptedException {
+        CountingTriggerHandler handler = new CountingTriggerHandler(callbacks);
+        OCMain.setDelayedHandler(handler, 0);
+        assertTrue(handler.done.await(60, TimeUnit.SECONDS));
+        OCMain.removeDelayedHandler(handler);
+    }
+
+    @Test(timeout = 180000)
+    public void triggerHandlerDispatch() throws InterruptedException, IOException {
+        assumeTrue(Boolean.getBoolean("iotivity.benchmark"));
+
+        File storage = File.createTempFile("callback_benchmark", "_creds");
+        assertTrue(storage.delete() && storage.mkdir());
+        assertEquals(0, OCStorage.storageConfig(storage.getPath()));
+        assertTrue(OCMain.mainInit(new BenchmarkInitHandler()) >= 0);
+        try {
+            dispatch(WARMUP_CALLBACKS);
+
+            long start = System.nanoTime();
+            dispatch(MEASURED_CALLBACKS);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("%d trigger handler callbacks: %.1f ns per callback",
+                    MEASURED_CALLBACKS, (double) elapsed / MEASURED_CALLBACKS));
+        } finally {
+            OCMain.mainShutdown();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.iotivity;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class OCCallbackRegistryTest {
+
+    private static final int RESOURCE_COUNT = 25000;
+    private static final OCMethod[] METHODS = { OCMethod.OC_GET, OCMethod.OC_PUT, OCMethod.OC_POST,
+            OCMethod.OC_DELETE };
+
+    private static class TestRequestHandler implements OCRequestHandler {
+        @Override
+        public void handler(OCRequest request, int interfaces) {
+        }
+    }
+
+    private static class TestTriggerHandler implements OCTriggerHandler {
+        @Override
+        public OCEventCallbackResult handler() {
+            return OCEventCallbackResult.OC_EVENT_DONE;
+        }
+    }
+
+    /*
+     * Registers 100k request handlers (4 per resource), then looks up 100k handlers
+     * that were never registered and finally releases all of them. Each lookup and
+     * release must not depend on the number of registered callbacks, otherwise this
+     * test takes minutes rather than seconds.
+     */
+    @Test(timeout = 60000)
+    public void registerManyCallbacks() {
+        long liveCallbacks = OCMain.getLiveCallbackCount();
+        List<OCResource> resources = new ArrayList<OCResource>(RESOURCE_COUNT);
+        for (int i = 0; i < RESOURCE_COUNT; i++) {
+            OCResource resource = OCMain.newResource("stress", "/stress/" + i, (short) 0, 0);
+            assertNotNull(resource);
+            for (OCMethod method : METHODS) {
+                OCMain.resourceSetRequestHandler(resource, method, new TestRequestHandler());
+            }
+            resources.add(resource);
+        }
+        assertEquals(liveCallbacks + RESOURCE_COUNT * METHODS.length, OCMain.getLiveCallbackCount());
+
+        for (int i = 0; i < RESOURCE_COUNT * METHODS.length; i++) {
+            // not registered, so this is a lookup miss that must leave the registry untouched
+            OCMain.removeDelayedHandler(new TestTriggerHandler());
+        }
+
+        for (OCResource resource : resources) {
+            assertTrue(OCMain.deleteResource(resource));
+        }
+        assertEquals(liveCallbacks, OCMain.getLiveCallbackCount());
+        assertEquals(0, OCMain.getLiveResponseHandlerCount());
+    }
+}
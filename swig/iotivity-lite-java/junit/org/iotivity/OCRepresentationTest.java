@@ -932,4 +932,92 @@ public class OCRepresentationTest {
 
         OCRep.deleteBuffer();
     }
+
+    @Test
+    public void testRepGetOrDefault() {
+        OCRep.newBuffer(1024);
+
+        CborEncoder root = OCRep.beginRootObject();
+        assertEquals(0, OCRep.getCborErrno());
+        assertNotNull(root);
+        OCRep.setLong(root, "power", 42);
+        OCRep.setBoolean(root, "state", true);
+        OCRep.setDouble(root, "pi", 3.14159);
+        assertEquals(0, OCRep.getCborErrno());
+        OCRep.endRootObject();
+        assertEquals(0, OCRep.getCborErrno());
+
+        OCRepresentation rep = OCRep.getOCRepresentaionFromRootObject();
+        assertNotNull(rep);
+
+        assertEquals(42, OCRep.getLongOrDefault(rep, "power", -1));
+        assertEquals(-1, OCRep.getLongOrDefault(rep, "not_a_key", -1));
+        // the value must have the requested type
+        assertEquals(-1, OCRep.getLongOrDefault(rep, "state", -1));
+        assertTrue(OCRep.getBooleanOrDefault(rep, "state", false));
+        assertFalse(OCRep.getBooleanOrDefault(rep, "not_a_key", false));
+        assertEquals(3.14159, OCRep.getDoubleOrDefault(rep, "pi", 0.0), 0.00001);
+        assertEquals(1.5, OCRep.getDoubleOrDefault(rep, "not_a_key", 1.5), 0.00001);
+        OCRep.deleteBuffer();
+    }
+
+    @Test
+    public void testRepCopyArray() {
+        OCRep.newBuffer(1024);
+
+        CborEncoder root = OCRep.beginRootObject();
+        assertEquals(0, OCRep.getCborErrno());
+        assertNotNull(root);
+        long fib[] = {1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89};
+        OCRep.setLongArray(root, "fibonacci", fib);
+        double math_constants[] = {3.14159, 2.71828, 1.61803};
+        OCRep.setDoubleArray(root, "math_constants", math_constants);
+        assertEquals(0, OCRep.getCborErrno());
+        OCRep.endRootObject();
+        assertEquals(0, OCRep.getCborErrno());
+
+        OCRepresentation rep = OCRep.getOCRepresentaionFromRootObject();
+        assertNotNull(rep);
+
+        long longDst[] = new long[fib.length + 1];
+        assertEquals(fib.length, OCRep.copyLongArray(rep, "fibonacci", longDst, 1));
+        assertEquals(0, longDst[0]);
+        for (int i = 0; i < fib.length; i++) {
+            assertEquals(fib[i], longDst[i + 1]);
+        }
+
+        // the returned count tells the destination was too small
+        long shortDst[] = new long[4];
+        assertEquals(fib.length, OCRep.copyLongArray(rep, "fibonacci", shortDst, 0));
+        assertArrayEquals(new long[] {1, 1, 2, 3}, shortDst);
+        assertEquals(-1, OCRep.copyLongArray(rep, "not_a_key", shortDst, 0));
+
+        double doubleDst[] = new double[math_constants.length];
+        assertEquals(math_constants.length, OCRep.copyDoubleArray(rep, "math_constants", doubleDst, 0));
+        assertArrayEquals(math_constants, doubleDst, 0.00001);
+        assertEquals(-1, OCRep.copyDoubleArray(rep, "fibonacci", doubleDst, 0));
+        OCRep.deleteBuffer();
+    }
+
+    @Test
+    public void testRepPresenceMask() {
+        OCRep.newBuffer(1024);
+
+        CborEncoder root = OCRep.beginRootObject();
+        assertEquals(0, OCRep.getCborErrno());
+        assertNotNull(root);
+        OCRep.setLong(root, "power", 42);
+        OCRep.setTextString(root, "name", "Kitchen Light");
+        assertEquals(0, OCRep.getCborErrno());
+        OCRep.endRootObject();
+        assertEquals(0, OCRep.getCborErrno());
+
+        OCRepresentation rep = OCRep.getOCRepresentaionFromRootObject();
+        assertNotNull(rep);
+
+        String keys[] = {"state", "power", "name", "pow"};
+        assertEquals(0x6, OCRep.getPresenceMask(rep, keys));
+        assertEquals(0, OCRep.getPresenceMask(rep, new String[0]));
+        OCRep.deleteBuffer();
+    }
 }
@@ -1,5 +1,8 @@
 package org.iotivity;
 
+import org.iotivity.oc.OcCborReaderTest;
+import org.iotivity.oc.OcCborWriterTest;
+import org.iotivity.oc.OcEventLoopGroupTest;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,6 +16,12 @@ public class TestRunner {
         junit.addListener(new TextListener(System.out));
         Result result;
         int exit_status = 0;
+        System.out.println("Running OCCallbackRegistryTest tests.");
+        result = junit.run(OCCallbackRegistryTest.class);
+        if (result.getFailureCount() > 0) {
+          exit_status = 1;
+        }
+
         System.out.println("Running OCCredTest tests.");
         result = junit.run(OCCredTest.class);
         if (result.getFailureCount() > 0) {
@@ -57,6 +66,24 @@ public class TestRunner {
           exit_status = 1;
         }
 
+        System.out.println("Running OcCborReaderTest tests.");
+        result = junit.run(OcCborReaderTest.class);
+        if (result.getFailureCount() > 0) {
+          exit_status = 1;
+        }
+
+        System.out.println("Running OcCborWriterTest tests.");
+        result = junit.run(OcCborWriterTest.class);
+        if (result.getFailureCount() > 0) {
+          exit_status = 1;
+        }
+
+        System.out.println("Running OcEventLoopGroupTest tests.");
+        result = junit.run(OcEventLoopGroupTest.class);
+        if (result.getFailureCount() > 0) {
+          exit_status = 1;
+        }
+
         System.exit(exit_status);
       }
 }
@@ -0,0 +1,135 @@
+package org.iotivity.oc;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class OcCborReaderTest {
+
+    private static ByteBuffer directBuffer(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(values.length);
+        for (int value : values) {
+            buffer.put((byte) value);
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    @Test
+    public void testDefiniteMap() throws OcException {
+        // {"rt": "oic.r.light", "state": true, "power": 42, "value": -3}
+        OcCborReader reader = new OcCborReader(directBuffer(0xa4,
+                0x62, 'r', 't', 0x6b, 'o', 'i', 'c', '.', 'r', '.', 'l', 'i', 'g', 'h', 't',
+                0x65, 's', 't', 'a', 't', 'e', 0xf5,
+                0x65, 'p', 'o', 'w', 'e', 'r', 0x18, 0x2a,
+                0x65, 'v', 'a', 'l', 'u', 'e', 0x22));
+        assertEquals(OcCborReader.Type.MAP, reader.next());
+        assertEquals(4, reader.getLength());
+
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("rt", reader.getTextString());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("oic.r.light", reader.getTextString());
+
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("state", reader.getTextString());
+        assertEquals(OcCborReader.Type.BOOLEAN, reader.next());
+        assertTrue(reader.getBoolean());
+
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("power", reader.getTextString());
+        assertEquals(OcCborReader.Type.INTEGER, reader.next());
+        assertEquals(42L, reader.getLong());
+
+        // values that are not read are skipped by next()
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.INTEGER, reader.next());
+        assertEquals(-3L, reader.getLong());
+
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+        assertEquals(OcCborReader.Type.END_OF_DATA, reader.next());
+    }
+
+    @Test
+    public void testByteStringIsNotCopied() throws OcException {
+        // {"data": h'01020304'}
+        ByteBuffer payload = directBuffer(0xa1, 0x64, 'd', 'a', 't', 'a', 0x44, 1, 2, 3, 4);
+        OcCborReader reader = new OcCborReader(payload);
+        assertEquals(OcCborReader.Type.MAP, reader.next());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.BYTE_STRING, reader.next());
+        assertEquals(4, reader.getLength());
+
+        ByteBuffer data = reader.getByteString();
+        assertTrue(data.isDirect());
+        assertTrue(data.isReadOnly());
+        assertEquals(4, data.remaining());
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, data.get());
+        }
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+    }
+
+    @Test
+    public void testIndefiniteLengthItems() throws OcException {
+        // {_ "a": [_ 1.5, 2.5], "b": (_ h'0102' h'03')}
+        OcCborReader reader = new OcCborReader(directBuffer(0xbf,
+                0x61, 'a', 0x9f, 0xf9, 0x3e, 0x00, 0xfb, 0x40, 0x04, 0, 0, 0, 0, 0, 0, 0xff,
+                0x61, 'b', 0x5f, 0x42, 1, 2, 0x41, 3, 0xff,
+                0xff));
+        assertEquals(OcCborReader.Type.MAP, reader.next());
+        assertEquals(-1, reader.getLength());
+
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.ARRAY, reader.next());
+        assertEquals(OcCborReader.Type.FLOAT, reader.next());
+        assertEquals(1.5, reader.getDouble(), 0.0);
+        assertEquals(OcCborReader.Type.FLOAT, reader.next());
+        assertEquals(2.5, reader.getDouble(), 0.0);
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.BYTE_STRING, reader.next());
+        ByteBuffer data = reader.getByteString();
+        assertEquals(3, data.remaining());
+        assertEquals(1, data.get(0));
+        assertEquals(3, data.get(2));
+
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+        assertEquals(OcCborReader.Type.END_OF_DATA, reader.next());
+    }
+
+    @Test
+    public void testSkipNestedContainer() throws OcException {
+        // {"links": [{"href": "/a"}, {"href": "/b"}], "n": 7}
+        OcCborReader reader = new OcCborReader(directBuffer(0xa2,
+                0x65, 'l', 'i', 'n', 'k', 's', 0x82,
+                0xa1, 0x64, 'h', 'r', 'e', 'f', 0x62, '/', 'a',
+                0xa1, 0x64, 'h', 'r', 'e', 'f', 0x62, '/', 'b',
+                0x61, 'n', 0x07));
+        assertEquals(OcCborReader.Type.MAP, reader.next());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.ARRAY, reader.next());
+        reader.skip();
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("n", reader.getTextString());
+        assertEquals(OcCborReader.Type.INTEGER, reader.next());
+        assertEquals(7L, reader.getLong());
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+    }
+
+    @Test
+    public void testEmptyPayload() throws OcException {
+        assertEquals(OcCborReader.Type.END_OF_DATA, new OcCborReader(null).next());
+    }
+
+    @Test(expected = OcCborException.class)
+    public void testTruncatedPayload() throws OcException {
+        OcCborReader reader = new OcCborReader(directBuffer(0x82, 0x01));
+        assertEquals(OcCborReader.Type.ARRAY, reader.next());
+        assertEquals(OcCborReader.Type.INTEGER, reader.next());
+        reader.next();
+    }
+}
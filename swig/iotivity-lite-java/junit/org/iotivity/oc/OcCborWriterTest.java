@@ -0,0 +1,142 @@
+package org.iotivity.oc;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class OcCborWriterTest {
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testEncoding() {
+        OcCborWriter writer = new OcCborWriter();
+        writer.beginObject(3);
+        writer.setLong("a", 1);
+        writer.setLong("b", -500);
+        writer.setBoolean("c", false);
+        writer.endObject();
+
+        byte[] expected = { (byte) 0xa3, 0x61, 'a', 0x01, 0x61, 'b', 0x39, 0x01, (byte) 0xf3, 0x61, 'c',
+                (byte) 0xf4 };
+        ByteBuffer payload = writer.getBuffer();
+        assertTrue(payload.isDirect());
+        assertTrue(payload.isReadOnly());
+        assertEquals(expected.length, writer.size());
+        assertArrayEquals(expected, toArray(payload));
+        writer.release();
+    }
+
+    @Test
+    public void testRoundTrip() throws OcException {
+        OcCborWriter writer = new OcCborWriter();
+        writer.beginObject();
+        writer.setTextString("n", "Kitchen \u00e9clair");
+        writer.setLong("big", Long.MAX_VALUE);
+        writer.setLong("small", Long.MIN_VALUE);
+        writer.setDouble("pi", 3.14159);
+        writer.setByteString("data", new byte[] { 1, 2, 3 });
+        writer.setLongArray("fib", new long[] { 1, 1, 2, 3, 5, 8 });
+        writer.setStringArray("rt", new String[] { "oic.r.switch.binary" });
+        writer.beginArray("links");
+        writer.beginObject();
+        writer.setTextString("href", "/a");
+        writer.endObject();
+        writer.endArray();
+        writer.setNull("none");
+        writer.endObject();
+
+        OcCborReader reader = new OcCborReader(writer.getBuffer());
+        assertEquals(OcCborReader.Type.MAP, reader.next());
+        assertEquals(-1, reader.getLength());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("n", reader.getTextString());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("Kitchen \u00e9clair", reader.getTextString());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.INTEGER, reader.next());
+        assertEquals(Long.MAX_VALUE, reader.getLong());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.INTEGER, reader.next());
+        assertEquals(Long.MIN_VALUE, reader.getLong());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.FLOAT, reader.next());
+        assertEquals(3.14159, reader.getDouble(), 0.0);
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.BYTE_STRING, reader.next());
+        assertEquals(3, reader.getByteString().remaining());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.ARRAY, reader.next());
+        assertEquals(6, reader.getLength());
+        long sum = 0;
+        while (reader.next() == OcCborReader.Type.INTEGER) {
+            sum += reader.getLong();
+        }
+        assertEquals(20, sum);
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals(OcCborReader.Type.ARRAY, reader.next());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("oic.r.switch.binary", reader.getTextString());
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("links", reader.getTextString());
+        assertEquals(OcCborReader.Type.ARRAY, reader.next());
+        reader.skip();
+        assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+        assertEquals("none", reader.getTextString());
+        assertEquals(OcCborReader.Type.NULL, reader.next());
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+        assertEquals(OcCborReader.Type.END_OF_DATA, reader.next());
+        writer.release();
+    }
+
+    @Test
+    public void testBufferGrows() throws OcException {
+        OcCborWriter writer = new OcCborWriter();
+        writer.beginObject(200);
+        for (int i = 0; i < 200; i++) {
+            writer.setLong("property" + i, i * 1000L);
+        }
+        writer.endObject();
+        assertTrue(writer.size() > OcCborWriter.DEFAULT_CAPACITY);
+
+        OcCborReader reader = new OcCborReader(writer.getBuffer());
+        assertEquals(OcCborReader.Type.MAP, reader.next());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(OcCborReader.Type.TEXT_STRING, reader.next());
+            assertEquals("property" + i, reader.getTextString());
+            assertEquals(OcCborReader.Type.INTEGER, reader.next());
+            assertEquals(i * 1000L, reader.getLong());
+        }
+        assertEquals(OcCborReader.Type.END_OF_CONTAINER, reader.next());
+
+        writer.reset();
+        assertEquals(0, writer.size());
+        writer.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalancedEnd() {
+        OcCborWriter writer = new OcCborWriter();
+        try {
+            writer.beginArray();
+            writer.endArray();
+            writer.endArray();
+        } finally {
+            writer.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUseAfterRelease() {
+        OcCborWriter writer = new OcCborWriter();
+        writer.release();
+        writer.addLong(1);
+    }
+}
@@ -0,0 +1,109 @@
+package org.iotivity.oc;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class OcEventLoopGroupTest {
+
+    @Test
+    public void testSharding() {
+        OcEventLoopGroup group = new OcEventLoopGroup(3);
+        assertEquals(3, group.getEventLoopCount());
+        assertSame(group.getEventLoop(0), group.getEventLoop(3));
+        assertSame(group.getEventLoop(2), group.getEventLoop(5));
+        assertNotSame(group.getEventLoop(0), group.getEventLoop(1));
+        assertNotSame(group.getEventLoop(1), group.getEventLoop(2));
+        group.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoEventLoops() {
+        new OcEventLoopGroup(0);
+    }
+
+    @Test
+    public void testDeviceTasksInOrder() throws Exception {
+        OcEventLoopGroup group = new OcEventLoopGroup(2);
+        ScheduledExecutorService eventLoop = group.getEventLoop(1);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(n);
+                    threads.add(Thread.currentThread().getName());
+                }
+            });
+        }
+        eventLoop.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(100, order.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, order.get(i).intValue());
+            assertEquals("OcEventLoop-1", threads.get(i));
+        }
+        group.shutdown();
+    }
+
+    @Test
+    public void testBusyDeviceDoesNotDelayOthers() throws Exception {
+        OcEventLoopGroup group = new OcEventLoopGroup(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // device 0 blocks its event loop
+        group.getEventLoop(0).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        // device 1 is still served, also by its timers
+        group.getEventLoop(1).schedule(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        group.shutdown();
+    }
+
+    @Test
+    public void testShutdownDiscardsTimers() throws Exception {
+        OcEventLoopGroup group = new OcEventLoopGroup(1);
+        ScheduledExecutorService eventLoop = group.getEventLoop(0);
+        final CountDownLatch fired = new CountDownLatch(1);
+        eventLoop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 1, TimeUnit.HOURS);
+        group.shutdown();
+        assertTrue(eventLoop.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, fired.getCount());
+    }
+}
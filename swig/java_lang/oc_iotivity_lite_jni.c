@@ -18,13 +18,236 @@
 #include "port/oc_log.h"
 #include "port/oc_storage.h"
 #include <assert.h>
+#include <stdio.h>
 #include <stdlib.h>
 #include <jni.h>
+#if defined(__linux__)
+#include <sys/prctl.h>
+#endif
 
 #define JNI_CURRENT_VERSION JNI_VERSION_1_6
 
+/*
+ * Native threads (e.g. the ipadapter network_event_thread) that call into
+ * java are attached to the JavaVM the first time they need a JNIEnv and stay
+ * attached until the thread exits. Building with OC_JNI_ATTACH_PER_CALL
+ * (JNI_ATTACH_PER_CALL=1) instead attaches and detaches them around every
+ * callback, which is also what other platforms than Linux do.
+ */
+#if defined(__linux__) && !defined(OC_JNI_ATTACH_PER_CALL)
+#define JNI_ATTACH_PER_THREAD
+#endif
+
 static JavaVM *jvm;
 
+#ifdef JNI_ATTACH_PER_THREAD
+/*
+ * The thread specific value stored under this key is only used so the key
+ * destructor runs, and detaches the thread, when the native thread
+ * terminates.
+ */
+static pthread_key_t jni_env_key;
+
+static void
+jni_detach_current_thread(void *value)
+{
+  (void)value;
+  OC_DBG("JNI: %s\n", __func__);
+  if (jvm) {
+    JCALL0(DetachCurrentThread, jvm);
+  }
+}
+#endif /* JNI_ATTACH_PER_THREAD */
+
+/*
+ * Look up the jmethodIDs used by the callback trampolines. Must be called
+ * after all of the cls_* globals have been loaded.
+ */
+static void
+jni_cache_method_ids(JNIEnv *jenv)
+{
+  mid_ArrayList_init =
+    JCALL3(GetMethodID, jenv, cls_ArrayList, "<init>", "()V");
+  assert(mid_ArrayList_init);
+  mid_ArrayList_add =
+    JCALL3(GetMethodID, jenv, cls_ArrayList, "add", "(Ljava/lang/Object;)Z");
+  assert(mid_ArrayList_add);
+  mid_ByteBuffer_asReadOnlyBuffer = JCALL3(GetMethodID, jenv, cls_ByteBuffer,
+                                           "asReadOnlyBuffer",
+                                           "()Ljava/nio/ByteBuffer;");
+  assert(mid_ByteBuffer_asReadOnlyBuffer);
+
+  mid_OCAddDeviceHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCAddDeviceHandler, "handler", "()V");
+  assert(mid_OCAddDeviceHandler_handler);
+
+  mid_OCClientResponse_init =
+    JCALL3(GetMethodID, jenv, cls_OCClientResponse, "<init>", "(JZ)V");
+  assert(mid_OCClientResponse_init);
+
+  mid_OCCloudContext_init =
+    JCALL3(GetMethodID, jenv, cls_OCCloudContext, "<init>", "(JZ)V");
+  assert(mid_OCCloudContext_init);
+
+  mid_OCCloudHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCCloudHandler, "handler",
+           "(Lorg/iotivity/OCCloudContext;I)V");
+  assert(mid_OCCloudHandler_handler);
+
+  mid_OCConWriteHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCConWriteHandler, "handler",
+           "(JLorg/iotivity/OCRepresentation;)V");
+  assert(mid_OCConWriteHandler_handler);
+
+  mid_OCCoreAddDeviceHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCCoreAddDeviceHandler, "handler", "()V");
+  assert(mid_OCCoreAddDeviceHandler_handler);
+
+  mid_OCCoreInitPlatformHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCCoreInitPlatformHandler, "handler", "()V");
+  assert(mid_OCCoreInitPlatformHandler_handler);
+
+  mid_OCCreds_init = JCALL3(GetMethodID, jenv, cls_OCCreds, "<init>", "(JZ)V");
+  assert(mid_OCCreds_init);
+
+  mid_OCDiscoveryHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCDiscoveryHandler, "handler",
+           "(Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;ILorg/"
+           "iotivity/OCEndpoint;I)Lorg/iotivity/OCDiscoveryFlags;");
+  assert(mid_OCDiscoveryHandler_handler);
+
+  mid_OCDiscoveryAllHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCDiscoveryAllHandler, "handler",
+           "(Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;ILorg/"
+           "iotivity/OCEndpoint;IZ)Lorg/iotivity/OCDiscoveryFlags;");
+  assert(mid_OCDiscoveryAllHandler_handler);
+
+  mid_OCDiscoveryFlags_swigValue =
+    JCALL3(GetMethodID, jenv, cls_OCDiscoveryFlags, "swigValue", "()I");
+  assert(mid_OCDiscoveryFlags_swigValue);
+
+  mid_OCEndpoint_init =
+    JCALL3(GetMethodID, jenv, cls_OCEndpoint, "<init>", "(JZ)V");
+  assert(mid_OCEndpoint_init);
+
+  mid_OCEventCallbackResult_swigValue =
+    JCALL3(GetMethodID, jenv, cls_OCEventCallbackResult, "swigValue", "()I");
+  assert(mid_OCEventCallbackResult_swigValue);
+
+  mid_OCFactoryPresetsHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCFactoryPresetsHandler, "handler", "(J)V");
+  assert(mid_OCFactoryPresetsHandler_handler);
+
+  mid_OCGetPropertiesHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCGetPropertiesHandler, "handler",
+           "(Lorg/iotivity/OCResource;I)V");
+  assert(mid_OCGetPropertiesHandler_handler);
+
+  mid_OCInitPlatformHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCInitPlatformHandler, "handler", "()V");
+  assert(mid_OCInitPlatformHandler_handler);
+
+  mid_OCObtAclHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCObtAclHandler, "handler",
+           "(Lorg/iotivity/OCSecurityAcl;)V");
+  assert(mid_OCObtAclHandler_handler);
+
+  mid_OCObtCredsHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCObtCredsHandler, "handler",
+           "(Lorg/iotivity/OCCreds;)V");
+  assert(mid_OCObtCredsHandler_handler);
+
+  mid_OCObtDeviceStatusHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCObtDeviceStatusHandler, "handler",
+           "(Lorg/iotivity/OCUuid;I)V");
+  assert(mid_OCObtDeviceStatusHandler_handler);
+
+  mid_OCObtDiscoveryHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCObtDiscoveryHandler, "handler",
+           "(Lorg/iotivity/OCUuid;Lorg/iotivity/OCEndpoint;)V");
+  assert(mid_OCObtDiscoveryHandler_handler);
+
+  mid_OCObtStatusHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCObtStatusHandler, "handler", "(I)V");
+  assert(mid_OCObtStatusHandler_handler);
+
+  mid_OCOwnershipStatusHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCOwnershipStatusHandler, "handler",
+           "(Lorg/iotivity/OCUuid;JZ)V");
+  assert(mid_OCOwnershipStatusHandler_handler);
+
+  mid_OCQueryValue_init =
+    JCALL3(GetMethodID, jenv, cls_OCQueryValue, "<init>",
+           "(Ljava/lang/String;Ljava/lang/String;)V");
+  assert(mid_OCQueryValue_init);
+
+  mid_OCRandomPinHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCRandomPinHandler, "handler",
+           "(Ljava/lang/String;)V");
+  assert(mid_OCRandomPinHandler_handler);
+
+  mid_OCRepresentation_init =
+    JCALL3(GetMethodID, jenv, cls_OCRepresentation, "<init>", "(JZ)V");
+  assert(mid_OCRepresentation_init);
+
+  mid_OCRequest_init =
+    JCALL3(GetMethodID, jenv, cls_OCRequest, "<init>", "(JZ)V");
+  assert(mid_OCRequest_init);
+
+  mid_OCRequestHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCRequestHandler, "handler",
+           "(Lorg/iotivity/OCRequest;I)V");
+  assert(mid_OCRequestHandler_handler);
+
+  mid_OCResource_init =
+    JCALL3(GetMethodID, jenv, cls_OCResource, "<init>", "(JZ)V");
+  assert(mid_OCResource_init);
+
+  mid_OCResponseHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCResponseHandler, "handler",
+           "(Lorg/iotivity/OCClientResponse;)V");
+  assert(mid_OCResponseHandler_handler);
+
+  mid_OCSecurityAcl_init =
+    JCALL3(GetMethodID, jenv, cls_OCSecurityAcl, "<init>", "(JZ)V");
+  assert(mid_OCSecurityAcl_init);
+
+  mid_OCSetPropertiesHandler_handler = JCALL3(
+    GetMethodID, jenv, cls_OCSetPropertiesHandler, "handler",
+    "(Lorg/iotivity/OCResource;Lorg/iotivity/OCRepresentation;)Z");
+  assert(mid_OCSetPropertiesHandler_handler);
+
+  mid_OCSoftwareUpdateHandler_validatePURL =
+    JCALL3(GetMethodID, jenv, cls_OCSoftwareUpdateHandler, "validatePURL",
+           "(Ljava/lang/String;)I");
+  assert(mid_OCSoftwareUpdateHandler_validatePURL);
+  mid_OCSoftwareUpdateHandler_checkNewVersion =
+    JCALL3(GetMethodID, jenv, cls_OCSoftwareUpdateHandler, "checkNewVersion",
+           "(JLjava/lang/String;Ljava/lang/String;)I");
+  assert(mid_OCSoftwareUpdateHandler_checkNewVersion);
+  mid_OCSoftwareUpdateHandler_downloadUpdate =
+    JCALL3(GetMethodID, jenv, cls_OCSoftwareUpdateHandler, "downloadUpdate",
+           "(JLjava/lang/String;)I");
+  assert(mid_OCSoftwareUpdateHandler_downloadUpdate);
+  mid_OCSoftwareUpdateHandler_performUpgrade =
+    JCALL3(GetMethodID, jenv, cls_OCSoftwareUpdateHandler, "performUpgrade",
+           "(JLjava/lang/String;)I");
+  assert(mid_OCSoftwareUpdateHandler_performUpgrade);
+
+  mid_OCTriggerHandler_handler =
+    JCALL3(GetMethodID, jenv, cls_OCTriggerHandler, "handler",
+           "()Lorg/iotivity/OCEventCallbackResult;");
+  assert(mid_OCTriggerHandler_handler);
+
+  mid_OCUuid_init = JCALL3(GetMethodID, jenv, cls_OCUuid, "<init>", "(JZ)V");
+  assert(mid_OCUuid_init);
+
+  mid_System_identityHashCode =
+    JCALL3(GetStaticMethodID, jenv, cls_System, "identityHashCode",
+           "(Ljava/lang/Object;)I");
+  assert(mid_System_identityHashCode);
+}
+
 JNIEXPORT jint JNICALL
 JNI_OnLoad(JavaVM *vm, void *reserved)
 {
@@ -34,6 +257,12 @@ JNI_OnLoad(JavaVM *vm, void *reserved)
 
   JNIEnv *jenv = NULL;
   jint getEnvResult = 0;
+#ifdef JNI_ATTACH_PER_THREAD
+  if (pthread_key_create(&jni_env_key, jni_detach_current_thread) != 0) {
+    OC_DBG("JNI: %s - Failed to create thread key\n", __func__);
+    return -1;
+  }
+#endif /* JNI_ATTACH_PER_THREAD */
   jenv = get_jni_env(&getEnvResult);
 
   assert(jenv);
@@ -271,6 +500,37 @@ JNI_OnLoad(JavaVM *vm, void *reserved)
   cls_ArrayList = (jclass)(JCALL1(NewGlobalRef, jenv, utilArrayListClass));
   JCALL1(DeleteLocalRef, jenv, utilArrayListClass);
 
+  jclass nioByteBufferClass = JCALL1(FindClass, jenv, "java/nio/ByteBuffer");
+  assert(nioByteBufferClass);
+  cls_ByteBuffer = (jclass)(JCALL1(NewGlobalRef, jenv, nioByteBufferClass));
+  JCALL1(DeleteLocalRef, jenv, nioByteBufferClass);
+
+  jclass langStringClass = JCALL1(FindClass, jenv, "java/lang/String");
+  assert(langStringClass);
+  cls_String = (jclass)(JCALL1(NewGlobalRef, jenv, langStringClass));
+  JCALL1(DeleteLocalRef, jenv, langStringClass);
+
+  jclass ocDiscoveryFlagsClass =
+    JCALL1(FindClass, jenv, "org/iotivity/OCDiscoveryFlags");
+  assert(ocDiscoveryFlagsClass);
+  cls_OCDiscoveryFlags =
+    (jclass)(JCALL1(NewGlobalRef, jenv, ocDiscoveryFlagsClass));
+  JCALL1(DeleteLocalRef, jenv, ocDiscoveryFlagsClass);
+
+  jclass ocEventCallbackResultClass =
+    JCALL1(FindClass, jenv, "org/iotivity/OCEventCallbackResult");
+  assert(ocEventCallbackResultClass);
+  cls_OCEventCallbackResult =
+    (jclass)(JCALL1(NewGlobalRef, jenv, ocEventCallbackResultClass));
+  JCALL1(DeleteLocalRef, jenv, ocEventCallbackResultClass);
+
+  jclass langSystemClass = JCALL1(FindClass, jenv, "java/lang/System");
+  assert(langSystemClass);
+  cls_System = (jclass)(JCALL1(NewGlobalRef, jenv, langSystemClass));
+  JCALL1(DeleteLocalRef, jenv, langSystemClass);
+
+  jni_cache_method_ids(jenv);
+
 #ifdef __ANDROID__
   // Get the Android Context
   const jclass activityThreadClass =
@@ -362,98 +622,367 @@ get_jvm()
   return jvm;
 }
 
+bool
+jni_is_poll_event_thread(void)
+{
+#if defined(_WIN32)
+  return (jni_poll_event_thread != NULL &&
+          GetCurrentThreadId() == GetThreadId(jni_poll_event_thread));
+#elif defined(__linux__)
+  return (pthread_equal(pthread_self(), jni_poll_event_thread) != 0);
+#endif
+}
+
+static bool
+jni_sync_lock_is_held(void)
+{
+  /* the owner is only ever set to the calling thread by the thread itself */
+#if defined(_WIN32)
+  return jni_sync_lock_owner == GetCurrentThreadId();
+#elif defined(__linux__)
+  return (pthread_equal(jni_sync_lock_owner, pthread_self()) != 0);
+#endif
+}
+
+bool
+jni_list_lock(void)
+{
+  if (jni_is_poll_event_thread() || jni_sync_lock_is_held()) {
+    return false;
+  }
+  OC_DBG("JNI: - lock %s\n", __func__);
+  jni_mutex_lock(jni_sync_lock);
+  return true;
+}
+
+void
+jni_list_unlock(bool locked)
+{
+  if (locked) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
+}
+
 /*
  * Container used to hold all `jni_callback_data` that is
  * allocated dynamically. This can be used to find the
  * memory allocated for the `jni_callback_data` if the callback
  * is removed or unregistered. This can all so be used to clean
  * up the allocated memory when shutting down the stack.
+ *
+ * Every item is on the doubly linked list of its `cb_valid` value and in the
+ * bucket of its identity hash code. The table doubles whenever it holds more
+ * items than buckets.
  */
-OC_LIST(jni_callbacks);
+#define JNI_CALLBACK_TABLE_MIN_SIZE (64)
 
-jni_callback_data *
-jni_list_get_head()
+static jni_callback_data *jni_callbacks[JNI_CALLBACK_VALID_CLASSES];
+static jni_callback_data **jni_callback_table;
+static size_t jni_callback_table_size;
+static size_t jni_callback_count;
+static size_t jni_callback_counts[JNI_CALLBACK_VALID_CLASSES];
+
+static jint
+jni_identity_hash(JNIEnv *jenv, jobject obj)
+{
+  if (obj == NULL) {
+    return 0;
+  }
+  return JCALL3(CallStaticIntMethod, jenv, cls_System,
+                mid_System_identityHashCode, obj);
+}
+
+static size_t
+jni_callback_bucket(jint hash, size_t table_size)
 {
-  return (jni_callback_data *)oc_list_head(jni_callbacks);
+  uint32_t h = (uint32_t)hash;
+  h ^= h >> 16;
+  h *= 0x45d9f3bU;
+  h ^= h >> 16;
+  return (size_t)h & (table_size - 1);
+}
+
+static void
+jni_callback_table_resize(size_t table_size)
+{
+  jni_callback_data **table =
+    (jni_callback_data **)calloc(table_size, sizeof(jni_callback_data *));
+  if (!table) {
+    /* keep the current table, lookups only get slower */
+    OC_ERR("JNI: failed to resize the callback table");
+    return;
+  }
+  size_t i;
+  for (i = 0; i < jni_callback_table_size; i++) {
+    jni_callback_data *item = jni_callback_table[i];
+    while (item) {
+      jni_callback_data *next = item->hash_next;
+      size_t bucket = jni_callback_bucket(item->jcb_hash, table_size);
+      item->hash_next = table[bucket];
+      table[bucket] = item;
+      item = next;
+    }
+  }
+  free(jni_callback_table);
+  jni_callback_table = table;
+  jni_callback_table_size = table_size;
+}
+
+static void
+jni_callback_valid_list_add(jni_callback_data *item)
+{
+  jni_callback_data **head = &jni_callbacks[item->cb_valid];
+  item->prev = NULL;
+  item->next = *head;
+  if (*head) {
+    (*head)->prev = item;
+  }
+  *head = item;
+  jni_callback_counts[item->cb_valid]++;
+}
+
+static void
+jni_callback_valid_list_remove(jni_callback_data *item)
+{
+  if (item->prev) {
+    item->prev->next = item->next;
+  } else {
+    jni_callbacks[item->cb_valid] = item->next;
+  }
+  if (item->next) {
+    item->next->prev = item->prev;
+  }
+  item->next = item->prev = NULL;
+  jni_callback_counts[item->cb_valid]--;
+}
+
+static bool
+jni_callback_table_remove(jni_callback_data *item)
+{
+  if (jni_callback_table_size == 0) {
+    return false;
+  }
+  jni_callback_data **link =
+    &jni_callback_table[jni_callback_bucket(item->jcb_hash,
+                                            jni_callback_table_size)];
+  while (*link) {
+    if (*link == item) {
+      *link = item->hash_next;
+      item->hash_next = NULL;
+      return true;
+    }
+    link = &(*link)->hash_next;
+  }
+  return false;
 }
 
 void
 jni_list_add(jni_callback_data *item)
 {
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
-  oc_list_add(jni_callbacks, item);
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
+  if (!item) {
+    return;
+  }
+  jint getEnvResult = 0;
+  JNIEnv *jenv = get_jni_env(&getEnvResult);
+  item->jcb_hash = jni_identity_hash(jenv, item->jcb_obj);
+  release_jni_env(getEnvResult);
+
+  bool locked = jni_list_lock();
+  if (jni_callback_count >= jni_callback_table_size) {
+    jni_callback_table_resize(jni_callback_table_size == 0
+                                ? JNI_CALLBACK_TABLE_MIN_SIZE
+                                : jni_callback_table_size * 2);
+  }
+  if (jni_callback_table_size > 0) {
+    size_t bucket =
+      jni_callback_bucket(item->jcb_hash, jni_callback_table_size);
+    item->hash_next = jni_callback_table[bucket];
+    jni_callback_table[bucket] = item;
+  } else {
+    item->hash_next = NULL;
+  }
+  jni_callback_valid_list_add(item);
+  jni_callback_count++;
+  jni_list_unlock(locked);
 }
 
 void
 jni_list_remove(jni_callback_data *item)
 {
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
+  bool locked = jni_list_lock();
   if (item) {
     JCALL1(DeleteGlobalRef, item->jenv, item->jcb_obj);
-    oc_list_remove(jni_callbacks, item);
+    jni_callback_table_remove(item);
+    jni_callback_valid_list_remove(item);
+    jni_callback_count--;
     free(item);
     item = NULL;
   }
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
+  jni_list_unlock(locked);
 }
 
 void
 jni_list_clear()
 {
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
+  bool locked = jni_list_lock();
   jint getEnvResult = 0;
   JNIEnv *jenv = get_jni_env(&getEnvResult);
-  jni_callback_data *item = jni_list_get_head();
-  while (item) {
-    JCALL1(DeleteGlobalRef, jenv, item->jcb_obj);
-    oc_list_remove(jni_callbacks, item);
-    free(item);
-    item = NULL;
-    item = jni_list_get_head();
+  int i;
+  for (i = 0; i < JNI_CALLBACK_VALID_CLASSES; i++) {
+    jni_callback_data *item = jni_callbacks[i];
+    while (item) {
+      jni_callback_data *next = item->next;
+      JCALL1(DeleteGlobalRef, jenv, item->jcb_obj);
+      free(item);
+      item = next;
+    }
+    jni_callbacks[i] = NULL;
+    jni_callback_counts[i] = 0;
   }
+  free(jni_callback_table);
+  jni_callback_table = NULL;
+  jni_callback_table_size = 0;
+  jni_callback_count = 0;
   release_jni_env(getEnvResult);
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
+  jni_list_unlock(locked);
+}
+
+void
+jni_list_set_callback_valid(jni_callback_data *item,
+                            jni_callback_valid_t cb_valid)
+{
+  bool locked = jni_list_lock();
+  if (item && item->cb_valid != cb_valid) {
+    jni_callback_valid_list_remove(item);
+    item->cb_valid = cb_valid;
+    jni_callback_valid_list_add(item);
+  }
+  jni_list_unlock(locked);
 }
 
 jni_callback_data *
 jni_list_get_item_by_java_callback(jobject callback)
 {
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
-  jni_callback_data *item = jni_list_get_head();
+  jint getEnvResult = 0;
+  JNIEnv *jenv = get_jni_env(&getEnvResult);
+  jint hash = jni_identity_hash(jenv, callback);
+
+  bool locked = jni_list_lock();
+  jni_callback_data *item = NULL;
+  if (jni_callback_table_size > 0) {
+    item = jni_callback_table[jni_callback_bucket(hash, jni_callback_table_size)];
+  }
   while (item) {
-    if (JCALL2(IsSameObject, (item->jenv), callback, item->jcb_obj)) {
+    if (item->jcb_hash == hash &&
+        JCALL2(IsSameObject, jenv, callback, item->jcb_obj)) {
       break;
     }
-    item = (jni_callback_data *)oc_list_item_next(item);
+    item = item->hash_next;
   }
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
+  jni_list_unlock(locked);
+  release_jni_env(getEnvResult);
   return item;
 }
 
 jni_callback_data *
 jni_list_get_item_by_callback_valid(jni_callback_valid_t cb_valid)
 {
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
-  jni_callback_data *item = jni_list_get_head();
-  while (item) {
-    if ((item->cb_valid) == cb_valid) {
-      break;
+  bool locked = jni_list_lock();
+  jni_callback_data *item = jni_callbacks[cb_valid];
+  jni_list_unlock(locked);
+  return item;
+}
+
+size_t
+jni_list_size(void)
+{
+  bool locked = jni_list_lock();
+  size_t count = jni_callback_count;
+  jni_list_unlock(locked);
+  return count;
+}
+
+size_t
+jni_list_size_by_callback_valid(jni_callback_valid_t cb_valid)
+{
+  bool locked = jni_list_lock();
+  size_t count = jni_callback_counts[cb_valid];
+  jni_list_unlock(locked);
+  return count;
+}
+
+#if defined(_WIN32)
+#define jni_atomic_exchange_ptr(p, v)                                          \
+  InterlockedExchangePointer((PVOID volatile *)(p), (PVOID)(v))
+#define jni_atomic_load_ptr(p)                                                 \
+  InterlockedCompareExchangePointer((PVOID volatile *)(p), NULL, NULL)
+#define jni_atomic_store_ptr(p, v)                                             \
+  (void)InterlockedExchangePointer((PVOID volatile *)(p), (PVOID)(v))
+#elif defined(__GNUC__)
+/* GCC and Clang, whatever the target OS */
+#define jni_atomic_exchange_ptr(p, v) __atomic_exchange_n(p, v, __ATOMIC_ACQ_REL)
+#define jni_atomic_load_ptr(p) __atomic_load_n(p, __ATOMIC_ACQUIRE)
+#define jni_atomic_store_ptr(p, v) __atomic_store_n(p, v, __ATOMIC_RELEASE)
+#else
+#error "jni_mpsc_queue requires atomic pointer operations"
+#endif
+
+void
+jni_mpsc_queue_init(jni_mpsc_queue_t *queue)
+{
+  queue->stub.next = NULL;
+  queue->head = &queue->stub;
+  queue->tail = &queue->stub;
+}
+
+void
+jni_mpsc_queue_push(jni_mpsc_queue_t *queue, jni_mpsc_node_t *node)
+{
+  node->next = NULL;
+  jni_mpsc_node_t *prev =
+    (jni_mpsc_node_t *)jni_atomic_exchange_ptr(&queue->head, node);
+  /* the queue is not linked until here, see jni_mpsc_queue_pop */
+  jni_atomic_store_ptr(&prev->next, node);
+}
+
+jni_mpsc_node_t *
+jni_mpsc_queue_pop(jni_mpsc_queue_t *queue)
+{
+  jni_mpsc_node_t *tail = queue->tail;
+  jni_mpsc_node_t *next = (jni_mpsc_node_t *)jni_atomic_load_ptr(&tail->next);
+  if (tail == &queue->stub) {
+    if (!next) {
+      return NULL;
     }
-    item = (jni_callback_data *)oc_list_item_next(item);
+    queue->tail = next;
+    tail = next;
+    next = (jni_mpsc_node_t *)jni_atomic_load_ptr(&next->next);
   }
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
-  return item;
+  if (next) {
+    queue->tail = next;
+    return tail;
+  }
+  jni_mpsc_node_t *head = (jni_mpsc_node_t *)jni_atomic_load_ptr(&queue->head);
+  if (tail != head) {
+    /* a producer has not linked its node yet */
+    return NULL;
+  }
+  /* tail is the last node, put the stub behind it so it can be popped */
+  jni_mpsc_queue_push(queue, &queue->stub);
+  next = (jni_mpsc_node_t *)jni_atomic_load_ptr(&tail->next);
+  if (next) {
+    queue->tail = next;
+    return tail;
+  }
+  return NULL;
+}
+
+bool
+jni_mpsc_queue_is_empty(jni_mpsc_queue_t *queue)
+{
+  return (queue->tail == &queue->stub &&
+          jni_atomic_load_ptr(&queue->head) == &queue->stub);
 }
 
 JNIEnv *
@@ -464,18 +993,46 @@ get_jni_env(jint *getEnvResult)
   switch (*getEnvResult) {
   case JNI_OK:
     return env;
-  case JNI_EDETACHED:
+  case JNI_EDETACHED: {
+#ifdef JNI_ATTACH_PER_THREAD
+    /*
+     * Attach as a daemon so a native thread never keeps the JavaVM from
+     * exiting. The thread is detached by jni_detach_current_thread when it
+     * exits, not after every callback, so the java.lang.Thread object is
+     * created once per native thread.
+     */
+    char comm[16] = { 0 };
+    char thread_name[32];
+    if (prctl(PR_GET_NAME, comm, 0, 0, 0) != 0 || comm[0] == '\0') {
+      snprintf(comm, sizeof(comm), "native");
+    }
+    snprintf(thread_name, sizeof(thread_name), "iotivity-lite %s", comm);
+    JavaVMAttachArgs args;
+    args.version = JNI_CURRENT_VERSION;
+    args.name = thread_name;
+    args.group = NULL;
 #ifdef __ANDROID__
-    if (JCALL2(AttachCurrentThread, jvm, &env, NULL) < 0)
+    if (JCALL2(AttachCurrentThreadAsDaemon, jvm, &env, &args) < 0)
 #else
-    if (JCALL2(AttachCurrentThread, jvm, (void **)&env, NULL) < 0)
+    if (JCALL2(AttachCurrentThreadAsDaemon, jvm, (void **)&env, &args) < 0)
 #endif
     {
       OC_DBG("Failed to get the environment");
       return NULL;
+    }
+    pthread_setspecific(jni_env_key, env);
+    /* report the thread as attached so release_jni_env leaves it attached */
+    *getEnvResult = JNI_OK;
+    return env;
+#else
+    if (JCALL2(AttachCurrentThread, jvm, (void **)&env, NULL) < 0) {
+      OC_DBG("Failed to get the environment");
+      return NULL;
     } else {
       return env;
     }
+#endif /* !JNI_ATTACH_PER_THREAD */
+  }
   case JNI_EVERSION:
     OC_DBG("JNI version not supported");
     break;
@@ -513,8 +1070,7 @@ jni_oc_discovery_all_handler_callback(const char *anchor, const char *uri,
   jstring juri = JCALL1(NewStringUTF, (data->jenv), uri);
   jobjectArray jtypes =
     JCALL3(NewObjectArray, (data->jenv),
-           (jsize)oc_string_array_get_allocated_size(types),
-           JCALL1(FindClass, (data->jenv), "java/lang/String"), 0);
+           (jsize)oc_string_array_get_allocated_size(types), cls_String, 0);
   for (jsize i = 0; i < (jsize)oc_string_array_get_allocated_size(types); i++) {
     jstring str =
       JCALL1(NewStringUTF, (data->jenv), oc_string_array_get_item(types, i));
@@ -524,28 +1080,15 @@ jni_oc_discovery_all_handler_callback(const char *anchor, const char *uri,
 
   // create java endpoint
   assert(cls_OCEndpoint);
-  const jmethodID mid_OCEndpoint_init =
-    JCALL3(GetMethodID, (data->jenv), cls_OCEndpoint, "<init>", "(JZ)V");
-  assert(mid_OCEndpoint_init);
   jobject jendpoint = JCALL4(NewObject, (data->jenv), cls_OCEndpoint,
                              mid_OCEndpoint_init, (jlong)endpoint, false);
 
   jint jresourcePropertiesMask = (jint)bm;
   assert(cls_OCDiscoveryAllHandler);
-  const jmethodID mid_handler =
-    JCALL3(GetMethodID, (data->jenv), cls_OCDiscoveryAllHandler, "handler",
-           "(Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;ILorg/"
-           "iotivity/OCEndpoint;IZ)Lorg/iotivity/OCDiscoveryFlags;");
-  assert(mid_handler);
-  jobject jDiscoveryFlag = JCALL9(
-    CallObjectMethod, (data->jenv), data->jcb_obj, mid_handler, janchor, juri,
-    jtypes, jinterfaceMask, jendpoint, jresourcePropertiesMask, (jboolean)more);
-  jclass cls_DiscoveryFlags =
-    JCALL1(GetObjectClass, (data->jenv), jDiscoveryFlag);
-  assert(cls_DiscoveryFlags);
-  const jmethodID mid_OCDiscoveryFlags_swigValue =
-    JCALL3(GetMethodID, (data->jenv), cls_DiscoveryFlags, "swigValue", "()I");
-  assert(mid_OCDiscoveryFlags_swigValue);
+  jobject jDiscoveryFlag =
+    JCALL9(CallObjectMethod, (data->jenv), data->jcb_obj,
+           mid_OCDiscoveryAllHandler_handler, janchor, juri, jtypes,
+           jinterfaceMask, jendpoint, jresourcePropertiesMask, (jboolean)more);
   jint return_value = JCALL2(CallIntMethod, (data->jenv), jDiscoveryFlag,
                              mid_OCDiscoveryFlags_swigValue);
 
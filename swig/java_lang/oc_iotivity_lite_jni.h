@@ -33,12 +33,23 @@ HANDLE jni_poll_event_thread;
 CRITICAL_SECTION jni_sync_lock;
 CONDITION_VARIABLE jni_cv;
 CRITICAL_SECTION jni_cs;
+/* id of the thread holding the lock, 0 when it is not held */
+volatile DWORD jni_sync_lock_owner;
+volatile DWORD jni_cs_owner;
 
 int jni_quit;
 
 /* OS specific definition for lock/unlock */
-#define jni_mutex_lock(m) EnterCriticalSection(&m)
-#define jni_mutex_unlock(m) LeaveCriticalSection(&m)
+#define jni_mutex_lock(m)                                                      \
+  do {                                                                         \
+    EnterCriticalSection(&m);                                                  \
+    m##_owner = GetCurrentThreadId();                                          \
+  } while (0)
+#define jni_mutex_unlock(m)                                                    \
+  do {                                                                         \
+    m##_owner = 0;                                                             \
+    LeaveCriticalSection(&m);                                                  \
+  } while (0)
 
 #elif defined(__linux__)
 pthread_t jni_poll_event_thread __attribute__((unused));
@@ -46,12 +57,23 @@ pthread_mutex_t jni_sync_lock __attribute__((unused));
 pthread_mutexattr_t jni_sync_lock_attr __attribute__((unused));
 pthread_cond_t jni_cv __attribute__((unused));
 pthread_mutex_t jni_cs __attribute__((unused));
+/* thread holding the lock, 0 when it is not held */
+volatile pthread_t jni_sync_lock_owner __attribute__((unused));
+volatile pthread_t jni_cs_owner __attribute__((unused));
 
 int jni_quit __attribute__((unused));
 
 /* OS specific definition for lock/unlock */
-#define jni_mutex_lock(m) pthread_mutex_lock(&m)
-#define jni_mutex_unlock(m) pthread_mutex_unlock(&m)
+#define jni_mutex_lock(m)                                                      \
+  do {                                                                         \
+    pthread_mutex_lock(&m);                                                    \
+    m##_owner = pthread_self();                                                \
+  } while (0)
+#define jni_mutex_unlock(m)                                                    \
+  do {                                                                         \
+    m##_owner = (pthread_t)0;                                                  \
+    pthread_mutex_unlock(&m);                                                  \
+  } while (0)
 #endif
 
 typedef enum {
@@ -64,9 +86,14 @@ typedef enum {
   OC_CALLBACK_VALID_TILL_DELETE_RESOURCE,
   OC_CALLBACK_VALID_TILL_REMOVE_DELAYED_CALLBACK,
   OC_CALLBACK_VALID_TILL_CLOUD_MANAGER_STOP,
-  OC_CALLBACK_VALID_TILL_REMOVE_OWNERSHIP_STATUS
+  OC_CALLBACK_VALID_TILL_REMOVE_OWNERSHIP_STATUS,
+  OC_CALLBACK_VALID_TILL_FREE_CLIENT_CB,
+  OC_CALLBACK_VALID_TILL_FIRST_RESPONSE
 } jni_callback_valid_t;
 
+/* number of jni_callback_valid_t values, keep in sync with the enum above */
+#define JNI_CALLBACK_VALID_CLASSES (OC_CALLBACK_VALID_TILL_FIRST_RESPONSE + 1)
+
 /*
  * JNI function calls require different calling conventions for C and C++. These
  * JCALL macros are used so that the same typemaps can be used for generating
@@ -120,6 +147,7 @@ typedef enum {
  * code.
  */
 jclass cls_ArrayList;
+jclass cls_ByteBuffer;
 jclass cls_OCMainInitHandler;
 jclass cls_OCAddDeviceHandler;
 jclass cls_OCClientResponse;
@@ -155,6 +183,67 @@ jclass cls_OCObtStatusHandler;
 jclass cls_OCCloudHandler;
 jclass cls_OCSecurityAcl;
 
+jclass cls_String;
+jclass cls_System;
+jclass cls_OCDiscoveryFlags;
+jclass cls_OCEventCallbackResult;
+
+/*
+ * jmethodIDs used by the native to java callback trampolines.
+ *
+ * A jmethodID remains valid for as long as the class it was obtained from is
+ * loaded. Since all of the classes above are held by a GlobalRef the method
+ * IDs are looked up once as part of the JNI_OnLoad event instead of calling
+ * GetMethodID every time a callback is invoked.
+ *
+ * The OCMainInitHandler class is not pre-loaded so its method IDs are looked
+ * up when the handler is passed to OCMain.mainInit.
+ */
+jmethodID mid_ArrayList_init;
+jmethodID mid_ArrayList_add;
+jmethodID mid_ByteBuffer_asReadOnlyBuffer;
+jmethodID mid_OCMainInitHandler_initialize;
+jmethodID mid_OCMainInitHandler_registerResources;
+jmethodID mid_OCMainInitHandler_requestEntry;
+jmethodID mid_OCAddDeviceHandler_handler;
+jmethodID mid_OCClientResponse_init;
+jmethodID mid_OCCloudContext_init;
+jmethodID mid_OCCloudHandler_handler;
+jmethodID mid_OCConWriteHandler_handler;
+jmethodID mid_OCCoreAddDeviceHandler_handler;
+jmethodID mid_OCCoreInitPlatformHandler_handler;
+jmethodID mid_OCCreds_init;
+jmethodID mid_OCDiscoveryHandler_handler;
+jmethodID mid_OCDiscoveryAllHandler_handler;
+jmethodID mid_OCDiscoveryFlags_swigValue;
+jmethodID mid_OCEndpoint_init;
+jmethodID mid_OCEventCallbackResult_swigValue;
+jmethodID mid_OCFactoryPresetsHandler_handler;
+jmethodID mid_OCGetPropertiesHandler_handler;
+jmethodID mid_OCInitPlatformHandler_handler;
+jmethodID mid_OCObtAclHandler_handler;
+jmethodID mid_OCObtCredsHandler_handler;
+jmethodID mid_OCObtDeviceStatusHandler_handler;
+jmethodID mid_OCObtDiscoveryHandler_handler;
+jmethodID mid_OCObtStatusHandler_handler;
+jmethodID mid_OCOwnershipStatusHandler_handler;
+jmethodID mid_OCQueryValue_init;
+jmethodID mid_OCRandomPinHandler_handler;
+jmethodID mid_OCRepresentation_init;
+jmethodID mid_OCRequest_init;
+jmethodID mid_OCRequestHandler_handler;
+jmethodID mid_OCResource_init;
+jmethodID mid_OCResponseHandler_handler;
+jmethodID mid_OCSecurityAcl_init;
+jmethodID mid_OCSetPropertiesHandler_handler;
+jmethodID mid_OCSoftwareUpdateHandler_validatePURL;
+jmethodID mid_OCSoftwareUpdateHandler_checkNewVersion;
+jmethodID mid_OCSoftwareUpdateHandler_downloadUpdate;
+jmethodID mid_OCSoftwareUpdateHandler_performUpgrade;
+jmethodID mid_OCTriggerHandler_handler;
+jmethodID mid_OCUuid_init;
+jmethodID mid_System_identityHashCode;
+
 /*
  * This struct used to hold information needed for java callbacks.
  * When registering a callback handler from java the `JNIEnv`
@@ -178,18 +267,91 @@ typedef struct jni_callback_data_s
   JNIEnv *jenv;
   jobject jcb_obj;
   jni_callback_valid_t cb_valid;
+  /*
+   * number of client callbacks and native calls referring to this item, the
+   * item is released when it drops to zero
+   */
+  int ref_count;
+  /* maintained by the jni_list_* functions */
+  struct jni_callback_data_s *prev;
+  struct jni_callback_data_s *hash_next;
+  jint jcb_hash;
 } jni_callback_data;
 
-jni_callback_data *jni_list_get_head();
+/*
+ * Registry of all dynamically allocated `jni_callback_data`.
+ *
+ * Items are hashed by the identity hash code of `jcb_obj` and kept on one list
+ * per `cb_valid` value, so looking an item up by its java callback or by its
+ * validity and removing an item do not depend on the number of registered
+ * callbacks. Items must not change `cb_valid` directly once added, use
+ * jni_list_set_callback_valid instead.
+ *
+ * All functions may be called with or without jni_sync_lock held.
+ */
 void jni_list_add(jni_callback_data *item);
 void jni_list_remove(jni_callback_data *item);
 void jni_list_clear();
+void jni_list_set_callback_valid(jni_callback_data *item,
+                                 jni_callback_valid_t cb_valid);
 jni_callback_data *jni_list_get_item_by_java_callback(jobject callback);
 jni_callback_data *jni_list_get_item_by_callback_valid(
   jni_callback_valid_t cb_valid);
+size_t jni_list_size(void);
+size_t jni_list_size_by_callback_valid(jni_callback_valid_t cb_valid);
+
+/*
+ * Takes jni_sync_lock unless the calling thread already holds it, i.e. it is
+ * the poll thread or a wrapper that locked it with jni_mutex_lock. The value
+ * returned must be passed to jni_list_unlock.
+ */
+bool jni_list_lock(void);
+void jni_list_unlock(bool locked);
+
+/*
+ * Intrusive multiple producer single consumer queue.
+ *
+ * Any thread may push without taking a lock, only the poll thread pops. The
+ * node must be the first member of the queued item. Pushing never blocks and
+ * popping only fails to see an item while its producer is half way through
+ * jni_mpsc_queue_push, in which case the queue is not empty yet.
+ */
+typedef struct jni_mpsc_node_s
+{
+  struct jni_mpsc_node_s *volatile next;
+} jni_mpsc_node_t;
+
+typedef struct jni_mpsc_queue_s
+{
+  jni_mpsc_node_t *volatile head; /* last pushed node, shared by producers */
+  jni_mpsc_node_t *tail;          /* next node to pop, owned by the consumer */
+  jni_mpsc_node_t stub;
+} jni_mpsc_queue_t;
+
+void jni_mpsc_queue_init(jni_mpsc_queue_t *queue);
+void jni_mpsc_queue_push(jni_mpsc_queue_t *queue, jni_mpsc_node_t *node);
+jni_mpsc_node_t *jni_mpsc_queue_pop(jni_mpsc_queue_t *queue);
+bool jni_mpsc_queue_is_empty(jni_mpsc_queue_t *queue);
 
 JavaVM *get_jvm();
 
+/*
+ * Returns true when called from the thread running oc_main_poll, which holds
+ * jni_sync_lock for the duration of every callback into Java.
+ */
+bool jni_is_poll_event_thread(void);
+
+/*
+ * Get the JNIEnv for the calling thread attaching the thread to the JavaVM if
+ * needed.
+ *
+ * On Linux and Android a native thread is attached as a daemon thread the
+ * first time this is called from that thread and remains attached until the
+ * thread exits, unless built with OC_JNI_ATTACH_PER_CALL. Otherwise the
+ * thread is attached for a single call. The value returned in getEnvResult
+ * must be passed to release_jni_env, which only detaches threads that were
+ * attached for a single call.
+ */
 JNIEnv *get_jni_env(jint *getEnvResult);
 
 void release_jni_env(jint getEnvResult);
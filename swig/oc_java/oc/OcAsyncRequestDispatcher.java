@@ -0,0 +1,81 @@
+package org.iotivity.oc;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.iotivity.*;
+
+/*
+ * Native request handler running an OcAsyncRequestHandler on an executor and
+ * answering the request with a separate response.
+ */
+class OcAsyncRequestDispatcher implements OCRequestHandler {
+
+    private final OcAsyncRequestHandler asyncRequestHandler;
+    private final Executor executor;
+
+    public OcAsyncRequestDispatcher(OcAsyncRequestHandler asyncRequestHandler, Executor executor) {
+        this.asyncRequestHandler = asyncRequestHandler;
+        this.executor = executor;
+    }
+
+    public OcAsyncRequestHandler getAsyncRequestHandler() {
+        return asyncRequestHandler;
+    }
+
+    @Override
+    public void handler(OCRequest request, int interfaces) {
+        final Callable<OcAsyncResponse> task;
+        try {
+            task = asyncRequestHandler.prepare(request, interfaces);
+        } catch (RuntimeException e) {
+            System.err.println("Async request handler failed to prepare request, " + e.getMessage());
+            OCMain.sendResponse(request, OCStatus.OC_STATUS_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (task == null) {
+            OCMain.sendResponse(request, OCStatus.OC_STATUS_BAD_REQUEST);
+            return;
+        }
+
+        // referenced by the task until the response is sent
+        final OCSeparateResponse separateResponse = new OCSeparateResponse();
+        OCMain.indicateSeparateResponse(request, separateResponse);
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    OcAsyncResponse response;
+                    try {
+                        response = task.call();
+                    } catch (Exception e) {
+                        System.err.println("Async request handler failed, " + e.getMessage());
+                        response = null;
+                    }
+                    send(separateResponse, response);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            send(separateResponse, new OcAsyncResponse(OCStatus.OC_STATUS_SERVICE_UNAVAILABLE));
+        }
+    }
+
+    private static void send(OCSeparateResponse separateResponse, OcAsyncResponse response) {
+        OCStatus status = OCStatus.OC_STATUS_INTERNAL_SERVER_ERROR;
+        OCMain.initSeparateResponse(separateResponse);
+        try {
+            if (response != null) {
+                response.encode();
+                status = response.getStatus();
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to encode async response, " + e.getMessage());
+            // discard the partially encoded payload
+            OCMain.setSeparateResponseBuffer(separateResponse);
+        } finally {
+            OCMain.doSeparateResponse(separateResponse, status);
+        }
+    }
+}
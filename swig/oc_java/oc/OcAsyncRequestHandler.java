@@ -0,0 +1,34 @@
+package org.iotivity.oc;
+
+import java.util.concurrent.Callable;
+
+import org.iotivity.*;
+
+/**
+ * Request handler whose response is produced off the thread running the stack.
+ * <p>
+ * The request is acknowledged with a separate response and the task returned
+ * from {@link #prepare} is run on the executor given to
+ * {@link OcResource#setAsyncRequestHandler}. The response it returns is sent
+ * once the task completes. An exception thrown by the task results in an
+ * internal server error response.
+ *
+ * @see OcResource#setAsyncRequestHandler
+ * @see OcAsyncResponse
+ */
+public interface OcAsyncRequestHandler {
+
+    /**
+     * Called on the thread running the stack when a request arrives.
+     * <p>
+     * The request and its payload are only valid for the duration of this call,
+     * so anything the task needs (e.g. payload values or query parameters) must be
+     * copied here. This method must not block.
+     *
+     * @param request  the request
+     * @param interfaces  the interface mask of the request
+     * @return the task producing the response, or null to reject the request
+     *         with a bad request response
+     */
+    public Callable<OcAsyncResponse> prepare(OCRequest request, int interfaces);
+}
@@ -0,0 +1,42 @@
+package org.iotivity.oc;
+
+import org.iotivity.*;
+
+/**
+ * Response produced by an {@link OcAsyncRequestHandler}.
+ * <p>
+ * Subclasses with a payload override {@link #encode}, which is invoked while
+ * the stack is locked and the separate response buffer is the target of the
+ * root encoder.
+ *
+ * @see OcAsyncRequestHandler
+ * @see OcCborEncoder
+ */
+public class OcAsyncResponse {
+
+    private final OCStatus status;
+
+    /**
+     * Constructs an OcAsyncResponse.
+     *
+     * @param status  the status of the response
+     */
+    public OcAsyncResponse(OCStatus status) {
+        if (status == null) {
+            throw new IllegalArgumentException("OCStatus cannot be null");
+        }
+        this.status = status;
+    }
+
+    public OCStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Encodes the payload of this response. The default encodes no payload.
+     *
+     * @throws OcCborException if encoding fails
+     */
+    public void encode() throws OcCborException {
+    }
+}
@@ -0,0 +1,446 @@
+package org.iotivity.oc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.iotivity.*;
+
+/**
+ * OcCborReader is a streaming reader for a CBOR payload.
+ * <p>
+ * Data items are read one at a time with next() without building an
+ * OCRepresentation tree. Byte strings are returned as slices of the payload
+ * buffer, so large payloads can be consumed without copying them.
+ * <p>
+ * Example reading the root object of a request:
+ * <pre>
+ *     OcCborReader reader = new OcCborReader(OCMain.getRequestPayloadBuffer(request));
+ *     if (reader.next() == OcCborReader.Type.MAP) {
+ *         while (reader.next() != OcCborReader.Type.END_OF_CONTAINER) {
+ *             String key = reader.getTextString();
+ *             if (reader.next() == OcCborReader.Type.BYTE_STRING &amp;&amp; key.equals("chunk")) {
+ *                 ByteBuffer chunk = reader.getByteString();
+ *             } else {
+ *                 reader.skip();
+ *             }
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * Request payloads are still parsed into an OCRepresentation before the
+ * handler runs unless the resource was set up with
+ * OCMain.resourceSetRawPayload or OcResource.setRawPayload.
+ *
+ * @see OCMain#getRequestPayloadBuffer
+ * @see OCMain#getResponsePayloadBuffer
+ */
+public class OcCborReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int INDEFINITE = -1;
+    private static final int BREAK = 0xff;
+
+    public enum Type {
+        INTEGER, BYTE_STRING, TEXT_STRING, ARRAY, MAP, TAG, BOOLEAN, NULL, UNDEFINED, SIMPLE, FLOAT,
+        END_OF_CONTAINER, END_OF_DATA
+    }
+
+    private final ByteBuffer buffer;
+
+    private Type type;
+    private long value;
+    private double floatValue;
+    private boolean contentPending;
+
+    // remaining data items of each enclosing container, INDEFINITE if unknown
+    private long[] remaining = new long[8];
+    private int depth;
+
+    /**
+     * Constructs an OcCborReader reading from the current position to the limit of the buffer.
+     * <p>
+     * The position of the buffer is not modified.
+     *
+     * @param buffer  the cbor encoded payload, may be null for an empty payload
+     */
+    public OcCborReader(ByteBuffer buffer) {
+        this.buffer = (buffer != null) ? buffer.slice() : ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Reads the next data item.
+     * <p>
+     * Strings not read with getTextString() or getByteString() and the
+     * content of arrays and maps not read when skip() was called are skipped.
+     * The items of an array or map follow it and are terminated by
+     * END_OF_CONTAINER, the items of a map alternate between key and value.
+     *
+     * @return the type of the data item
+     * @throws OcCborException if the payload is not well formed
+     */
+    public Type next() throws OcCborException {
+        if (contentPending) {
+            skipContent();
+        }
+
+        if (depth > 0) {
+            if (remaining[depth - 1] == 0) {
+                depth--;
+                return setType(Type.END_OF_CONTAINER);
+            }
+            if (remaining[depth - 1] == INDEFINITE && peek() == BREAK) {
+                buffer.get();
+                depth--;
+                return setType(Type.END_OF_CONTAINER);
+            }
+        } else if (!buffer.hasRemaining()) {
+            return setType(Type.END_OF_DATA);
+        }
+
+        int initialByte = readByte();
+        int majorType = initialByte >>> 5;
+        int additionalInfo = initialByte & 0x1f;
+
+        if (majorType == 6) {
+            // a tag is part of the data item following it
+            value = readArgument(additionalInfo);
+            return setType(Type.TAG);
+        }
+        if (depth > 0 && remaining[depth - 1] != INDEFINITE) {
+            remaining[depth - 1]--;
+        }
+
+        switch (majorType) {
+        case 0:
+            value = readArgument(additionalInfo);
+            if (value < 0) {
+                throw new OcCborException("Integer does not fit in a long");
+            }
+            return setType(Type.INTEGER);
+        case 1:
+            value = readArgument(additionalInfo);
+            if (value < 0) {
+                throw new OcCborException("Integer does not fit in a long");
+            }
+            value = -1 - value;
+            return setType(Type.INTEGER);
+        case 2:
+        case 3:
+            value = (additionalInfo == 31) ? INDEFINITE : readLength(additionalInfo);
+            contentPending = true;
+            return setType((majorType == 2) ? Type.BYTE_STRING : Type.TEXT_STRING);
+        case 4:
+        case 5:
+            value = (additionalInfo == 31) ? INDEFINITE : readLength(additionalInfo);
+            long items = value;
+            if (majorType == 5 && items != INDEFINITE) {
+                items *= 2;
+            }
+            push(items);
+            return setType((majorType == 4) ? Type.ARRAY : Type.MAP);
+        default:
+            return readSimpleOrFloat(additionalInfo);
+        }
+    }
+
+    /**
+     * Returns the type returned by the last call to next().
+     *
+     * @return the type of the current data item, null before the first call to next()
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the length of the current string in bytes, or the number of
+     * items of the current array or of key value pairs of the current map.
+     *
+     * @return the length, -1 if the length is indefinite
+     */
+    public long getLength() {
+        checkType(Type.BYTE_STRING, Type.TEXT_STRING, Type.ARRAY, Type.MAP);
+        return value;
+    }
+
+    /**
+     * Returns the value of the current INTEGER, TAG or SIMPLE data item.
+     *
+     * @return the value
+     */
+    public long getLong() {
+        checkType(Type.INTEGER, Type.TAG, Type.SIMPLE);
+        return value;
+    }
+
+    /**
+     * Returns the value of the current FLOAT data item.
+     * <p>
+     * Half, single and double precision values are all returned as double.
+     *
+     * @return the value
+     */
+    public double getDouble() {
+        checkType(Type.FLOAT);
+        return floatValue;
+    }
+
+    /**
+     * Returns the value of the current BOOLEAN data item.
+     *
+     * @return the value
+     */
+    public boolean getBoolean() {
+        checkType(Type.BOOLEAN);
+        return value != 0;
+    }
+
+    /**
+     * Reads the current TEXT_STRING data item.
+     *
+     * @return the string
+     * @throws OcCborException if the payload is not well formed
+     */
+    public String getTextString() throws OcCborException {
+        checkType(Type.TEXT_STRING);
+        ByteBuffer content = readContent(3);
+        if (content.hasArray()) {
+            return new String(content.array(), content.arrayOffset() + content.position(), content.remaining(),
+                    UTF_8);
+        }
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Reads the current BYTE_STRING data item.
+     * <p>
+     * A definite length byte string is returned as a read only slice of the
+     * payload buffer and is only valid as long as the payload buffer is. The
+     * chunks of an indefinite length byte string are copied to a new buffer.
+     *
+     * @return the byte string
+     * @throws OcCborException if the payload is not well formed
+     */
+    public ByteBuffer getByteString() throws OcCborException {
+        checkType(Type.BYTE_STRING);
+        return readContent(2).asReadOnlyBuffer();
+    }
+
+    /**
+     * Skips the rest of the current data item.
+     * <p>
+     * For an ARRAY or MAP all its items up to and including the matching
+     * END_OF_CONTAINER are skipped, for a TAG the tagged data item is skipped.
+     *
+     * @throws OcCborException if the payload is not well formed
+     */
+    public void skip() throws OcCborException {
+        if (contentPending) {
+            skipContent();
+            return;
+        }
+        if (type == Type.TAG) {
+            next();
+            skip();
+            return;
+        }
+        if (type == Type.ARRAY || type == Type.MAP) {
+            int containerDepth = depth;
+            while (depth >= containerDepth) {
+                if (next() == Type.END_OF_DATA) {
+                    throw new OcCborException("Unexpected end of data");
+                }
+                skip();
+            }
+        }
+    }
+
+    private Type setType(Type type) {
+        this.type = type;
+        return type;
+    }
+
+    private void checkType(Type... expected) {
+        for (Type t : expected) {
+            if (type == t) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Current data item is " + type);
+    }
+
+    private void push(long items) {
+        if (depth == remaining.length) {
+            long[] grown = new long[remaining.length * 2];
+            System.arraycopy(remaining, 0, grown, 0, remaining.length);
+            remaining = grown;
+        }
+        remaining[depth++] = items;
+    }
+
+    private int peek() throws OcCborException {
+        if (!buffer.hasRemaining()) {
+            throw new OcCborException("Unexpected end of data");
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    private int readByte() throws OcCborException {
+        if (!buffer.hasRemaining()) {
+            throw new OcCborException("Unexpected end of data");
+        }
+        return buffer.get() & 0xff;
+    }
+
+    private long readArgument(int additionalInfo) throws OcCborException {
+        if (additionalInfo < 24) {
+            return additionalInfo;
+        }
+        int size;
+        switch (additionalInfo) {
+        case 24:
+            size = 1;
+            break;
+        case 25:
+            size = 2;
+            break;
+        case 26:
+            size = 4;
+            break;
+        case 27:
+            size = 8;
+            break;
+        default:
+            throw new OcCborException("Invalid additional information " + additionalInfo);
+        }
+        if (buffer.remaining() < size) {
+            throw new OcCborException("Unexpected end of data");
+        }
+        switch (size) {
+        case 1:
+            return buffer.get() & 0xffL;
+        case 2:
+            return buffer.getShort() & 0xffffL;
+        case 4:
+            return buffer.getInt() & 0xffffffffL;
+        default:
+            return buffer.getLong();
+        }
+    }
+
+    private long readLength(int additionalInfo) throws OcCborException {
+        long length = readArgument(additionalInfo);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new OcCborException("Length " + length + " is too large");
+        }
+        return length;
+    }
+
+    private Type readSimpleOrFloat(int additionalInfo) throws OcCborException {
+        switch (additionalInfo) {
+        case 20:
+        case 21:
+            value = additionalInfo - 20;
+            return setType(Type.BOOLEAN);
+        case 22:
+            return setType(Type.NULL);
+        case 23:
+            return setType(Type.UNDEFINED);
+        case 24:
+            value = readArgument(additionalInfo);
+            return setType(Type.SIMPLE);
+        case 25:
+            floatValue = halfToDouble((int) readArgument(additionalInfo));
+            return setType(Type.FLOAT);
+        case 26:
+            floatValue = Float.intBitsToFloat((int) readArgument(additionalInfo));
+            return setType(Type.FLOAT);
+        case 27:
+            floatValue = Double.longBitsToDouble(readArgument(additionalInfo));
+            return setType(Type.FLOAT);
+        case 31:
+            throw new OcCborException("Unexpected break");
+        default:
+            if (additionalInfo < 20) {
+                value = additionalInfo;
+                return setType(Type.SIMPLE);
+            }
+            throw new OcCborException("Invalid additional information " + additionalInfo);
+        }
+    }
+
+    private static double halfToDouble(int half) {
+        int exponent = (half >> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        double magnitude;
+        if (exponent == 0) {
+            magnitude = Math.scalb((double) mantissa, -24);
+        } else if (exponent != 31) {
+            magnitude = Math.scalb((double) (mantissa + 1024), exponent - 25);
+        } else {
+            magnitude = (mantissa == 0) ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return ((half & 0x8000) != 0) ? -magnitude : magnitude;
+    }
+
+    // returns the content of the current string, the buffer is advanced past it
+    private ByteBuffer readContent(int majorType) throws OcCborException {
+        if (!contentPending) {
+            throw new IllegalStateException("The string has already been read");
+        }
+        contentPending = false;
+        if (value != INDEFINITE) {
+            return readChunk((int) value);
+        }
+        // concatenate the chunks of an indefinite length string
+        int start = buffer.position();
+        int total = 0;
+        while (peek() != BREAK) {
+            int length = readChunkHeader(majorType);
+            readChunk(length);
+            total += length;
+        }
+        ByteBuffer content = ByteBuffer.allocate(total);
+        buffer.position(start);
+        while (peek() != BREAK) {
+            content.put(readChunk(readChunkHeader(majorType)));
+        }
+        buffer.get();
+        content.flip();
+        return content;
+    }
+
+    private int readChunkHeader(int majorType) throws OcCborException {
+        int initialByte = readByte();
+        if ((initialByte >>> 5) != majorType || (initialByte & 0x1f) == 31) {
+            throw new OcCborException("Invalid chunk in indefinite length string");
+        }
+        return (int) readLength(initialByte & 0x1f);
+    }
+
+    private ByteBuffer readChunk(int length) throws OcCborException {
+        if (buffer.remaining() < length) {
+            throw new OcCborException("Unexpected end of data");
+        }
+        ByteBuffer chunk = buffer.slice();
+        chunk.limit(length);
+        buffer.position(buffer.position() + length);
+        return chunk;
+    }
+
+    private void skipContent() throws OcCborException {
+        int majorType = (type == Type.BYTE_STRING) ? 2 : 3;
+        if (value != INDEFINITE) {
+            contentPending = false;
+            readChunk((int) value);
+            return;
+        }
+        contentPending = false;
+        while (peek() != BREAK) {
+            readChunk(readChunkHeader(majorType));
+        }
+        buffer.get();
+    }
+}
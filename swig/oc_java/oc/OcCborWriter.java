@@ -0,0 +1,478 @@
+package org.iotivity.oc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.iotivity.*;
+
+/**
+ * OcCborWriter encodes a CBOR representation in Java into a direct ByteBuffer.
+ * <p>
+ * Unlike OcCborEncoder, which makes a native call for every value, the
+ * payload is built without calling into the native code and is handed to the
+ * stack with a single call once it is complete, using {@link #send} from a
+ * request handler, or {@link #encode} from {@link OcAsyncResponse#encode} or
+ * an {@link OcPayloadEncoder}. The payload can be built without holding the
+ * stack lock, e.g. on the executor of an OcAsyncRequestHandler.
+ * <p>
+ * The direct buffers are pooled. Call {@link #release} once the payload has
+ * been handed to the stack to return the buffer to the pool.
+ * <p>
+ * Example:
+ * <pre>
+ *     OcCborWriter writer = new OcCborWriter();
+ *     try {
+ *         writer.beginObject();
+ *         writer.setBoolean("state", true);
+ *         writer.setLong("power", 42);
+ *         writer.endObject();
+ *         writer.send(request, OCStatus.OC_STATUS_OK);
+ *     } finally {
+ *         writer.release();
+ *     }
+ * </pre>
+ *
+ * @see OcCborReader
+ * @see OcCborEncoder
+ */
+public class OcCborWriter {
+
+    /** initial capacity of the pooled buffers */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // buffers that grew beyond this are not returned to the pool
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAJOR_TYPE_UNSIGNED_INT = 0;
+    private static final int MAJOR_TYPE_NEGATIVE_INT = 1;
+    private static final int MAJOR_TYPE_BYTE_STRING = 2;
+    private static final int MAJOR_TYPE_TEXT_STRING = 3;
+    private static final int MAJOR_TYPE_ARRAY = 4;
+    private static final int MAJOR_TYPE_MAP = 5;
+    private static final int INDEFINITE_LENGTH = 0x1f;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int DOUBLE = 0xfb;
+    private static final int BREAK = 0xff;
+
+    private ByteBuffer buffer;
+    // true for each open container that was started with an indefinite length
+    private boolean[] indefinite = new boolean[8];
+    private int depth;
+
+    /**
+     * Constructs an OcCborWriter with a buffer taken from the pool.
+     */
+    public OcCborWriter() {
+        buffer = obtainBuffer(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Begins a map with an indefinite number of entries. Must be closed using
+     * endObject().
+     */
+    public void beginObject() {
+        beginContainer(MAJOR_TYPE_MAP);
+    }
+
+    /**
+     * Begins a map with exactly size entries. Must be closed using endObject().
+     *
+     * @param size  the number of key/value pairs that will be written
+     */
+    public void beginObject(int size) {
+        beginContainer(MAJOR_TYPE_MAP, size);
+    }
+
+    /**
+     * Begins a keyed map with an indefinite number of entries. Must be closed
+     * using endObject().
+     *
+     * @param key  the key of the map
+     */
+    public void beginObject(String key) {
+        addTextString(key);
+        beginObject();
+    }
+
+    public void endObject() {
+        endContainer();
+    }
+
+    /**
+     * Begins an array with an indefinite number of items. Must be closed using
+     * endArray().
+     */
+    public void beginArray() {
+        beginContainer(MAJOR_TYPE_ARRAY);
+    }
+
+    /**
+     * Begins an array with exactly size items. Must be closed using endArray().
+     *
+     * @param size  the number of items that will be written
+     */
+    public void beginArray(int size) {
+        beginContainer(MAJOR_TYPE_ARRAY, size);
+    }
+
+    /**
+     * Begins a keyed array with an indefinite number of items. Must be closed
+     * using endArray().
+     *
+     * @param key  the key of the array
+     */
+    public void beginArray(String key) {
+        addTextString(key);
+        beginArray();
+    }
+
+    public void endArray() {
+        endContainer();
+    }
+
+    public void addBoolean(boolean value) {
+        writeByte(value ? TRUE : FALSE);
+    }
+
+    public void addLong(long value) {
+        if (value < 0) {
+            writeHeader(MAJOR_TYPE_NEGATIVE_INT, -1 - value);
+        } else {
+            writeHeader(MAJOR_TYPE_UNSIGNED_INT, value);
+        }
+    }
+
+    public void addDouble(double value) {
+        ensureCapacity(9);
+        buffer.put((byte) DOUBLE);
+        buffer.putLong(Double.doubleToRawLongBits(value));
+    }
+
+    public void addNull() {
+        writeByte(NULL);
+    }
+
+    public void addTextString(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("String value cannot be null");
+        }
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (!ascii) {
+            writeString(MAJOR_TYPE_TEXT_STRING, value.getBytes(UTF_8));
+            return;
+        }
+        // ASCII is valid UTF-8, so the chars are written without an intermediate array
+        writeHeader(MAJOR_TYPE_TEXT_STRING, length);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    public void addByteString(byte[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("byte[] value cannot be null");
+        }
+        writeString(MAJOR_TYPE_BYTE_STRING, value);
+    }
+
+    /**
+     * Adds the remaining bytes of value as a byte string. The position of
+     * value is not changed.
+     *
+     * @param value  the bytes to add
+     */
+    public void addByteString(ByteBuffer value) {
+        if (value == null) {
+            throw new IllegalArgumentException("ByteBuffer value cannot be null");
+        }
+        writeHeader(MAJOR_TYPE_BYTE_STRING, value.remaining());
+        ensureCapacity(value.remaining());
+        buffer.put(value.duplicate());
+    }
+
+    public void setBoolean(String key, boolean value) {
+        addTextString(key);
+        addBoolean(value);
+    }
+
+    public void setLong(String key, long value) {
+        addTextString(key);
+        addLong(value);
+    }
+
+    public void setDouble(String key, double value) {
+        addTextString(key);
+        addDouble(value);
+    }
+
+    public void setNull(String key) {
+        addTextString(key);
+        addNull();
+    }
+
+    public void setTextString(String key, String value) {
+        addTextString(key);
+        addTextString(value);
+    }
+
+    public void setByteString(String key, byte[] value) {
+        addTextString(key);
+        addByteString(value);
+    }
+
+    public void setByteString(String key, ByteBuffer value) {
+        addTextString(key);
+        addByteString(value);
+    }
+
+    public void setBooleanArray(String key, boolean[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("boolean[] value cannot be null");
+        }
+        addTextString(key);
+        writeHeader(MAJOR_TYPE_ARRAY, value.length);
+        for (boolean item : value) {
+            addBoolean(item);
+        }
+    }
+
+    public void setLongArray(String key, long[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("long[] value cannot be null");
+        }
+        addTextString(key);
+        writeHeader(MAJOR_TYPE_ARRAY, value.length);
+        for (long item : value) {
+            addLong(item);
+        }
+    }
+
+    public void setDoubleArray(String key, double[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("double[] value cannot be null");
+        }
+        addTextString(key);
+        writeHeader(MAJOR_TYPE_ARRAY, value.length);
+        for (double item : value) {
+            addDouble(item);
+        }
+    }
+
+    public void setStringArray(String key, String[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("String[] value cannot be null");
+        }
+        addTextString(key);
+        writeHeader(MAJOR_TYPE_ARRAY, value.length);
+        for (String item : value) {
+            addTextString(item);
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    public int size() {
+        return checkBuffer().position();
+    }
+
+    /**
+     * Returns a read-only view of the encoded payload. The view is only valid
+     * until the writer is modified, reset or released.
+     *
+     * @return a direct ByteBuffer positioned at the start of the payload
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer payload = checkBuffer().duplicate();
+        payload.flip();
+        return payload.asReadOnlyBuffer();
+    }
+
+    /**
+     * Discards the encoded payload so the writer can be used again.
+     */
+    public void reset() {
+        checkBuffer().clear();
+        depth = 0;
+    }
+
+    /**
+     * Copies the encoded payload into the payload being built by the stack.
+     * <p>
+     * Must be called with the stack locked while the root encoder is the
+     * target of the payload, i.e. from {@link OcAsyncResponse#encode} or
+     * {@link OcPayloadEncoder#encode}.
+     *
+     * @throws OcCborException if an object or array is still open or the
+     *         payload does not fit in the buffer of the stack
+     */
+    public void encode() throws OcCborException {
+        if (depth != 0) {
+            throw new OcCborException("Unterminated object or array");
+        }
+        OCRep.encodeRaw(getBuffer());
+        if (OCRep.getCborErrno() != 0) {
+            throw new OcCborException("Failed to encode payload of " + size() + " bytes");
+        }
+    }
+
+    /**
+     * Sends the encoded payload as the response to a request.
+     * <p>
+     * Must be called from the request handler that received the request. If
+     * the payload can not be encoded, an internal server error response is
+     * sent instead.
+     *
+     * @param request  the request being responded to
+     * @param status  the status of the response
+     * @throws OcCborException if the payload can not be encoded
+     */
+    public void send(OCRequest request, OCStatus status) throws OcCborException {
+        try {
+            encode();
+        } catch (OcCborException e) {
+            OCRep.clearCborErrno();
+            OCMain.sendResponse(request, OCStatus.OC_STATUS_INTERNAL_SERVER_ERROR);
+            throw e;
+        }
+        OCMain.sendResponse(request, status);
+    }
+
+    /**
+     * Returns the buffer of this writer to the pool. The writer can not be used
+     * afterwards.
+     */
+    public void release() {
+        if (buffer != null) {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer checkBuffer() {
+        if (buffer == null) {
+            throw new IllegalStateException("OcCborWriter has been released");
+        }
+        return buffer;
+    }
+
+    private void beginContainer(int majorType) {
+        writeByte((majorType << 5) | INDEFINITE_LENGTH);
+        pushContainer(true);
+    }
+
+    private void beginContainer(int majorType, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+        writeHeader(majorType, size);
+        pushContainer(false);
+    }
+
+    private void pushContainer(boolean isIndefinite) {
+        if (depth == indefinite.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(indefinite, 0, grown, 0, depth);
+            indefinite = grown;
+        }
+        indefinite[depth++] = isIndefinite;
+    }
+
+    private void endContainer() {
+        if (depth == 0) {
+            throw new IllegalStateException("No object or array is open");
+        }
+        if (indefinite[--depth]) {
+            writeByte(BREAK);
+        }
+    }
+
+    private void writeString(int majorType, byte[] value) {
+        writeHeader(majorType, value.length);
+        ensureCapacity(value.length);
+        buffer.put(value);
+    }
+
+    private void writeHeader(int majorType, long argument) {
+        int initialByte = majorType << 5;
+        ensureCapacity(9);
+        if (argument < 24) {
+            buffer.put((byte) (initialByte | (int) argument));
+        } else if (argument <= 0xffL) {
+            buffer.put((byte) (initialByte | 24));
+            buffer.put((byte) argument);
+        } else if (argument <= 0xffffL) {
+            buffer.put((byte) (initialByte | 25));
+            buffer.putShort((short) argument);
+        } else if (argument <= 0xffffffffL) {
+            buffer.put((byte) (initialByte | 26));
+            buffer.putInt((int) argument);
+        } else {
+            buffer.put((byte) (initialByte | 27));
+            buffer.putLong(argument);
+        }
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    private void ensureCapacity(int length) {
+        ByteBuffer current = checkBuffer();
+        if (current.remaining() >= length) {
+            return;
+        }
+        int capacity = current.capacity();
+        while (capacity - current.position() < length) {
+            capacity *= 2;
+        }
+        ByteBuffer grown = obtainBuffer(capacity);
+        current.flip();
+        grown.put(current);
+        releaseBuffer(current);
+        buffer = grown;
+    }
+
+    private static ByteBuffer obtainBuffer(int capacity) {
+        ByteBuffer pooled = bufferPool.poll();
+        if (pooled != null) {
+            pooledBufferCount.decrementAndGet();
+            if (pooled.capacity() >= capacity) {
+                pooled.clear();
+                return pooled;
+            }
+            // too small for this request, let it be collected
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    private static void releaseBuffer(ByteBuffer released) {
+        if (released.capacity() > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        if (pooledBufferCount.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            pooledBufferCount.decrementAndGet();
+            return;
+        }
+        bufferPool.offer(released);
+    }
+}
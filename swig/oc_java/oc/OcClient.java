@@ -0,0 +1,168 @@
+package org.iotivity.oc;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.iotivity.*;
+
+/**
+ * OcClient issues GET, PUT, POST and DELETE requests whose results are
+ * delivered through an OcResponseFuture.
+ * <p>
+ * Every request has a timeout. The native reference held for a request is
+ * released as soon as its response arrives, the request times out or the
+ * future is cancelled, so the native memory used is bounded by the number of
+ * requests in flight.
+ *
+ * @see OcResponseFuture
+ * @see OcResponse
+ */
+public class OcClient {
+
+    private static final ScheduledThreadPoolExecutor timeoutExecutor = createTimeoutExecutor();
+
+    // never instantiated
+    private OcClient() {
+    }
+
+    private static ScheduledThreadPoolExecutor createTimeoutExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OcClient-timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // do not keep the futures of completed requests until their timeout
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    public static OcResponseFuture get(String uri, OCEndpoint endpoint, String query, OCQos qos, long timeout,
+            TimeUnit unit) {
+        OcResponseFuture future = new OcResponseFuture();
+        if (OCMain.doGetSingleCall(uri, endpoint, query, future.getResponseHandler(), qos)) {
+            scheduleTimeout(future, timeout, unit);
+        } else {
+            future.fail(new OcException("Failed to send GET request to " + uri));
+        }
+        return future;
+    }
+
+    public static OcResponseFuture delete(String uri, OCEndpoint endpoint, String query, OCQos qos, long timeout,
+            TimeUnit unit) {
+        OcResponseFuture future = new OcResponseFuture();
+        if (OCMain.doDeleteSingleCall(uri, endpoint, query, future.getResponseHandler(), qos)) {
+            scheduleTimeout(future, timeout, unit);
+        } else {
+            future.fail(new OcException("Failed to send DELETE request to " + uri));
+        }
+        return future;
+    }
+
+    /**
+     * Issues a PUT request.
+     *
+     * @param uri  the uri of the resource
+     * @param endpoint  the endpoint of the server
+     * @param query  the query parameters or null
+     * @param encoder  encodes the request payload, or null for an empty payload
+     * @param qos  the quality of service of the request
+     * @param timeout  the time to wait for the response
+     * @param unit  the unit of the timeout
+     * @return the future completed with the response
+     */
+    public static OcResponseFuture put(String uri, OCEndpoint endpoint, String query, OcPayloadEncoder encoder,
+            OCQos qos, long timeout, TimeUnit unit) {
+        OcResponseFuture future = new OcResponseFuture();
+        if (!OCMain.initPutSingleCall(uri, endpoint, query, future.getResponseHandler(), qos)) {
+            future.fail(new OcException("Failed to prepare PUT request to " + uri));
+            return future;
+        }
+        boolean sent = false;
+        boolean encoded = false;
+        Throwable failure = null;
+        try {
+            if (encoder != null) {
+                encoder.encode();
+            }
+            encoded = true;
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            // either call releases the lock taken by initPutSingleCall, a request
+            // whose payload failed to encode is dropped instead of being sent
+            if (encoded) {
+                sent = OCMain.doPut();
+            } else {
+                OCMain.abortRequest();
+            }
+        }
+        completeSend(future, sent, failure, "PUT", uri, timeout, unit);
+        return future;
+    }
+
+    /**
+     * Issues a POST request.
+     *
+     * @param uri  the uri of the resource
+     * @param endpoint  the endpoint of the server
+     * @param query  the query parameters or null
+     * @param encoder  encodes the request payload, or null for an empty payload
+     * @param qos  the quality of service of the request
+     * @param timeout  the time to wait for the response
+     * @param unit  the unit of the timeout
+     * @return the future completed with the response
+     */
+    public static OcResponseFuture post(String uri, OCEndpoint endpoint, String query, OcPayloadEncoder encoder,
+            OCQos qos, long timeout, TimeUnit unit) {
+        OcResponseFuture future = new OcResponseFuture();
+        if (!OCMain.initPostSingleCall(uri, endpoint, query, future.getResponseHandler(), qos)) {
+            future.fail(new OcException("Failed to prepare POST request to " + uri));
+            return future;
+        }
+        boolean sent = false;
+        boolean encoded = false;
+        Throwable failure = null;
+        try {
+            if (encoder != null) {
+                encoder.encode();
+            }
+            encoded = true;
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            // either call releases the lock taken by initPostSingleCall, a request
+            // whose payload failed to encode is dropped instead of being sent
+            if (encoded) {
+                sent = OCMain.doPost();
+            } else {
+                OCMain.abortRequest();
+            }
+        }
+        completeSend(future, sent, failure, "POST", uri, timeout, unit);
+        return future;
+    }
+
+    private static void completeSend(OcResponseFuture future, boolean sent, Throwable failure, String method,
+            String uri, long timeout, TimeUnit unit) {
+        if (sent) {
+            scheduleTimeout(future, timeout, unit);
+        } else if (failure != null) {
+            future.fail(failure);
+        } else {
+            future.fail(new OcException("Failed to send " + method + " request to " + uri));
+        }
+    }
+
+    private static void scheduleTimeout(final OcResponseFuture future, long timeout, TimeUnit unit) {
+        future.setTimeoutTask(timeoutExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.expire();
+            }
+        }, timeout, unit));
+    }
+}
@@ -38,6 +38,7 @@ public class OcCollection extends OcResource {
             throw new IllegalArgumentException("OcDevice cannot be null");
         }
 
+        this.device = device;
         this.name = (name != null) ? name : "";
         this.uri = (uri != null) ? uri : "";
         this.resourceTypes = (rts != null) ? rts : new String[0];
@@ -0,0 +1,90 @@
+package org.iotivity.oc;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * OcEventLoopGroup runs the application work of the devices of a platform on a
+ * fixed number of event loop threads.
+ * <p>
+ * Each device is assigned to an event loop by its index, so all tasks and timers
+ * of a device run in order on the same thread, while devices on different event
+ * loops are served in parallel. A device busy with a long running task only
+ * delays the devices sharing its event loop. With as many event loops as
+ * devices every device has a thread of its own.
+ * <p>
+ * The stack itself keeps running on the thread polling it. The event loops run
+ * the tasks of async request handlers and any timers scheduled by the
+ * application.
+ *
+ * @see OcPlatform#setDeviceEventLoops
+ * @see OcResource#setAsyncRequestHandler
+ */
+public class OcEventLoopGroup {
+
+    private final ScheduledThreadPoolExecutor[] eventLoops;
+
+    /**
+     * Constructs an OcEventLoopGroup.
+     *
+     * @param eventLoopCount  the number of event loop threads
+     */
+    public OcEventLoopGroup(int eventLoopCount) {
+        if (eventLoopCount < 1) {
+            throw new IllegalArgumentException("eventLoopCount must be at least 1");
+        }
+
+        eventLoops = new ScheduledThreadPoolExecutor[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = createEventLoop("OcEventLoop-" + i);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createEventLoop(final String name) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // do not keep cancelled timers until they expire
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Returns the number of event loop threads.
+     *
+     * @return the number of event loops
+     */
+    public int getEventLoopCount() {
+        return eventLoops.length;
+    }
+
+    /**
+     * Returns the event loop of a device.
+     *
+     * @param deviceIndex  the index of the device
+     * @return the event loop running the tasks of the device
+     */
+    public ScheduledExecutorService getEventLoop(int deviceIndex) {
+        if (deviceIndex < 0) {
+            throw new IllegalArgumentException("deviceIndex cannot be negative");
+        }
+        return eventLoops[deviceIndex % eventLoops.length];
+    }
+
+    /**
+     * Stops the event loops. Tasks already submitted are run, timers that have
+     * not expired yet are discarded.
+     */
+    public void shutdown() {
+        for (ScheduledThreadPoolExecutor eventLoop : eventLoops) {
+            eventLoop.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            eventLoop.shutdown();
+        }
+    }
+}
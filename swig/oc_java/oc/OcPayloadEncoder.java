@@ -0,0 +1,22 @@
+package org.iotivity.oc;
+
+/**
+ * Encodes the payload of a PUT or POST request issued through OcClient.
+ * <p>
+ * Invoked while the request is being prepared, with the stack locked, so the
+ * payload is written with the root encoder (e.g. using OcCborEncoder).
+ *
+ * @see OcClient#put
+ * @see OcClient#post
+ * @see OcCborEncoder
+ */
+public interface OcPayloadEncoder {
+
+    /**
+     * Encodes the request payload.
+     *
+     * @throws OcCborException if encoding fails, in which case the future of the request fails
+     *         and any response to the request is ignored
+     */
+    public void encode() throws OcCborException;
+}
@@ -2,6 +2,7 @@ package org.iotivity.oc;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.iotivity.*;
@@ -21,6 +22,7 @@ public class OcPlatform {
 
     private AtomicInteger deviceIndex = new AtomicInteger();
     private Map<OcDevice, AtomicInteger> deviceIndexLookup = new ConcurrentHashMap<>();
+    private volatile OcEventLoopGroup deviceEventLoops;
 
     private static OcPlatform instance;
 
@@ -47,6 +49,49 @@ public class OcPlatform {
         OCMain.mainShutdown();
         deviceIndex.set(0);
         deviceIndexLookup.clear();
+        setDeviceEventLoops(0);
+    }
+
+    /**
+     * Runs the application work of the devices on event loop threads.
+     * <p>
+     * The devices are spread over eventLoopCount threads, so passing the number of
+     * devices gives each device a thread of its own. Passing 0 stops the event
+     * loops. Should be called before the async request handlers of the resources
+     * are set.
+     *
+     * @param eventLoopCount  the number of event loop threads, or 0
+     *
+     * @see OcEventLoopGroup
+     */
+    public synchronized void setDeviceEventLoops(int eventLoopCount) {
+        if (eventLoopCount < 0) {
+            throw new IllegalArgumentException("eventLoopCount cannot be negative");
+        }
+        if (deviceEventLoops != null) {
+            deviceEventLoops.shutdown();
+        }
+        deviceEventLoops = (eventLoopCount > 0) ? new OcEventLoopGroup(eventLoopCount) : null;
+    }
+
+    /**
+     * Returns the event loop running the application work of a device.
+     *
+     * @param device  the device
+     * @return the event loop of the device
+     * @throws IllegalStateException if no event loops were set
+     *
+     * @see #setDeviceEventLoops
+     */
+    public ScheduledExecutorService getDeviceEventLoop(OcDevice device) {
+        if (device == null) {
+            throw new IllegalArgumentException("OcDevice cannot be null");
+        }
+        OcEventLoopGroup eventLoops = deviceEventLoops;
+        if (eventLoops == null) {
+            throw new IllegalStateException("Device event loops are not set");
+        }
+        return eventLoops.getEventLoop(device.getDeviceIndex());
     }
 
     /**
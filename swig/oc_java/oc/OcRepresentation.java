@@ -126,6 +126,23 @@ public class OcRepresentation {
         throw new OcCborException("Failed to get double for key " + key);
     }
 
+    /*
+     * The getters taking a default value, the array getters taking a
+     * destination array and getPresenceMask() do not allocate, so they can be
+     * used to read a large number of representations without creating garbage.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return OCRep.getBooleanOrDefault(nativeRepresentation, key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return OCRep.getLongOrDefault(nativeRepresentation, key, defaultValue);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        return OCRep.getDoubleOrDefault(nativeRepresentation, key, defaultValue);
+    }
+
     public String getString(String key) throws OcCborException {
         String returnValue = OCRep.getString(nativeRepresentation, key);
         if (returnValue != null) {
@@ -174,6 +191,42 @@ public class OcRepresentation {
         throw new OcCborException("Failed to get double array for key " + key);
     }
 
+    /**
+     * Copies a long array into dst starting at offset.
+     *
+     * @param key  the key of the long array
+     * @param dst  the array the values are copied to
+     * @param offset  the index in dst of the first value
+     * @return the number of values of the long array, only the first
+     *         dst.length - offset of them are copied
+     * @throws OcCborException if the key or value is not found
+     */
+    public int getLongArray(String key, long[] dst, int offset) throws OcCborException {
+        int count = OCRep.copyLongArray(nativeRepresentation, key, dst, offset);
+        if (count >= 0) {
+            return count;
+        }
+        throw new OcCborException("Failed to get long array for key " + key);
+    }
+
+    /**
+     * Copies a double array into dst starting at offset.
+     *
+     * @param key  the key of the double array
+     * @param dst  the array the values are copied to
+     * @param offset  the index in dst of the first value
+     * @return the number of values of the double array, only the first
+     *         dst.length - offset of them are copied
+     * @throws OcCborException if the key or value is not found
+     */
+    public int getDoubleArray(String key, double[] dst, int offset) throws OcCborException {
+        int count = OCRep.copyDoubleArray(nativeRepresentation, key, dst, offset);
+        if (count >= 0) {
+            return count;
+        }
+        throw new OcCborException("Failed to get double array for key " + key);
+    }
+
     public String[] getStringArray(String key) throws OcCborException {
         String[] returnValue = OCRep.getStringArray(nativeRepresentation, key);
         if (returnValue != null) {
@@ -198,6 +251,17 @@ public class OcRepresentation {
         throw new OcCborException("Failed to get object array for key " + key);
     }
 
+    /**
+     * Returns a bitmask with bit i set if keys[i] is present in this
+     * representation. Only the first 64 keys are checked.
+     *
+     * @param keys  the keys to look for
+     * @return the presence bitmask
+     */
+    public long getPresenceMask(String[] keys) {
+        return OCRep.getPresenceMask(nativeRepresentation, keys);
+    }
+
     public OcRepresentation getNext() {
         OCRepresentation nativeRep = nativeRepresentation.getNext();
         if (nativeRep != null) {
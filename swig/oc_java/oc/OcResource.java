@@ -2,6 +2,7 @@ package org.iotivity.oc;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.iotivity.*;
 
@@ -17,6 +18,8 @@ import org.iotivity.*;
  */
 public class OcResource {
 
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
     protected String name;
     protected String uri;
     protected String[] resourceTypes;
@@ -26,12 +29,14 @@ public class OcResource {
     private boolean discoverable;
     private boolean observable;
     private int periodicObservable;
+    private boolean rawPayload;
     private OCRequestHandler getRequestHandler;
     private OCRequestHandler putRequestHandler;
     private OCRequestHandler postRequestHandler;
     private OCRequestHandler deleteRequestHandler;
 
     protected OCResource nativeResource;
+    protected OcDevice device;
 
     protected OcResource() {
     }
@@ -52,6 +57,7 @@ public class OcResource {
             throw new IllegalArgumentException("OcDevice cannot be null");
         }
 
+        this.device = device;
         this.name = (name != null) ? name : "";
         this.uri = (uri != null) ? uri : "";
         this.resourceTypes = (resourceTypes != null) ? resourceTypes : new String[0];
@@ -152,6 +158,15 @@ public class OcResource {
         OCMain.resourceSetPeriodicObservable(nativeResource, this.periodicObservable);
     }
 
+    public boolean isRawPayload() {
+        return rawPayload;
+    }
+
+    public void setRawPayload(boolean rawPayload) {
+        this.rawPayload = rawPayload;
+        OCMain.resourceSetRawPayload(nativeResource, this.rawPayload);
+    }
+
     public OCRequestHandler getGetRequestHandler() {
         return getRequestHandler;
     }
@@ -196,10 +211,117 @@ public class OcResource {
         }
     }
 
+    /**
+     * Sets a request handler whose response is produced on an executor.
+     * <p>
+     * The request is answered with a separate response, so the thread running the
+     * stack is not blocked while the response is produced. If the executor rejects
+     * the task the request is answered with a service unavailable response.
+     *
+     * @param method  the method handled, one of OC_GET, OC_PUT, OC_POST or OC_DELETE
+     * @param asyncRequestHandler  the handler
+     * @param executor  the executor running the tasks returned by the handler
+     *
+     * @see OcAsyncRequestHandler
+     */
+    public void setAsyncRequestHandler(OCMethod method, OcAsyncRequestHandler asyncRequestHandler,
+            Executor executor) {
+        if (method == null) {
+            throw new IllegalArgumentException("OCMethod cannot be null");
+        }
+        if (asyncRequestHandler == null) {
+            throw new IllegalArgumentException("OcAsyncRequestHandler cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+
+        OcAsyncRequestDispatcher dispatcher = new OcAsyncRequestDispatcher(asyncRequestHandler, executor);
+        switch (method) {
+        case OC_GET:
+            setGetRequestHandler(dispatcher);
+            break;
+        case OC_PUT:
+            setPutRequestHandler(dispatcher);
+            break;
+        case OC_POST:
+            setPostRequestHandler(dispatcher);
+            break;
+        case OC_DELETE:
+            setDeleteRequestHandler(dispatcher);
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported OCMethod " + method);
+        }
+    }
+
+    /**
+     * Sets a request handler whose response is produced on the event loop of the
+     * device owning this resource.
+     * <p>
+     * The requests of a device are then handled in order, and in parallel with the
+     * requests of the devices on other event loops.
+     *
+     * @param method  the method handled, one of OC_GET, OC_PUT, OC_POST or OC_DELETE
+     * @param asyncRequestHandler  the handler
+     * @throws IllegalStateException if the platform has no device event loops
+     *
+     * @see OcPlatform#setDeviceEventLoops
+     */
+    public void setAsyncRequestHandler(OCMethod method, OcAsyncRequestHandler asyncRequestHandler) {
+        setAsyncRequestHandler(method, asyncRequestHandler, OcPlatform.getInstance().getDeviceEventLoop(device));
+    }
+
     public int notifyObservers() {
         return OCMain.notifyObservers(nativeResource);
     }
 
+    /**
+     * Notifies the observers of a change of the value of this resource.
+     * <p>
+     * The value is compared with the change threshold of the notification policy
+     * of this resource, changes below the threshold are not notified.
+     *
+     * @param value  the new value of the resource
+     * @return the number of observers notified, 0 if the notification was deferred
+     *         or skipped
+     *
+     * @see #setNotificationPolicy
+     */
+    public int notifyObservers(double value) {
+        return OCMain.notifyObserversWithValue(nativeResource, value);
+    }
+
+    /**
+     * Sets how the notifications sent by notifyObservers() are paced, so a
+     * resource updated at a high rate does not flood its observers.
+     * <p>
+     * Notifications requested less than minIntervalMillis after the previous one
+     * are coalesced into a single notification sent when the interval expires,
+     * carrying the latest value of the resource. Setting all parameters to 0
+     * sends every notification immediately again.
+     *
+     * @param minIntervalMillis  the minimum time between two notifications, 0 for
+     *            no limit
+     * @param maxAge  the Max-Age in seconds sent with the notifications, 0 to
+     *            leave it out
+     * @param changeThreshold  the minimum change of the value passed to
+     *            notifyObservers(double) for a notification to be sent, 0 to
+     *            notify every change
+     * @return true if the policy was set, false if out of memory
+     * @throws IllegalArgumentException if a parameter is negative, or if
+     *            minIntervalMillis or maxAge is above 0xFFFFFFFF
+     */
+    public boolean setNotificationPolicy(long minIntervalMillis, long maxAge, double changeThreshold) {
+        if (minIntervalMillis < 0 || maxAge < 0 || changeThreshold < 0) {
+            throw new IllegalArgumentException("notification policy parameters cannot be negative");
+        }
+        if (minIntervalMillis > MAX_UINT32 || maxAge > MAX_UINT32) {
+            throw new IllegalArgumentException("notification policy intervals cannot exceed 0xFFFFFFFF");
+        }
+        return OCMain.resourceSetNotificationPolicy(nativeResource, minIntervalMillis, maxAge, changeThreshold);
+    }
+
     OCResource getNativeResource() {
         return nativeResource;
     }
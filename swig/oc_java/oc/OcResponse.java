@@ -0,0 +1,42 @@
+package org.iotivity.oc;
+
+import org.iotivity.*;
+
+/**
+ * OcResponse is a copy of a response received by a request issued through OcClient.
+ * <p>
+ * Unlike OCClientResponse it remains valid after the response handler has returned.
+ *
+ * @see OcClient
+ * @see OcResponseFuture
+ */
+public class OcResponse {
+
+    private final OCStatus status;
+    private final int observeOption;
+    private final String payload;
+
+    OcResponse(OCClientResponse response) {
+        this.status = response.getCode();
+        this.observeOption = response.getObserveOption();
+        OCRepresentation rep = response.getPayload();
+        this.payload = (rep != null) ? OCRep.toJSON(rep, false) : null;
+    }
+
+    public OCStatus getStatus() {
+        return status;
+    }
+
+    public int getObserveOption() {
+        return observeOption;
+    }
+
+    /**
+     * Returns the payload of the response as JSON.
+     *
+     * @return the payload, or null if the response has no payload
+     */
+    public String getPayload() {
+        return payload;
+    }
+}
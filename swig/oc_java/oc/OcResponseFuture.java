@@ -0,0 +1,188 @@
+package org.iotivity.oc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.iotivity.*;
+
+/**
+ * The pending result of a request issued through OcClient.
+ * <p>
+ * The future completes when the response arrives, when the request times out or
+ * when it is cancelled. In each case the native reference to the request is
+ * released. Listeners registered with {@link #addListener} are run once the
+ * future has completed.
+ * <p>
+ * <strong>Note</strong>: the responses are delivered on the thread running the
+ * stack, so {@link #get} must not be called from a handler or a listener run on
+ * that thread.
+ *
+ * @see OcClient
+ */
+public class OcResponseFuture implements Future<OcResponse> {
+
+    private final OCResponseHandler responseHandler = new OCResponseHandler() {
+        @Override
+        public void handler(OCClientResponse response) {
+            complete(new OcResponse(response), null, false);
+        }
+    };
+
+    private final List<Runnable> listeners = new ArrayList<>();
+    private ScheduledFuture<?> timeoutTask;
+    private boolean done;
+    private boolean cancelled;
+    private OcResponse response;
+    private Throwable failure;
+
+    OcResponseFuture() {
+    }
+
+    OCResponseHandler getResponseHandler() {
+        return responseHandler;
+    }
+
+    synchronized void setTimeoutTask(ScheduledFuture<?> timeoutTask) {
+        if (done) {
+            timeoutTask.cancel(false);
+        } else {
+            this.timeoutTask = timeoutTask;
+        }
+    }
+
+    /*
+     * Fail a request that is no longer pending on the stack, e.g. because it
+     * could not be sent.
+     */
+    void fail(Throwable failure) {
+        if (complete(null, failure, false)) {
+            OCMain.cancelSingleCall(responseHandler);
+        }
+    }
+
+    void expire() {
+        if (complete(null, new TimeoutException("No response received in time"), false)) {
+            OCMain.cancelSingleCall(responseHandler);
+        }
+    }
+
+    private boolean complete(OcResponse response, Throwable failure, boolean cancelled) {
+        List<Runnable> completionListeners;
+        ScheduledFuture<?> pendingTimeoutTask;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.done = true;
+            this.cancelled = cancelled;
+            this.response = response;
+            this.failure = failure;
+            pendingTimeoutTask = this.timeoutTask;
+            this.timeoutTask = null;
+            completionListeners = new ArrayList<>(listeners);
+            listeners.clear();
+            notifyAll();
+        }
+        if (pendingTimeoutTask != null) {
+            pendingTimeoutTask.cancel(false);
+        }
+        for (Runnable listener : completionListeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    /**
+     * Registers a listener run on the given executor once this future has completed.
+     * <p>
+     * If the future has already completed the listener is submitted immediately.
+     *
+     * @param listener  the listener
+     * @param executor  the executor running the listener
+     */
+    public void addListener(final Runnable listener, final Executor executor) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Runnable cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        Runnable completionListener = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(listener);
+                } catch (RejectedExecutionException e) {
+                    System.err.println("Failed to run OcResponseFuture listener, " + e.getMessage());
+                }
+            }
+        };
+        synchronized (this) {
+            if (!done) {
+                listeners.add(completionListener);
+                return;
+            }
+        }
+        completionListener.run();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (complete(null, null, true)) {
+            OCMain.cancelSingleCall(responseHandler);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized OcResponse get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized OcResponse get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (!done) {
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return result();
+    }
+
+    private OcResponse result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return response;
+    }
+}
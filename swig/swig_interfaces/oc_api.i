@@ -56,9 +56,7 @@ int jni_oc_handler_init_callback(void)
 
   assert(jenv);
   assert(cls_OCMainInitHandler);
-  const jmethodID mid_initialize = JCALL3(GetMethodID, jenv, cls_OCMainInitHandler, "initialize", "()I");
-  assert(mid_initialize);
-  jint ret_value = JCALL2(CallIntMethod, jenv, jinit_obj, mid_initialize);
+  jint ret_value = JCALL2(CallIntMethod, jenv, jinit_obj, mid_OCMainInitHandler_initialize);
 
   release_jni_env(getEnvResult);
   return (int)ret_value;
@@ -84,9 +82,7 @@ void jni_oc_handler_register_resource_callback(void)
 
   assert(jenv);
   assert(cls_OCMainInitHandler);
-  const jmethodID mid_registerResources = JCALL3(GetMethodID, jenv, cls_OCMainInitHandler, "registerResources", "()V");
-  assert(mid_registerResources);
-  JCALL2(CallVoidMethod, jenv, jinit_obj, mid_registerResources);
+  JCALL2(CallVoidMethod, jenv, jinit_obj, mid_OCMainInitHandler_registerResources);
 
   release_jni_env(getEnvResult);
 }
@@ -99,9 +95,7 @@ void jni_oc_handler_requests_entry_callback(void)
 
   assert(jenv);
   assert(cls_OCMainInitHandler);
-  const jmethodID mid_requestEntry_method = JCALL3(GetMethodID, jenv, cls_OCMainInitHandler, "requestEntry", "()V");
-  assert(mid_requestEntry_method);
-  JCALL2(CallVoidMethod, jenv, jinit_obj, mid_requestEntry_method);
+  JCALL2(CallVoidMethod, jenv, jinit_obj, mid_OCMainInitHandler_requestEntry);
 
   release_jni_env(getEnvResult);
 }
@@ -126,9 +120,21 @@ static oc_handler_t jni_handler = {
   const jclass callback_interface = JCALL1(FindClass, jenv, "org/iotivity/OCMainInitHandler");
   assert(callback_interface);
   cls_OCMainInitHandler = (jclass)(JCALL1(NewGlobalRef, jenv, callback_interface));
+  JCALL1(DeleteLocalRef, jenv, callback_interface);
+
+  mid_OCMainInitHandler_initialize = JCALL3(GetMethodID, jenv, cls_OCMainInitHandler, "initialize", "()I");
+  assert(mid_OCMainInitHandler_initialize);
+  mid_OCMainInitHandler_registerResources = JCALL3(GetMethodID, jenv, cls_OCMainInitHandler, "registerResources", "()V");
+  assert(mid_OCMainInitHandler_registerResources);
+  mid_OCMainInitHandler_requestEntry = JCALL3(GetMethodID, jenv, cls_OCMainInitHandler, "requestEntry", "()V");
+  assert(mid_OCMainInitHandler_requestEntry);
 }
 
 %{
+static jni_mpsc_queue_t jni_request_queue;
+static void jni_process_queued_requests(void);
+static void jni_discard_queued_requests(void);
+
 #if defined(_WIN32)
 DWORD WINAPI
 jni_poll_event(LPVOID lpParam)
@@ -137,11 +143,16 @@ jni_poll_event(LPVOID lpParam)
   while (jni_quit != 1) {
       OC_DBG("JNI: - lock %s\n", __func__);
       jni_mutex_lock(jni_sync_lock);
+      jni_process_queued_requests();
       OC_DBG("calling oc_main_poll from JNI code\n");
       next_event = oc_main_poll();
       jni_mutex_unlock(jni_sync_lock);
       OC_DBG("JNI: - unlock %s\n", __func__);
 
+      if (!jni_mpsc_queue_is_empty(&jni_request_queue)) {
+          /* requests were queued during the poll */
+          continue;
+      }
       if (next_event == 0) {
           SleepConditionVariableCS(&jni_cv, &jni_cs, INFINITE);
       }
@@ -169,13 +180,16 @@ jni_poll_event(void *data)
   while (jni_quit != 1) {
     OC_DBG("JNI: - lock %s\n", __func__);
     jni_mutex_lock(jni_sync_lock);
+    jni_process_queued_requests();
     OC_DBG("calling oc_main_poll from JNI code\n");
     next_event = oc_main_poll();
     jni_mutex_unlock(jni_sync_lock);
     OC_DBG("JNI: - unlock %s\n", __func__);
 
     jni_mutex_lock(jni_cs);
-    if (next_event == 0) {
+    if (!jni_mpsc_queue_is_empty(&jni_request_queue)) {
+      /* requests were queued during the poll, their signal may be lost */
+    } else if (next_event == 0) {
       pthread_cond_wait(&jni_cv, &jni_cs);
     } else {
       ts.tv_sec = (next_event / OC_CLOCK_SECOND);
@@ -191,6 +205,8 @@ jni_poll_event(void *data)
 }
 #endif
 
+void jni_client_cb_alloc_handler(oc_client_cb_t *cb);
+void jni_client_cb_free_handler(oc_client_cb_t *cb);
 %}
 
 %ignore oc_main_init;
@@ -208,6 +224,8 @@ int jni_main_init(const oc_handler_t *handler)
 
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
+  oc_ri_set_client_cb_alloc_handler(jni_client_cb_alloc_handler);
+  oc_ri_set_client_cb_free_handler(jni_client_cb_free_handler);
   int return_value = oc_main_init(handler);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -243,6 +261,7 @@ int jni_main_init(const oc_handler_t *handler)
 #elif defined(__linux__)
     pthread_join(jni_poll_event_thread, NULL);
 #endif
+    jni_discard_queued_requests();
     jni_list_clear();
   }
 %}
@@ -257,14 +276,7 @@ void jni_oc_factory_presets_callback(size_t device, void *user_data)
   data->jenv = get_jni_env(&getEnvResult);
 
   assert(cls_OCFactoryPresetsHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCFactoryPresetsHandler,
-                                       "handler",
-                                       "(J)V");
-
-  assert(mid_handler);
-  JCALL3(CallVoidMethod, (data->jenv), data->jcb_obj, mid_handler, (jlong)device);
+  JCALL3(CallVoidMethod, (data->jenv), data->jcb_obj, mid_OCFactoryPresetsHandler_handler, (jlong)device);
 
   if (data->cb_valid == OC_CALLBACK_VALID_FOR_A_SINGLE_CALL) {
     jni_list_remove(data);
@@ -316,13 +328,7 @@ void jni_oc_add_device_callback(void *user_data)
   jni_callback_data *data = (jni_callback_data *)user_data;
 
   assert(cls_OCAddDeviceHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCAddDeviceHandler,
-                                       "handler",
-                                       "()V");
-  assert(mid_handler);
-  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_handler);
+  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_OCAddDeviceHandler_handler);
 
   if (data->cb_valid == OC_CALLBACK_VALID_FOR_A_SINGLE_CALL) {
     jni_list_remove(data);
@@ -370,13 +376,7 @@ void jni_oc_init_platform_callback(void *user_data)
   jni_callback_data *data = (jni_callback_data *)user_data;
 
   assert(cls_OCInitPlatformHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCInitPlatformHandler,
-                                       "handler",
-                                       "()V");
-  assert(mid_handler);
-  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_handler);
+  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_OCInitPlatformHandler_handler);
 
   if (data->cb_valid == OC_CALLBACK_VALID_FOR_A_SINGLE_CALL) {
     jni_list_remove(data);
@@ -424,15 +424,9 @@ void jni_oc_random_pin_callback(const unsigned char *pin, size_t pin_len, void *
   data->jenv = get_jni_env(&getEnvResult);
 
   assert(cls_OCRandomPinHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCRandomPinHandler,
-                                       "handler",
-                                       "(Ljava/lang/String;)V");
-  assert(mid_handler);
 
   jstring jpin = JCALL1(NewStringUTF, (data->jenv), (const char *)pin);
-  JCALL3(CallVoidMethod, (data->jenv), data->jcb_obj, mid_handler, jpin);
+  JCALL3(CallVoidMethod, (data->jenv), data->jcb_obj, mid_OCRandomPinHandler_handler, jpin);
 
   if (data->cb_valid == OC_CALLBACK_VALID_FOR_A_SINGLE_CALL) {
     jni_list_remove(data);
@@ -479,6 +473,69 @@ void jni_set_random_pin_callback(oc_random_pin_cb_t cb, jni_callback_data *jcb)
   #endif /* OC_SECURITY */
 }
 %}
+
+%rename(OCTlsSessionStats) oc_tls_session_stats_t;
+%rename(fullHandshakes) oc_tls_session_stats_t::full_handshakes;
+%rename(resumedHandshakes) oc_tls_session_stats_t::resumed_handshakes;
+%rename(cachedSessions) oc_tls_session_stats_t::cached_sessions;
+%ignore oc_set_tls_session_lifetime;
+%rename(setTlsSessionLifetime) jni_set_tls_session_lifetime;
+%inline %{
+void jni_set_tls_session_lifetime(uint32_t lifetime) {
+  OC_DBG("JNI: %s\n", __func__);
+#ifdef OC_SECURITY
+  oc_set_tls_session_lifetime(lifetime);
+#else
+  (void)lifetime;
+#endif /* OC_SECURITY */
+}
+%}
+
+%ignore oc_get_tls_session_stats;
+%rename(getTlsSessionStats) jni_get_tls_session_stats;
+%inline %{
+int jni_get_tls_session_stats(oc_tls_session_stats_t *stats) {
+  OC_DBG("JNI: %s\n", __func__);
+#ifdef OC_SECURITY
+  return oc_get_tls_session_stats(stats);
+#else
+  (void)stats;
+  return -1;
+#endif /* OC_SECURITY */
+}
+%}
+
+%rename(OCSvrStoreStats) oc_svr_store_stats_t;
+%rename(writeTicks) oc_svr_store_stats_t::write_ticks;
+%rename(maxWriteTicks) oc_svr_store_stats_t::max_write_ticks;
+%ignore oc_get_svr_store_stats;
+%rename(getSvrStoreStats) jni_get_svr_store_stats;
+%inline %{
+int jni_get_svr_store_stats(oc_svr_store_stats_t *stats) {
+  OC_DBG("JNI: %s\n", __func__);
+#ifdef OC_SECURITY
+  return oc_get_svr_store_stats(stats);
+#else
+  (void)stats;
+  return -1;
+#endif /* OC_SECURITY */
+}
+%}
+
+%rename(OCAclCacheStats) oc_acl_cache_stats_t;
+%ignore oc_get_acl_cache_stats;
+%rename(getAclCacheStats) jni_get_acl_cache_stats;
+%inline %{
+int jni_get_acl_cache_stats(oc_acl_cache_stats_t *stats) {
+  OC_DBG("JNI: %s\n", __func__);
+#ifdef OC_SECURITY
+  return oc_get_acl_cache_stats(stats);
+#else
+  (void)stats;
+  return -1;
+#endif /* OC_SECURITY */
+}
+%}
 // DOCUMENTATION workaround
 %javamethodmodifiers oc_get_con_res_announced "/**
    * Returns whether the oic.wk.con res is announced.
@@ -538,18 +595,10 @@ void jni_ownership_status_cb(const oc_uuid_t *device_uuid,
   assert(data->jenv);
 
   assert(cls_OCOwnershipStatusHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCOwnershipStatusHandler,
-        "handler",
-        "(Lorg/iotivity/OCUuid;JZ)V");
-  assert(mid_handler);
 
   jobject jdevice_uuid  = NULL;
   if (device_uuid) {
     assert(cls_OCUuid);
-    const jmethodID mid_OCUuid_init = JCALL3(GetMethodID, (data->jenv), cls_OCUuid, "<init>", "(JZ)V");
-    assert(mid_OCUuid_init);
 
     /* make copy of uuid that will be owned by Java code */
     oc_uuid_t *new_uuid = malloc(sizeof(oc_uuid_t));
@@ -561,7 +610,7 @@ void jni_ownership_status_cb(const oc_uuid_t *device_uuid,
   JCALL5(CallVoidMethod,
         (data->jenv),
         data->jcb_obj,
-        mid_handler,
+        mid_OCOwnershipStatusHandler_handler,
         jdevice_uuid,
         (jlong)device_index,
         (jboolean)owned);
@@ -851,6 +900,8 @@ void jni_resource_make_public(oc_resource_t *resource) {
 %rename(resourceSetDiscoverable) oc_resource_set_discoverable;
 %rename(resourceSetObservable) oc_resource_set_observable;
 %rename(resourceSetPeriodicObservable) oc_resource_set_periodic_observable;
+%rename(resourceSetRawPayload) oc_resource_set_raw_payload;
+%rename(resourceSetNotificationPolicy) oc_resource_set_notification_policy;
 
 /* Code and typemaps for mapping the oc_resource_set_request_handler to the java OCRequestHandler */
 %{
@@ -863,24 +914,16 @@ void jni_oc_request_callback(oc_request_t *request, oc_interface_mask_t interfac
   assert(data->jenv);
 
   assert(cls_OCRequestHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCRequestHandler,
-                                       "handler",
-                                       "(Lorg/iotivity/OCRequest;I)V");
-  assert(mid_handler);
 
   jobject jrequest = NULL;
   if (request) {
     assert(cls_OCRequest);
-    const jmethodID mid_OCRequest_init = JCALL3(GetMethodID, (data->jenv), cls_OCRequest, "<init>", "(JZ)V");
-    assert(mid_OCRequest_init);
     jrequest = JCALL4(NewObject, (data->jenv), cls_OCRequest, mid_OCRequest_init, (jlong)request, false);
   }
   JCALL4(CallVoidMethod,
          (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCRequestHandler_handler,
          jrequest,
          (jint)interfaces);
 
@@ -928,24 +971,16 @@ void jni_oc_get_properties_callback(oc_resource_t *resource, oc_interface_mask_t
   assert(data->jenv);
 
   assert(cls_OCGetPropertiesHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCGetPropertiesHandler,
-                                       "handler",
-                                       "(Lorg/iotivity/OCResource;I)V");
-  assert(mid_handler);
 
   jobject jresource = NULL;
   if (resource) {
     assert(cls_OCResource);
-    const jmethodID mid_OCResource_init = JCALL3(GetMethodID, (data->jenv), cls_OCResource, "<init>", "(JZ)V");
-    assert(mid_OCResource_init);
     jresource = JCALL4(NewObject, (data->jenv), cls_OCResource, mid_OCResource_init, (jlong)resource, false);
   }
   JCALL4(CallVoidMethod,
          (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCGetPropertiesHandler_handler,
          jresource,
          (jint)iface_mask);
 
@@ -982,36 +1017,23 @@ bool jni_oc_set_properties_callback(oc_resource_t *resource, oc_rep_t *rep, void
   assert(data->jenv);
 
   assert(cls_OCSetPropertiesHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCSetPropertiesHandler,
-                                       "handler",
-                                       "(Lorg/iotivity/OCResource;Lorg/iotivity/OCRepresentation;)Z");
-  assert(mid_handler);
 
   jobject jresource = NULL;
   if (resource) {
     assert(cls_OCResource);
-    const jmethodID mid_OCResource_init = JCALL3(GetMethodID, (data->jenv), cls_OCResource, "<init>", "(JZ)V");
-    assert(mid_OCResource_init);
     jresource = JCALL4(NewObject, (data->jenv), cls_OCResource, mid_OCResource_init, (jlong)resource, false);
   }
 
   jobject jrep = NULL;
   if (rep) {
     assert(cls_OCRepresentation);
-    const jmethodID mid_OCRepresentation_init = JCALL3(GetMethodID,
-                                                       (data->jenv),
-                                                       cls_OCRepresentation, "<init>",
-                                                       "(JZ)V");
-    assert(mid_OCRepresentation_init);
     jrep = JCALL4(NewObject, (data->jenv), cls_OCRepresentation, mid_OCRepresentation_init, (jlong)rep, false);
   }
 
   bool returnValue = JCALL4(CallBooleanMethod,
                             (data->jenv),
                             data->jcb_obj,
-                            mid_handler,
+                            mid_OCSetPropertiesHandler_handler,
                             jresource,
                             jrep);
 
@@ -1096,21 +1118,10 @@ void jni_oc_con_callback(size_t device_index, oc_rep_t *rep)
   OC_DBG("JNI: %s\n", __func__);
 
   assert(cls_OCConWriteHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (oc_con_write_cb_data.jenv),
-                                       cls_OCConWriteHandler,
-                                       "handler",
-                                       "(JLorg/iotivity/OCRepresentation;)V");
-  assert(mid_handler);
 
   jobject jrep = NULL;
   if (rep) {
     assert(cls_OCRepresentation);
-    const jmethodID mid_OCRepresentation_init = JCALL3(GetMethodID,
-                                                       (oc_con_write_cb_data.jenv),
-                                                       cls_OCRepresentation, "<init>",
-                                                       "(JZ)V");
-    assert(mid_OCRepresentation_init);
     jrep = JCALL4(NewObject, (oc_con_write_cb_data.jenv),
                   cls_OCRepresentation,
                   mid_OCRepresentation_init,
@@ -1119,7 +1130,7 @@ void jni_oc_con_callback(size_t device_index, oc_rep_t *rep)
   }
   JCALL4(CallVoidMethod, (oc_con_write_cb_data.jenv),
          oc_con_write_cb_data.jcb_obj,
-         mid_handler,
+         mid_OCConWriteHandler_handler,
          (jlong)device_index,
          jrep);
 }
@@ -1192,16 +1203,7 @@ SWIGEXPORT jobject JNICALL Java_org_iotivity_OCMainJNI_getQueryValues(JNIEnv *je
   request = *(oc_request_t **)&jrequest;
 
   assert(cls_ArrayList);
-  jmethodID mid_arrayListConstructor = JCALL3(GetMethodID, jenv, cls_ArrayList, "<init>", "()V");
-  jmethodID mid_add = JCALL3(GetMethodID, jenv, cls_ArrayList, "add", "(Ljava/lang/Object;)Z");
-
-  jmethodID mid_OCQueryConstructor = JCALL3(GetMethodID,
-                                            jenv,
-                                            cls_OCQueryValue,
-                                            "<init>",
-                                            "(Ljava/lang/String;Ljava/lang/String;)V");
-
-  result = JCALL2(NewObject, jenv, cls_ArrayList, mid_arrayListConstructor);
+  result = JCALL2(NewObject, jenv, cls_ArrayList, mid_ArrayList_init);
 
   char *current_key = 0;
   size_t key_len = 0;
@@ -1226,10 +1228,10 @@ SWIGEXPORT jobject JNICALL Java_org_iotivity_OCMainJNI_getQueryValues(JNIEnv *je
       jobject jQueryValue = JCALL4(NewObject,
                                    jenv,
                                    cls_OCQueryValue,
-                                   mid_OCQueryConstructor,
+                                   mid_OCQueryValue_init,
                                    jkey,
                                    jvalue);
-      JCALL3(CallBooleanMethod, jenv, result, mid_add, jQueryValue);
+      JCALL3(CallBooleanMethod, jenv, result, mid_ArrayList_add, jQueryValue);
     }
   } while (pos != -1);
 
@@ -1238,13 +1240,137 @@ SWIGEXPORT jobject JNICALL Java_org_iotivity_OCMainJNI_getQueryValues(JNIEnv *je
 }
 %}
 
+%{
+/*
+ * Wrap a payload in a read-only direct java.nio.ByteBuffer without copying
+ * it. The buffer aliases the message buffer so it may only be used while the
+ * native handler that received the payload is running.
+ */
+static jobject
+jni_new_payload_buffer(JNIEnv *jenv, const uint8_t *payload, size_t payload_len)
+{
+  if (!payload || payload_len == 0) {
+    return NULL;
+  }
+  jobject jbuffer =
+    JCALL2(NewDirectByteBuffer, jenv, (void *)payload, (jlong)payload_len);
+  if (!jbuffer) {
+    return NULL;
+  }
+  assert(mid_ByteBuffer_asReadOnlyBuffer);
+  jobject jread_only_buffer =
+    JCALL2(CallObjectMethod, jenv, jbuffer, mid_ByteBuffer_asReadOnlyBuffer);
+  JCALL1(DeleteLocalRef, jenv, jbuffer);
+  return jread_only_buffer;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers getRequestPayloadBuffer "/**
+   * Get the raw CBOR payload of a request without copying it.
+   * <p>
+   * The returned buffer is a read-only direct buffer over the message buffer
+   * of the stack. It is only valid while the request handler that received
+   * the request is running and must not be used after the handler returns.
+   * When using an org.iotivity.oc.OcAsyncRequestHandler the payload must be
+   * consumed in its prepare step.
+   * <p>
+   * Use an org.iotivity.oc.OcCborReader to walk the payload without building
+   * an OCRepresentation. The stack only skips parsing the payload of requests
+   * to resources set up with resourceSetRawPayload.
+   *
+   * @param request the request passed to the request handler
+   * @return a read-only ByteBuffer over the payload or null if the request
+   *         does not have a payload
+   */
+  public";
+%typemap(jni)    jobject getRequestPayloadBuffer "jobject";
+%typemap(jtype)  jobject getRequestPayloadBuffer "java.nio.ByteBuffer";
+%typemap(jstype) jobject getRequestPayloadBuffer "java.nio.ByteBuffer";
+%typemap(javain) jobject getRequestPayloadBuffer "$javainput";
+%native (getRequestPayloadBuffer) jobject getRequestPayloadBuffer(oc_request_t *request);
+%{
+#ifdef __cplusplus
+extern "C"
+#endif
+SWIGEXPORT jobject JNICALL Java_org_iotivity_OCMainJNI_getRequestPayloadBuffer(JNIEnv *jenv,
+                                                                               jclass jcls,
+                                                                               jlong jrequest,
+                                                                               jobject jrequest_)
+{
+  oc_request_t *request = (oc_request_t *)0;
+
+  (void)jcls;
+  (void)jrequest_;
+  request = *(oc_request_t **)&jrequest;
+  if (!request) {
+    return NULL;
+  }
+  return jni_new_payload_buffer(jenv, request->_payload, request->_payload_len);
+}
+%}
+
 
 %rename(sendResponse) oc_send_response;
 %rename(ignoreRequest) oc_ignore_request;
 %rename(indicateSeparateResponse) oc_indicate_separate_response;
 %rename(setSeparateResponseBuffer) oc_set_separate_response_buffer;
 %rename(sendSeparateResponse) oc_send_separate_response;
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_init_separate_response "/**
+   * Prepare the response buffer of a separate response so its payload can be
+   * encoded from any thread.
+   * <p>
+   * Unlike setSeparateResponseBuffer, this takes the lock guarding the stack
+   * unless it is called from the thread running the stack. Every call must be
+   * followed by a call to doSeparateResponse on the same thread, which sends
+   * the response and releases the lock.
+   *
+   * @param handle the separate response passed to indicateSeparateResponse
+   *
+   * @see doSeparateResponse
+   * @see indicateSeparateResponse
+   */
+  public";
+%rename(initSeparateResponse) jni_init_separate_response;
+%inline %{
+void jni_init_separate_response(oc_separate_response_t *handle)
+{
+  OC_DBG("JNI: %s\n", __func__);
+  if (!jni_is_poll_event_thread()) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
+  oc_set_separate_response_buffer(handle);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_do_separate_response "/**
+   * Send a separate response prepared with initSeparateResponse and release
+   * the lock taken by it.
+   *
+   * @param handle the separate response passed to initSeparateResponse
+   * @param response_code the status of the response
+   *
+   * @see initSeparateResponse
+   */
+  public";
+%rename(doSeparateResponse) jni_do_separate_response;
+%inline %{
+void jni_do_separate_response(oc_separate_response_t *handle, oc_status_t response_code)
+{
+  oc_send_separate_response(handle, response_code);
+  if (!jni_is_poll_event_thread()) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+    jni_signal_event_loop();
+  }
+}
+%}
 %rename(notifyObservers) oc_notify_observers;
+%rename(notifyObserversWithValue) oc_notify_observers_with_value;
 
 // client side
 %{
@@ -1266,8 +1392,7 @@ jni_oc_discovery_handler_callback(const char *anchor, const char *uri,
   jstring juri = JCALL1(NewStringUTF, (data->jenv), uri);
   jobjectArray jtypes =
     JCALL3(NewObjectArray, (data->jenv),
-           (jsize)oc_string_array_get_allocated_size(types),
-           JCALL1(FindClass, (data->jenv), "java/lang/String"), 0);
+           (jsize)oc_string_array_get_allocated_size(types), cls_String, 0);
   for (jsize i = 0; i < (jsize)oc_string_array_get_allocated_size(types); i++) {
     jstring str =
       JCALL1(NewStringUTF, (data->jenv), oc_string_array_get_item(types, i));
@@ -1277,28 +1402,15 @@ jni_oc_discovery_handler_callback(const char *anchor, const char *uri,
 
   // create java endpoint
   assert(cls_OCEndpoint);
-  const jmethodID mid_OCEndpoint_init =
-    JCALL3(GetMethodID, (data->jenv), cls_OCEndpoint, "<init>", "(JZ)V");
-  assert(mid_OCEndpoint_init);
   jobject jendpoint = JCALL4(NewObject, (data->jenv), cls_OCEndpoint,
                              mid_OCEndpoint_init, (jlong)endpoint, false);
 
   jint jresourcePropertiesMask = (jint)bm;
   assert(cls_OCDiscoveryHandler);
-  const jmethodID mid_handler =
-    JCALL3(GetMethodID, (data->jenv), cls_OCDiscoveryHandler, "handler",
-           "(Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;ILorg/"
-           "iotivity/OCEndpoint;I)Lorg/iotivity/OCDiscoveryFlags;");
-  assert(mid_handler);
   jobject jDiscoveryFlag =
-    JCALL8(CallObjectMethod, (data->jenv), data->jcb_obj, mid_handler, janchor,
-           juri, jtypes, jinterfaceMask, jendpoint, jresourcePropertiesMask);
-  jclass cls_DiscoveryFlags =
-    JCALL1(GetObjectClass, (data->jenv), jDiscoveryFlag);
-  assert(cls_DiscoveryFlags);
-  const jmethodID mid_OCDiscoveryFlags_swigValue =
-    JCALL3(GetMethodID, (data->jenv), cls_DiscoveryFlags, "swigValue", "()I");
-  assert(mid_OCDiscoveryFlags_swigValue);
+    JCALL8(CallObjectMethod, (data->jenv), data->jcb_obj,
+           mid_OCDiscoveryHandler_handler, janchor, juri, jtypes,
+           jinterfaceMask, jendpoint, jresourcePropertiesMask);
   jint return_value = JCALL2(CallIntMethod, (data->jenv), jDiscoveryFlag,
                              mid_OCDiscoveryFlags_swigValue);
 
@@ -1470,6 +1582,51 @@ bool jni_oc_do_ip_discovery_all_at_endpoint(oc_discovery_all_handler_t handler,
 /* Code and typemaps for mapping the oc_do_get, oc_do_delete, oc_init_put, oc_init_post, oc_do_observe,
  * and oc_do_ip_multicast to the java OCResponseHandler */
 %{
+/*
+ * Drops a reference to the callback data of a response handler, the data is
+ * released once every client callback referring to it has been freed and no
+ * native call is using it. Must be called with jni_sync_lock held.
+ */
+static void jni_response_handler_unref(jni_callback_data *data)
+{
+  if (--data->ref_count > 0) {
+    return;
+  }
+  jint getEnvResult = 0;
+  data->jenv = get_jni_env(&getEnvResult);
+  assert(data->jenv);
+  jni_list_remove(data);
+  release_jni_env(getEnvResult);
+}
+
+void jni_oc_response_handler(oc_client_response_t *response);
+
+/* Called by the stack whenever a client callback is allocated */
+void jni_client_cb_alloc_handler(oc_client_cb_t *cb)
+{
+  if (cb->handler.response != jni_oc_response_handler || !cb->user_data) {
+    return;
+  }
+  ((jni_callback_data *)cb->user_data)->ref_count++;
+}
+
+/* Called by the stack whenever a client callback is freed */
+void jni_client_cb_free_handler(oc_client_cb_t *cb)
+{
+  if (cb->handler.response != jni_oc_response_handler || !cb->user_data) {
+    return;
+  }
+  jni_response_handler_unref((jni_callback_data *)cb->user_data);
+}
+
+/* Called once the wrapper using the callback data has returned */
+static void jni_response_handler_call_done(jni_callback_data *data)
+{
+  bool locked = jni_list_lock();
+  jni_response_handler_unref(data);
+  jni_list_unlock(locked);
+}
+
 void jni_oc_response_handler(oc_client_response_t *response)
 {
   OC_DBG("JNI: %s\n", __func__);
@@ -1480,22 +1637,10 @@ void jni_oc_response_handler(oc_client_response_t *response)
   assert(data->jenv);
 
   assert(cls_OCResponseHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCResponseHandler,
-                                       "handler",
-                                       "(Lorg/iotivity/OCClientResponse;)V");
-  assert(mid_handler);
 
   jobject jresponse = NULL;
   if (response) {
     assert(cls_OCClientResponse);
-    const jmethodID mid_OCClientResponse_init = JCALL3(GetMethodID,
-                                                       (data->jenv),
-                                                       cls_OCClientResponse,
-                                                       "<init>",
-                                                       "(JZ)V");
-    assert(mid_OCClientResponse_init);
     jresponse = JCALL4(NewObject, (data->jenv),
                        cls_OCClientResponse,
                        mid_OCClientResponse_init,
@@ -1503,7 +1648,18 @@ void jni_oc_response_handler(oc_client_response_t *response)
                        false);
   }
 
-  JCALL3(CallVoidMethod, (data->jenv), data->jcb_obj, mid_handler, jresponse);
+  data->ref_count++;
+  JCALL3(CallVoidMethod, (data->jenv), data->jcb_obj, mid_OCResponseHandler_handler, jresponse);
+
+  /* the client callback outlives its first response only if the response
+   * carries an observe option, which a single call request never asked for */
+  if (data->cb_valid == OC_CALLBACK_VALID_TILL_FIRST_RESPONSE &&
+      response->observe_option != -1) {
+    oc_ri_remove_client_cb_by_user_data(data);
+  }
+  /* released here if the handler freed the client callbacks, e.g. by
+   * stopObserve */
+  jni_response_handler_unref(data);
 
   release_jni_env(getEnvResult);
 }
@@ -1516,12 +1672,15 @@ void jni_oc_response_handler(oc_client_response_t *response)
   jni_callback_data *user_data = (jni_callback_data *)malloc(sizeof *user_data);
   user_data->jenv = jenv;
   user_data->jcb_obj = JCALL1(NewGlobalRef, jenv, $input);
-  // TODO figure out the lifetime of the oc_response_handler_t
-  user_data->cb_valid = OC_CALLBACK_VALID_UNKNOWN;
+  user_data->cb_valid = OC_CALLBACK_VALID_TILL_FREE_CLIENT_CB;
+  user_data->ref_count = 1;
   jni_list_add(user_data);
   $1 = jni_oc_response_handler;
   $2 = user_data;
 }
+%typemap(freearg) (oc_response_handler_t handler, jni_callback_data *jcb) {
+  jni_response_handler_call_done($2);
+}
 %ignore oc_do_get;
 %rename(doGet) jni_oc_do_get;
 %inline %{
@@ -1561,10 +1720,13 @@ bool jni_oc_init_put(const char *uri, oc_endpoint_t *endpoint, const char *query
                      oc_response_handler_t handler, jni_callback_data *jcb,
                      oc_qos_t qos) {
   OC_DBG("JNI: %s\n", __func__);
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
   bool returnValue = oc_init_put(uri, endpoint, query, handler, qos, jcb);
-  if (returnValue == false) {
+  if (returnValue == false && locked) {
     jni_mutex_unlock(jni_sync_lock);
     OC_DBG("JNI - initPut failed releasing jni_sync_lock");
     OC_DBG("JNI: - unlock %s\n", __func__);
@@ -1578,8 +1740,10 @@ bool jni_oc_init_put(const char *uri, oc_endpoint_t *endpoint, const char *query
 %inline %{
 bool jni_do_put(void) {
   bool return_value = oc_do_put();
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
+  if (!jni_is_poll_event_thread()) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
   return return_value;
 }
 %}
@@ -1591,10 +1755,13 @@ bool jni_oc_init_post(const char *uri, oc_endpoint_t *endpoint, const char *quer
                       oc_response_handler_t handler, jni_callback_data *jcb,
                       oc_qos_t qos) {
   OC_DBG("JNI: %s\n", __func__);
-  OC_DBG("JNI: - lock %s\n", __func__);
-  jni_mutex_lock(jni_sync_lock);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
   bool returnValue = oc_init_post(uri, endpoint, query, handler, qos, jcb);
-  if (returnValue == false) {
+  if (returnValue == false && locked) {
     jni_mutex_unlock(jni_sync_lock);
     OC_DBG("JNI - initPost failed releasing jni_sync_lock");
     OC_DBG("JNI: - unlock %s\n", __func__);
@@ -1608,12 +1775,608 @@ bool jni_oc_init_post(const char *uri, oc_endpoint_t *endpoint, const char *quer
 %inline %{
 bool jni_do_post(void) {
   bool return_value = oc_do_post();
-  jni_mutex_unlock(jni_sync_lock);
-  OC_DBG("JNI: - unlock %s\n", __func__);
+  if (!jni_is_poll_event_thread()) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
+  return return_value;
+}
+%}
+
+%ignore oc_abort_request;
+%rename(abortRequest) jni_abort_request;
+%inline %{
+void jni_abort_request(void) {
+  oc_abort_request();
+  if (!jni_is_poll_event_thread()) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
+}
+%}
+
+/* Code and typemaps for single call requests. The callback data is released
+ * with the client callback, after the response handler has been invoked once,
+ * when the request fails to be sent, times out or is cancelled. */
+%typemap(jni)    oc_response_handler_t single_call_handler "jobject";
+%typemap(jtype)  oc_response_handler_t single_call_handler "OCResponseHandler";
+%typemap(jstype) oc_response_handler_t single_call_handler "OCResponseHandler";
+%typemap(javain) oc_response_handler_t single_call_handler "$javainput";
+%typemap(in,numinputs=1) (oc_response_handler_t single_call_handler, jni_callback_data *jcb) {
+  jni_callback_data *user_data = (jni_callback_data *)malloc(sizeof *user_data);
+  user_data->jenv = jenv;
+  user_data->jcb_obj = JCALL1(NewGlobalRef, jenv, $input);
+  user_data->cb_valid = OC_CALLBACK_VALID_TILL_FIRST_RESPONSE;
+  user_data->ref_count = 1;
+  jni_list_add(user_data);
+  $1 = jni_oc_response_handler;
+  $2 = user_data;
+}
+%typemap(freearg) (oc_response_handler_t single_call_handler, jni_callback_data *jcb) {
+  jni_response_handler_call_done($2);
+}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_do_get_single_call "/**
+   * Issue a GET request whose handler is invoked at most once.
+   * <p>
+   * Unlike doGet, the reference to the handler is released after the handler
+   * has been invoked or when the request could not be sent. A request that
+   * never receives a response must be cancelled with cancelSingleCall.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param single_call_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was sent
+   *
+   * @see cancelSingleCall
+   */
+  public";
+%rename(doGetSingleCall) jni_oc_do_get_single_call;
+%inline %{
+bool jni_oc_do_get_single_call(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                               oc_response_handler_t single_call_handler, jni_callback_data *jcb,
+                               oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
+  bool return_value = oc_do_get(uri, endpoint, query, single_call_handler, qos, jcb);
+  if (locked) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
+  return return_value;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_do_delete_single_call "/**
+   * Issue a DELETE request whose handler is invoked at most once.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param single_call_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was sent
+   *
+   * @see doGetSingleCall
+   * @see cancelSingleCall
+   */
+  public";
+%rename(doDeleteSingleCall) jni_oc_do_delete_single_call;
+%inline %{
+bool jni_oc_do_delete_single_call(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                                  oc_response_handler_t single_call_handler, jni_callback_data *jcb,
+                                  oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
+  bool return_value = oc_do_delete(uri, endpoint, query, single_call_handler, qos, jcb);
+  if (locked) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
   return return_value;
 }
 %}
 
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_init_put_single_call "/**
+   * Prepare a PUT request whose handler is invoked at most once.
+   * <p>
+   * On success the payload is encoded and the request is sent with doPut. If
+   * doPut fails the request must be cancelled with cancelSingleCall.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param single_call_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was prepared
+   *
+   * @see doPut
+   * @see cancelSingleCall
+   */
+  public";
+%rename(initPutSingleCall) jni_oc_init_put_single_call;
+%inline %{
+bool jni_oc_init_put_single_call(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                                 oc_response_handler_t single_call_handler, jni_callback_data *jcb,
+                                 oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
+  bool returnValue = oc_init_put(uri, endpoint, query, single_call_handler, qos, jcb);
+  if (returnValue == false) {
+    if (locked) {
+      jni_mutex_unlock(jni_sync_lock);
+      OC_DBG("JNI - initPutSingleCall failed releasing jni_sync_lock");
+      OC_DBG("JNI: - unlock %s\n", __func__);
+    }
+  }
+  return returnValue;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_init_post_single_call "/**
+   * Prepare a POST request whose handler is invoked at most once.
+   * <p>
+   * On success the payload is encoded and the request is sent with doPost. If
+   * doPost fails the request must be cancelled with cancelSingleCall.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param single_call_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was prepared
+   *
+   * @see doPost
+   * @see cancelSingleCall
+   */
+  public";
+%rename(initPostSingleCall) jni_oc_init_post_single_call;
+%inline %{
+bool jni_oc_init_post_single_call(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                                  oc_response_handler_t single_call_handler, jni_callback_data *jcb,
+                                  oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
+  bool returnValue = oc_init_post(uri, endpoint, query, single_call_handler, qos, jcb);
+  if (returnValue == false) {
+    if (locked) {
+      jni_mutex_unlock(jni_sync_lock);
+      OC_DBG("JNI - initPostSingleCall failed releasing jni_sync_lock");
+      OC_DBG("JNI: - unlock %s\n", __func__);
+    }
+  }
+  return returnValue;
+}
+%}
+
+%typemap(jni)    jobject single_call_handler "jobject";
+%typemap(jtype)  jobject single_call_handler "OCResponseHandler";
+%typemap(jstype) jobject single_call_handler "OCResponseHandler";
+%typemap(javain) jobject single_call_handler "$javainput";
+%typemap(in)     jobject single_call_handler "$1 = $input;";
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_cancel_single_call "/**
+   * Cancel a request issued with doGetSingleCall, doDeleteSingleCall,
+   * initPutSingleCall or initPostSingleCall and release the reference to its
+   * handler.
+   * <p>
+   * The handler is not invoked. Nothing is done if the handler has already
+   * been invoked.
+   *
+   * @param single_call_handler the handler the request was issued with
+   * @return true if a reference to the handler was released
+   */
+  public";
+%rename(cancelSingleCall) jni_oc_cancel_single_call;
+%inline %{
+bool jni_oc_cancel_single_call(jobject single_call_handler) {
+  OC_DBG("JNI: %s\n", __func__);
+  bool locked = !jni_is_poll_event_thread();
+  if (locked) {
+    OC_DBG("JNI: - lock %s\n", __func__);
+    jni_mutex_lock(jni_sync_lock);
+  }
+  jni_callback_data *item = jni_list_get_item_by_java_callback(single_call_handler);
+  if (item && item->cb_valid != OC_CALLBACK_VALID_TILL_FIRST_RESPONSE) {
+    item = NULL;
+  }
+  /* freeing the client callback releases the item, an item without client
+   * callback is being used by a native call which releases it on return */
+  if (item) {
+    oc_ri_remove_client_cb_by_user_data(item);
+  }
+  if (locked) {
+    jni_mutex_unlock(jni_sync_lock);
+    OC_DBG("JNI: - unlock %s\n", __func__);
+  }
+  return (item != NULL);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_get_live_response_handler_count "/**
+   * Get the number of response handlers still referenced by the native code.
+   * <p>
+   * A response handler is released once the request it was issued with is
+   * complete, i.e. after its last response, when the request times out or
+   * when it is cancelled. A count that keeps growing indicates requests that
+   * are never completed.
+   *
+   * @return the number of live response handlers
+   */
+  public";
+%rename(getLiveResponseHandlerCount) jni_get_live_response_handler_count;
+%inline %{
+size_t jni_get_live_response_handler_count(void) {
+  return jni_list_size_by_callback_valid(OC_CALLBACK_VALID_TILL_FREE_CLIENT_CB) +
+         jni_list_size_by_callback_valid(OC_CALLBACK_VALID_TILL_FIRST_RESPONSE);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_get_live_callback_count "/**
+   * Get the number of java callbacks of any kind still referenced by the
+   * native code.
+   *
+   * @return the number of live callbacks
+   */
+  public";
+%rename(getLiveCallbackCount) jni_get_live_callback_count;
+%inline %{
+size_t jni_get_live_callback_count(void) {
+  return jni_list_size();
+}
+%}
+
+/* Code and typemaps for queued requests. Java threads push the request to a
+ * lock-free queue that the poll thread drains at the start of every poll pass,
+ * so queuing a request never waits for jni_sync_lock. The callback data is
+ * added to the registry by the poll thread and released with the client
+ * callback like the data of any other response handler. */
+%{
+typedef struct jni_queued_request_s
+{
+  jni_mpsc_node_t node; /* must be the first member */
+  oc_method_t method;
+  bool observe;
+  oc_endpoint_t endpoint;
+  oc_qos_t qos;
+  jni_callback_data *jcb;
+  char *uri;
+  char *query;
+  uint8_t *payload;
+  size_t payload_len;
+} jni_queued_request_t;
+
+static jni_mpsc_queue_t jni_request_queue = { &jni_request_queue.stub,
+                                              &jni_request_queue.stub,
+                                              { NULL } };
+
+static void jni_free_queued_callback(jni_callback_data *jcb)
+{
+  jint getEnvResult = 0;
+  JNIEnv *jenv = get_jni_env(&getEnvResult);
+  assert(jenv);
+  JCALL1(DeleteGlobalRef, jenv, jcb->jcb_obj);
+  free(jcb);
+  release_jni_env(getEnvResult);
+}
+
+static bool jni_queue_request(oc_method_t method, bool observe, const char *uri,
+                              oc_endpoint_t *endpoint, const char *query,
+                              const uint8_t *payload, size_t payload_len,
+                              jni_callback_data *jcb, oc_qos_t qos)
+{
+  if (!uri || !endpoint) {
+    jni_free_queued_callback(jcb);
+    return false;
+  }
+  size_t uri_len = strlen(uri);
+  size_t query_len = query ? strlen(query) : 0;
+  /* the strings and the payload are stored after the request */
+  jni_queued_request_t *request = (jni_queued_request_t *)malloc(
+    sizeof(jni_queued_request_t) + uri_len + 1 + query_len + 1 + payload_len);
+  if (!request) {
+    OC_ERR("JNI: failed to allocate the queued request");
+    jni_free_queued_callback(jcb);
+    return false;
+  }
+  request->method = method;
+  request->observe = observe;
+  request->endpoint = *endpoint;
+  request->endpoint.next = NULL;
+  request->qos = qos;
+  request->jcb = jcb;
+  request->uri = (char *)(request + 1);
+  memcpy(request->uri, uri, uri_len + 1);
+  request->query = request->uri + uri_len + 1;
+  if (query) {
+    memcpy(request->query, query, query_len + 1);
+  } else {
+    request->query[0] = '\0';
+  }
+  request->payload = NULL;
+  request->payload_len = payload_len;
+  if (payload && payload_len > 0) {
+    request->payload = (uint8_t *)(request->query + query_len + 1);
+    memcpy(request->payload, payload, payload_len);
+  }
+
+  jni_mpsc_queue_push(&jni_request_queue, &request->node);
+  jni_signal_event_loop();
+  return true;
+}
+
+static bool jni_send_queued_request(jni_queued_request_t *request)
+{
+  const char *query = (request->query[0] != '\0') ? request->query : NULL;
+  switch (request->method) {
+  case OC_GET:
+    if (request->observe) {
+      return oc_do_observe(request->uri, &request->endpoint, query,
+                           jni_oc_response_handler, request->qos, request->jcb);
+    }
+    return oc_do_get(request->uri, &request->endpoint, query,
+                     jni_oc_response_handler, request->qos, request->jcb);
+  case OC_DELETE:
+    return oc_do_delete(request->uri, &request->endpoint, query,
+                        jni_oc_response_handler, request->qos, request->jcb);
+  case OC_PUT:
+    if (!oc_init_put(request->uri, &request->endpoint, query,
+                     jni_oc_response_handler, request->qos, request->jcb)) {
+      return false;
+    }
+    if (request->payload) {
+      oc_rep_encode_raw(request->payload, request->payload_len);
+    }
+    return oc_do_put();
+  case OC_POST:
+    if (!oc_init_post(request->uri, &request->endpoint, query,
+                      jni_oc_response_handler, request->qos, request->jcb)) {
+      return false;
+    }
+    if (request->payload) {
+      oc_rep_encode_raw(request->payload, request->payload_len);
+    }
+    return oc_do_post();
+  default:
+    return false;
+  }
+}
+
+/* Called by the poll thread with jni_sync_lock held */
+static void jni_process_queued_requests(void)
+{
+  jni_mpsc_node_t *node;
+  while ((node = jni_mpsc_queue_pop(&jni_request_queue)) != NULL) {
+    jni_queued_request_t *request = (jni_queued_request_t *)node;
+    jni_callback_data *jcb = request->jcb;
+    jni_list_add(jcb);
+    if (!jni_send_queued_request(request)) {
+      /* tell the handler like the stack does for requests it cannot send */
+      OC_WRN("JNI: could not send queued request to %s", request->uri);
+      oc_client_response_t response;
+      memset(&response, 0, sizeof(response));
+      response.endpoint = &request->endpoint;
+      response.user_data = jcb;
+      response.code = OC_STATUS_SERVICE_UNAVAILABLE;
+      response.observe_option = -1;
+      jni_oc_response_handler(&response);
+    }
+    jni_response_handler_call_done(jcb);
+    free(request);
+  }
+}
+
+/* Called once the poll thread has stopped */
+static void jni_discard_queued_requests(void)
+{
+  jni_mpsc_node_t *node;
+  while ((node = jni_mpsc_queue_pop(&jni_request_queue)) != NULL) {
+    jni_queued_request_t *request = (jni_queued_request_t *)node;
+    jni_free_queued_callback(request->jcb);
+    free(request);
+  }
+}
+%}
+
+%typemap(jni)    oc_response_handler_t queued_handler "jobject";
+%typemap(jtype)  oc_response_handler_t queued_handler "OCResponseHandler";
+%typemap(jstype) oc_response_handler_t queued_handler "OCResponseHandler";
+%typemap(javain) oc_response_handler_t queued_handler "$javainput";
+%typemap(in,numinputs=1) (oc_response_handler_t queued_handler, jni_callback_data *jcb) {
+  jni_callback_data *user_data = (jni_callback_data *)malloc(sizeof *user_data);
+  user_data->jenv = jenv;
+  user_data->jcb_obj = JCALL1(NewGlobalRef, jenv, $input);
+  user_data->cb_valid = OC_CALLBACK_VALID_TILL_FREE_CLIENT_CB;
+  /* in use by the queue until the poll thread has sent the request */
+  user_data->ref_count = 1;
+  $1 = jni_oc_response_handler;
+  $2 = user_data;
+}
+
+%typemap(jni)    (const uint8_t *payload, size_t payload_len) "jbyteArray"
+%typemap(jtype)  (const uint8_t *payload, size_t payload_len) "byte[]"
+%typemap(jstype) (const uint8_t *payload, size_t payload_len) "byte[]"
+%typemap(javain) (const uint8_t *payload, size_t payload_len) "$javainput"
+%typemap(in)     (const uint8_t *payload, size_t payload_len) {
+  $1 = NULL;
+  $2 = 0;
+  if ($input) {
+    $1 = (uint8_t *)JCALL2(GetByteArrayElements, jenv, $input, 0);
+    $2 = (size_t)JCALL1(GetArrayLength, jenv, $input);
+  }
+}
+%typemap(freearg) (const uint8_t *payload, size_t payload_len) {
+  if ($1) {
+    JCALL3(ReleaseByteArrayElements, jenv, $input, (jbyte *)$1, JNI_ABORT);
+  }
+}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_queue_get "/**
+   * Queue a GET request without waiting for the stack.
+   * <p>
+   * The request is sent by the thread running the stack during its next poll.
+   * If it cannot be sent the handler is invoked with a response whose code is
+   * OC_STATUS_SERVICE_UNAVAILABLE. Requests queued by one thread are sent in
+   * the order they were queued.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param queued_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was queued
+   *
+   * @see doGet
+   */
+  public";
+%rename(queueGet) jni_oc_queue_get;
+%inline %{
+bool jni_oc_queue_get(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                      oc_response_handler_t queued_handler, jni_callback_data *jcb,
+                      oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  (void)queued_handler;
+  return jni_queue_request(OC_GET, false, uri, endpoint, query, NULL, 0, jcb, qos);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_queue_delete "/**
+   * Queue a DELETE request without waiting for the stack.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param queued_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was queued
+   *
+   * @see queueGet
+   * @see doDelete
+   */
+  public";
+%rename(queueDelete) jni_oc_queue_delete;
+%inline %{
+bool jni_oc_queue_delete(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                         oc_response_handler_t queued_handler, jni_callback_data *jcb,
+                         oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  (void)queued_handler;
+  return jni_queue_request(OC_DELETE, false, uri, endpoint, query, NULL, 0, jcb, qos);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_queue_put "/**
+   * Queue a PUT request without waiting for the stack.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param payload the cbor encoded payload or null for an empty payload, the
+   *        array is copied before this method returns
+   * @param queued_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was queued
+   *
+   * @see queueGet
+   * @see initPut
+   */
+  public";
+%rename(queuePut) jni_oc_queue_put;
+%inline %{
+bool jni_oc_queue_put(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                      const uint8_t *payload, size_t payload_len,
+                      oc_response_handler_t queued_handler, jni_callback_data *jcb,
+                      oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  (void)queued_handler;
+  return jni_queue_request(OC_PUT, false, uri, endpoint, query, payload, payload_len, jcb, qos);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_queue_post "/**
+   * Queue a POST request without waiting for the stack.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param payload the cbor encoded payload or null for an empty payload, the
+   *        array is copied before this method returns
+   * @param queued_handler the handler invoked with the response
+   * @param qos the quality of service of the request
+   * @return true if the request was queued
+   *
+   * @see queueGet
+   * @see initPost
+   */
+  public";
+%rename(queuePost) jni_oc_queue_post;
+%inline %{
+bool jni_oc_queue_post(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                       const uint8_t *payload, size_t payload_len,
+                       oc_response_handler_t queued_handler, jni_callback_data *jcb,
+                       oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  (void)queued_handler;
+  return jni_queue_request(OC_POST, false, uri, endpoint, query, payload, payload_len, jcb, qos);
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_oc_queue_observe "/**
+   * Queue an observe request without waiting for the stack.
+   * <p>
+   * The observation is stopped with stopObserve.
+   *
+   * @param uri the uri of the resource
+   * @param endpoint the endpoint of the server
+   * @param query the query parameters or null
+   * @param queued_handler the handler invoked with every notification
+   * @param qos the quality of service of the request
+   * @return true if the request was queued
+   *
+   * @see queueGet
+   * @see doObserve
+   */
+  public";
+%rename(queueObserve) jni_oc_queue_observe;
+%inline %{
+bool jni_oc_queue_observe(const char *uri, oc_endpoint_t *endpoint, const char *query,
+                          oc_response_handler_t queued_handler, jni_callback_data *jcb,
+                          oc_qos_t qos) {
+  OC_DBG("JNI: %s\n", __func__);
+  (void)queued_handler;
+  return jni_queue_request(OC_GET, true, uri, endpoint, query, NULL, 0, jcb, qos);
+}
+%}
+
 %ignore oc_do_observe;
 %rename(doObserve) jni_oc_do_observe;
 %inline %{
@@ -1809,25 +2572,11 @@ oc_event_callback_retval_t jni_oc_trigger_handler(void* cb_data) {
   assert(data->jenv);
 
   assert(cls_OCTriggerHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCTriggerHandler,
-                                       "handler",
-                                       "()Lorg/iotivity/OCEventCallbackResult;");
-  assert(mid_handler);
   jobject jEventCallbackRet = JCALL2(CallObjectMethod,
                                      (data->jenv),
                                      data->jcb_obj,
-                                     mid_handler);
+                                     mid_OCTriggerHandler_handler);
   assert(jEventCallbackRet);
-  jclass cls_OCEventCallbackResult = JCALL1(GetObjectClass, (data->jenv), jEventCallbackRet);
-  assert(cls_OCEventCallbackResult);
-  const jmethodID mid_OCEventCallbackResult_swigValue = JCALL3(GetMethodID,
-                                                               (data->jenv),
-                                                               cls_OCEventCallbackResult,
-                                                               "swigValue",
-                                                               "()I");
-  assert(mid_OCEventCallbackResult_swigValue);
   jint return_value = JCALL2(CallIntMethod,
                              (data->jenv),
                              jEventCallbackRet,
@@ -1905,6 +2654,8 @@ void jni_oc_remove_delayed_callback(jobject callback) {
 %rename (OCClientCallback) oc_client_cb_t;
 %ignore oc_client_cb_t::handler; /*part of the oc_client_cb_t */
 %ignore oc_client_cb_t::user_data;
+%ignore oc_client_cb_t::next_by_token;
+%ignore oc_client_cb_t::next_by_mid;
 %rename(observeSeq) oc_client_cb_t::observe_seq;
 %rename(tokenLen) oc_client_cb_t::token_len;
 %rename(stopMulticastReceive) oc_client_cb_t::stop_multicast_receive;
@@ -1915,9 +2666,56 @@ void jni_oc_remove_delayed_callback(jobject callback) {
 %ignore oc_ri_find_client_cb_by_token;
 %ignore oc_ri_is_client_cb_valid;
 %ignore oc_ri_find_client_cb_by_mid;
+%ignore oc_ri_set_client_cb_mid;
+%ignore oc_ri_set_client_cb_token;
 %ignore oc_ri_remove_client_cb_by_mid;
+%ignore oc_ri_set_client_cb_alloc_handler;
+%ignore oc_ri_remove_client_cb_by_user_data;
+%ignore oc_ri_set_client_cb_free_handler;
 %ignore oc_ri_free_client_cbs_by_endpoint;
 %ignore oc_ri_free_client_cbs_by_mid;
 %ignore oc_ri_process_discovery_payload;
 %include "oc_client_state.h"
+
+// DOCUMENTATION workaround
+%javamethodmodifiers getResponsePayloadBuffer "/**
+   * Get the raw CBOR payload of a response without copying it.
+   * <p>
+   * The returned buffer is a read-only direct buffer over the message buffer
+   * of the stack. It is only valid while the response handler that received
+   * the response is running and must not be used after the handler returns.
+   * <p>
+   * Use an org.iotivity.oc.OcCborReader to walk the payload without building
+   * an OCRepresentation.
+   *
+   * @param response the response passed to the response handler
+   * @return a read-only ByteBuffer over the payload or null if the response
+   *         does not have a payload
+   */
+  public";
+%typemap(jni)    jobject getResponsePayloadBuffer "jobject";
+%typemap(jtype)  jobject getResponsePayloadBuffer "java.nio.ByteBuffer";
+%typemap(jstype) jobject getResponsePayloadBuffer "java.nio.ByteBuffer";
+%typemap(javain) jobject getResponsePayloadBuffer "$javainput";
+%native (getResponsePayloadBuffer) jobject getResponsePayloadBuffer(oc_client_response_t *response);
+%{
+#ifdef __cplusplus
+extern "C"
+#endif
+SWIGEXPORT jobject JNICALL Java_org_iotivity_OCMainJNI_getResponsePayloadBuffer(JNIEnv *jenv,
+                                                                                jclass jcls,
+                                                                                jlong jresponse,
+                                                                                jobject jresponse_)
+{
+  oc_client_response_t *response = (oc_client_response_t *)0;
+
+  (void)jcls;
+  (void)jresponse_;
+  response = *(oc_client_response_t **)&jresponse;
+  if (!response) {
+    return NULL;
+  }
+  return jni_new_payload_buffer(jenv, response->_payload, response->_payload_len);
+}
+%}
 /*******************End oc_client_state.h*******************/
\ No newline at end of file
@@ -1,6 +1,10 @@
 /* File oc_buffer_settings.i */
 %module OCBufferSettings
 
+%include "enums.swg"
+%include "stdint.i"
+%javaconst(1);
+
 %pragma(java) jniclasscode=%{
   static {
     try {
@@ -21,5 +25,20 @@
 %rename (setMaxAppDataSize) oc_set_max_app_data_size;
 %rename (getMaxAppDataSize) oc_get_max_app_data_size;
 %rename (getBlockSize) oc_get_block_size;
+%rename (OCMessageBufferClass) oc_message_buffer_class_t;
+%rename (OCMessageBufferStats) oc_message_buffer_stats_t;
+%rename (highWaterMark) oc_message_buffer_stats_t::high_water_mark;
+%rename (inUse) oc_message_buffer_stats_t::in_use;
+%rename (getMessageBufferStats) oc_get_message_buffer_stats;
+%rename (OCOverloadLimits) oc_overload_limits_t;
+%rename (maxPendingRequests) oc_overload_limits_t::max_pending_requests;
+%rename (requestsPerSecond) oc_overload_limits_t::requests_per_second;
+%rename (retryAfter) oc_overload_limits_t::retry_after;
+%rename (setOverloadLimits) oc_set_overload_limits;
+%rename (getOverloadLimits) oc_get_overload_limits;
+%rename (OCOverloadStats) oc_overload_stats_t;
+%rename (rateLimited) oc_overload_stats_t::rate_limited;
+%rename (getOverloadStats) oc_get_overload_stats;
+%rename (resetOverloadStats) oc_reset_overload_stats;
 
 %include "oc_buffer_settings.h"
\ No newline at end of file
@@ -38,33 +38,22 @@ static void jni_cloud_cb(oc_cloud_context_t *ctx, oc_cloud_status_t status, void
   assert(data->jenv);
 
   assert(cls_OCCloudHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCCloudHandler,
-        "handler",
-        "(Lorg/iotivity/OCCloudContext;I)V");
-  assert(mid_handler);
 
   // convert oc_cloud_context_t to java org.iotivity.OCCloudContext so it can
   // be passed upto the handler method.
   jobject jctx = NULL;
   if (ctx) {
     assert(cls_OCCloudContext);
-    const jmethodID mid_OCOCCloudContext_init = JCALL3(GetMethodID, (data->jenv),
-                                                       cls_OCCloudContext,
-                                                       "<init>",
-                                                       "(JZ)V");
-    assert(mid_OCOCCloudContext_init);
     jctx = JCALL4(NewObject, (data->jenv),
                   cls_OCCloudContext,
-                  mid_OCOCCloudContext_init,
+                  mid_OCCloudContext_init,
                   (jlong)ctx,
                   false);
   }
 
   JCALL4(CallVoidMethod, (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCCloudHandler_handler,
          jctx,
          (jint) status);
 
@@ -86,6 +75,7 @@ static void jni_cloud_cb(oc_cloud_context_t *ctx, oc_cloud_status_t status, void
   jni_callback_data *user_data = (jni_callback_data *)malloc(sizeof *user_data);
   user_data->jenv = jenv;
   user_data->jcb_obj = JCALL1(NewGlobalRef, jenv, $input);
+  user_data->cb_valid = OC_CALLBACK_VALID_UNKNOWN;
   jni_list_add(user_data);
   $1 = jni_cloud_cb;
   $2 = user_data;
@@ -141,7 +131,7 @@ int jni_cloud_manager_start(oc_cloud_context_t *ctx, oc_cloud_cb_t callback, jni
   OC_DBG("JNI: %s\n", __func__);
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
-  jcb->cb_valid = OC_CALLBACK_VALID_TILL_CLOUD_MANAGER_STOP;
+  jni_list_set_callback_valid(jcb, OC_CALLBACK_VALID_TILL_CLOUD_MANAGER_STOP);
   int return_value = oc_cloud_manager_start(ctx, callback, jcb);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -177,7 +167,7 @@ int jni_cloud_register(oc_cloud_context_t *ctx, oc_cloud_cb_t callback, jni_call
   OC_DBG("JNI: %s\n", __func__);
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
-  jcb->cb_valid = OC_CALLBACK_VALID_FOR_A_SINGLE_CALL;
+  jni_list_set_callback_valid(jcb, OC_CALLBACK_VALID_FOR_A_SINGLE_CALL);
   int return_value = oc_cloud_register(ctx, callback, jcb);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -197,7 +187,7 @@ int jni_cloud_login(oc_cloud_context_t *ctx, oc_cloud_cb_t callback, jni_callbac
   OC_DBG("JNI: %s\n", __func__);
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
-  jcb->cb_valid = OC_CALLBACK_VALID_FOR_A_SINGLE_CALL;
+  jni_list_set_callback_valid(jcb, OC_CALLBACK_VALID_FOR_A_SINGLE_CALL);
   int return_value = oc_cloud_login(ctx, callback, jcb);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -217,7 +207,7 @@ int jni_cloud_logout(oc_cloud_context_t *ctx, oc_cloud_cb_t callback, jni_callba
   OC_DBG("JNI: %s\n", __func__);
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
-  jcb->cb_valid = OC_CALLBACK_VALID_FOR_A_SINGLE_CALL;
+  jni_list_set_callback_valid(jcb, OC_CALLBACK_VALID_FOR_A_SINGLE_CALL);
   int return_value = oc_cloud_logout(ctx, callback, jcb);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -237,7 +227,7 @@ int jni_cloud_deregister(oc_cloud_context_t *ctx, oc_cloud_cb_t callback, jni_ca
   OC_DBG("JNI: %s\n", __func__);
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
-  jcb->cb_valid = OC_CALLBACK_VALID_FOR_A_SINGLE_CALL;
+  jni_list_set_callback_valid(jcb, OC_CALLBACK_VALID_FOR_A_SINGLE_CALL);
   int return_value = oc_cloud_deregister(ctx, callback, jcb);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -257,7 +247,7 @@ int jni_cloud_refresh_token(oc_cloud_context_t *ctx, oc_cloud_cb_t callback, jni
   OC_DBG("JNI: %s\n", __func__);
   OC_DBG("JNI: - lock %s\n", __func__);
   jni_mutex_lock(jni_sync_lock);
-  jcb->cb_valid = OC_CALLBACK_VALID_FOR_A_SINGLE_CALL;
+  jni_list_set_callback_valid(jcb, OC_CALLBACK_VALID_FOR_A_SINGLE_CALL);
   int return_value = oc_cloud_refresh_token(ctx, callback, jcb);
   jni_mutex_unlock(jni_sync_lock);
   OC_DBG("JNI: - unlock %s\n", __func__);
@@ -23,12 +23,14 @@ typedef struct oc_link_s oc_link_t;
 }
 %rename(OCResourceType) oc_rt_t;
 typedef struct oc_collection_s oc_collection_t;
+%ignore oc_collection_s::next_by_uri;
 %ignore oc_collection_s::get_handler;
 %ignore oc_collection_s::put_handler;
 %ignore oc_collection_s::post_handler;
 %ignore oc_collection_s::delete_handler;
 %ignore oc_collection_s::get_properties;
 %ignore oc_collection_s::set_properties;
+%ignore oc_collection_s::notification_policy;
 %rename (numLinks) oc_collection_s::num_links;
 %ignore oc_collection_s::OC_LIST_STRUCT(mandatory_rts);
 // TODO convert to array of strings.
@@ -43,13 +43,7 @@ void jni_oc_core_init_platform_callback(void *user_data)
   jni_callback_data *data = (jni_callback_data *)user_data;
 
   assert(cls_OCCoreInitPlatformHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCCoreInitPlatformHandler,
-                                       "handler",
-                                       "()V");
-  assert(mid_handler);
-  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_handler);
+  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_OCCoreInitPlatformHandler_handler);
 
 if (data->cb_valid == OC_CALLBACK_VALID_FOR_A_SINGLE_CALL) {
     jni_list_remove(data);
@@ -95,13 +89,7 @@ void jni_oc_core_add_device_callback(void *user_data)
   jni_callback_data *data = (jni_callback_data *)user_data;
 
   assert(cls_OCCoreAddDeviceHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-                                       (data->jenv),
-                                       cls_OCCoreAddDeviceHandler,
-                                       "handler",
-                                       "()V");
-  assert(mid_handler);
-  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_handler);
+  JCALL2(CallObjectMethod, (data->jenv), data->jcb_obj, mid_OCCoreAddDeviceHandler_handler);
 
   if (data->cb_valid == OC_CALLBACK_VALID_FOR_A_SINGLE_CALL) {
     jni_list_remove(data);
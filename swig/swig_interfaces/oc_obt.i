@@ -120,18 +120,10 @@ static void jni_obt_discovery_cb(oc_uuid_t *uuid, oc_endpoint_t *eps, void *user
   assert(data->jenv);
 
   assert(cls_OCObtDiscoveryHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCObtDiscoveryHandler,
-        "handler",
-        "(Lorg/iotivity/OCUuid;Lorg/iotivity/OCEndpoint;)V");
-  assert(mid_handler);
 
   jobject juuid = NULL;
   if (uuid) {
     assert(cls_OCUuid);
-    const jmethodID mid_OCUuid_init = JCALL3(GetMethodID, (data->jenv), cls_OCUuid, "<init>", "(JZ)V");
-    assert(mid_OCUuid_init);
 
     /* make copy of uuid that will be owned by Java code */
     oc_uuid_t *new_uuid = malloc(sizeof(oc_uuid_t));
@@ -143,18 +135,12 @@ static void jni_obt_discovery_cb(oc_uuid_t *uuid, oc_endpoint_t *eps, void *user
   jobject jeps = NULL;
   if (eps) {
     assert(cls_OCEndpoint);
-    const jmethodID mid_OCEndpoint_init = JCALL3(GetMethodID,
-                                                 (data->jenv),
-                                                 cls_OCEndpoint,
-                                                 "<init>",
-                                                 "(JZ)V");
-  assert(mid_OCEndpoint_init);
 
   jeps = JCALL4(NewObject, (data->jenv), cls_OCEndpoint, mid_OCEndpoint_init, (jlong)eps, false);
   }
   JCALL4(CallVoidMethod, (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCObtDiscoveryHandler_handler,
          juuid,
          jeps);
 
@@ -330,18 +316,10 @@ static void jni_obt_device_status_cb(oc_uuid_t *uuid, int status, void *user_dat
   assert(data->jenv);
 
   assert(cls_OCObtDeviceStatusHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCObtDeviceStatusHandler,
-        "handler",
-        "(Lorg/iotivity/OCUuid;I)V");
-  assert(mid_handler);
 
   jobject juuid = NULL;
   if (uuid) {
     assert(cls_OCUuid);
-    const jmethodID mid_OCUuid_init = JCALL3(GetMethodID, (data->jenv), cls_OCUuid, "<init>", "(JZ)V");
-    assert(mid_OCUuid_init);
 
     /* make copy of uuid that will be owned by Java code */
     oc_uuid_t *new_uuid = malloc(sizeof(oc_uuid_t));
@@ -352,7 +330,7 @@ static void jni_obt_device_status_cb(oc_uuid_t *uuid, int status, void *user_dat
 
   JCALL4(CallVoidMethod, (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCObtDeviceStatusHandler_handler,
          juuid,
          (jint) status);
 
@@ -530,17 +508,11 @@ static void jni_obt_status_cb(int status, void *user_data)
   assert(data->jenv);
 
   assert(cls_OCObtStatusHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCObtStatusHandler,
-        "handler",
-        "(I)V");
-  assert(mid_handler);
 
   JCALL3(CallVoidMethod,
         (data->jenv),
         data->jcb_obj,
-        mid_handler,
+        mid_OCObtStatusHandler_handler,
         (jint) status);
 
   release_jni_env(getEnvResult);
@@ -834,24 +806,16 @@ void jni_obt_creds_cb(struct oc_sec_creds_t *creds, void *user_data)
   assert(data->jenv);
 
   assert(cls_OCObtCredsHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCObtCredsHandler,
-        "handler",
-        "(Lorg/iotivity/OCCreds;)V");
-  assert(mid_handler);
 
   jobject jcreds = NULL;
   if (creds) {
     assert(cls_OCCreds);
-    const jmethodID mid_OCCreds_init = JCALL3(GetMethodID, (data->jenv), cls_OCCreds, "<init>", "(JZ)V");
-    assert(mid_OCCreds_init);
 
     jcreds = JCALL4(NewObject, (data->jenv), cls_OCCreds, mid_OCCreds_init, (jlong)creds, false);
   }
   JCALL3(CallVoidMethod, (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCObtCredsHandler_handler,
          jcreds);
 
   release_jni_env(getEnvResult);
@@ -941,25 +905,17 @@ void jni_obt_acl_cb(oc_sec_acl_t *acl, void *user_data)
   assert(data->jenv);
 
   assert(cls_OCObtAclHandler);
-  const jmethodID mid_handler = JCALL3(GetMethodID,
-        (data->jenv),
-        cls_OCObtAclHandler,
-        "handler",
-        "(Lorg/iotivity/OCSecurityAcl;)V");
-  assert(mid_handler);
 
   jobject jacl = NULL;
   if (acl) {
     assert(cls_OCSecurityAcl);
-    const jmethodID mid_OCSecurityAcl_init = JCALL3(GetMethodID, (data->jenv), cls_OCSecurityAcl, "<init>", "(JZ)V");
-    assert(mid_OCSecurityAcl_init);
 
     jacl = JCALL4(NewObject, (data->jenv), cls_OCSecurityAcl, mid_OCSecurityAcl_init, (jlong)acl, false);
   }
 
   JCALL3(CallVoidMethod, (data->jenv),
          data->jcb_obj,
-         mid_handler,
+         mid_OCObtAclHandler_handler,
          jacl);
 
   release_jni_env(getEnvResult);
@@ -114,6 +114,50 @@ void newBuffer(int size) {
 
 %ignore oc_rep_get_encoded_payload_size;
 %ignore oc_rep_get_encoder_buf;
+%ignore oc_rep_encode_raw;
+
+%typemap(jni)    (const uint8_t *encoded, size_t encoded_len) "jobject"
+%typemap(jtype)  (const uint8_t *encoded, size_t encoded_len) "java.nio.ByteBuffer"
+%typemap(jstype) (const uint8_t *encoded, size_t encoded_len) "java.nio.ByteBuffer"
+/* slice so the native code sees the bytes from position to limit */
+%typemap(javain) (const uint8_t *encoded, size_t encoded_len) "(($javainput == null) ? null : $javainput.slice())"
+%typemap(in) (const uint8_t *encoded, size_t encoded_len) {
+  if (!$input) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaNullPointerException, "ByteBuffer null");
+    return $null;
+  }
+  $1 = (uint8_t *)JCALL1(GetDirectBufferAddress, jenv, $input);
+  if (!$1) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIllegalArgumentException, "ByteBuffer must be a direct buffer");
+    return $null;
+  }
+  $2 = (size_t)JCALL1(GetDirectBufferCapacity, jenv, $input);
+}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_rep_encode_raw "/**
+   * Copy an already encoded cbor value into the root cbor object.
+   * <p>
+   * The remaining bytes of the buffer are copied in a single call, so a
+   * payload built in Java (e.g. using org.iotivity.oc.OcCborWriter) replaces
+   * the series of calls otherwise needed to encode it value by value. The
+   * buffer must be a direct buffer and its position is not changed.
+   * <p>
+   * If the value does not fit in the payload buffer of the stack the cbor
+   * error number is set.
+   *
+   * @param encoded a direct ByteBuffer holding a complete cbor value
+   *
+   * @see OCRep#getCborErrno()
+   */
+  public";
+%rename(encodeRaw) jni_rep_encode_raw;
+%inline %{
+void jni_rep_encode_raw(const uint8_t *encoded, size_t encoded_len) {
+  OC_DBG("JNI: %s\n", __func__);
+  oc_rep_encode_raw(encoded, encoded_len);
+}
+%}
 
 // DOCUMENTATION workaround
 %javamethodmodifiers jni_rep_set_double "/**
@@ -1514,6 +1558,316 @@ const double* jni_rep_get_double_array(oc_rep_t *rep, const char *key, size_t *d
 }
 %}
 
+/*
+ * The following getters return primitive values and fill caller owned arrays
+ * so they can be used to read many representations without creating garbage.
+ */
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_rep_get_long_or_default "/**
+   * Read a long integer from an <tt>OCRepresentation</tt> without boxing it.
+   * <p>
+   * Example:
+   * <pre>
+   *     long power = OCRep.getLongOrDefault(rep, \"power\", 0);
+   * </pre>
+   *
+   * @param rep the OCRepresentation to read the long value from
+   * @param key the key name for the long integer value
+   * @param default_value the value returned if key or value is not found
+   *
+   * @return the long value, or default_value if key or value is not found
+   *
+   * @see OCRep#getLong(OCRepresentation, String)
+   */
+  public";
+%rename(getLongOrDefault) jni_rep_get_long_or_default;
+%inline %{
+int64_t jni_rep_get_long_or_default(oc_rep_t *rep, const char *key, int64_t default_value) {
+  int64_t value;
+  if (oc_rep_get_int(rep, key, &value)) {
+    return value;
+  }
+  return default_value;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_rep_get_bool_or_default "/**
+   * Read a boolean value from an <tt>OCRepresentation</tt> without boxing it.
+   *
+   * @param rep the OCRepresentation to read the boolean value from
+   * @param key the key name for the boolean value
+   * @param default_value the value returned if key or value is not found
+   *
+   * @return the boolean value, or default_value if key or value is not found
+   *
+   * @see OCRep#getBoolean(OCRepresentation, String)
+   */
+  public";
+%rename(getBooleanOrDefault) jni_rep_get_bool_or_default;
+%inline %{
+bool jni_rep_get_bool_or_default(oc_rep_t *rep, const char *key, bool default_value) {
+  bool value;
+  if (oc_rep_get_bool(rep, key, &value)) {
+    return value;
+  }
+  return default_value;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers jni_rep_get_double_or_default "/**
+   * Read a double value from an <tt>OCRepresentation</tt> without boxing it.
+   *
+   * @param rep the OCRepresentation to read the double value from
+   * @param key the key name for the double value
+   * @param default_value the value returned if key or value is not found
+   *
+   * @return the double value, or default_value if key or value is not found
+   *
+   * @see OCRep#getDouble(OCRepresentation, String)
+   */
+  public";
+%rename(getDoubleOrDefault) jni_rep_get_double_or_default;
+%inline %{
+double jni_rep_get_double_or_default(oc_rep_t *rep, const char *key, double default_value) {
+  double value;
+  if (oc_rep_get_double(rep, key, &value)) {
+    return value;
+  }
+  return default_value;
+}
+%}
+
+%{
+/*
+ * Check the destination of a copy*Array call. Throws and returns false if the
+ * destination array is null or offset is not within the array.
+ */
+static bool
+jni_rep_check_copy_destination(JNIEnv *jenv, jarray jdst, jint offset)
+{
+  if (!jdst) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaNullPointerException, "array null");
+    return false;
+  }
+  if (offset < 0 || offset > JCALL1(GetArrayLength, jenv, jdst)) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIndexOutOfBoundsException, "offset out of bounds");
+    return false;
+  }
+  return true;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers copyLongArray "/**
+   * Copy an integer array value of an <tt>OCRepresentation</tt> into an
+   * existing array.
+   * <p>
+   * At most <tt>dst.length - offset</tt> values are copied. The number of
+   * values held by the representation is returned so a return value larger
+   * than <tt>dst.length - offset</tt> indicates the array was truncated.
+   * <p>
+   * Example:
+   * <pre>
+   *     long samples[] = new long[64];
+   *     int count = OCRep.copyLongArray(rep, \"samples\", samples, 0);
+   *     for (int i = 0; i < Math.min(count, samples.length); i++) {
+   *         // samples[i] can now be used
+   *     }
+   * </pre>
+   *
+   * @param rep OCRepresentation to read the integer array value from
+   * @param key the key name for the integer array value
+   * @param dst the array the values are copied to
+   * @param offset the index in dst of the first value
+   *
+   * @return the number of values of the integer array, or -1 if key or value
+   *         is not found
+   *
+   * @see OCRep#getLongArray(OCRepresentation, String)
+   */
+  public";
+%native (copyLongArray) int copyLongArray(oc_rep_t *rep, const char *key, jlongArray dst, int offset);
+%{
+#ifdef __cplusplus
+extern "C"
+#endif
+SWIGEXPORT jint JNICALL Java_org_iotivity_OCRepJNI_copyLongArray(JNIEnv *jenv,
+                                                                 jclass jcls,
+                                                                 jlong jrep,
+                                                                 jobject jrep_,
+                                                                 jstring jkey,
+                                                                 jlongArray jdst,
+                                                                 jint joffset)
+{
+  oc_rep_t *rep = *(oc_rep_t **)&jrep;
+  int64_t *values = NULL;
+  size_t size = 0;
+  bool found = false;
+
+  (void)jcls;
+  (void)jrep_;
+  if (!jni_rep_check_copy_destination(jenv, jdst, joffset)) {
+    return -1;
+  }
+  if (jkey) {
+    const char *key = JCALL2(GetStringUTFChars, jenv, jkey, 0);
+    if (!key) {
+      return -1;
+    }
+    found = oc_rep_get_int_array(rep, key, &values, &size);
+    JCALL2(ReleaseStringUTFChars, jenv, jkey, key);
+  }
+  if (!found) {
+    return -1;
+  }
+  jsize available = JCALL1(GetArrayLength, jenv, jdst) - joffset;
+  jsize count = ((size_t)available < size) ? available : (jsize)size;
+  if (count > 0) {
+    JCALL4(SetLongArrayRegion, jenv, jdst, joffset, count, (const jlong *)values);
+  }
+  return (jint)size;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers copyDoubleArray "/**
+   * Copy a double array value of an <tt>OCRepresentation</tt> into an
+   * existing array.
+   * <p>
+   * At most <tt>dst.length - offset</tt> values are copied. The number of
+   * values held by the representation is returned so a return value larger
+   * than <tt>dst.length - offset</tt> indicates the array was truncated.
+   *
+   * @param rep OCRepresentation to read the double array value from
+   * @param key the key name for the double array value
+   * @param dst the array the values are copied to
+   * @param offset the index in dst of the first value
+   *
+   * @return the number of values of the double array, or -1 if key or value
+   *         is not found
+   *
+   * @see OCRep#getDoubleArray(OCRepresentation, String)
+   */
+  public";
+%native (copyDoubleArray) int copyDoubleArray(oc_rep_t *rep, const char *key, jdoubleArray dst, int offset);
+%{
+#ifdef __cplusplus
+extern "C"
+#endif
+SWIGEXPORT jint JNICALL Java_org_iotivity_OCRepJNI_copyDoubleArray(JNIEnv *jenv,
+                                                                   jclass jcls,
+                                                                   jlong jrep,
+                                                                   jobject jrep_,
+                                                                   jstring jkey,
+                                                                   jdoubleArray jdst,
+                                                                   jint joffset)
+{
+  oc_rep_t *rep = *(oc_rep_t **)&jrep;
+  double *values = NULL;
+  size_t size = 0;
+  bool found = false;
+
+  (void)jcls;
+  (void)jrep_;
+  if (!jni_rep_check_copy_destination(jenv, jdst, joffset)) {
+    return -1;
+  }
+  if (jkey) {
+    const char *key = JCALL2(GetStringUTFChars, jenv, jkey, 0);
+    if (!key) {
+      return -1;
+    }
+    found = oc_rep_get_double_array(rep, key, &values, &size);
+    JCALL2(ReleaseStringUTFChars, jenv, jkey, key);
+  }
+  if (!found) {
+    return -1;
+  }
+  jsize available = JCALL1(GetArrayLength, jenv, jdst) - joffset;
+  jsize count = ((size_t)available < size) ? available : (jsize)size;
+  if (count > 0) {
+    JCALL4(SetDoubleArrayRegion, jenv, jdst, joffset, count, (const jdouble *)values);
+  }
+  return (jint)size;
+}
+%}
+
+// DOCUMENTATION workaround
+%javamethodmodifiers getPresenceMask "/**
+   * Find out which of a set of keys are present in an <tt>OCRepresentation</tt>.
+   * <p>
+   * Bit <tt>i</tt> of the returned mask is set if <tt>keys[i]</tt> is present,
+   * regardless of the type of its value. Only the first 64 keys are checked.
+   * This allows a parser to test for the presence of all the properties it
+   * knows about with a single call.
+   * <p>
+   * Example:
+   * <pre>
+   *     static final String[] KEYS = { \"state\", \"power\" };
+   *     long mask = OCRep.getPresenceMask(rep, KEYS);
+   *     if ((mask &amp; 2) != 0) {
+   *         long power = OCRep.getLongOrDefault(rep, \"power\", 0);
+   *     }
+   * </pre>
+   *
+   * @param rep the OCRepresentation to check
+   * @param keys the key names to look for
+   *
+   * @return the presence bitmask
+   */
+  public";
+%typemap(jtype)  jobjectArray keys "String[]"
+%typemap(jstype) jobjectArray keys "String[]"
+%native (getPresenceMask) long long getPresenceMask(oc_rep_t *rep, jobjectArray keys);
+%{
+#ifdef __cplusplus
+extern "C"
+#endif
+SWIGEXPORT jlong JNICALL Java_org_iotivity_OCRepJNI_getPresenceMask(JNIEnv *jenv,
+                                                                    jclass jcls,
+                                                                    jlong jrep,
+                                                                    jobject jrep_,
+                                                                    jobjectArray jkeys)
+{
+  oc_rep_t *rep = *(oc_rep_t **)&jrep;
+  uint64_t mask = 0;
+
+  (void)jcls;
+  (void)jrep_;
+  if (!jkeys) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaNullPointerException, "array null");
+    return 0;
+  }
+  jsize num_keys = JCALL1(GetArrayLength, jenv, jkeys);
+  if (num_keys > 64) {
+    num_keys = 64;
+  }
+  for (jsize i = 0; i < num_keys; i++) {
+    jstring jkey = (jstring)JCALL2(GetObjectArrayElement, jenv, jkeys, i);
+    if (!jkey) {
+      continue;
+    }
+    const char *key = JCALL2(GetStringUTFChars, jenv, jkey, 0);
+    if (key) {
+      size_t key_len = strlen(key);
+      oc_rep_t *item;
+      for (item = rep; item != NULL; item = item->next) {
+        if (oc_string_len(item->name) == key_len &&
+            memcmp(oc_string(item->name), key, key_len) == 0) {
+          mask |= ((uint64_t)1 << i);
+          break;
+        }
+      }
+      JCALL2(ReleaseStringUTFChars, jenv, jkey, key);
+    }
+    JCALL1(DeleteLocalRef, jenv, jkey);
+  }
+  return (jlong)mask;
+}
+%}
+
 %typemap(in, numinputs=0, noblock=1) size_t *byte_string_array_size {
   size_t temp_byte_string_array_size;
   $1 = &temp_byte_string_array_size;
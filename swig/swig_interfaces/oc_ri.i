@@ -39,6 +39,8 @@
 
 %rename(OCResource) oc_resource_s;
 %immutable oc_resource_s::next;
+// internal link of the resource index by uri
+%ignore oc_resource_s::next_by_uri;
 %immutable oc_resource_s::device;
 %immutable oc_resource_s::name;
 %immutable oc_resource_s::uri;
@@ -54,6 +56,8 @@
 %ignore oc_resource_s::delete_handler;
 %ignore oc_resource_s::get_properties;
 %ignore oc_resource_s::set_properties;
+// internal link to the notification policy of the resource
+%ignore oc_resource_s::notification_policy;
 %rename("%(lowercamelcase)s") num_observers;
 %immutable oc_resource_s::num_observers;
 %rename("%(lowercamelcase)s") num_links;
@@ -78,6 +82,10 @@
 %ignore oc_ri_alloc_resource;
 %ignore oc_ri_add_resource;
 %ignore oc_ri_delete_resource;
+%ignore oc_ri_uri_index_t;
+%ignore oc_ri_uri_index_add;
+%ignore oc_ri_uri_index_remove;
+%ignore oc_ri_uri_index_find;
 %ignore oc_ri_free_resource_properties;
 %ignore oc_ri_get_query_nth_key_value;
 %ignore oc_ri_get_query_value;
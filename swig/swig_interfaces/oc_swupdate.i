@@ -87,16 +87,10 @@ int jni_validate_purl(const char *url)
   assert(jenv);
 
   assert(cls_OCSoftwareUpdateHandler);
-  const jmethodID mid_validate_purl = JCALL3(GetMethodID,
-                                       jenv,
-                                       cls_OCSoftwareUpdateHandler,
-                                       "validatePURL",
-                                       "(Ljava/lang/String;)I");
-  assert(mid_validate_purl);
   jstring jurl = JCALL1(NewStringUTF, jenv, (const char *)url);
   jint return_value = JCALL3(CallIntMethod, jenv,
                              jni_swupdate_callback_data.jcb_obj,
-                             mid_validate_purl,
+                             mid_OCSoftwareUpdateHandler_validatePURL,
                              jurl);
 
   release_jni_env(getEnvResult);
@@ -111,17 +105,11 @@ int jni_check_new_version(size_t device, const char *url, const char *version)
   assert(jenv);
 
   assert(cls_OCSoftwareUpdateHandler);
-  const jmethodID mid_check_new_version = JCALL3(GetMethodID,
-                                       jenv,
-                                       cls_OCSoftwareUpdateHandler,
-                                       "checkNewVersion",
-                                       "(JLjava/lang/String;Ljava/lang/String;)I");
-  assert(mid_check_new_version);
   jstring jurl = JCALL1(NewStringUTF, jenv, url);
   jstring jversion = JCALL1(NewStringUTF, jenv, version);
   jint return_value = JCALL5(CallIntMethod, jenv,
                              jni_swupdate_callback_data.jcb_obj,
-                             mid_check_new_version,
+                             mid_OCSoftwareUpdateHandler_checkNewVersion,
                              (jlong) device,
                              jurl,
                              jversion);
@@ -138,16 +126,10 @@ int jni_download_update(size_t device, const char *url)
   assert(jenv);
 
   assert(cls_OCSoftwareUpdateHandler);
-  const jmethodID mid_download_update = JCALL3(GetMethodID,
-                                       jenv,
-                                       cls_OCSoftwareUpdateHandler,
-                                       "downloadUpdate",
-                                       "(JLjava/lang/String;)I");
-  assert(mid_download_update);
   jstring jurl = JCALL1(NewStringUTF, jenv, url);
   jint return_value = JCALL4(CallIntMethod, jenv,
                              jni_swupdate_callback_data.jcb_obj,
-                             mid_download_update,
+                             mid_OCSoftwareUpdateHandler_downloadUpdate,
                              (jlong) device,
                              jurl);
 
@@ -163,16 +145,10 @@ int jni_perform_upgrade(size_t device, const char *url)
   assert(jenv);
 
   assert(cls_OCSoftwareUpdateHandler);
-  const jmethodID mid_perform_upgrade = JCALL3(GetMethodID,
-                                       jenv,
-                                       cls_OCSoftwareUpdateHandler,
-                                       "performUpgrade",
-                                       "(JLjava/lang/String;)I");
-  assert(mid_perform_upgrade);
   jstring jurl = JCALL1(NewStringUTF, jenv, url);
   jint return_value = JCALL4(CallIntMethod, jenv,
                              jni_swupdate_callback_data.jcb_obj,
-                             mid_perform_upgrade,
+                             mid_OCSoftwareUpdateHandler_performUpgrade,
                              (jlong) device,
                              jurl);
 
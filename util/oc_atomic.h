@@ -0,0 +1,70 @@
+/*
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+*/
+/**
+  @file
+
+  Atomic operations on 32-bit words and thread-local storage, as used by the
+  data shared between the network threads and the thread running the stack.
+
+  OC_HAVE_ATOMICS is defined when the compiler provides lock-free atomic
+  operations on 32-bit words. Otherwise the OC_ATOMIC_* macros are plain loads
+  and stores, and the callers serialize access with the network event handler
+  mutex. OC_THREAD_LOCAL is defined when thread-local variables are available.
+*/
+#ifndef OC_ATOMIC_H
+#define OC_ATOMIC_H
+
+#include <stdbool.h>
+#include <stdint.h>
+
+#if defined(__GNUC__) && defined(__GCC_ATOMIC_INT_LOCK_FREE) &&               \
+  (__GCC_ATOMIC_INT_LOCK_FREE == 2)
+#define OC_HAVE_ATOMICS
+
+#define OC_ATOMIC_LOAD32(x) __atomic_load_n(&(x), __ATOMIC_ACQUIRE)
+#define OC_ATOMIC_STORE32(x, val) __atomic_store_n(&(x), (val), __ATOMIC_RELEASE)
+#define OC_ATOMIC_INCREMENT32(x) __atomic_add_fetch(&(x), 1, __ATOMIC_RELAXED)
+#define OC_ATOMIC_DECREMENT32(x) __atomic_sub_fetch(&(x), 1, __ATOMIC_RELAXED)
+#define OC_ATOMIC_COMPARE_AND_SWAP32(x, expected, desired)                     \
+  __sync_bool_compare_and_swap(&(x), (expected), (desired))
+
+#if defined(__linux__) || defined(__APPLE__)
+#define OC_THREAD_LOCAL __thread
+#endif /* __linux__ || __APPLE__ */
+#elif defined(_MSC_VER)
+#include <intrin.h>
+#define OC_HAVE_ATOMICS
+
+#define OC_ATOMIC_LOAD32(x) ((uint32_t)_InterlockedOr((volatile long *)&(x), 0))
+#define OC_ATOMIC_STORE32(x, val)                                              \
+  _InterlockedExchange((volatile long *)&(x), (long)(val))
+#define OC_ATOMIC_INCREMENT32(x)                                               \
+  ((uint32_t)_InterlockedIncrement((volatile long *)&(x)))
+#define OC_ATOMIC_DECREMENT32(x)                                               \
+  ((uint32_t)_InterlockedDecrement((volatile long *)&(x)))
+#define OC_ATOMIC_COMPARE_AND_SWAP32(x, expected, desired)                     \
+  (_InterlockedCompareExchange((volatile long *)&(x), (long)(desired),         \
+                               (long)(expected)) == (long)(expected))
+
+#define OC_THREAD_LOCAL __declspec(thread)
+#else  /* __GNUC__ */
+#define OC_ATOMIC_LOAD32(x) (x)
+#define OC_ATOMIC_STORE32(x, val) ((x) = (val))
+#define OC_ATOMIC_INCREMENT32(x) (++(x))
+#define OC_ATOMIC_DECREMENT32(x) (--(x))
+#define OC_ATOMIC_COMPARE_AND_SWAP32(x, expected, desired)                     \
+  (((x) == (expected)) ? ((x) = (desired), true) : false)
+#endif /* !__GNUC__ */
+
+#endif /* OC_ATOMIC_H */